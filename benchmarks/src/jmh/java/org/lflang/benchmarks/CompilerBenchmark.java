@@ -0,0 +1,204 @@
+package org.lflang.benchmarks;
+
+import com.google.inject.Injector;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.CheckMode;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.eclipse.xtext.validation.Issue;
+import org.lflang.DefaultMessageReporter;
+import org.lflang.FileConfig;
+import org.lflang.LFStandaloneSetup;
+import org.lflang.generator.Argument;
+import org.lflang.generator.ElaborationCache;
+import org.lflang.generator.GeneratorArguments;
+import org.lflang.generator.GeneratorResult;
+import org.lflang.generator.LFGenerator;
+import org.lflang.generator.LFGeneratorContext;
+import org.lflang.generator.MainContext;
+import org.lflang.generator.ReactionInstanceGraph;
+import org.lflang.generator.ReactorInstance;
+import org.lflang.lf.Model;
+import org.lflang.lf.Reactor;
+import org.lflang.target.property.NoCompileProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measure the phases of the compiler on a {@link SyntheticProgram}: parsing, validation (which
+ * includes the elaboration of the program in {@code ModelInfo}), elaboration, level assignment,
+ * and code generation for the C target without invoking the target compiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompilerBenchmark {
+
+  /** The arguments of the code generator, which generates code without compiling it. */
+  private static final GeneratorArguments ARGS =
+      new GeneratorArguments(
+          false,
+          null,
+          false,
+          null,
+          false,
+          true,
+          null,
+          List.of(new Argument<>(NoCompileProperty.INSTANCE, true)));
+
+  /** The number of levels above the leaves of the hierarchy. */
+  @Param({"3"})
+  public int depth;
+
+  /** The number of children of each reactor that is not a leaf. */
+  @Param({"4"})
+  public int fanOut;
+
+  /** The width of the banks of leaves. */
+  @Param({"1", "32"})
+  public int bankWidth;
+
+  /** The number of federates, or 0 for a program that is not federated. */
+  @Param({"0", "4"})
+  public int federates;
+
+  private Injector injector;
+  private IResourceValidator validator;
+  private Path directory;
+  private Path file;
+
+  /** The parsed program, which is not modified by the benchmarks. */
+  private Resource resource;
+
+  /** The main or federated reactor of the program. */
+  private Reactor top;
+
+  @Setup
+  public void setup() throws IOException {
+    injector = new LFStandaloneSetup().createInjectorAndDoEMFRegistration();
+    validator = injector.getInstance(IResourceValidator.class);
+    directory = Files.createTempDirectory("lf-benchmark");
+    file = directory.resolve("src").resolve("Program.lf");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, new SyntheticProgram(depth, fanOut, bankWidth, federates).source());
+    resource = parse();
+    if (!resource.getErrors().isEmpty()) {
+      throw new IllegalStateException("Invalid synthetic program: " + resource.getErrors());
+    }
+    Model model = (Model) resource.getContents().get(0);
+    top =
+        model.getReactors().stream()
+            .filter(it -> it.isMain() || it.isFederated())
+            .findFirst()
+            .orElseThrow();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    delete(directory);
+  }
+
+  /** Parse the program into a new resource set. */
+  @Benchmark
+  public Resource parse() {
+    var resourceSet = injector.getInstance(XtextResourceSet.class);
+    resourceSet.addLoadOption(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
+    return FileConfig.getResource(file, resourceSet);
+  }
+
+  /** Run all checks of the validator on the parsed program. */
+  @Benchmark
+  public List<Issue> validate() {
+    // Elaborate the program in every invocation instead of taking it from the cache.
+    ElaborationCache.of(resource).invalidate(resource);
+    return validator.validate(resource, CheckMode.ALL, CancelIndicator.NullImpl);
+  }
+
+  /** Create the instance tree of the program. */
+  @Benchmark
+  public ReactorInstance elaborate() {
+    return new ReactorInstance(top, new DefaultMessageReporter());
+  }
+
+  /** Assign levels to the runtime reaction instances of a freshly elaborated program. */
+  @Benchmark
+  public ReactionInstanceGraph assignLevels(Elaborated elaborated) {
+    return elaborated.instance.assignLevels();
+  }
+
+  /**
+   * Generate the code of a freshly parsed program into an empty directory. For a federated program,
+   * this generates the program of each federate, but stops before generating their C code.
+   */
+  @Benchmark
+  public GeneratorResult generateC(Parsed parsed) {
+    var fileAccess = injector.getInstance(JavaIoFileSystemAccess.class);
+    fileAccess.setOutputPath(directory.resolve("src-gen").toString());
+    var context =
+        new MainContext(
+            LFGeneratorContext.Mode.STANDALONE,
+            CancelIndicator.NullImpl,
+            (m, p) -> {},
+            ARGS,
+            parsed.resource,
+            fileAccess,
+            fileConfig -> new DefaultMessageReporter());
+    injector.getInstance(LFGenerator.class).doGenerate(parsed.resource, fileAccess, context);
+    return context.getResult();
+  }
+
+  /** A program that is elaborated anew for every invocation, because its levels are cached. */
+  @State(Scope.Thread)
+  public static class Elaborated {
+    private ReactorInstance instance;
+
+    @Setup(Level.Invocation)
+    public void setup(CompilerBenchmark benchmark) {
+      instance = benchmark.elaborate();
+    }
+  }
+
+  /**
+   * A program that is parsed anew for every invocation, because code generation transforms the AST,
+   * and whose generated files are removed before every invocation.
+   */
+  @State(Scope.Thread)
+  public static class Parsed {
+    private Resource resource;
+
+    @Setup(Level.Invocation)
+    public void setup(CompilerBenchmark benchmark) throws IOException {
+      resource = benchmark.parse();
+      delete(benchmark.directory.resolve("src-gen"));
+      delete(benchmark.directory.resolve("fed-gen"));
+      delete(benchmark.directory.resolve("bin"));
+    }
+  }
+
+  /** Delete the given directory, if it exists, without following symbolic links. */
+  private static void delete(Path dir) throws IOException {
+    if (!Files.exists(dir)) return;
+    try (var paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
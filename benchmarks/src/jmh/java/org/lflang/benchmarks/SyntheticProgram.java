@@ -0,0 +1,78 @@
+package org.lflang.benchmarks;
+
+/**
+ * A generator of synthetic C programs whose size is controlled by a few parameters.
+ *
+ * <p>The program consists of a hierarchy of reactors {@code Level0} to {@code Level<depth>}. A
+ * {@code Level0} reactor is a leaf with one reaction that forwards its input to its output. Every
+ * other level contains {@code fanOut} instances of the level below, broadcasts its input to all of
+ * them, and has a reaction that is triggered by all of their outputs. The children of {@code
+ * Level1} are banks of width {@code bankWidth}, so the program has {@code fanOut^depth * bankWidth}
+ * leaves per hierarchy. The top level contains a timer-driven source that feeds one hierarchy, or,
+ * in a federated program, one hierarchy per federate.
+ */
+public final class SyntheticProgram {
+
+  private final int depth;
+  private final int fanOut;
+  private final int bankWidth;
+  private final int federates;
+
+  /**
+   * Create a program generator.
+   *
+   * @param depth The number of levels above the leaves.
+   * @param fanOut The number of children of each reactor that is not a leaf.
+   * @param bankWidth The width of the banks of leaves.
+   * @param federates The number of federates that each contain a hierarchy, or 0 for a program
+   *     that is not federated.
+   */
+  public SyntheticProgram(int depth, int fanOut, int bankWidth, int federates) {
+    this.depth = depth;
+    this.fanOut = fanOut;
+    this.bankWidth = bankWidth;
+    this.federates = federates;
+  }
+
+  /** Return the source code of the program. */
+  public String source() {
+    var lf = new StringBuilder("target C\n\n");
+    lf.append(
+        """
+        reactor Source {
+          output out: int
+          timer t(0, 1 msec)
+          reaction(t) -> out {= lf_set(out, 1); =}
+        }
+
+        reactor Level0 {
+          input in: int
+          output out: int
+          reaction(in) -> out {= lf_set(out, in->value + 1); =}
+        }
+        """);
+    for (int level = 1; level <= depth; level++) {
+      String width = level == 1 ? "[" + bankWidth + "]" : "";
+      lf.append("\nreactor Level").append(level).append(" {\n");
+      lf.append("  input in: int\n  output out: int\n");
+      for (int i = 0; i < fanOut; i++) {
+        lf.append("  c").append(i).append(" = new").append(width);
+        lf.append(" Level").append(level - 1).append("()\n");
+        lf.append("  (in)+ -> c").append(i).append(".in\n");
+      }
+      lf.append("  reaction(");
+      for (int i = 0; i < fanOut; i++) {
+        lf.append(i == 0 ? "" : ", ").append("c").append(i).append(".out");
+      }
+      lf.append(") -> out {= lf_set(out, 0); =}\n}\n");
+    }
+    lf.append(federates > 0 ? "\nfederated reactor {\n" : "\nmain reactor {\n");
+    lf.append("  source = new Source()\n");
+    for (int i = 0; i < Math.max(federates, 1); i++) {
+      lf.append("  top").append(i).append(" = new Level").append(depth).append("()\n");
+      lf.append("  source.out -> top").append(i).append(".in\n");
+    }
+    lf.append("}\n");
+    return lf.toString();
+  }
+}
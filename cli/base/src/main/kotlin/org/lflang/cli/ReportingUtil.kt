@@ -66,14 +66,15 @@ import kotlin.system.exitProcess
 
 /**
  * Abstraction over output streams. This is provided in case
- * we want to mock an environment for tests.
+ * we want to mock an environment for tests, or to serve
+ * requests from other processes.
  *
  * @author Clément Fournier
  */
-class Io @JvmOverloads constructor(
-    val err: PrintStream = System.err,
-    val out: PrintStream = System.out,
-    val wd: Path = Paths.get("").toAbsolutePath(),
+open class Io @JvmOverloads constructor(
+    open val err: PrintStream = System.err,
+    open val out: PrintStream = System.out,
+    open val wd: Path = Paths.get("").toAbsolutePath(),
     /**
      * A callback to quit the current process. Mapped to [System.exit]
      * by default.
@@ -85,7 +86,7 @@ class Io @JvmOverloads constructor(
      * Call the callback corresponding to System.exit. This function
      * never returns.
      */
-    fun callSystemExit(exitCode: Int): Nothing {
+    open fun callSystemExit(exitCode: Int): Nothing {
         systemExit.invoke(exitCode)
     }
 
@@ -192,6 +193,9 @@ class IssueCollector {
 
     /** Sorted list of all issues. */
     val allIssues: List<LfIssue> get() = map.values.flatten().sorted()
+
+    /** Forget all issues, e.g., before processing the next file. */
+    fun clear() = map.clear()
 }
 
 
@@ -224,6 +228,9 @@ class ReportingBackend(
     /** *Absolute* path to lines. */
     private val fileCache = mutableMapOf<Path, List<String>?>()
 
+    /** Forget the contents of files read so far, which may have changed since. */
+    fun clearFileCache() = fileCache.clear()
+
     private var errorsOccurred = false
 
     private fun getLines(path: Path?): List<String>? =
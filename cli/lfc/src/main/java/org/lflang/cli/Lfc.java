@@ -1,10 +1,22 @@
 package org.lflang.cli;
 
 import com.google.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.generator.GeneratorDelegate;
 import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
@@ -12,10 +24,12 @@ import org.eclipse.xtext.util.CancelIndicator;
 import org.lflang.FileConfig;
 import org.lflang.ast.ASTUtils;
 import org.lflang.generator.Argument;
+import org.lflang.generator.BuildResourceCache;
 import org.lflang.generator.GeneratorArguments;
 import org.lflang.generator.LFGeneratorContext;
 import org.lflang.generator.MainContext;
 import org.lflang.target.property.BuildTypeProperty;
+import org.lflang.target.property.CompileThreadsProperty;
 import org.lflang.target.property.CompilerProperty;
 import org.lflang.target.property.LoggingProperty;
 import org.lflang.target.property.NoCompileProperty;
@@ -27,6 +41,7 @@ import org.lflang.target.property.SingleThreadedProperty;
 import org.lflang.target.property.TracingProperty;
 import org.lflang.target.property.TracingProperty.TracingOptions;
 import org.lflang.target.property.VerifyProperty;
+import org.lflang.target.property.VerifyThreadsProperty;
 import org.lflang.target.property.WorkersProperty;
 import org.lflang.target.property.type.BuildTypeType;
 import org.lflang.target.property.type.BuildTypeType.BuildType;
@@ -34,6 +49,7 @@ import org.lflang.target.property.type.LoggingType;
 import org.lflang.target.property.type.LoggingType.LogLevel;
 import org.lflang.target.property.type.SchedulerType;
 import org.lflang.target.property.type.SchedulerType.Scheduler;
+import org.lflang.util.Profiler;
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -73,6 +89,13 @@ public class Lfc extends CliBase {
   @Option(names = "--compiler", description = "Target compiler to invoke.")
   private String targetCompiler;
 
+  @Option(
+      names = "--compile-threads",
+      description =
+          "Specify the number of threads to use for generating reactor classes and compiling"
+              + " federates.")
+  private Integer compileThreads;
+
   @Option(
       names = "--external-runtime-path",
       description = "Specify an external runtime library to be used by the" + " compiled binary.")
@@ -95,6 +118,11 @@ public class Lfc extends CliBase {
   @Option(names = "--logging", description = "The logging level to use by the generated binary.")
   private String logging;
 
+  @Option(
+      names = {"-j", "--jobs"},
+      description = "Process up to the given number of files concurrently.")
+  private Integer jobs;
+
   @Option(
       names = {"-l", "--lint"},
       arity = "0",
@@ -113,12 +141,24 @@ public class Lfc extends CliBase {
       description = "Run the generated verification models.")
   private Boolean verify;
 
+  @Option(
+      names = "--verify-threads",
+      description = "Specify the number of threads to use for checking verification models.")
+  private Integer verifyThreads;
+
   @Option(
       names = {"--print-statistics"},
       arity = "0",
       description = "Instruct the runtime to collect and print statistics.")
   private Boolean printStatistics;
 
+  @Option(
+      names = "--profile",
+      description =
+          "Record the time spent in each phase of the build, write it to the given file as a"
+              + " Chrome trace, and print a summary.")
+  private Path profile;
+
   @Option(
       names = {"-q", "--quiet"},
       arity = "0",
@@ -170,6 +210,18 @@ public class Lfc extends CliBase {
   @ArgGroup(exclusive = true, multiplicity = "0..1")
   ThreadingMutuallyExclusive threading;
 
+  /** The resources that are reused across the requests that an lfc daemon serves, if any. */
+  private BuildResourceCache resourceCache;
+
+  /** Whether the resource cache is held for the file that is currently being processed. */
+  private boolean resourceCacheHeld;
+
+  /** The resource of the file that is being processed, if it was obtained from the cache. */
+  private Resource cachedResource;
+
+  /** The profiler that records the phases of the build if {@code --profile} is given. */
+  private Profiler profiler = Profiler.NONE;
+
   /**
    * Main function of the stand-alone compiler. Caution: this will invoke System.exit.
    *
@@ -186,7 +238,33 @@ public class Lfc extends CliBase {
    * @param args Command-line arguments.
    */
   public static void main(Io io, final String... args) {
-    cliMain("lfc", Lfc.class, io, args);
+    if (args.length > 0 && args[0].equals(LfcDaemon.DAEMON_OPTION)) {
+      LfcDaemon.serve(io, Arrays.copyOfRange(args, 1, args.length));
+    } else if (args.length > 0 && args[0].equals(LfcDaemon.CLIENT_OPTION)) {
+      LfcDaemon.request(io, Arrays.copyOfRange(args, 1, args.length));
+    } else {
+      cliMain("lfc", Lfc.class, io, args);
+    }
+  }
+
+  /** Reuse the resources in the given cache across invocations of the code generator. */
+  void setResourceCache(BuildResourceCache resourceCache) {
+    this.resourceCache = resourceCache;
+  }
+
+  @Override
+  public Resource getResource(Path path) {
+    if (resourceCache == null || resourceCacheHeld || !resourceCache.tryAcquire()) {
+      return super.getResource(path);
+    }
+    resourceCacheHeld = true;
+    try {
+      cachedResource =
+          resourceCache.getResource(org.eclipse.emf.common.util.URI.createFileURI(path.toString()));
+      return cachedResource;
+    } catch (RuntimeException e) {
+      return null;
+    }
   }
 
   /** Load the resource, validate it, and, invoke the code generator. */
@@ -195,60 +273,250 @@ public class Lfc extends CliBase {
     List<Path> paths = getInputPaths();
     final Path outputRoot = getOutputRoot();
     var args = this.getArgs();
+    profiler = profile != null ? new Profiler() : Profiler.NONE;
 
     try {
       // Invoke the generator on all input file paths.
-      invokeGenerator(paths, outputRoot, args);
+      if (jobs != null && jobs > 1 && paths.size() > 1) {
+        invokeGeneratorConcurrently(paths, outputRoot, args, jobs);
+      } else {
+        invokeGenerator(paths, outputRoot, args);
+      }
     } catch (RuntimeException e) {
       reporter.printFatalErrorAndExit("An unexpected error occurred:", e);
     }
+    if (profile != null) {
+      writeProfile();
+    }
+  }
+
+  /** Write the trace of the recorded phases to the requested file and print a summary. */
+  private void writeProfile() {
+    Path file = io.getWd().resolve(profile);
+    try {
+      profiler.writeTrace(file);
+    } catch (IOException e) {
+      reporter.printFatalErrorAndExit("Unable to write the profile to " + file + ".", e);
+    }
+    reporter.printInfo(
+        String.format(
+            "Time spent per phase (trace written to %s):%n%s", file, profiler.summary()));
   }
 
   /** Invoke the code generator on the given validated file paths. */
   private void invokeGenerator(List<Path> files, Path root, GeneratorArguments args) {
     for (Path path : files) {
-      path = toAbsolutePath(path);
+      try {
+        invokeGenerator(path, root, args, new Timings());
+      } finally {
+        if (resourceCacheHeld) {
+          resourceCacheHeld = false;
+          resourceCache.release(cachedResource);
+          cachedResource = null;
+        }
+      }
+    }
+  }
 
-      String outputPath = getActualOutputPath(root, path).toString();
-      this.fileAccess.setOutputPath(outputPath);
+  /**
+   * Invoke the code generator on the given validated file path and record the time spent in each
+   * phase in the given timings.
+   */
+  private void invokeGenerator(Path path, Path root, GeneratorArguments args, Timings timings) {
+    long start = System.nanoTime();
+    path = toAbsolutePath(path);
 
-      final Resource resource = getResource(path);
-      if (resource == null) {
-        reporter.printFatalErrorAndExit(
-            path + " is not an LF file. Use the .lf file extension to" + " denote LF files.");
-      } else if (federated) {
-        if (!ASTUtils.makeFederated(resource)) {
-          reporter.printError("Unable to change main reactor to federated reactor.");
-        }
+    String outputPath = getActualOutputPath(root, path).toString();
+    this.fileAccess.setOutputPath(outputPath);
+
+    final Resource resource;
+    try (var span = profiler.span("parse")) {
+      resource = getResource(path);
+    }
+    if (resource == null) {
+      reporter.printFatalErrorAndExit(
+          path + " is not an LF file. Use the .lf file extension to" + " denote LF files.");
+    } else if (federated) {
+      if (!ASTUtils.makeFederated(resource)) {
+        reporter.printError("Unable to change main reactor to federated reactor.");
       }
+    }
+    timings.parse = System.nanoTime() - start;
 
+    try (var span = profiler.span("validate")) {
       validateResource(resource);
-      exitIfCollectedErrors();
+    }
+    timings.validate = System.nanoTime() - start - timings.parse;
+    exitIfCollectedErrors();
+
+    LFGeneratorContext context =
+        new MainContext(
+            LFGeneratorContext.Mode.STANDALONE,
+            CancelIndicator.NullImpl,
+            (m, p) -> {},
+            args,
+            resource,
+            this.fileAccess,
+            fileConfig -> messageReporter,
+            profiler);
+
+    // Exit if there were problems creating the main context.
+    exitIfCollectedErrors();
+
+    try (var span = profiler.span("generate")) {
+      this.generator.generate(resource, this.fileAccess, context);
+    } catch (Exception e) {
+      reporter.printFatalErrorAndExit("Error running generator", e);
+    }
 
-      LFGeneratorContext context =
-          new MainContext(
-              LFGeneratorContext.Mode.STANDALONE,
-              CancelIndicator.NullImpl,
-              (m, p) -> {},
-              args,
-              resource,
-              this.fileAccess,
-              fileConfig -> messageReporter);
+    timings.generate = System.nanoTime() - start - timings.parse - timings.validate;
 
-      // Exit if there were problems creating the main context.
-      exitIfCollectedErrors();
+    exitIfCollectedErrors();
+    // Print all other issues (not errors).
+    issueCollector.getAllIssues().forEach(reporter::printIssue);
 
-      try {
-        this.generator.generate(resource, this.fileAccess, context);
-      } catch (Exception e) {
-        reporter.printFatalErrorAndExit("Error running generator", e);
+    messageReporter.nowhere().info("Code generation finished.");
+  }
+
+  /**
+   * Invoke the code generator on the given validated file paths, processing up to {@code jobs}
+   * files at a time. Each thread has its own injector, so files are parsed into separate resource
+   * sets and validated and generated with separate validators and message reporters. The output
+   * for each file is buffered and printed in the order in which the files were given, as soon as
+   * the output for all preceding files has been printed. Unlike the sequential mode, errors in one
+   * file do not prevent the remaining files from being processed.
+   */
+  private void invokeGeneratorConcurrently(
+      List<Path> files, Path root, GeneratorArguments args, int jobs) {
+    // Injectors are created up front because their creation updates global EMF registries.
+    BlockingQueue<Worker> workers = new LinkedBlockingQueue<>();
+    for (int i = 0; i < Math.min(jobs, files.size()); i++) {
+      workers.add(new Worker());
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+    try {
+      List<Future<Job>> futures = new ArrayList<>();
+      for (Path path : files) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  Worker worker = workers.take();
+                  try {
+                    return worker.run(path, root, args);
+                  } finally {
+                    workers.put(worker);
+                  }
+                }));
+      }
+      List<Job> finished = new ArrayList<>();
+      for (Future<Job> future : futures) {
+        Job job = future.get();
+        io.getErr().print(job.err());
+        io.getOut().print(job.out());
+        finished.add(job);
+      }
+      printTimings(finished);
+      long failed = finished.stream().filter(it -> it.exitCode() != 0).count();
+      if (failed > 0) {
+        reporter.printFatalErrorAndExit(
+            String.format("Aborting because %d of %d files failed.", failed, files.size()));
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      reporter.printFatalErrorAndExit("Interrupted while waiting for the generator.", e);
+    } catch (ExecutionException e) {
+      reporter.printFatalErrorAndExit("An unexpected error occurred:", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Print the time spent in each phase for each of the given jobs. */
+  private void printTimings(List<Job> jobs) {
+    StringBuilder summary = new StringBuilder("Time spent per file (parse, validate, generate):");
+    for (Job job : jobs) {
+      summary.append(
+          String.format(
+              "%n  %s: %d ms, %d ms, %d ms",
+              io.getWd().relativize(toAbsolutePath(job.path())),
+              job.timings().parse / 1_000_000,
+              job.timings().validate / 1_000_000,
+              job.timings().generate / 1_000_000));
+    }
+    reporter.printInfo(summary.toString());
+  }
+
+  /** The time in nanoseconds that was spent in each phase of processing a file. */
+  private static class Timings {
+    long parse;
+    long validate;
+    long generate;
+  }
+
+  /**
+   * The outcome of processing a file.
+   *
+   * @param path The file.
+   * @param exitCode The code with which lfc would have exited, or 0 if the file was processed.
+   * @param timings The time spent in each phase.
+   * @param err The messages that were printed to the error stream.
+   * @param out The messages that were printed to the output stream.
+   */
+  private record Job(Path path, int exitCode, Timings timings, String err, String out) {}
+
+  /** Thrown instead of exiting the process when processing a file fails. */
+  private static class JobExit extends Error {
+    private final int exitCode;
 
-      exitIfCollectedErrors();
-      // Print all other issues (not errors).
-      issueCollector.getAllIssues().forEach(reporter::printIssue);
+    JobExit(int exitCode) {
+      super(null, null, false, false);
+      this.exitCode = exitCode;
+    }
+  }
 
-      messageReporter.nowhere().info("Code generation finished.");
+  /** An independent instance of lfc that processes one file at a time for a thread. */
+  private class Worker {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private final Lfc lfc;
+
+    Worker() {
+      Io workerIo =
+          new Io(
+              new PrintStream(err, true, StandardCharsets.UTF_8),
+              new PrintStream(out, true, StandardCharsets.UTF_8),
+              io.getWd(),
+              exitCode -> {
+                throw new JobExit(exitCode);
+              });
+      lfc = getInjector("lfc", workerIo).getInstance(Lfc.class);
+      lfc.federated = federated;
+      lfc.profiler = profiler;
+    }
+
+    /** Process the given file and return the outcome. */
+    Job run(Path path, Path root, GeneratorArguments args) {
+      Timings timings = new Timings();
+      int exitCode = 0;
+      lfc.issueCollector.clear();
+      try {
+        lfc.invokeGenerator(path, root, args, timings);
+      } catch (JobExit e) {
+        exitCode = e.exitCode;
+      } catch (RuntimeException e) {
+        lfc.reporter.printFatalError("An unexpected error occurred:", e);
+        exitCode = 1;
+      }
+      Job job =
+          new Job(
+              path,
+              exitCode,
+              timings,
+              err.toString(StandardCharsets.UTF_8),
+              out.toString(StandardCharsets.UTF_8));
+      err.reset();
+      out.reset();
+      return job;
     }
   }
 
@@ -378,11 +646,13 @@ public class Lfc extends CliBase {
         List.of(
             new Argument<>(BuildTypeProperty.INSTANCE, getBuildType()),
             new Argument<>(CompilerProperty.INSTANCE, targetCompiler),
+            new Argument<>(CompileThreadsProperty.INSTANCE, compileThreads),
             new Argument<>(LoggingProperty.INSTANCE, getLogging()),
             new Argument<>(PrintStatisticsProperty.INSTANCE, printStatistics),
             new Argument<>(NoCompileProperty.INSTANCE, noCompile),
             new Argument<>(NoSourceMappingProperty.INSTANCE, noSourceMapping),
             new Argument<>(VerifyProperty.INSTANCE, verify),
+            new Argument<>(VerifyThreadsProperty.INSTANCE, verifyThreads),
             new Argument<>(RuntimeVersionProperty.INSTANCE, runtimeVersion),
             new Argument<>(SchedulerProperty.INSTANCE, getScheduler()),
             new Argument<>(SingleThreadedProperty.INSTANCE, getSingleThreaded()),
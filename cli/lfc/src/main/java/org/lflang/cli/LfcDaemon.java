@@ -0,0 +1,539 @@
+package org.lflang.cli;
+
+import com.google.inject.Injector;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.lflang.LocalStrings;
+import org.lflang.generator.BuildResourceCache;
+import org.lflang.util.LFCommand;
+
+/**
+ * A long-lived lfc process that serves compile requests from other lfc processes over a Unix domain
+ * socket, so that the requests do not pay for the creation of the injector, the registration of
+ * the EMF packages, and the loading of the grammar, and benefit from a warm JVM.
+ *
+ * <p>{@code lfc --daemon [--socket PATH]} starts a daemon. {@code lfc --client [--socket PATH]
+ * ARGS...} asks the daemon to run {@code lfc ARGS...} in the working directory of the client, and
+ * prints the output and exits with the exit code of that run. If no daemon is listening, the client
+ * runs lfc itself.
+ *
+ * <p>The default socket is in {@code $XDG_RUNTIME_DIR/lfc} or, if that variable is not set, in
+ * {@code lfc-USER} in the temporary directory. The daemon creates that directory so that only the
+ * current user can access it. Both ends refuse to use a socket that is owned by another user.
+ *
+ * <p>Builds read environment variables such as {@code PATH}, {@code CC}, and {@code LF_CACHE_DIR}
+ * from the process that runs them. Hence, the client sends its environment along with the request,
+ * and the daemon refuses requests whose environment differs from its own, apart from variables
+ * that only describe the shell or terminal. The client then runs lfc itself.
+ *
+ * <p>Each request is served by a session, which has its own injector and keeps the resources that
+ * were parsed for earlier requests, such as imported libraries, in a {@link BuildResourceCache}.
+ * Concurrent requests are served by different sessions, up to {@link #MAX_SESSIONS} at a time;
+ * further clients wait until a session becomes available. Only output that lfc produces through its
+ * {@link Io} is forwarded to the client; output that code generators or the target compiler write
+ * to the standard streams of the process appears in the output of the daemon.
+ */
+final class LfcDaemon {
+
+  /** The option that starts a daemon. */
+  static final String DAEMON_OPTION = "--daemon";
+
+  /** The option that sends the remaining arguments to a daemon. */
+  static final String CLIENT_OPTION = "--client";
+
+  /** The option that specifies the socket that the daemon listens on. */
+  static final String SOCKET_OPTION = "--socket";
+
+  /** Frame that carries bytes for the standard output of the client. */
+  private static final byte OUT = 1;
+
+  /** Frame that carries bytes for the standard error of the client. */
+  private static final byte ERR = 2;
+
+  /** Frame that carries the exit code of the request; it is the last frame of a response. */
+  private static final byte EXIT = 3;
+
+  /** Frame that carries the reason why a request is refused; it is the only frame of a response. */
+  private static final byte REFUSED = 4;
+
+  /** The maximum number of requests that are served concurrently, and of sessions that are kept. */
+  private static final int MAX_SESSIONS =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * Environment variables that describe the shell or terminal of a process rather than the
+   * environment of a build, and therefore may differ between a client and the daemon.
+   */
+  private static final Set<String> SESSION_VARIABLES =
+      Set.of(
+          "_",
+          "PWD",
+          "OLDPWD",
+          "SHLVL",
+          "TERM_SESSION_ID",
+          "ITERM_SESSION_ID",
+          "WINDOWID",
+          "TMUX_PANE",
+          "SSH_TTY",
+          "GPG_TTY");
+
+  /** The permissions of the directory of the default socket. */
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+      PosixFilePermissions.fromString("rwx------");
+
+  /** The sessions that are not serving a request at the moment. */
+  private static final BlockingQueue<Session> idle = new ArrayBlockingQueue<>(MAX_SESSIONS);
+
+  private LfcDaemon() {}
+
+  /**
+   * Listen for requests until the process is terminated.
+   *
+   * @param io IO streams of the daemon.
+   * @param args The arguments that follow {@link #DAEMON_OPTION}.
+   */
+  static void serve(Io io, String[] args) {
+    ReportingBackend reporter = new ReportingBackend(io, "lfc: ");
+    List<String> rest = new ArrayList<>(Arrays.asList(args));
+    Path socket = takeSocketOption(rest, io);
+    if (!rest.isEmpty()) {
+      reporter.printFatalErrorAndExit("Unexpected arguments for " + DAEMON_OPTION + ": " + rest);
+    }
+    var address = UnixDomainSocketAddress.of(socket);
+    try {
+      if (socket.equals(defaultSocket())) {
+        createPrivateDirectory(socket.getParent());
+      }
+      if (Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) {
+        checkOwner(socket);
+        try (SocketChannel ignored = SocketChannel.open(address)) {
+          reporter.printFatalErrorAndExit("A daemon is already listening on " + socket + ".");
+        } catch (IOException e) {
+          // The socket is stale.
+          Files.delete(socket);
+        }
+      }
+      ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      server.bind(address);
+      if (isPosix(socket)) {
+        Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+      }
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      Files.deleteIfExists(socket);
+                    } catch (IOException e) {
+                      // Nothing can be done about it at this point.
+                    }
+                  }));
+      // Create the first session right away so that the first request is fast as well.
+      idle.add(createSession());
+      reporter.printInfo("Listening on " + socket + ".");
+      ExecutorService executor = Executors.newFixedThreadPool(MAX_SESSIONS);
+      Semaphore available = new Semaphore(MAX_SESSIONS);
+      while (true) {
+        // Only accept a connection once it can be served, so that further clients wait in the
+        // backlog of the socket instead of in a queue of the daemon.
+        available.acquireUninterruptibly();
+        SocketChannel client = server.accept();
+        executor.submit(
+            () -> {
+              try {
+                handle(client, reporter);
+              } finally {
+                available.release();
+              }
+            });
+      }
+    } catch (IOException e) {
+      reporter.printFatalErrorAndExit("Unable to listen on " + socket + ".", e);
+    }
+  }
+
+  /**
+   * Send the given arguments to a daemon, print its output, and exit with its exit code. If no
+   * daemon is listening, run lfc in this process instead.
+   *
+   * @param io IO streams of the client.
+   * @param args The arguments that follow {@link #CLIENT_OPTION}.
+   */
+  static void request(Io io, String[] args) {
+    ReportingBackend reporter = new ReportingBackend(io, "lfc: ");
+    List<String> rest = new ArrayList<>(Arrays.asList(args));
+    Path socket = takeSocketOption(rest, io);
+    // The daemon cannot read the standard input of the client.
+    int stdin = rest.indexOf("--stdin");
+    if (stdin >= 0) {
+      try {
+        var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        rest.remove(stdin);
+        if (line != null) rest.add(stdin, line);
+      } catch (IOException e) {
+        reporter.printFatalErrorAndExit("Unable to read from the standard input.", e);
+      }
+    }
+
+    SocketChannel channel;
+    try {
+      if (socket.equals(defaultSocket())) {
+        checkPrivateDirectory(socket.getParent());
+      }
+      checkOwner(socket);
+      channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+    } catch (NoSuchFileException e) {
+      // No daemon is listening.
+      Lfc.main(io, rest.toArray(new String[0]));
+      return;
+    } catch (IOException e) {
+      if (!(e instanceof ConnectException)) {
+        reporter.printWarning("Not using the daemon: " + e.getMessage());
+      }
+      Lfc.main(io, rest.toArray(new String[0]));
+      return;
+    }
+    String refusal;
+    try (channel;
+        var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        var out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+      writeString(out, io.getWd().toString());
+      Map<String, String> environment = System.getenv();
+      out.writeInt(environment.size());
+      for (var variable : environment.entrySet()) {
+        writeString(out, variable.getKey());
+        writeString(out, variable.getValue());
+      }
+      out.writeInt(rest.size());
+      for (String arg : rest) {
+        writeString(out, arg);
+      }
+      out.flush();
+      while (true) {
+        byte kind = in.readByte();
+        if (kind == REFUSED) {
+          refusal = readString(in);
+          break;
+        }
+        if (kind == EXIT) {
+          int exitCode = in.readInt();
+          io.getOut().flush();
+          io.getErr().flush();
+          io.callSystemExit(exitCode);
+          return;
+        }
+        byte[] bytes = in.readNBytes(in.readInt());
+        (kind == OUT ? io.getOut() : io.getErr()).write(bytes);
+      }
+    } catch (EOFException e) {
+      reporter.printFatalErrorAndExit("The daemon closed the connection unexpectedly.");
+      return;
+    } catch (IOException e) {
+      reporter.printFatalErrorAndExit("Unable to communicate with the daemon.", e);
+      return;
+    }
+    reporter.printWarning("Not using the daemon: " + refusal);
+    Lfc.main(io, rest.toArray(new String[0]));
+  }
+
+  /** Serve the request of the given client. */
+  private static void handle(SocketChannel client, ReportingBackend reporter) {
+    try (client;
+        var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        var out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+      Path wd = Path.of(readString(in));
+      Map<String, String> environment = new HashMap<>();
+      int variables = in.readInt();
+      for (int i = 0; i < variables; i++) {
+        String name = readString(in);
+        environment.put(name, readString(in));
+      }
+      String[] args = new String[in.readInt()];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = readString(in);
+      }
+      List<String> differences = differingVariables(environment, System.getenv());
+      if (!differences.isEmpty()) {
+        out.writeByte(REFUSED);
+        writeString(
+            out,
+            "it was started in a different environment (" + String.join(", ", differences) + ").");
+        out.flush();
+        return;
+      }
+      Session session = idle.poll();
+      if (session == null) session = createSession();
+      int exitCode;
+      try {
+        exitCode = session.run(wd, args, out);
+      } finally {
+        // The queue has room for every session, because there are at most as many sessions as
+        // requests that are served at a time.
+        idle.offer(session);
+      }
+      synchronized (out) {
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+      }
+    } catch (IOException e) {
+      reporter.printWarning("Unable to serve a request: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Return the names of the variables that are set differently in the given environments, in
+   * alphabetical order, ignoring the {@link #SESSION_VARIABLES}.
+   */
+  static List<String> differingVariables(Map<String, String> client, Map<String, String> daemon) {
+    Set<String> names = new TreeSet<>(client.keySet());
+    names.addAll(daemon.keySet());
+    names.removeAll(SESSION_VARIABLES);
+    names.removeIf(name -> Objects.equals(client.get(name), daemon.get(name)));
+    return List.copyOf(names);
+  }
+
+  /** Create a new session. Sessions are created one at a time because of the EMF registration. */
+  private static synchronized Session createSession() {
+    return new Session();
+  }
+
+  /**
+   * Remove the {@link #SOCKET_OPTION} and its value from the front of the given arguments, and
+   * return the socket it specifies, or the default socket if there is none.
+   */
+  private static Path takeSocketOption(List<String> args, Io io) {
+    if (args.size() >= 2 && args.get(0).equals(SOCKET_OPTION)) {
+      args.remove(0);
+      return io.getWd().resolve(args.remove(0));
+    }
+    return defaultSocket();
+  }
+
+  /**
+   * Return the default socket, which is in {@code $XDG_RUNTIME_DIR/lfc} if that variable is set,
+   * and in {@code lfc-USER} in the temporary directory otherwise.
+   */
+  private static Path defaultSocket() {
+    String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+    String user = System.getProperty("user.name");
+    Path dir =
+        runtimeDir != null && !runtimeDir.isEmpty()
+            ? Path.of(runtimeDir, "lfc")
+            : Path.of(System.getProperty("java.io.tmpdir"), "lfc-" + user);
+    return dir.resolve("lfc-" + LocalStrings.VERSION + ".sock");
+  }
+
+  /**
+   * Create the given directory, if it does not exist, such that only the current user can access
+   * it, and check that it is private to the current user.
+   */
+  private static void createPrivateDirectory(Path dir) throws IOException {
+    if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+      Files.createDirectories(dir.getParent());
+      try {
+        if (isPosix(dir)) {
+          Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } else {
+          Files.createDirectory(dir);
+        }
+      } catch (FileAlreadyExistsException e) {
+        // Another daemon created it concurrently; it is checked below.
+      }
+    }
+    checkPrivateDirectory(dir);
+  }
+
+  /**
+   * Throw an exception if the given path is not a directory that is owned by the current user and
+   * that no other user can access.
+   */
+  private static void checkPrivateDirectory(Path dir) throws IOException {
+    if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+      throw new NoSuchFileException(dir.toString());
+    }
+    checkOwner(dir);
+    if (isPosix(dir)) {
+      var permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+      if (!OWNER_ONLY.containsAll(permissions)) {
+        throw new IOException(dir + " is accessible by other users.");
+      }
+    }
+  }
+
+  /** Throw an exception if the given file is not owned by the current user. */
+  private static void checkOwner(Path path) throws IOException {
+    UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+    UserPrincipal user =
+        path.getFileSystem()
+            .getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!owner.equals(user)) {
+      throw new IOException(path + " is owned by " + owner.getName() + ", not " + user.getName());
+    }
+  }
+
+  /** Return whether the file system of the given path supports POSIX permissions. */
+  private static boolean isPosix(Path path) {
+    return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+  }
+
+  /** Thrown instead of exiting the process when a request is done. */
+  private static class RequestExit extends Error {
+    private final int exitCode;
+
+    RequestExit(int exitCode) {
+      super(null, null, false, false);
+      this.exitCode = exitCode;
+    }
+  }
+
+  /** An injector and the resources it parsed, which serve one request at a time. */
+  private static class Session {
+
+    /** The IO streams of the request that is being served. */
+    private final SessionIo io = new SessionIo();
+
+    private final Injector injector = CliBase.getInjector("lfc", io);
+
+    private final BuildResourceCache resourceCache =
+        new BuildResourceCache(injector.getInstance(ResourceSet.class));
+
+    /** Run lfc with the given arguments and return its exit code. */
+    int run(Path wd, String[] args, DataOutputStream client) {
+      io.wd = wd;
+      io.out = new PrintStream(new FrameOutputStream(client, OUT), true, StandardCharsets.UTF_8);
+      io.err = new PrintStream(new FrameOutputStream(client, ERR), true, StandardCharsets.UTF_8);
+      // Files may have changed since the previous request.
+      injector.getInstance(ReportingBackend.class).clearFileCache();
+      injector.getInstance(IssueCollector.class).clear();
+      // Tools may have been installed or removed since the previous request.
+      LFCommand.invalidateCommandCache();
+      Lfc lfc = injector.getInstance(Lfc.class);
+      lfc.setResourceCache(resourceCache);
+      try {
+        lfc.doExecute(io, args);
+        return 0;
+      } catch (RequestExit e) {
+        return e.exitCode;
+      } catch (RuntimeException e) {
+        injector
+            .getInstance(ReportingBackend.class)
+            .printFatalError("An unexpected error occurred:", e);
+        return 1;
+      } finally {
+        io.out.flush();
+        io.err.flush();
+      }
+    }
+  }
+
+  /** IO streams that are redirected to the client of the request that is being served. */
+  private static class SessionIo extends Io {
+    private PrintStream out = System.out;
+    private PrintStream err = System.err;
+    private Path wd = Path.of("").toAbsolutePath();
+
+    @Override
+    public PrintStream getOut() {
+      return out;
+    }
+
+    @Override
+    public PrintStream getErr() {
+      return err;
+    }
+
+    @Override
+    public Path getWd() {
+      return wd;
+    }
+
+    @Override
+    public Void callSystemExit(int exitCode) {
+      throw new RequestExit(exitCode);
+    }
+  }
+
+  /** Stream that sends everything written to it to a client as frames of the given kind. */
+  private static class FrameOutputStream extends OutputStream {
+    private final DataOutputStream client;
+    private final byte kind;
+
+    FrameOutputStream(DataOutputStream client, byte kind) {
+      this.client = client;
+      this.kind = kind;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      synchronized (client) {
+        client.writeByte(kind);
+        client.writeInt(length);
+        client.write(bytes, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (client) {
+        client.flush();
+      }
+    }
+  }
+}
@@ -27,6 +27,7 @@ package org.lflang.cli;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.lflang.cli.TestUtils.TempDirBuilder.dirBuilder;
 import static org.lflang.cli.TestUtils.TempDirChecker.dirChecker;
 import static org.lflang.cli.TestUtils.isDirectory;
@@ -36,14 +37,18 @@ import com.google.gson.JsonParser;
 import com.google.inject.Injector;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.lflang.LocalStrings;
 import org.lflang.cli.TestUtils.TempDirBuilder;
 import org.lflang.generator.GeneratorArguments;
 import org.lflang.target.property.BuildTypeProperty;
+import org.lflang.target.property.CompileThreadsProperty;
 import org.lflang.target.property.CompilerProperty;
 import org.lflang.target.property.LoggingProperty;
 import org.lflang.target.property.NoCompileProperty;
@@ -52,6 +57,7 @@ import org.lflang.target.property.RuntimeVersionProperty;
 import org.lflang.target.property.SchedulerProperty;
 import org.lflang.target.property.SingleThreadedProperty;
 import org.lflang.target.property.TargetProperty;
+import org.lflang.target.property.VerifyThreadsProperty;
 import org.lflang.target.property.type.BuildTypeType.BuildType;
 import org.lflang.target.property.type.LoggingType.LogLevel;
 import org.lflang.target.property.type.SchedulerType.Scheduler;
@@ -253,6 +259,103 @@ public class LfcCliTest {
             });
   }
 
+  @Test
+  public void testConcurrentJobs(@TempDir Path tempDir) throws IOException {
+    dirBuilder(tempDir)
+        .file("src/File.lf", LF_PYTHON_FILE)
+        .file("src/Other.lf", LF_PYTHON_FILE)
+        .file("src/Broken.lf", "target Python; main reactor { reaction(startup) -> x {==} }");
+
+    lfcTester
+        .run(tempDir, "--jobs", "2", "--no-compile", "src/File.lf", "src/Other.lf")
+        .verify(
+            result -> {
+              result.checkOk();
+              result.checkStdErr(containsString("Time spent per file"));
+              dirChecker(tempDir)
+                  .check("src-gen/File/File.py", isRegularFile())
+                  .check("src-gen/Other/Other.py", isRegularFile());
+            });
+
+    // An error in one file does not prevent the others from being processed.
+    lfcTester
+        .run(tempDir, "--jobs", "2", "--no-compile", "src/Broken.lf", "src/Other.lf")
+        .verify(
+            result -> {
+              result.checkFailed();
+              result.checkStdErr(containsString("1 of 2 files failed"));
+              dirChecker(tempDir).check("src-gen/Other/Other.py", isRegularFile());
+            });
+  }
+
+  @Test
+  public void testProfile(@TempDir Path tempDir) throws IOException {
+    dirBuilder(tempDir).file("src/File.lf", LF_PYTHON_FILE);
+
+    lfcTester
+        .run(tempDir, "--profile", "trace.json", "--no-compile", "src/File.lf")
+        .verify(
+            result -> {
+              result.checkOk();
+              result.checkStdErr(containsString("Time spent per phase"));
+              result.checkStdErr(containsString("PythonGenerator"));
+              dirChecker(tempDir).check("trace.json", isRegularFile());
+            });
+    var trace = JsonParser.parseString(Files.readString(tempDir.resolve("trace.json")));
+    assertTrue(trace.getAsJsonObject().getAsJsonArray("traceEvents").size() > 0);
+  }
+
+  @Test
+  public void testDaemon(@TempDir Path tempDir) throws Exception {
+    dirBuilder(tempDir).file("src/File.lf", LF_PYTHON_FILE);
+    Path socket = tempDir.resolve("lfc.sock");
+
+    // Without a daemon, the client compiles the program itself.
+    lfcTester
+        .run(tempDir, "--client", "--socket", "lfc.sock", "--no-compile", "src/File.lf")
+        .verify(
+            result -> {
+              result.checkOk();
+              dirChecker(tempDir).check("src-gen/File/File.py", isRegularFile());
+            });
+
+    Thread daemon =
+        new Thread(() -> lfcTester.run(tempDir, "--daemon", "--socket", socket.toString()));
+    daemon.setDaemon(true);
+    daemon.start();
+    while (!Files.exists(socket)) {
+      Thread.sleep(10);
+    }
+    for (int i = 0; i < 2; i++) {
+      lfcTester
+          .run(tempDir, "--client", "--socket", "lfc.sock", "--no-compile", "src/File.lf")
+          .verify(
+              result -> {
+                result.checkOk();
+                result.checkStdErr(containsString("Code generation finished."));
+              });
+    }
+    lfcTester
+        .run(tempDir, "--client", "--socket", "lfc.sock", "--no-compile", "src/Missing.lf")
+        .verify(
+            result -> {
+              result.checkStdErr(containsString("No such file or directory."));
+              result.checkFailed();
+            });
+  }
+
+  @Test
+  public void testDaemonEnvironment() {
+    var daemon = Map.of("PATH", "/usr/bin", "CC", "gcc", "HOME", "/home/user", "PWD", "/home/user");
+    assertEquals(List.of(), LfcDaemon.differingVariables(daemon, daemon));
+    // Variables that only describe the shell do not matter.
+    var client =
+        Map.of(
+            "PATH", "/opt/bin:/usr/bin", "HOME", "/home/user", "LF_CACHE_DIR", "/tmp", "PWD", "/");
+    assertEquals(
+        List.of("CC", "LF_CACHE_DIR", "PATH"), LfcDaemon.differingVariables(client, daemon));
+  }
+
   // Helper method for comparing argument values in tests testGeneratorArgs,
   // testGeneratorArgsJsonString and testGeneratorArgsJsonFile.
   public void verifyGeneratorArgs(Path tempDir, String[] args) {
@@ -266,12 +369,14 @@ public class LfcCliTest {
               var genArgs = fixture.lfc.getArgs();
               checkOverrideValue(genArgs, BuildTypeProperty.INSTANCE, BuildType.RELEASE);
               checkOverrideValue(genArgs, CompilerProperty.INSTANCE, "gcc");
+              checkOverrideValue(genArgs, CompileThreadsProperty.INSTANCE, 4);
               checkOverrideValue(genArgs, LoggingProperty.INSTANCE, LogLevel.INFO);
               checkOverrideValue(genArgs, NoCompileProperty.INSTANCE, true);
               checkOverrideValue(genArgs, PrintStatisticsProperty.INSTANCE, true);
               checkOverrideValue(genArgs, RuntimeVersionProperty.INSTANCE, "rs");
               checkOverrideValue(genArgs, SchedulerProperty.INSTANCE, Scheduler.GEDF_NP);
               checkOverrideValue(genArgs, SingleThreadedProperty.INSTANCE, true);
+              checkOverrideValue(genArgs, VerifyThreadsProperty.INSTANCE, 2);
 
               assertEquals(true, genArgs.clean());
               assertEquals("src", Path.of(genArgs.externalRuntimeUri()).getFileName().toString());
@@ -323,6 +428,8 @@ public class LfcCliTest {
       "--clean",
       "--compiler",
       "gcc",
+      "--compile-threads",
+      "4",
       "--external-runtime-path",
       "src",
       "--federated",
@@ -338,7 +445,9 @@ public class LfcCliTest {
       "rs",
       "--scheduler",
       "GEDF_NP",
-      "--single-threaded"
+      "--single-threaded",
+      "--verify-threads",
+      "2"
     };
     verifyGeneratorArgs(tempDir, args);
   }
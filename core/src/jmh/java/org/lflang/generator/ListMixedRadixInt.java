@@ -0,0 +1,99 @@
+package org.lflang.generator;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The list-based representation of a permuted mixed radix integer that {@link MixedRadixInt} used
+ * to have. It is kept here only as a baseline for {@link MixedRadixIntBenchmark}.
+ */
+public class ListMixedRadixInt {
+
+  public ListMixedRadixInt(List<Integer> radixes, List<Integer> permutation) {
+    this.radixes = ImmutableList.copyOf(radixes);
+    this.digits = new ArrayList<>(1);
+    this.digits.add(0);
+    this.permutation = permutation;
+  }
+
+  private ListMixedRadixInt(
+      List<Integer> digits, List<Integer> radixes, List<Integer> permutation) {
+    this.radixes = ImmutableList.copyOf(radixes);
+    this.digits = digits;
+    this.permutation = permutation;
+  }
+
+  /** Get the value as an integer after dropping the first n digits. */
+  public int get(int n) {
+    int result = 0;
+    int scale = 1;
+    if (n < 0) n = 0;
+    for (int i = n; i < radixes.size(); i++) {
+      if (i >= digits.size()) return result;
+      result += digits.get(i) * scale;
+      scale *= radixes.get(i);
+    }
+    return result;
+  }
+
+  /** Increment the number by one, using the permutation vector to order the digits. */
+  public void increment() {
+    int i = 0;
+    while (i < radixes.size()) {
+      int digitToIncrement = permutation.get(i);
+      while (digitToIncrement >= digits.size()) {
+        digits.add(0);
+      }
+      digits.set(digitToIncrement, digits.get(digitToIncrement) + 1);
+      if (digits.get(digitToIncrement) >= radixes.get(digitToIncrement)) {
+        digits.set(digitToIncrement, 0);
+        i++;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /** Set the magnitude of this number. */
+  public void setMagnitude(int v) {
+    int temp = v;
+    for (int i = 0; i < radixes.size(); i++) {
+      int p = permutation.get(i);
+      while (digits.size() < p + 1) digits.add(0);
+      var r = radixes.get(p);
+      if (r == 0 && v == 0) {
+        digits.set(p, 0);
+      } else {
+        digits.set(p, temp % r);
+        temp = temp / r;
+      }
+    }
+  }
+
+  public ListMixedRadixInt copy() {
+    return new ListMixedRadixInt(
+        List.copyOf(digits), List.copyOf(radixes), List.copyOf(permutation));
+  }
+
+  @Override
+  public int hashCode() {
+    int sum = 0;
+    for (var radix : radixes) sum = sum * 31 + radix;
+    for (var digit : digits) sum = sum * 31 + digit;
+    for (var p : permutation) sum = sum * 31 + p;
+    return sum;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ListMixedRadixInt mri
+        && radixes.equals(mri.radixes)
+        && digits.equals(mri.digits)
+        && permutation.equals(mri.permutation);
+  }
+
+  private final ImmutableList<Integer> radixes;
+  private final List<Integer> digits;
+  private final List<Integer> permutation;
+}
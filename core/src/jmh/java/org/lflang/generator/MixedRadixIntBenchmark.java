@@ -0,0 +1,99 @@
+package org.lflang.generator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare {@link MixedRadixInt} with the former list-based implementation ({@link
+ * ListMixedRadixInt}) on the iteration patterns of {@link ReactionInstanceGraph}: a connection from
+ * a multiport of a bank to a wider destination range, which multicasts the source range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MixedRadixIntBenchmark {
+
+  /** The width of the bank that contains the sending multiport. */
+  @Param({"1", "100", "10000"})
+  public int bankWidth;
+
+  /** The width of the sending multiport. */
+  @Param({"1", "16"})
+  public int portWidth;
+
+  /** The number of times the source range is multicast. */
+  @Param({"2"})
+  public int multicast;
+
+  private List<Integer> radixes;
+  private List<Integer> permutation;
+  private int width;
+
+  @Setup
+  public void setup() {
+    radixes = List.of(portWidth, bankWidth);
+    permutation = List.of(0, 1);
+    width = portWidth * bankWidth;
+  }
+
+  /** Iterate over the destination range and look up the source bank index of every channel. */
+  @Benchmark
+  public void iterateList(Blackhole blackhole) {
+    var position = new ListMixedRadixInt(radixes, permutation);
+    int count = 0;
+    for (int i = 0; i < width * multicast; i++) {
+      blackhole.consume(position.get(1));
+      position.increment();
+      if (++count >= width) {
+        count = 0;
+        position = new ListMixedRadixInt(radixes, permutation);
+      }
+    }
+  }
+
+  /** Like {@link #iterateList(Blackhole)}, but with a cursor over an array-based number. */
+  @Benchmark
+  public void iterateArray(Blackhole blackhole) {
+    var position = new MixedRadixInt.Cursor(radixes, permutation, 0, width);
+    for (int i = 0; i < width * multicast; i++) {
+      blackhole.consume(position.get(1));
+      position.next();
+    }
+  }
+
+  /** Record a level upper bound for every channel, keyed by a copy of its position. */
+  @Benchmark
+  public Map<ListMixedRadixInt, Integer> levelUpperBoundsList() {
+    Map<ListMixedRadixInt, Integer> levelUpperBounds = new HashMap<>();
+    var position = new ListMixedRadixInt(radixes, permutation);
+    for (int i = 0; i < width; i++) {
+      var key = position.copy();
+      levelUpperBounds.put(key, Math.min(levelUpperBounds.getOrDefault(key, Integer.MAX_VALUE), i));
+      position.increment();
+    }
+    return levelUpperBounds;
+  }
+
+  /** Like {@link #levelUpperBoundsList()}, but keyed by the encoding of the position. */
+  @Benchmark
+  public Map<Long, Integer> levelUpperBoundsArray() {
+    Map<Long, Integer> levelUpperBounds = new HashMap<>();
+    var position = new MixedRadixInt.Cursor(radixes, permutation, 0, width);
+    for (int i = 0; i < width; i++) {
+      levelUpperBounds.merge(position.toLong(), i, Math::min);
+      position.next();
+    }
+    return levelUpperBounds;
+  }
+}
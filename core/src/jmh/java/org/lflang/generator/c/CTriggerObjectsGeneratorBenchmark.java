@@ -0,0 +1,80 @@
+package org.lflang.generator.c;
+
+import java.util.concurrent.TimeUnit;
+import org.lflang.DefaultMessageReporter;
+import org.lflang.ast.ASTUtils;
+import org.lflang.ast.LfParsingHelper;
+import org.lflang.generator.CodeBuilder;
+import org.lflang.generator.GeneratorArguments;
+import org.lflang.generator.ReactorInstance;
+import org.lflang.lf.Model;
+import org.lflang.lf.Reactor;
+import org.lflang.target.TargetConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measure the generation of {@code _lf_initialize_trigger_objects} for a synthetic hierarchy in
+ * which every level contains the next level and a number of banks of leaf reactors. The code for
+ * the leaves of a level is nested within the blocks of all enclosing levels, so the time should
+ * grow linearly with the depth of the hierarchy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CTriggerObjectsGeneratorBenchmark {
+
+  /** The number of levels of the hierarchy. */
+  @Param({"5", "10", "20"})
+  public int depth;
+
+  /** The number of banks of leaf reactors at each level. */
+  @Param({"16"})
+  public int width;
+
+  private ReactorInstance main;
+  private TargetConfig targetConfig;
+
+  @Setup
+  public void setup() {
+    Model model = new LfParsingHelper().parse(program());
+    Reactor mainReactor =
+        model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    var reporter = new DefaultMessageReporter();
+    main = new ReactorInstance(ASTUtils.toDefinition(mainReactor), reporter);
+    targetConfig = new TargetConfig(model.eResource(), GeneratorArguments.none(), reporter);
+  }
+
+  @Benchmark
+  public String generateInitializeTriggerObjects() {
+    var code = new CodeBuilder();
+    CTriggerObjectsGenerator.generateInitializeTriggerObjects(
+        code, main, targetConfig, new CodeBuilder(), new CodeBuilder(), new CTypes(), "Main");
+    return code.toString();
+  }
+
+  /** Return the source of the synthetic program. */
+  private String program() {
+    var lf = new StringBuilder("target C\n");
+    lf.append("reactor Leaf {\n  input in: int\n  output out: int\n")
+        .append("  reaction(in) -> out {= =}\n}\n");
+    lf.append("reactor Level0 {\n  output out: int\n  reaction(startup) -> out {= =}\n}\n");
+    for (int level = 1; level < depth; level++) {
+      lf.append("reactor Level").append(level).append(" {\n  output out: int\n");
+      lf.append("  inner = new Level").append(level - 1).append("()\n");
+      for (int i = 0; i < width; i++) {
+        lf.append("  leaf").append(i).append(" = new[2] Leaf()\n");
+        lf.append("  (inner.out)+ -> leaf").append(i).append(".in\n");
+      }
+      lf.append("  reaction(inner.out) -> out {= =}\n}\n");
+    }
+    lf.append("main reactor {\n  top = new Level").append(depth - 1).append("()\n}\n");
+    return lf.toString();
+  }
+}
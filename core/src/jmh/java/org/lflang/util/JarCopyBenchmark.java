@@ -0,0 +1,115 @@
+package org.lflang.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compare copying the runtime directories from a JAR file with {@link FileUtil#copyFromJar} with
+ * the former approach ({@link ScanningJarCopy}). The JAR file has the given number of entries, most
+ * of which are not copied, like the class files in the lfc JAR file. If {@code warm} is true, the
+ * destination already contains the files, as in a rebuild of a program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JarCopyBenchmark {
+
+  /** The number of entries in the JAR file. */
+  @Param({"2000", "20000"})
+  public int entries;
+
+  /** Whether the files exist in the destination already. */
+  @Param({"true", "false"})
+  public boolean warm;
+
+  /** The number of directories that are copied. */
+  private static final int DIRECTORIES = 8;
+
+  /** The number of files in each directory that is copied. */
+  private static final int FILES_PER_DIRECTORY = 100;
+
+  private Path tempDir;
+  private JarFile jar;
+  private List<String> sources;
+
+  @Setup
+  public void setup() throws IOException {
+    tempDir = Files.createTempDirectory("jar-copy");
+    Path jarFile = tempDir.resolve("lfc.jar");
+    sources = new ArrayList<>();
+    var random = new Random(0);
+    try (var out = new JarOutputStream(Files.newOutputStream(jarFile))) {
+      for (int i = 0; i < entries; i++) {
+        String name;
+        if (i < DIRECTORIES * FILES_PER_DIRECTORY) {
+          String dir = "lib/c/reactor-c/dir" + i / FILES_PER_DIRECTORY;
+          if (i % FILES_PER_DIRECTORY == 0) sources.add(dir);
+          name = dir + "/file" + i + ".c";
+        } else {
+          name = "org/lflang/Class" + i + ".class";
+        }
+        out.putNextEntry(new JarEntry(name));
+        byte[] content = new byte[1024 + random.nextInt(8192)];
+        random.nextBytes(content);
+        out.write(content);
+        out.closeEntry();
+      }
+    }
+    jar = new JarFile(jarFile.toFile());
+  }
+
+  @Setup(Level.Invocation)
+  public void clean() throws IOException {
+    if (!warm) {
+      delete(tempDir.resolve("scanning"));
+      delete(tempDir.resolve("indexed"));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    jar.close();
+    delete(tempDir);
+  }
+
+  @Benchmark
+  public void scanning() throws IOException {
+    for (String source : sources) {
+      ScanningJarCopy.copyDirectoryFromJar(jar, source, tempDir.resolve("scanning"));
+    }
+  }
+
+  @Benchmark
+  public void indexed() throws IOException {
+    FileUtil.copyFromJar(jar, sources, tempDir.resolve("indexed"), true, false);
+  }
+
+  /** Delete the given directory without printing a message, unlike {@link FileUtil#delete}. */
+  private static void delete(Path dir) throws IOException {
+    if (!Files.exists(dir)) return;
+    try (var paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.lflang.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The way in which {@link FileUtil} used to copy a directory from a JAR file, which enumerates all
+ * entries of the JAR file for every directory and reads every file fully into memory. It is kept
+ * here only as a baseline for {@link JarCopyBenchmark}.
+ */
+public class ScanningJarCopy {
+
+  /** Copy the given directory of the given JAR file into the given destination directory. */
+  public static boolean copyDirectoryFromJar(JarFile jar, String source, Path dstDir)
+      throws IOException {
+    boolean copiedFiles = false;
+    dstDir = dstDir.resolve(Paths.get(source).getFileName());
+    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+      final JarEntry entry = e.nextElement();
+      final String entryName = entry.getName();
+      if (entryName.startsWith(source)) {
+        String filename = entry.getName().substring(source.length() + 1);
+        Path currentFile = dstDir.resolve(filename);
+        if (entry.isDirectory()) {
+          Files.createDirectories(currentFile);
+        } else {
+          try (InputStream is = jar.getInputStream(entry)) {
+            copyInputStream(is, currentFile);
+            copiedFiles = true;
+          }
+        }
+      }
+    }
+    return copiedFiles;
+  }
+
+  /** Copy the given stream to the given file, unless the file has the same content. */
+  private static void copyInputStream(InputStream source, Path destination) throws IOException {
+    final var bytes = source.readAllBytes();
+    final var parent = destination.getParent();
+    if (Files.isRegularFile(destination)) {
+      if (Arrays.equals(bytes, Files.readAllBytes(destination))) {
+        return;
+      }
+    } else if (!Files.exists(parent)) {
+      Files.createDirectories(parent);
+    }
+    Files.write(destination, bytes);
+  }
+}
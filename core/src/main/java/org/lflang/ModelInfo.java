@@ -35,6 +35,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import org.lflang.ast.ASTUtils;
+import org.lflang.generator.ElaborationCache;
 import org.lflang.generator.NamedInstance;
 import org.lflang.generator.ReactorInstance;
 import org.lflang.graph.InstantiationGraph;
@@ -49,6 +50,7 @@ import org.lflang.lf.Reactor;
 import org.lflang.lf.STP;
 import org.lflang.target.Target;
 import org.lflang.util.FileUtil;
+import org.lflang.util.Profiler;
 
 /**
  * A helper class for analyzing the AST. This class is instantiated once for each compilation.
@@ -99,21 +101,26 @@ public class ModelInfo {
    * @param model the model to analyze.
    */
   public void update(Model model, MessageReporter reporter) {
+    try (var span = Profiler.current().span("ModelInfo.update")) {
+      analyze(model, reporter);
+    }
+  }
+
+  private void analyze(Model model, MessageReporter reporter) {
     this.updated = true;
     this.model = model;
     this.instantiationGraph = new InstantiationGraph(model, true);
 
     if (this.instantiationGraph.getCycles().size() == 0) {
+      var cache = ElaborationCache.of(model.eResource());
       List<ReactorInstance> topLevelReactorInstances = new LinkedList<>();
       var main =
           model.getReactors().stream().filter(it -> it.isMain() || it.isFederated()).findFirst();
       if (main.isPresent()) {
-        var inst = new ReactorInstance(main.get(), reporter);
+        var inst = cache.get(main.get(), reporter);
         topLevelReactorInstances.add(inst);
       } else {
-        model
-            .getReactors()
-            .forEach(it -> topLevelReactorInstances.add(new ReactorInstance(it, reporter)));
+        model.getReactors().forEach(it -> topLevelReactorInstances.add(cache.get(it, reporter)));
       }
       // don't store the graph into a field, only the cycles.
       for (ReactorInstance top : topLevelReactorInstances) {
@@ -0,0 +1,75 @@
+package org.lflang;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.lflang.generator.Position;
+import org.lflang.generator.Range;
+
+/**
+ * A {@link MessageReporter} that forwards to another reporter one message at a time, so that it can
+ * be used by several threads at once.
+ */
+public class SynchronizedMessageReporter implements MessageReporter {
+
+  private final MessageReporter parent;
+
+  public SynchronizedMessageReporter(MessageReporter parent) {
+    this.parent = parent;
+  }
+
+  @Override
+  public Stage2 at(Path file, Range range) {
+    return synchronize(() -> parent.at(file, range));
+  }
+
+  @Override
+  public Stage2 at(EObject node) {
+    return synchronize(() -> parent.at(node));
+  }
+
+  @Override
+  public Stage2 at(EObject node, EStructuralFeature feature) {
+    return synchronize(() -> parent.at(node, feature));
+  }
+
+  @Override
+  public Stage2 at(Path file) {
+    return synchronize(() -> parent.at(file));
+  }
+
+  @Override
+  public Stage2 at(Path file, int line) {
+    return synchronize(() -> parent.at(file, line));
+  }
+
+  @Override
+  public Stage2 at(Path file, Position pos) {
+    return synchronize(() -> parent.at(file, pos));
+  }
+
+  @Override
+  public Stage2 nowhere() {
+    return synchronize(parent::nowhere);
+  }
+
+  @Override
+  public synchronized boolean getErrorsOccurred() {
+    return parent.getErrorsOccurred();
+  }
+
+  @Override
+  public synchronized void clearHistory() {
+    parent.clearHistory();
+  }
+
+  /** Return a stage that reports at the position of the parent while holding the lock. */
+  private Stage2 synchronize(Supplier<Stage2> position) {
+    return (severity, message) -> {
+      synchronized (this) {
+        position.get().report(severity, message);
+      }
+    };
+  }
+}
@@ -26,6 +26,18 @@ public class Event implements Comparable<Event> {
     return ret;
   }
 
+  /** Two events are equal if they have the same trigger and tag. */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    return o instanceof Event e && this.trigger.equals(e.trigger) && this.tag.equals(e.tag);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * trigger.hashCode() + tag.hashCode();
+  }
+
   /** This method checks if two events have the same triggers. */
   public boolean hasSameTriggers(Object o) {
     if (o == null) return false;
@@ -1,12 +1,39 @@
 package org.lflang.analyses.statespace;
 
-import java.util.PriorityQueue;
+import java.util.AbstractList;
+import java.util.AbstractQueue;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 /**
  * An event queue implementation that sorts events in the order of _time tags_ and _trigger names_
  * based on the implementation of compareTo() in the Event class.
+ *
+ * <p>The events are kept in a persistent leftist heap, so that adding and polling an event takes
+ * logarithmic time and a {@link #snapshot()} of the queue takes constant time and shares its
+ * structure with the queue. A hash index of the queued events enforces uniqueness.
  */
-public class EventQueue extends PriorityQueue<Event> {
+public class EventQueue extends AbstractQueue<Event> {
+
+  /** The root of the heap, or null if the queue is empty. */
+  private Node root = null;
+
+  /** The number of queued events. */
+  private int size = 0;
+
+  /** The queued events, for checking whether an event is queued already. */
+  private final Set<Event> index = new HashSet<>();
+
+  /** Create an empty event queue. */
+  public EventQueue() {}
+
+  /** Create an event queue that contains the events of the given snapshot. */
+  public EventQueue(Snapshot snapshot) {
+    this.root = snapshot.root;
+    this.size = snapshot.size;
+    this.index.addAll(snapshot);
+  }
 
   /**
    * Modify the original add() by enforcing uniqueness. There cannot be duplicate events in the
@@ -14,8 +41,132 @@ public class EventQueue extends PriorityQueue<Event> {
    */
   @Override
   public boolean add(Event e) {
-    if (this.contains(e)) return false;
-    super.add(e);
+    return offer(e);
+  }
+
+  @Override
+  public boolean offer(Event e) {
+    if (!index.add(e)) return false;
+    root = merge(root, new Node(e, null, null));
+    size++;
     return true;
   }
+
+  @Override
+  public Event poll() {
+    if (root == null) return null;
+    Event e = root.event;
+    root = merge(root.left, root.right);
+    index.remove(e);
+    size--;
+    return e;
+  }
+
+  @Override
+  public Event peek() {
+    return root == null ? null : root.event;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return index.contains(o);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Return an iterator over the events in the order in which they are polled. */
+  @Override
+  public Iterator<Event> iterator() {
+    return snapshot().iterator();
+  }
+
+  /**
+   * Return an immutable list of the events that are currently queued, in the order in which they
+   * are polled. Subsequent changes to the queue do not affect the snapshot.
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(root, size);
+  }
+
+  /** Return the heap that contains the events of both given heaps, without modifying them. */
+  private static Node merge(Node a, Node b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    if (b.event.compareTo(a.event) < 0) {
+      Node t = a;
+      a = b;
+      b = t;
+    }
+    Node left = a.left;
+    Node right = merge(a.right, b);
+    // Keep the right spine, along which heaps are merged, short.
+    return rank(left) >= rank(right)
+        ? new Node(a.event, left, right)
+        : new Node(a.event, right, left);
+  }
+
+  /** Return the length of the right spine of the given heap. */
+  private static int rank(Node node) {
+    return node == null ? 0 : node.rank;
+  }
+
+  /** An immutable node of a leftist heap. */
+  private static final class Node {
+    private final Event event;
+    private final Node left;
+    private final Node right;
+    private final int rank;
+
+    private Node(Event event, Node left, Node right) {
+      this.event = event;
+      this.left = left;
+      this.right = right;
+      this.rank = rank(right) + 1;
+    }
+  }
+
+  /**
+   * An immutable snapshot of an event queue. The events are only sorted when they are first
+   * accessed, so snapshots that are replaced before they are inspected are cheap.
+   */
+  public static final class Snapshot extends AbstractList<Event> {
+
+    private final Node root;
+    private final int size;
+
+    /** The events in the order in which they are polled, or null if not sorted yet. */
+    private volatile Event[] sorted;
+
+    private Snapshot(Node root, int size) {
+      this.root = root;
+      this.size = size;
+    }
+
+    @Override
+    public Event get(int i) {
+      return sorted()[i];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    private Event[] sorted() {
+      Event[] events = sorted;
+      if (events == null) {
+        events = new Event[size];
+        Node heap = root;
+        for (int i = 0; i < size; i++) {
+          events[i] = heap.event;
+          heap = merge(heap.left, heap.right);
+        }
+        sorted = events;
+      }
+      return events;
+    }
+  }
 }
@@ -32,6 +32,15 @@ public class StateSpaceDiagram extends DirectedGraph<StateSpaceNode> {
   /** The logical time elapsed for each loop iteration. */
   public long loopPeriod;
 
+  /**
+   * The number of nodes before the first node of the diagram that were explored but not kept, which
+   * is nonzero if the state space was explored in compact mode.
+   */
+  public int skippedNodes = 0;
+
+  /** The number of reactions invoked at the nodes that were not kept. */
+  public long skippedReactionInvocations = 0;
+
   /** A dot file that represents the diagram */
   private CodeBuilder dot;
 
@@ -41,7 +50,7 @@ public class StateSpaceDiagram extends DirectedGraph<StateSpaceNode> {
   /** Before adding the node, assign it an index. */
   @Override
   public void addNode(StateSpaceNode node) {
-    node.setIndex(this.nodeCount());
+    node.setIndex(this.skippedNodes + this.nodeCount());
     super.addNode(node);
   }
 
@@ -52,6 +61,109 @@ public class StateSpaceDiagram extends DirectedGraph<StateSpaceNode> {
     return (StateSpaceNode) downstream.toArray()[0];
   }
 
+  /**
+   * Return the completeness threshold (CT) of a property with the given horizon, i.e. the number of
+   * transitions required to check the property, as derived from this diagram.
+   *
+   * @param horizon The horizon of the property in nanoseconds.
+   * @param loopFound Whether the exploration that produced this diagram found a loop.
+   * @param logicalTimeBased Whether a transition is a step in logical time rather than a reaction
+   *     invocation.
+   */
+  public int completenessThreshold(long horizon, boolean loopFound, boolean logicalTimeBased) {
+    int ct;
+    if (!loopFound) {
+      if (logicalTimeBased) ct = this.skippedNodes + this.nodeCount();
+      else {
+        // FIXME: This could be much more efficient with
+        // a linkedlist implementation. We can go straight
+        // to the next node.
+        StateSpaceNode node = this.head;
+        ct = Math.toIntExact(this.skippedReactionInvocations);
+        ct += this.head.getReactionsInvoked().size();
+        while (node != this.tail) {
+          node = this.getDownstreamNode(node);
+          ct += node.getReactionsInvoked().size();
+        }
+      }
+    }
+    // Over-approximate CT by estimating the number of loop iterations required.
+    else {
+      // Subtract the non-periodic logical time
+      // interval from the total horizon.
+      long horizonRemained = Math.subtractExact(horizon, this.loopNode.getTag().timestamp);
+
+      // Check how many loop iteration is required
+      // to check the remaining horizon.
+      int loopIterations = 0;
+      if (this.loopPeriod == 0 && horizonRemained != 0)
+        throw new RuntimeException(
+            "ERROR: Zeno behavior detected while the horizon is non-zero. The program has no"
+                + " finite CT.");
+      else if (this.loopPeriod == 0 && horizonRemained == 0) {
+        // Handle this edge case.
+        throw new RuntimeException("Unhandled case: both the horizon and period are 0!");
+      } else {
+        loopIterations = (int) Math.ceil((double) horizonRemained / this.loopPeriod);
+      }
+
+      if (logicalTimeBased) {
+        /*
+        CT = steps required for the non-periodic part
+             + steps required for the periodic part
+
+        ct = (this.loopNode.index + 1)
+            + (this.tail.index - this.loopNode.index + 1) * loopIterations;
+
+        An overflow-safe version of the line above
+        */
+        int t0 = Math.addExact(this.loopNode.getIndex(), 1);
+        int t1 = Math.subtractExact(this.tail.getIndex(), this.loopNode.getIndex());
+        int t2 = Math.addExact(t1, 1);
+        int t3 = Math.multiplyExact(t2, loopIterations);
+        ct = Math.addExact(t0, t3);
+
+      } else {
+        // Get the number of events before the loop starts.
+        // This stops right before the loopNode is encountered.
+        StateSpaceNode node = this.head;
+        int numReactionInvocationsBeforeLoop = Math.toIntExact(this.skippedReactionInvocations);
+        while (node != this.loopNode) {
+          numReactionInvocationsBeforeLoop += node.getReactionsInvoked().size();
+          node = this.getDownstreamNode(node);
+        }
+        // Account for the loop node in numReactionInvocationsBeforeLoop.
+        numReactionInvocationsBeforeLoop += node.getReactionsInvoked().size();
+
+        // Count the events from the loop node until
+        // loop node is reached again.
+        int numReactionInvocationsInsideLoop = 0;
+        do {
+          node = this.getDownstreamNode(node);
+          numReactionInvocationsInsideLoop += node.getReactionsInvoked().size();
+        } while (node != this.loopNode);
+
+        /*
+        CT = steps required for the non-periodic part
+             + steps required for the periodic part
+
+        ct = numReactionInvocationsBeforeLoop
+            + numReactionInvocationsInsideLoop * loopIterations;
+
+        An overflow-safe version of the line above
+        */
+        // System.out.println("DEBUG: numReactionInvocationsBeforeLoop: " +
+        // numReactionInvocationsBeforeLoop);
+        // System.out.println("DEBUG: numReactionInvocationsInsideLoop: " +
+        // numReactionInvocationsInsideLoop);
+        // System.out.println("DEBUG: loopIterations: " + loopIterations);
+        int t0 = Math.multiplyExact(numReactionInvocationsInsideLoop, loopIterations);
+        ct = Math.addExact(numReactionInvocationsBeforeLoop, t0);
+      }
+    }
+    return ct;
+  }
+
   /** Pretty print the diagram. */
   public void display() {
     System.out.println("*************************************************");
@@ -63,6 +175,9 @@ public class StateSpaceDiagram extends DirectedGraph<StateSpaceNode> {
       System.out.println("*************************************************");
       return;
     }
+    if (this.skippedNodes > 0) {
+      System.out.println("* (" + this.skippedNodes + " earlier states were not kept)");
+    }
     while (node != this.tail) {
       System.out.print("* State " + node.getIndex() + ": ");
       node.display();
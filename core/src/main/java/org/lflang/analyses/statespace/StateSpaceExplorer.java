@@ -1,11 +1,16 @@
 package org.lflang.analyses.statespace;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.lflang.TimeUnit;
 import org.lflang.TimeValue;
+import org.lflang.analyses.statespace.StateSpaceNode.Fingerprint;
 import org.lflang.generator.ActionInstance;
 import org.lflang.generator.PortInstance;
 import org.lflang.generator.ReactionInstance;
@@ -42,6 +47,39 @@ public class StateSpaceExplorer {
   /** The main reactor instance based on which the state space is explored. */
   public ReactorInstance main;
 
+  /** The default number of nodes of the diagram that are kept before switching to compact mode. */
+  public static final int DEFAULT_NODE_LIMIT = 1 << 16;
+
+  /** The number of nodes between two checkpoints. */
+  public static final int CHECKPOINT_INTERVAL = 1 << 10;
+
+  /** The number of nodes of the diagram that are kept before switching to compact mode. */
+  private int nodeLimit = DEFAULT_NODE_LIMIT;
+
+  /** The fingerprints of the nodes that were explored in compact mode. */
+  private VisitedStates visited = new VisitedStates();
+
+  /** Checkpoints from which the exploration can be resumed, in the order of their indices. */
+  private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+  /** The index of the first node to keep in the diagram when replaying a loop. */
+  private int recordFrom = 0;
+
+  /** The index of the node that closes the loop that is replayed, or -1 if not replaying. */
+  private int loopIndex = -1;
+
+  /** The reactors whose initial events are explored, or null to explore the whole program. */
+  private Set<ReactorInstance> component = null;
+
+  /** The events that were queued before exploration started. */
+  private List<Event> initialEvents = List.of();
+
+  /** Whether the exploration of a component stopped because the diagram reached the node limit. */
+  private boolean truncated = false;
+
+  /** Whether the weakly connected components of the program are explored separately. */
+  private boolean decompose = true;
+
   // Constructor
   public StateSpaceExplorer(ReactorInstance main) {
     this.main = main;
@@ -49,13 +87,15 @@ public class StateSpaceExplorer {
 
   /** Recursively add the first events to the event queue. */
   public void addInitialEvents(ReactorInstance reactor) {
-    // Add the startup trigger, if exists.
-    var startup = reactor.getStartupTrigger();
-    if (startup != null) eventQ.add(new Event(startup, new Tag(0, 0, false)));
-
-    // Add the initial timer firings, if exist.
-    for (TimerInstance timer : reactor.timers) {
-      eventQ.add(new Event(timer, new Tag(timer.getOffset().toNanoSeconds(), 0, false)));
+    if (component == null || component.contains(reactor)) {
+      // Add the startup trigger, if exists.
+      var startup = reactor.getStartupTrigger();
+      if (startup != null) eventQ.add(new Event(startup, new Tag(0, 0, false)));
+
+      // Add the initial timer firings, if exist.
+      for (TimerInstance timer : reactor.timers) {
+        eventQ.add(new Event(timer, new Tag(timer.getOffset().toNanoSeconds(), 0, false)));
+      }
     }
 
     // Recursion
@@ -72,6 +112,20 @@ public class StateSpaceExplorer {
    * space during exploration. If a loop is found (i.e. a previously encountered state is reached
    * again) during exploration, the function returns early.
    *
+   * <p>Once the diagram has {@link #setNodeLimit(int) nodeLimit} nodes, exploration continues in a
+   * compact mode, in which the nodes are not kept. Only the fingerprints of the nodes are recorded
+   * (see {@link #setVisitedStates(VisitedStates)}), together with a checkpoint of the exploration
+   * every {@link #CHECKPOINT_INTERVAL} nodes. When a loop is found, the nodes of the loop are
+   * explored again from the last checkpoint before the loop, so the loop and the diagram of the
+   * loop are the same as if all nodes had been kept. The nodes before the loop, or before the last
+   * node if no loop is found, are only counted (see {@link StateSpaceDiagram#skippedNodes}).
+   *
+   * <p>If the program consists of parts that do not interact, i.e. weakly connected components of
+   * reactors that are linked by triggers, effects, and connections, the components are explored in
+   * parallel and their timelines are merged into the diagram of the program. The merged diagram and
+   * its loop are the same as if the program had been explored as a whole. If the merged diagram
+   * would exceed the node limit, the program is explored as a whole instead.
+   *
    * <p>TODOs: 1. Handle action with 0 minimum delay.
    *
    * <p>Note: This is experimental code which is to be refactored in a future PR. Use with caution.
@@ -81,18 +135,57 @@ public class StateSpaceExplorer {
     // the known initial events (startup and timers' first firings).
     // FIXME: It seems that we need to handle shutdown triggers
     // separately, because they could break the back loop.
-    addInitialEvents(this.main);
+    try {
+      if (component == null && decompose && exploreComponents(horizon, findLoop)) return;
+      addInitialEvents(this.main);
+
+      var events = eventQ.snapshot();
+      initialEvents = events;
+      Tag currentTag = this.eventQ.size() > 0 ? eventQ.peek().getTag() : null;
+      explore(new Checkpoint(0, 0, events, null, currentTag, null), horizon, findLoop);
+    } finally {
+      visited.close();
+    }
+  }
+
+  /**
+   * Set the number of nodes of the diagram that are kept before exploration continues in compact
+   * mode. The default is {@link #DEFAULT_NODE_LIMIT}.
+   */
+  public void setNodeLimit(int nodeLimit) {
+    this.nodeLimit = nodeLimit;
+  }
+
+  /**
+   * Set the set in which the fingerprints of the explored nodes are recorded in compact mode. By
+   * default, they are kept in memory. The set is closed when exploration ends.
+   */
+  public void setVisitedStates(VisitedStates visited) {
+    this.visited = visited;
+  }
 
-    Tag previousTag = null; // Tag in the previous loop ITERATION
-    Tag currentTag = null; // Tag in the current  loop ITERATION
-    StateSpaceNode currentNode = null;
+  /**
+   * Set whether the weakly connected components of the program are explored separately and in
+   * parallel (see {@link #explore(Tag, boolean)}). This is the default.
+   */
+  public void setDecomposition(boolean decompose) {
+    this.decompose = decompose;
+  }
+
+  /** Explore the state space from the given checkpoint. */
+  private void explore(Checkpoint start, Tag horizon, boolean findLoop) {
+    Tag previousTag = start.previousTag; // Tag in the previous loop ITERATION
+    Tag currentTag = start.currentTag; // Tag in the current  loop ITERATION
+    StateSpaceNode currentNode = start.restoreNode();
     StateSpaceNode previousNode = null;
-    HashMap<Integer, StateSpaceNode> uniqueNodes = new HashMap<>();
-    boolean stop = true;
-    if (this.eventQ.size() > 0) {
-      stop = false;
-      currentTag = eventQ.peek().getTag();
-    }
+    HashMap<Fingerprint, StateSpaceNode> uniqueNodes = new HashMap<>();
+    eventQ = new EventQueue(start.events);
+    diagram.skippedNodes = start.index;
+    diagram.skippedReactionInvocations = start.reactionInvocations;
+    // The index of the current node and the number of reactions invoked before it.
+    int index = start.index;
+    long reactionInvocations = start.reactionInvocations;
+    boolean stop = currentTag == null;
 
     // A list of reactions invoked at the current logical tag
     Set<ReactionInstance> reactionsInvoked;
@@ -179,6 +272,7 @@ public class StateSpaceExplorer {
 
       // We are at the first iteration.
       // Initialize currentNode.
+      boolean newNode = false;
       if (previousTag == null) {
         //// Now we are done with the node at the previous tag,
         //// work on the new node at the current timestamp.
@@ -196,8 +290,9 @@ public class StateSpaceExplorer {
             new StateSpaceNode(
                 currentTag, // Current tag
                 reactionsInvoked, // Reactions invoked at this tag
-                new ArrayList<>(eventQ) // A snapshot of the event queue
+                eventQ.snapshot() // A snapshot of the event queue
                 );
+        newNode = true;
       }
       // When we advance to a new TIMESTAMP (not a new tag),
       // create a new node in the state space diagram
@@ -208,9 +303,22 @@ public class StateSpaceExplorer {
       else if (previousTag != null && currentTag.timestamp > previousTag.timestamp) {
         // Whenever we finish a tag, check for loops fist.
         // If currentNode matches an existing node in uniqueNodes,
+        // or in the visited states in compact mode,
         // duplicate is set to the existing node.
-        StateSpaceNode duplicate;
-        if (findLoop && (duplicate = uniqueNodes.put(currentNode.hash(), currentNode)) != null) {
+        StateSpaceNode duplicate = null;
+        if (index == loopIndex) {
+          // We are replaying a loop that was found in compact mode.
+          duplicate = diagram.head;
+        } else if (findLoop && uniqueNodes != null) {
+          duplicate = uniqueNodes.put(currentNode.fingerprint(), currentNode);
+        } else if (findLoop) {
+          int first = visited.putIfAbsent(currentNode.fingerprint(), index);
+          if (first >= 0) {
+            replay(first, index, horizon);
+            return;
+          }
+        }
+        if (duplicate != null) {
 
           // Mark the loop in the diagram.
           loopFound = true;
@@ -231,16 +339,33 @@ public class StateSpaceExplorer {
         // Adding a node to the graph once it is finalized
         // because this makes checking duplicate nodes easier.
         // We don't have to remove a node from the graph.
-        this.diagram.addNode(currentNode);
-        this.diagram.tail = currentNode; // Update the current tail.
-
-        // If the head is not empty, add an edge from the previous state
-        // to the next state. Otherwise initialize the head to the new node.
-        if (previousNode != null) {
-          // System.out.println("--- Add a new edge between " + currentNode + " and " + node);
-          // this.diagram.addEdge(currentNode, previousNode); // Sink first, then source
-          if (previousNode != currentNode) this.diagram.addEdge(currentNode, previousNode);
-        } else this.diagram.head = currentNode; // Initialize the head.
+        if (uniqueNodes == null || index < recordFrom) {
+          // In compact mode, or before the loop that is replayed, only count the node.
+          this.diagram.skippedNodes++;
+          this.diagram.skippedReactionInvocations += currentNode.getReactionsInvoked().size();
+        } else {
+          this.diagram.addNode(currentNode);
+          this.diagram.tail = currentNode; // Update the current tail.
+
+          // If the head is not empty, add an edge from the previous state
+          // to the next state. Otherwise initialize the head to the new node.
+          if (previousNode != null && this.diagram.hasNode(previousNode)) {
+            // System.out.println("--- Add a new edge between " + currentNode + " and " + node);
+            // this.diagram.addEdge(currentNode, previousNode); // Sink first, then source
+            if (previousNode != currentNode) this.diagram.addEdge(currentNode, previousNode);
+          } else this.diagram.head = currentNode; // Initialize the head.
+
+          if (this.diagram.nodeCount() >= nodeLimit && component != null) {
+            // The program is explored as a whole instead.
+            truncated = true;
+            return;
+          } else if (this.diagram.nodeCount() >= nodeLimit) {
+            switchToCompactMode(uniqueNodes);
+            uniqueNodes = null;
+          }
+        }
+        index++;
+        reactionInvocations += currentNode.getReactionsInvoked().size();
 
         //// Now we are done with the node at the previous tag,
         //// work on the new node at the current timestamp.
@@ -256,13 +381,14 @@ public class StateSpaceExplorer {
             new StateSpaceNode(
                 currentTag, // Current tag
                 reactionsInvoked, // Reactions invoked at this tag
-                new ArrayList<>(eventQ) // A snapshot of the event queue
+                eventQ.snapshot() // A snapshot of the event queue
                 );
 
         // Update the previous node.
         previousNode = currentNode;
         // Update the current node to the new (potentially incomplete) node.
         currentNode = node;
+        newNode = true;
       }
       // Timestamp does not advance because we are processing
       // connections with zero delay.
@@ -271,7 +397,7 @@ public class StateSpaceExplorer {
         // to the existing state space node.
         currentNode.getReactionsInvoked().addAll(reactionsTemp);
         // Update the eventQ snapshot.
-        currentNode.setEventQcopy(new ArrayList<>(eventQ));
+        currentNode.setEventQcopy(eventQ.snapshot());
       } else {
         throw new AssertionError("Unreachable");
       }
@@ -289,6 +415,11 @@ public class StateSpaceExplorer {
         stop = true;
       } else if (currentTag.timestamp > horizon.timestamp) {
         stop = true;
+      } else if (newNode && index % CHECKPOINT_INTERVAL == 0 && loopIndex < 0) {
+        var events = eventQ.snapshot();
+        checkpoints.add(
+            new Checkpoint(
+                index, reactionInvocations, events, previousTag, currentTag, currentNode));
       }
     }
 
@@ -301,7 +432,7 @@ public class StateSpaceExplorer {
     if (previousNode == null || previousNode.getTag().timestamp < currentNode.getTag().timestamp) {
       this.diagram.addNode(currentNode);
       this.diagram.tail = currentNode; // Update the current tail.
-      if (previousNode != null) {
+      if (previousNode != null && this.diagram.hasNode(previousNode)) {
         this.diagram.addEdge(currentNode, previousNode);
       }
     }
@@ -311,4 +442,250 @@ public class StateSpaceExplorer {
     // Set the current node as the head.
     if (this.diagram.head == null) this.diagram.head = currentNode;
   }
+
+  /**
+   * Explore the weakly connected components of the program in parallel and merge their timelines
+   * into the diagram of the program.
+   *
+   * @return False, leaving the diagram unchanged, if the program has fewer than two components or
+   *     if the diagram of the program would exceed the node limit.
+   */
+  private boolean exploreComponents(Tag horizon, boolean findLoop) {
+    List<Set<ReactorInstance>> components = components(main);
+    if (components.size() < 2) return false;
+    List<StateSpaceExplorer> parts = new ArrayList<>();
+    for (Set<ReactorInstance> reactors : components) {
+      var part = new StateSpaceExplorer(main);
+      part.component = reactors;
+      part.nodeLimit = nodeLimit;
+      parts.add(part);
+    }
+    // Components share no triggers, so they can be explored on the common fork-join pool.
+    parts.parallelStream().forEach(part -> part.explore(horizon, findLoop));
+    List<Timeline> timelines = new ArrayList<>();
+    for (StateSpaceExplorer part : parts) {
+      if (part.truncated || part.diagram.skippedNodes > 0) return false;
+      timelines.add(new Timeline(part.diagram, part.loopFound, part.initialEvents));
+    }
+
+    // Merge the timelines in the same way as nodes are added in explore().
+    var merged = new StateSpaceDiagram();
+    HashMap<Fingerprint, StateSpaceNode> uniqueNodes = new HashMap<>();
+    StateSpaceNode previousNode = null;
+    StateSpaceNode currentNode = mergeNext(timelines);
+    while (true) {
+      long timestamp = nextTimestamp(timelines);
+      if (timestamp == Long.MAX_VALUE || timestamp > horizon.timestamp) break;
+      StateSpaceNode duplicate =
+          findLoop ? uniqueNodes.put(currentNode.fingerprint(), currentNode) : null;
+      if (duplicate != null) {
+        merged.loopNode = duplicate;
+        merged.loopNodeNext = currentNode;
+        merged.tail = previousNode;
+        merged.loopPeriod = currentNode.getTag().timestamp - duplicate.getTag().timestamp;
+        merged.addEdge(merged.loopNode, merged.tail);
+        diagram = merged;
+        loopFound = true;
+        return true;
+      }
+      merged.addNode(currentNode);
+      merged.tail = currentNode;
+      if (previousNode != null) merged.addEdge(currentNode, previousNode);
+      else merged.head = currentNode;
+      if (merged.nodeCount() >= nodeLimit) return false;
+      previousNode = currentNode;
+      currentNode = mergeNext(timelines);
+    }
+    merged.addNode(currentNode);
+    merged.tail = currentNode;
+    if (previousNode != null) merged.addEdge(currentNode, previousNode);
+    else merged.head = currentNode;
+    diagram = merged;
+    return true;
+  }
+
+  /** Return the earliest timestamp of the next nodes of the given timelines. */
+  private static long nextTimestamp(List<Timeline> timelines) {
+    long timestamp = Long.MAX_VALUE;
+    for (Timeline timeline : timelines) {
+      timestamp = Math.min(timestamp, timeline.nextTimestamp());
+    }
+    return timestamp;
+  }
+
+  /**
+   * Advance the timelines that have a node at the earliest next timestamp, and return the node of
+   * the program that combines their nodes with the events queued in all timelines.
+   */
+  private static StateSpaceNode mergeNext(List<Timeline> timelines) {
+    long timestamp = nextTimestamp(timelines);
+    Tag tag = null;
+    Set<ReactionInstance> reactions = new HashSet<>();
+    for (Timeline timeline : timelines) {
+      if (timeline.nextTimestamp() == timestamp) {
+        timeline.advance();
+        reactions.addAll(timeline.reactions());
+        if (tag == null || timeline.tag().compareTo(tag) < 0) tag = timeline.tag();
+      }
+    }
+    List<Event> events = new ArrayList<>();
+    for (Timeline timeline : timelines) {
+      events.addAll(timeline.events());
+    }
+    Collections.sort(events);
+    return new StateSpaceNode(tag, reactions, events);
+  }
+
+  /**
+   * Return the weakly connected components of the reactors in the given program, where reactors
+   * are connected if a reaction of one is triggered by, reads, or affects a port, action, or timer
+   * of the other, or if a port of one is connected to a port of the other. Only the reactors with
+   * initial events (see {@link #addInitialEvents(ReactorInstance)}) are returned, and components
+   * without initial events are omitted.
+   */
+  private static List<Set<ReactorInstance>> components(ReactorInstance main) {
+    Map<ReactorInstance, ReactorInstance> parents = new HashMap<>();
+    connect(main, parents);
+    Map<ReactorInstance, Set<ReactorInstance>> components = new LinkedHashMap<>();
+    collectInitialReactors(main, parents, components);
+    return new ArrayList<>(components.values());
+  }
+
+  /** Recursively merge the sets of the reactors that the reactions of the given reactor link. */
+  private static void connect(ReactorInstance reactor, Map<ReactorInstance, ReactorInstance> sets) {
+    for (ReactionInstance reaction : reactor.reactions) {
+      for (TriggerInstance<? extends Variable> trigger : reaction.triggers) {
+        union(sets, reactor, trigger.getParent());
+      }
+      for (TriggerInstance<? extends Variable> source : reaction.sources) {
+        union(sets, reactor, source.getParent());
+      }
+      for (TriggerInstance<? extends Variable> effect : reaction.effects) {
+        union(sets, reactor, effect.getParent());
+        if (effect instanceof PortInstance port) {
+          for (SendRange senderRange : port.getDependentPorts()) {
+            for (RuntimeRange<PortInstance> destinationRange : senderRange.destinations) {
+              union(sets, port.getParent(), destinationRange.instance.getParent());
+            }
+          }
+        }
+      }
+    }
+    for (var child : reactor.children) {
+      connect(child, sets);
+    }
+  }
+
+  /** Recursively add the reactors with initial events to the sets of their components. */
+  private static void collectInitialReactors(
+      ReactorInstance reactor,
+      Map<ReactorInstance, ReactorInstance> sets,
+      Map<ReactorInstance, Set<ReactorInstance>> components) {
+    if (reactor.getStartupTrigger() != null || !reactor.timers.isEmpty()) {
+      components.computeIfAbsent(find(sets, reactor), k -> new HashSet<>()).add(reactor);
+    }
+    for (var child : reactor.children) {
+      collectInitialReactors(child, sets, components);
+    }
+  }
+
+  /** Return the representative of the set of the given reactor in the given union-find forest. */
+  private static ReactorInstance find(
+      Map<ReactorInstance, ReactorInstance> sets, ReactorInstance reactor) {
+    ReactorInstance root = reactor;
+    while (sets.containsKey(root)) root = sets.get(root);
+    // Compress the path to the representative.
+    while (sets.containsKey(reactor)) reactor = sets.put(reactor, root);
+    return root;
+  }
+
+  private static void union(
+      Map<ReactorInstance, ReactorInstance> sets, ReactorInstance a, ReactorInstance b) {
+    ReactorInstance rootA = find(sets, a);
+    ReactorInstance rootB = find(sets, b);
+    if (rootA != rootB) sets.put(rootA, rootB);
+  }
+
+  /**
+   * Continue exploration in compact mode: record the fingerprints of the nodes in the diagram and
+   * then remove the nodes from the diagram.
+   */
+  private void switchToCompactMode(Map<Fingerprint, StateSpaceNode> uniqueNodes) {
+    uniqueNodes.forEach((fingerprint, node) -> visited.putIfAbsent(fingerprint, node.getIndex()));
+    var compact = new StateSpaceDiagram();
+    compact.skippedNodes = diagram.skippedNodes + diagram.nodeCount();
+    compact.skippedReactionInvocations = diagram.skippedReactionInvocations;
+    for (StateSpaceNode node : diagram.nodes()) {
+      compact.skippedReactionInvocations += node.getReactionsInvoked().size();
+    }
+    diagram = compact;
+  }
+
+  /**
+   * Explore the loop from the node with the given index to the node with the given later index,
+   * which is analogous to it, again and keep the nodes of the loop in the diagram.
+   */
+  private void replay(int loopStart, int loopEnd, Tag horizon) {
+    Checkpoint checkpoint = null;
+    for (Checkpoint c : checkpoints) {
+      if (c.index <= loopStart) checkpoint = c;
+    }
+    var replay = new StateSpaceExplorer(main);
+    replay.recordFrom = loopStart;
+    replay.loopIndex = loopEnd;
+    replay.nodeLimit = Integer.MAX_VALUE;
+    replay.explore(checkpoint, horizon, false);
+    assert replay.loopFound;
+    diagram = replay.diagram;
+    loopFound = replay.loopFound;
+    eventQ = replay.eventQ;
+  }
+
+  /**
+   * The state of the exploration at the beginning of an iteration in which a new node has just been
+   * created, from which exploration can be resumed.
+   *
+   * @param index The index of the new node.
+   * @param reactionInvocations The number of reactions invoked at the nodes before the new node.
+   * @param events The events in the event queue.
+   * @param previousTag The tag of the previous iteration.
+   * @param currentTag The tag of the next iteration.
+   * @param nodeTag The tag of the new node, or null at the beginning of the exploration.
+   * @param reactions The reactions invoked at the new node so far.
+   * @param nodeEvents The snapshot of the event queue of the new node.
+   */
+  private record Checkpoint(
+      int index,
+      long reactionInvocations,
+      EventQueue.Snapshot events,
+      Tag previousTag,
+      Tag currentTag,
+      Tag nodeTag,
+      Set<ReactionInstance> reactions,
+      List<Event> nodeEvents) {
+
+    private Checkpoint(
+        int index,
+        long reactionInvocations,
+        EventQueue.Snapshot events,
+        Tag previousTag,
+        Tag currentTag,
+        StateSpaceNode node) {
+      this(
+          index,
+          reactionInvocations,
+          events,
+          previousTag,
+          currentTag,
+          node == null ? null : node.getTag(),
+          node == null ? null : new HashSet<>(node.getReactionsInvoked()),
+          node == null ? null : node.getEventQcopy());
+    }
+
+    /** Return a copy of the new node, which may be modified by the exploration. */
+    private StateSpaceNode restoreNode() {
+      if (nodeTag == null) return null;
+      return new StateSpaceNode(nodeTag, new HashSet<>(reactions), nodeEvents);
+    }
+  }
 }
@@ -1,6 +1,9 @@
 package org.lflang.analyses.statespace;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -15,10 +18,9 @@ public class StateSpaceNode {
   private Tag tag;
   private TimeValue time; // Readable representation of tag.timestamp
   private Set<ReactionInstance> reactionsInvoked;
-  private ArrayList<Event> eventQcopy; // A snapshot of the eventQ represented as an ArrayList
+  private List<Event> eventQcopy; // A snapshot of the eventQ in the order of the events
 
-  public StateSpaceNode(
-      Tag tag, Set<ReactionInstance> reactionsInvoked, ArrayList<Event> eventQcopy) {
+  public StateSpaceNode(Tag tag, Set<ReactionInstance> reactionsInvoked, List<Event> eventQcopy) {
     this.tag = tag;
     this.eventQcopy = eventQcopy;
     this.reactionsInvoked = reactionsInvoked;
@@ -71,6 +73,40 @@ public class StateSpaceNode {
     return result;
   }
 
+  /**
+   * Return a 128-bit fingerprint of the node, which is equal for two nodes that are analogous in
+   * the sense of {@link #hash()}. Unlike that hash, fingerprints of nodes that are not analogous
+   * are different with overwhelming probability, so a fingerprint can stand in for a node.
+   */
+  public Fingerprint fingerprint() {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+    // The reactions invoked, in a canonical order.
+    List<String> reactions =
+        reactionsInvoked.stream().map(ReactionInstance::getFullName).sorted().toList();
+    for (String reaction : reactions) {
+      digest.update(reaction.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    digest.update((byte) 1);
+    // The triggers of the queued events and the time offsets of their tags.
+    for (Event e : eventQcopy) {
+      digest.update(e.getTrigger().getFullName().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(buffer.clear().putLong(e.getTag().timestamp - this.tag.timestamp).flip());
+    }
+    ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+    return new Fingerprint(hash.getLong(), hash.getLong());
+  }
+
+  /** A 128-bit fingerprint of a node. */
+  public record Fingerprint(long high, long low) {}
+
   public int getIndex() {
     return index;
   }
@@ -91,11 +127,11 @@ public class StateSpaceNode {
     return reactionsInvoked;
   }
 
-  public ArrayList<Event> getEventQcopy() {
+  public List<Event> getEventQcopy() {
     return eventQcopy;
   }
 
-  public void setEventQcopy(ArrayList<Event> list) {
+  public void setEventQcopy(List<Event> list) {
     eventQcopy = list;
   }
 }
@@ -1,5 +1,6 @@
 package org.lflang.analyses.statespace;
 
+import java.util.Objects;
 import org.lflang.TimeValue;
 
 /**
@@ -45,6 +46,8 @@ public class Tag implements Comparable<Tag> {
     if (this == o) return true;
     if (o instanceof Tag) {
       Tag t = (Tag) o;
+      // As in compareTo(), all tags that are FOREVER are equal.
+      if (this.forever && t.forever) return true;
       if (this.timestamp == t.timestamp
           && this.microstep == t.microstep
           && this.forever == t.forever) return true;
@@ -52,6 +55,11 @@ public class Tag implements Comparable<Tag> {
     return false;
   }
 
+  @Override
+  public int hashCode() {
+    return forever ? Boolean.hashCode(true) : Objects.hash(timestamp, microstep);
+  }
+
   @Override
   public String toString() {
     if (this.forever) return "(FOREVER, " + this.microstep + ")";
@@ -0,0 +1,104 @@
+package org.lflang.analyses.statespace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.lflang.generator.ReactionInstance;
+
+/**
+ * The timeline of a part of a program that was explored on its own, which is the sequence of the
+ * nodes of its state space diagram. If a loop was found in the diagram, the timeline repeats the
+ * loop forever, shifting the tags of the repeated nodes and their events by the loop period.
+ */
+final class Timeline {
+
+  /** The nodes of the diagram from the head to the tail. */
+  private final List<StateSpaceNode> nodes = new ArrayList<>();
+
+  /** The position of the loop node in {@link #nodes}, or -1 if there is no loop. */
+  private final int loopStart;
+
+  /** The logical time elapsed for each loop iteration. */
+  private final long loopPeriod;
+
+  /** The position of the next node. */
+  private int position = 0;
+
+  /** The tag of the current node, or null before the first node. */
+  private Tag tag = null;
+
+  /** The reactions invoked at the current node. */
+  private Set<ReactionInstance> reactions = Set.of();
+
+  /** The events queued after the current node. */
+  private List<Event> events;
+
+  /**
+   * Create the timeline of the given diagram, which must keep all of its nodes.
+   *
+   * @param diagram The diagram of the part of the program.
+   * @param loopFound Whether a loop was found in the diagram.
+   * @param initialEvents The events queued before the first node.
+   */
+  Timeline(StateSpaceDiagram diagram, boolean loopFound, List<Event> initialEvents) {
+    StateSpaceNode node = diagram.head;
+    nodes.add(node);
+    while (node != diagram.tail) {
+      node = diagram.getDownstreamNode(node);
+      nodes.add(node);
+    }
+    this.loopStart = loopFound ? diagram.loopNode.getIndex() : -1;
+    this.loopPeriod = diagram.loopPeriod;
+    this.events = initialEvents;
+  }
+
+  /** Return the timestamp of the next node, or {@link Long#MAX_VALUE} if there is none. */
+  long nextTimestamp() {
+    if (position >= nodes.size() && loopStart < 0) return Long.MAX_VALUE;
+    return node(position).getTag().timestamp + shift(position);
+  }
+
+  /** Advance to the next node. */
+  void advance() {
+    StateSpaceNode node = node(position);
+    long shift = shift(position);
+    tag = shifted(node.getTag(), shift);
+    reactions = node.getReactionsInvoked();
+    events = new ArrayList<>(node.getEventQcopy().size());
+    for (Event e : node.getEventQcopy()) {
+      events.add(shift == 0 ? e : new Event(e.getTrigger(), shifted(e.getTag(), shift)));
+    }
+    position++;
+  }
+
+  /** Return the tag of the current node. */
+  Tag tag() {
+    return tag;
+  }
+
+  /** Return the reactions invoked at the current node. */
+  Set<ReactionInstance> reactions() {
+    return reactions;
+  }
+
+  /** Return the events queued after the current node, or before the first node. */
+  List<Event> events() {
+    return events;
+  }
+
+  /** Return the node of the diagram that the given position of the timeline repeats. */
+  private StateSpaceNode node(int position) {
+    if (position < nodes.size()) return nodes.get(position);
+    return nodes.get(loopStart + (position - loopStart) % (nodes.size() - loopStart));
+  }
+
+  /** Return the logical time by which the node at the given position is shifted. */
+  private long shift(int position) {
+    if (position < nodes.size()) return 0;
+    return (position - loopStart) / (nodes.size() - loopStart) * loopPeriod;
+  }
+
+  private static Tag shifted(Tag tag, long shift) {
+    return shift == 0 ? tag : new Tag(tag.timestamp + shift, tag.microstep, tag.forever);
+  }
+}
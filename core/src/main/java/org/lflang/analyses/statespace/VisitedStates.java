@@ -0,0 +1,278 @@
+package org.lflang.analyses.statespace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.lflang.analyses.statespace.StateSpaceNode.Fingerprint;
+
+/**
+ * A set of the fingerprints of visited states, which maps each fingerprint to the index of the
+ * state in which it was first visited. Fingerprints are kept in a compact open-addressing table.
+ *
+ * <p>If a spill directory is given, the table holds at most a given number of fingerprints. When it
+ * is full, its fingerprints are written to a sorted run file in the spill directory, which is
+ * searched by binary search. Runs are merged when there are more than {@link #MAX_RUNS} of them.
+ */
+public final class VisitedStates implements Closeable {
+
+  /** The default number of fingerprints that are held in memory before spilling to disk. */
+  public static final int DEFAULT_MEMORY_LIMIT = 1 << 21;
+
+  /** The maximum number of run files before they are merged. */
+  private static final int MAX_RUNS = 8;
+
+  /** The size of a fingerprint and its index in a run file. */
+  private static final int RECORD_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+  private static final Comparator<Fingerprint> ORDER =
+      Comparator.comparingLong(Fingerprint::high).thenComparingLong(Fingerprint::low);
+
+  /** The number of fingerprints in memory after which they are spilled, if spilling is enabled. */
+  private final int memoryLimit;
+
+  /** The directory of the run files, or null if fingerprints are never spilled. */
+  private final Path spillDirectory;
+
+  private long[] highs;
+  private long[] lows;
+
+  /** The index of the state of each slot, or -1 if the slot is empty. */
+  private int[] indices;
+
+  /** The number of fingerprints in memory. */
+  private int count = 0;
+
+  /** The sorted run files, oldest first. */
+  private final List<Run> runs = new ArrayList<>();
+
+  /** The number of run files that were written, for naming new ones. */
+  private int runsWritten = 0;
+
+  /** Create a set that keeps all fingerprints in memory. */
+  public VisitedStates() {
+    this(Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * Create a set that spills fingerprints to disk.
+   *
+   * @param memoryLimit The number of fingerprints to hold in memory.
+   * @param spillDirectory The directory in which to create run files, or null to never spill.
+   */
+  public VisitedStates(int memoryLimit, Path spillDirectory) {
+    this.memoryLimit = memoryLimit;
+    this.spillDirectory = spillDirectory;
+    allocate(1 << 10);
+  }
+
+  /**
+   * Record the given index for the given fingerprint, unless the fingerprint was recorded already.
+   *
+   * @return The index that was recorded for the fingerprint before, or -1 if there was none.
+   * @throws UncheckedIOException If a run file cannot be read or written.
+   */
+  public int putIfAbsent(Fingerprint fingerprint, int index) {
+    int slot = slot(fingerprint.high(), fingerprint.low());
+    if (indices[slot] >= 0) return indices[slot];
+    try {
+      for (Run run : runs) {
+        int found = run.find(fingerprint);
+        if (found >= 0) return found;
+      }
+      highs[slot] = fingerprint.high();
+      lows[slot] = fingerprint.low();
+      indices[slot] = index;
+      count++;
+      if (spillDirectory != null && count >= memoryLimit) {
+        spill();
+      } else if (2 * count > indices.length) {
+        grow();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return -1;
+  }
+
+  /** Return the number of fingerprints in the set. */
+  public long size() {
+    return count + runs.stream().mapToLong(run -> run.size).sum();
+  }
+
+  /** Delete the run files. */
+  @Override
+  public void close() {
+    for (Run run : runs) {
+      run.delete();
+    }
+    runs.clear();
+  }
+
+  /** Return the slot of the given fingerprint, or the empty slot where it belongs. */
+  private int slot(long high, long low) {
+    int mask = indices.length - 1;
+    int slot = (int) (low ^ (low >>> 32)) & mask;
+    while (indices[slot] >= 0 && (highs[slot] != high || lows[slot] != low)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void allocate(int capacity) {
+    highs = new long[capacity];
+    lows = new long[capacity];
+    indices = new int[capacity];
+    Arrays.fill(indices, -1);
+  }
+
+  /** Double the capacity of the table. */
+  private void grow() {
+    long[] oldHighs = highs;
+    long[] oldLows = lows;
+    int[] oldIndices = indices;
+    allocate(2 * oldIndices.length);
+    for (int i = 0; i < oldIndices.length; i++) {
+      if (oldIndices[i] >= 0) {
+        int slot = slot(oldHighs[i], oldLows[i]);
+        highs[slot] = oldHighs[i];
+        lows[slot] = oldLows[i];
+        indices[slot] = oldIndices[i];
+      }
+    }
+  }
+
+  /** Write the fingerprints in memory to a new run file and clear the table. */
+  private void spill() throws IOException {
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] >= 0) entries.add(new Entry(new Fingerprint(highs[i], lows[i]), indices[i]));
+    }
+    entries.sort(Comparator.comparing(Entry::fingerprint, ORDER));
+    Path file = newRunFile();
+    try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      for (Entry entry : entries) {
+        entry.write(out);
+      }
+    }
+    runs.add(new Run(file, entries.size()));
+    count = 0;
+    Arrays.fill(indices, -1);
+    if (runs.size() > MAX_RUNS) merge();
+  }
+
+  /** Merge all run files into one. */
+  private void merge() throws IOException {
+    Path file = newRunFile();
+    long size = 0;
+    List<DataInputStream> ins = new ArrayList<>();
+    try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      Entry[] heads = new Entry[runs.size()];
+      for (int i = 0; i < runs.size(); i++) {
+        var in = Files.newInputStream(runs.get(i).file);
+        ins.add(new DataInputStream(new BufferedInputStream(in)));
+        heads[i] = Entry.read(ins.get(i));
+      }
+      while (true) {
+        int min = -1;
+        for (int i = 0; i < heads.length; i++) {
+          if (heads[i] != null
+              && (min < 0 || ORDER.compare(heads[i].fingerprint, heads[min].fingerprint) < 0)) {
+            min = i;
+          }
+        }
+        if (min < 0) break;
+        heads[min].write(out);
+        size++;
+        heads[min] = Entry.read(ins.get(min));
+      }
+    } finally {
+      for (DataInputStream in : ins) {
+        in.close();
+      }
+    }
+    close();
+    runs.add(new Run(file, size));
+  }
+
+  private Path newRunFile() throws IOException {
+    Files.createDirectories(spillDirectory);
+    return spillDirectory.resolve("visited-" + runsWritten++ + ".bin");
+  }
+
+  /** A fingerprint and the index of its state. */
+  private record Entry(Fingerprint fingerprint, int index) {
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(fingerprint.high());
+      out.writeLong(fingerprint.low());
+      out.writeInt(index);
+    }
+
+    /** Read an entry from the given stream, or return null at the end of the stream. */
+    static Entry read(DataInputStream in) throws IOException {
+      try {
+        return new Entry(new Fingerprint(in.readLong(), in.readLong()), in.readInt());
+      } catch (EOFException e) {
+        return null;
+      }
+    }
+  }
+
+  /** A file of entries that are sorted by fingerprint. */
+  private static final class Run {
+    private final Path file;
+    private final long size;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    private Run(Path file, long size) throws IOException {
+      this.file = file;
+      this.size = size;
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /** Return the index recorded for the given fingerprint, or -1 if there is none. */
+    private int find(Fingerprint fingerprint) throws IOException {
+      long low = 0;
+      long high = size - 1;
+      while (low <= high) {
+        long middle = (low + high) >>> 1;
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, middle * RECORD_SIZE + buffer.position()) < 0) {
+            throw new EOFException(file.toString());
+          }
+        }
+        buffer.flip();
+        int cmp = ORDER.compare(new Fingerprint(buffer.getLong(), buffer.getLong()), fingerprint);
+        if (cmp < 0) low = middle + 1;
+        else if (cmp > 0) high = middle - 1;
+        else return buffer.getInt();
+      }
+      return -1;
+    }
+
+    private void delete() {
+      try {
+        channel.close();
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // A run file that cannot be deleted is only wasted space.
+      }
+    }
+  }
+}
@@ -47,8 +47,8 @@ import org.lflang.analyses.c.IfNormalFormAstVisitor;
 import org.lflang.analyses.c.VariablePrecedenceVisitor;
 import org.lflang.analyses.statespace.StateSpaceDiagram;
 import org.lflang.analyses.statespace.StateSpaceExplorer;
-import org.lflang.analyses.statespace.StateSpaceNode;
 import org.lflang.analyses.statespace.Tag;
+import org.lflang.analyses.statespace.VisitedStates;
 import org.lflang.ast.ASTUtils;
 import org.lflang.dsl.CLexer;
 import org.lflang.dsl.CParser;
@@ -1611,6 +1611,9 @@ public class UclidGenerator extends GeneratorBase {
   private void computeCT() {
 
     StateSpaceExplorer explorer = new StateSpaceExplorer(this.main);
+    // Large state spaces are explored in compact mode, which may spill to disk.
+    explorer.setVisitedStates(
+        new VisitedStates(VisitedStates.DEFAULT_MEMORY_LIMIT, outputDir.resolve(".statespace")));
     explorer.explore(
         new Tag(this.horizon, 0, false), true // findLoop
         );
@@ -1627,95 +1630,8 @@ public class UclidGenerator extends GeneratorBase {
       throw new RuntimeException(e);
     }
 
-    //// Compute CT
-    if (!explorer.loopFound) {
-      if (this.logicalTimeBased) this.CT = diagram.nodeCount();
-      else {
-        // FIXME: This could be much more efficient with
-        // a linkedlist implementation. We can go straight
-        // to the next node.
-        StateSpaceNode node = diagram.head;
-        this.CT = diagram.head.getReactionsInvoked().size();
-        while (node != diagram.tail) {
-          node = diagram.getDownstreamNode(node);
-          this.CT += node.getReactionsInvoked().size();
-        }
-      }
-    }
-    // Over-approximate CT by estimating the number of loop iterations required.
-    else {
-      // Subtract the non-periodic logical time
-      // interval from the total horizon.
-      long horizonRemained = Math.subtractExact(this.horizon, diagram.loopNode.getTag().timestamp);
-
-      // Check how many loop iteration is required
-      // to check the remaining horizon.
-      int loopIterations = 0;
-      if (diagram.loopPeriod == 0 && horizonRemained != 0)
-        throw new RuntimeException(
-            "ERROR: Zeno behavior detected while the horizon is non-zero. The program has no"
-                + " finite CT.");
-      else if (diagram.loopPeriod == 0 && horizonRemained == 0) {
-        // Handle this edge case.
-        throw new RuntimeException("Unhandled case: both the horizon and period are 0!");
-      } else {
-        loopIterations = (int) Math.ceil((double) horizonRemained / diagram.loopPeriod);
-      }
-
-      if (this.logicalTimeBased) {
-        /*
-        CT = steps required for the non-periodic part
-             + steps required for the periodic part
-
-        this.CT = (diagram.loopNode.index + 1)
-            + (diagram.tail.index - diagram.loopNode.index + 1) * loopIterations;
-
-        An overflow-safe version of the line above
-        */
-        int t0 = Math.addExact(diagram.loopNode.getIndex(), 1);
-        int t1 = Math.subtractExact(diagram.tail.getIndex(), diagram.loopNode.getIndex());
-        int t2 = Math.addExact(t1, 1);
-        int t3 = Math.multiplyExact(t2, loopIterations);
-        this.CT = Math.addExact(t0, t3);
-
-      } else {
-        // Get the number of events before the loop starts.
-        // This stops right before the loopNode is encountered.
-        StateSpaceNode node = diagram.head;
-        int numReactionInvocationsBeforeLoop = 0;
-        while (node != diagram.loopNode) {
-          numReactionInvocationsBeforeLoop += node.getReactionsInvoked().size();
-          node = diagram.getDownstreamNode(node);
-        }
-        // Account for the loop node in numReactionInvocationsBeforeLoop.
-        numReactionInvocationsBeforeLoop += node.getReactionsInvoked().size();
-
-        // Count the events from the loop node until
-        // loop node is reached again.
-        int numReactionInvocationsInsideLoop = 0;
-        do {
-          node = diagram.getDownstreamNode(node);
-          numReactionInvocationsInsideLoop += node.getReactionsInvoked().size();
-        } while (node != diagram.loopNode);
-
-        /*
-        CT = steps required for the non-periodic part
-             + steps required for the periodic part
-
-        this.CT = numReactionInvocationsBeforeLoop
-            + numReactionInvocationsInsideLoop * loopIterations;
-
-        An overflow-safe version of the line above
-        */
-        // System.out.println("DEBUG: numReactionInvocationsBeforeLoop: " +
-        // numReactionInvocationsBeforeLoop);
-        // System.out.println("DEBUG: numReactionInvocationsInsideLoop: " +
-        // numReactionInvocationsInsideLoop);
-        // System.out.println("DEBUG: loopIterations: " + loopIterations);
-        int t0 = Math.multiplyExact(numReactionInvocationsInsideLoop, loopIterations);
-        this.CT = Math.addExact(numReactionInvocationsBeforeLoop, t0);
-      }
-    }
+    this.CT =
+        diagram.completenessThreshold(this.horizon, explorer.loopFound, this.logicalTimeBased);
   }
 
   /** Process an MTL property. */
@@ -5,9 +5,17 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.json.JSONArray;
@@ -17,11 +25,16 @@ import org.lflang.MessageReporter;
 import org.lflang.analyses.statespace.StateInfo;
 import org.lflang.analyses.statespace.Tag;
 import org.lflang.generator.GeneratorCommandFactory;
+import org.lflang.target.property.VerifyThreadsProperty;
+import org.lflang.util.FileUtil;
 import org.lflang.util.LFCommand;
 
 /** (EXPERIMENTAL) Runner for Uclid5 models. */
 public class UclidRunner {
 
+  /** The directory, relative to the output directory of the models, that caches results. */
+  public static final String CACHE_DIR = ".uclid-cache";
+
   /** A factory for compiler commands. */
   GeneratorCommandFactory commandFactory;
 
@@ -37,6 +50,7 @@ public class UclidRunner {
     this.commandFactory =
         new GeneratorCommandFactory(
             generator.context.getErrorReporter(), generator.context.getFileConfig());
+    this.commandFactory.setProfiler(generator.context.getProfiler());
   }
 
   /** Parse information from an SMT model for a step in the trace. */
@@ -157,79 +171,238 @@ public class UclidRunner {
 
   /**
    * Run all the generated Uclid models, report outputs, and generate counterexample trace diagrams.
+   *
+   * <p>The models are checked concurrently by up to {@code verify-threads} threads, and the results
+   * are reported in the order of the properties. The result of each check is cached in {@link
+   * #CACHE_DIR}, keyed by the hash of the model and the versions of Uclid5 and Z3, so models that
+   * did not change since they were last checked are not checked again.
    */
   public void run() {
-    for (Path path : generator.generatedFiles) {
-      // Execute uclid for each property.
-      LFCommand command =
-          commandFactory.createCommand(
-              "uclid",
-              List.of(
-                  path.toString(),
-                  // Any counterexample will be in <path.toString()>.json
-                  "--json-cex",
-                  path.toString()),
-              generator.outputDir);
-      command.run();
-
-      String output = command.getOutput().toString();
-      boolean valid = output.contains("PASSED");
-      if (valid) {
-        System.out.println("Valid!");
-      } else {
-        System.out.println("Not valid!");
+    List<Path> models = generator.generatedFiles;
+    if (models.isEmpty()) return;
+    String solverVersion = getSolverVersion();
+    int threads = getNumberOfVerifyThreads(models.size());
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Path path : models) {
+      // Command output is printed in order after the check rather than interleaved.
+      futures.add(pool.submit(() -> check(path, solverVersion, threads > 1)));
+    }
+    pool.shutdown();
+
+    int cached = 0;
+    try {
+      for (int i = 0; i < models.size(); i++) {
+        Path path = models.get(i);
+        Result result;
         try {
-          // Read from the JSON counterexample (cex).
-          String cexJSONStr =
-              Files.readString(Paths.get(path.toString() + ".json"), StandardCharsets.UTF_8);
-          JSONObject cexJSON = new JSONObject(cexJSONStr);
-
-          //// Extract the counterexample trace from JSON.
-          // Get the first key "property_*"
-          Iterator<String> keys = cexJSON.keys();
-          String firstKey = keys.next();
-          JSONObject propertyObj = cexJSON.getJSONObject(firstKey);
-
-          // Get Uclid trace.
-          JSONArray uclidTrace = propertyObj.getJSONArray("trace");
-
-          // Get the first step of the Uclid trace.
-          JSONObject uclidTraceStepOne = uclidTrace.getJSONObject(0);
-
-          // Get the actual trace defined in the verification model.
-          JSONObject trace = uclidTraceStepOne.getJSONArray("trace").getJSONObject(0);
-
-          String stepStr = "";
-          for (int i = 0; i <= generator.CT; i++) {
-            try {
-              stepStr = trace.getString(String.valueOf(i));
-            } catch (JSONException e) {
-              stepStr = trace.getString("-");
-            }
-            System.out.println("============ Step " + i + " ============");
-            StateInfo info = parseStateInfo(stepStr);
-            info.display();
-          }
-        } catch (IOException e) {
-          reporter.nowhere().error("Not able to read from " + path);
+          result = futures.get(i).get();
+        } catch (ExecutionException e) {
+          reporter
+              .nowhere()
+              .error("Failed to check " + path + ": " + e.getCause().getMessage());
+          continue;
         }
+        if (result.cached()) cached++;
+        report(path, result);
       }
+    } catch (InterruptedException e) {
+      pool.shutdownNow();
+      Thread.currentThread().interrupt();
+      reporter.nowhere().error("Verification was interrupted.");
+    }
+    if (cached > 0) {
+      reporter
+          .nowhere()
+          .info(
+              "Skipped "
+                  + cached
+                  + " of "
+                  + models.size()
+                  + " verification models that did not change since they were last checked.");
+    }
+  }
 
-      // If "expect" is set, check if the result matches it.
-      // If not, exit with error code 1.
-      String expect = generator.expectations.get(path);
-      if (expect != null) {
-        boolean expectValid = Boolean.parseBoolean(expect);
-        if (expectValid != valid) {
-          reporter
-              .nowhere()
-              .error(
-                  "ERROR: The expected result does not match the actual result. Expected: "
-                      + expectValid
-                      + ", Result: "
-                      + valid);
+  /**
+   * The result of checking a model.
+   *
+   * @param valid Whether the property holds.
+   * @param output The output of uclid, which is empty if it was printed already or if the result
+   *     was cached.
+   * @param trace The states of the counterexample, if the property does not hold.
+   * @param error An error that occurred while reading the counterexample, or null.
+   * @param cached Whether the result was taken from the cache.
+   */
+  private record Result(
+      boolean valid, String output, List<StateInfo> trace, String error, boolean cached) {}
+
+  /**
+   * Check the given model, or look up the result of checking it in the cache. This is invoked
+   * concurrently for different models.
+   *
+   * @param path The model to check.
+   * @param solverVersion The versions of the tools that check the model.
+   * @param quiet Whether to return the output of uclid rather than printing it.
+   */
+  private Result check(Path path, String solverVersion, boolean quiet) throws IOException {
+    Path cexFile = Paths.get(path.toString() + ".json");
+    Path cacheFile =
+        generator.outputDir.resolve(CACHE_DIR).resolve(hash(path, solverVersion) + ".json");
+    if (Files.isRegularFile(cacheFile)) {
+      try {
+        JSONObject entry = new JSONObject(Files.readString(cacheFile, StandardCharsets.UTF_8));
+        boolean valid = entry.getBoolean("valid");
+        if (!valid) {
+          // Restore the counterexample, in case the models were regenerated in a clean directory.
+          FileUtil.writeToFile(entry.getString("cex"), cexFile);
         }
+        return result(valid, "", cexFile, true);
+      } catch (JSONException | IOException e) {
+        // Fall back to checking the model.
       }
     }
+
+    // Execute uclid for the property.
+    LFCommand command =
+        commandFactory.createCommand(
+            "uclid",
+            List.of(
+                path.toString(),
+                // Any counterexample will be in <path.toString()>.json
+                "--json-cex",
+                path.toString()),
+            generator.outputDir);
+    if (command == null) {
+      throw new IOException("uclid could not be found");
+    }
+    if (quiet) command.setQuiet();
+    int returnCode = command.run();
+
+    String output = command.getOutput().toString();
+    boolean valid = output.contains("PASSED");
+    Result result = result(valid, quiet ? output + command.getErrors() : "", cexFile, false);
+    if (returnCode == 0 && result.error() == null) {
+      JSONObject entry = new JSONObject().put("valid", valid);
+      if (!valid) entry.put("cex", Files.readString(cexFile, StandardCharsets.UTF_8));
+      FileUtil.writeToFile(entry.toString(), cacheFile);
+    }
+    return result;
+  }
+
+  /**
+   * Return the result of a check, with the counterexample trace parsed from the given file if the
+   * property does not hold.
+   */
+  private Result result(boolean valid, String output, Path cexFile, boolean cached) {
+    if (valid) return new Result(true, output, List.of(), null, cached);
+    List<StateInfo> states = new ArrayList<>();
+    try {
+      // Read from the JSON counterexample (cex).
+      String cexJSONStr = Files.readString(cexFile, StandardCharsets.UTF_8);
+      JSONObject cexJSON = new JSONObject(cexJSONStr);
+
+      //// Extract the counterexample trace from JSON.
+      // Get the first key "property_*"
+      Iterator<String> keys = cexJSON.keys();
+      String firstKey = keys.next();
+      JSONObject propertyObj = cexJSON.getJSONObject(firstKey);
+
+      // Get Uclid trace.
+      JSONArray uclidTrace = propertyObj.getJSONArray("trace");
+
+      // Get the first step of the Uclid trace.
+      JSONObject uclidTraceStepOne = uclidTrace.getJSONObject(0);
+
+      // Get the actual trace defined in the verification model.
+      JSONObject trace = uclidTraceStepOne.getJSONArray("trace").getJSONObject(0);
+
+      String stepStr = "";
+      for (int i = 0; i <= generator.CT; i++) {
+        try {
+          stepStr = trace.getString(String.valueOf(i));
+        } catch (JSONException e) {
+          stepStr = trace.getString("-");
+        }
+        states.add(parseStateInfo(stepStr));
+      }
+    } catch (IOException e) {
+      return new Result(false, output, states, "Not able to read from " + cexFile, cached);
+    }
+    return new Result(false, output, states, null, cached);
+  }
+
+  /** Print the result of checking the given model and compare it to the expected result. */
+  private void report(Path path, Result result) {
+    System.out.print(result.output());
+    boolean valid = result.valid();
+    if (valid) {
+      System.out.println("Valid!");
+    } else {
+      System.out.println("Not valid!");
+      for (int i = 0; i < result.trace().size(); i++) {
+        System.out.println("============ Step " + i + " ============");
+        result.trace().get(i).display();
+      }
+      if (result.error() != null) {
+        reporter.nowhere().error(result.error());
+      }
+    }
+
+    // If "expect" is set, check if the result matches it.
+    // If not, exit with error code 1.
+    String expect = generator.expectations.get(path);
+    if (expect != null) {
+      boolean expectValid = Boolean.parseBoolean(expect);
+      if (expectValid != valid) {
+        reporter
+            .nowhere()
+            .error(
+                "ERROR: The expected result does not match the actual result. Expected: "
+                    + expectValid
+                    + ", Result: "
+                    + valid);
+      }
+    }
+  }
+
+  /**
+   * Return the number of threads to use for checking the given number of models. If the {@code
+   * verify-threads} target property is not set, the number is chosen based on the number of models
+   * and available processors.
+   */
+  private int getNumberOfVerifyThreads(int modelCount) {
+    var requested = generator.getTargetConfig().getOrDefault(VerifyThreadsProperty.INSTANCE);
+    if (requested > 0) {
+      return Math.min(requested, modelCount);
+    }
+    return Math.min(modelCount, Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Return the versions that Uclid5 and Z3 report, which identify the results of a check. */
+  private String getSolverVersion() {
+    StringBuilder version = new StringBuilder();
+    for (String tool : List.of("uclid", "z3")) {
+      LFCommand command = commandFactory.createCommand(tool, List.of("--version"), false);
+      if (command != null) {
+        command.setQuiet();
+        command.run();
+        version.append(command.getOutput()).append('\n');
+      }
+    }
+    return version.toString();
+  }
+
+  /** Return the SHA-256 hash of the given versions and the content of the given model. */
+  private static String hash(Path model, String solverVersion) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    digest.update(solverVersion.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(Files.readAllBytes(model));
+    return HexFormat.of().formatHex(digest.digest());
   }
 }
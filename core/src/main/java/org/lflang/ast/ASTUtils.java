@@ -63,6 +63,7 @@ import org.lflang.MessageReporter;
 import org.lflang.TimeUnit;
 import org.lflang.TimeValue;
 import org.lflang.generator.CodeMap;
+import org.lflang.generator.ElaborationCache;
 import org.lflang.generator.InvalidSourceException;
 import org.lflang.generator.NamedInstance;
 import org.lflang.generator.ReactorInstance;
@@ -606,34 +607,55 @@ public class ASTUtils {
 
   /**
    * If a main or federated reactor has been declared, create a ReactorInstance for this top level.
-   * This will also assign levels to reactions, then, if the program is federated, perform an AST
-   * transformation to disconnect connections between federates.
+   * This will also check for causality cycles and determine the breadth of the reaction graph,
+   * which does not require the runtime instances of reactions to be created unless the
+   * dependencies between reactions are cyclic.
    */
   public static ReactorInstance createMainReactorInstance(
       Instantiation mainDef,
       List<Reactor> reactors,
       MessageReporter messageReporter,
       TargetConfig targetConfig) {
+    return createMainReactorInstance(mainDef, reactors, messageReporter, targetConfig, false);
+  }
+
+  /**
+   * Like {@link #createMainReactorInstance(Instantiation, List, MessageReporter, TargetConfig)},
+   * but if {@code runtimeLevels} is true, then assign levels to the individual runtime instances of
+   * reactions with {@link ElaborationCache#assignLevels(Reactor, ReactorInstance)}, which is then
+   * the only analysis that is performed.
+   */
+  public static ReactorInstance createMainReactorInstance(
+      Instantiation mainDef,
+      List<Reactor> reactors,
+      MessageReporter messageReporter,
+      TargetConfig targetConfig,
+      boolean runtimeLevels) {
     if (mainDef != null) {
       // Recursively build instances.
-      ReactorInstance main =
-          new ReactorInstance(toDefinition(mainDef.getReactorClass()), messageReporter, reactors);
-      var reactionInstanceGraph = main.assignLevels();
-      if (reactionInstanceGraph.nodeCount() > 0) {
+      Reactor top = toDefinition(mainDef.getReactorClass());
+      var cache = ElaborationCache.of(top.eResource());
+      ReactorInstance main = cache.take(top, reactors, messageReporter);
+      if (runtimeLevels || !main.assignLevelsSymbolically().isAcyclic()) {
+        cache.assignLevels(top, main);
+      }
+      if (main.hasCycles()) {
         messageReporter
             .nowhere()
             .error("Main reactor has causality cycles. Skipping code generation.");
         return null;
       }
       // Inform the run-time of the breadth/parallelism of the reaction graph
-      var breadth = reactionInstanceGraph.getBreadth();
+      var symbolicLevels = runtimeLevels ? null : main.assignLevelsSymbolically();
+      var breadth =
+          symbolicLevels != null && symbolicLevels.isAcyclic()
+              ? symbolicLevels.getBreadth()
+              : main.assignLevels().getBreadth();
       if (breadth == 0) {
         messageReporter.nowhere().warning("The program has no reactions");
       } else {
         CompileDefinitionsProperty.INSTANCE.update(
-            targetConfig,
-            Map.of(
-                "LF_REACTION_GRAPH_BREADTH", String.valueOf(reactionInstanceGraph.getBreadth())));
+            targetConfig, Map.of("LF_REACTION_GRAPH_BREADTH", String.valueOf(breadth)));
       }
       return main;
     }
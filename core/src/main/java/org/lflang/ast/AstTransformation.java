@@ -6,6 +6,10 @@ import org.lflang.lf.Reactor;
 /** Interface for AST Transfomations */
 public interface AstTransformation {
 
-  /** Apply the AST transformation to all given reactors. */
-  void applyTransformation(List<Reactor> reactors);
+  /**
+   * Apply the AST transformation to all given reactors.
+   *
+   * @return Whether the AST was modified.
+   */
+  boolean applyTransformation(List<Reactor> reactors);
 }
@@ -77,8 +77,8 @@ public class DelayedConnectionTransformation implements AstTransformation {
 
   /** Transform all after delay connections by inserting generated delay reactors. */
   @Override
-  public void applyTransformation(List<Reactor> reactors) {
-    insertGeneratedDelays(reactors);
+  public boolean applyTransformation(List<Reactor> reactors) {
+    return insertGeneratedDelays(reactors);
   }
 
   /**
@@ -86,8 +86,9 @@ public class DelayedConnectionTransformation implements AstTransformation {
    * via a generated delay reactor.
    *
    * @param reactors A list of reactors to apply the transformation to.
+   * @return Whether any connection was rerouted.
    */
-  private void insertGeneratedDelays(List<Reactor> reactors) {
+  private boolean insertGeneratedDelays(List<Reactor> reactors) {
     // The resulting changes to the AST are performed _after_ iterating
     // in order to avoid concurrent modification problems.
     List<Connection> oldConnections = new ArrayList<>();
@@ -168,6 +169,7 @@ public class DelayedConnectionTransformation implements AstTransformation {
                     ((Mode) container).getInstantiations().add(instantiation);
                   }
                 }));
+    return !oldConnections.isEmpty();
   }
 
   /**
@@ -121,6 +121,7 @@ import org.lflang.diagram.synthesis.util.ReactorIcons;
 import org.lflang.diagram.synthesis.util.SynthesisMessageReporter;
 import org.lflang.diagram.synthesis.util.UtilityExtensions;
 import org.lflang.generator.ActionInstance;
+import org.lflang.generator.ElaborationCache;
 import org.lflang.generator.ParameterInstance;
 import org.lflang.generator.PortInstance;
 import org.lflang.generator.ReactionInstance;
@@ -330,7 +331,8 @@ public class LinguaFrancaSynthesis extends AbstractDiagramSynthesis<Model> {
       Reactor main =
           IterableExtensions.findFirst(model.getReactors(), _utilityExtensions::isMainOrFederated);
       if (main != null) {
-        ReactorInstance reactorInstance = new ReactorInstance(main, new SynthesisMessageReporter());
+        ReactorInstance reactorInstance =
+            ElaborationCache.of(model.eResource()).get(main, new SynthesisMessageReporter());
         rootNode
             .getChildren()
             .addAll(createReactorNode(reactorInstance, true, null, null, new HashMap<>()));
@@ -346,7 +348,7 @@ public class LinguaFrancaSynthesis extends AbstractDiagramSynthesis<Model> {
         for (Reactor reactor : model.getReactors()) {
           if (reactor == main) continue;
           ReactorInstance reactorInstance =
-              new ReactorInstance(reactor, new SynthesisMessageReporter());
+              ElaborationCache.of(model.eResource()).get(reactor, new SynthesisMessageReporter());
           reactorNodes.addAll(
               createReactorNode(
                   reactorInstance,
@@ -30,7 +30,6 @@ package org.lflang.federated.generator;
 import com.google.common.collect.Iterators;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -228,7 +227,9 @@ public class FedASTUtils {
     VarRef instRef = factory.createVarRef(); // instantiation connection
     VarRef destRef = factory.createVarRef(); // destination connection
 
-    Reactor receiver = addReactorDefinition("NetworkReceiver_" + networkIDReceiver++, resource);
+    Reactor receiver =
+        addReactorDefinition(
+            "NetworkReceiver_" + connection.getDstFederate().networkIdReceiver++, resource);
     Reaction networkReceiverReaction = factory.createReaction();
 
     Output out = factory.createOutput();
@@ -629,12 +630,6 @@ public class FedASTUtils {
     return list == null ? Collections.emptyList() : list;
   }
 
-  public static int networkIDReceiver = 0;
-
-  /** The network sender reactors created for each connection. */
-  private static final Map<FedConnectionInstance, Reactor> networkSenderReactors =
-      new HashMap<>(); // FIXME: static mutable objects are bad
-
   /**
    * Generate and return the EObject representing the reactor definition of a network sender.
    *
@@ -716,7 +711,7 @@ public class FedASTUtils {
     connection.srcFederate.networkSenderReactions.add(networkSenderReaction);
     connection.srcFederate.networkReactors.add(sender);
 
-    networkSenderReactors.put(connection, sender);
+    connection.srcFederate.networkSenderReactors.put(connection, sender);
 
     return sender;
   }
@@ -842,7 +837,7 @@ public class FedASTUtils {
   private static void addPortAbsentReaction(FedConnectionInstance connection) {
     LfFactory factory = LfFactory.eINSTANCE;
     Reaction reaction = factory.createReaction();
-    Reactor top = networkSenderReactors.getOrDefault(connection, null);
+    Reactor top = connection.srcFederate.networkSenderReactors.get(connection);
 
     // Add the output from the contained reactor as a source to
     // the reaction to preserve precedence order.
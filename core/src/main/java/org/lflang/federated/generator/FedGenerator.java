@@ -8,16 +8,17 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.util.EcoreUtil;
@@ -32,6 +33,7 @@ import org.lflang.ast.ASTUtils;
 import org.lflang.federated.launcher.FedLauncherGenerator;
 import org.lflang.federated.launcher.RtiConfig;
 import org.lflang.generator.CodeMap;
+import org.lflang.generator.ElaborationCache;
 import org.lflang.generator.GeneratorArguments;
 import org.lflang.generator.GeneratorResult.Status;
 import org.lflang.generator.GeneratorUtils;
@@ -57,6 +59,7 @@ import org.lflang.lf.TargetDecl;
 import org.lflang.lf.VarRef;
 import org.lflang.target.Target;
 import org.lflang.target.TargetConfig;
+import org.lflang.target.property.CompileThreadsProperty;
 import org.lflang.target.property.CoordinationProperty;
 import org.lflang.target.property.DockerProperty;
 import org.lflang.target.property.DockerProperty.DockerOptions;
@@ -156,6 +159,10 @@ public class FedGenerator {
     // for logical connections.
     replaceFederateConnectionsWithProxies(federation, main, resource);
 
+    // Instances elaborated from the AST before it was transformed, e.g. during validation, are now
+    // outdated.
+    ElaborationCache.of(resource).invalidate(resource);
+
     FedEmitter fedEmitter =
         new FedEmitter(
             fileConfig,
@@ -165,8 +172,11 @@ public class FedGenerator {
 
     // Generate LF code for each federate.
     Map<Path, CodeMap> lf2lfCodeMapMap = new HashMap<>();
-    for (FederateInstance federate : federates) {
-      lf2lfCodeMapMap.putAll(fedEmitter.generateFederate(context, federate, federates.size()));
+    try (var span = context.getProfiler().span("federate emission")) {
+      context.getProfiler().count("federates", federates.size());
+      for (FederateInstance federate : federates) {
+        lf2lfCodeMapMap.putAll(fedEmitter.generateFederate(context, federate, federates.size()));
+      }
     }
 
     // Do not invoke target code generators if --no-compile flag is used.
@@ -318,109 +328,195 @@ public class FedGenerator {
     return targetOK;
   }
 
+  /**
+   * Invoke the target code generator on the LF code generated for each federate, using a pool of
+   * worker threads. Each worker has its own injector, resource set, and file system access, so that
+   * no mutable state is shared between federates that are compiled concurrently. The code maps and
+   * subcontexts are collected in the order of the federates, regardless of the order in which the
+   * workers finish.
+   *
+   * @param context The main context of the federation.
+   * @param lf2lfCodeMapMap The code maps that map the generated LF code back to the original file.
+   * @param finalizer Action to perform on the subcontexts once all federates have been compiled.
+   * @return The code maps of all the generated target code.
+   */
   private Map<Path, CodeMap> compileFederates(
       LFGeneratorContext context,
       Map<Path, CodeMap> lf2lfCodeMapMap,
       Consumer<List<SubContext>> finalizer) {
 
-    // FIXME: Use the appropriate resource set instead of always using standalone
-    Injector inj = new LFStandaloneSetup().createInjectorAndDoEMFRegistration();
-    XtextResourceSet rs = inj.getInstance(XtextResourceSet.class);
-    rs.addLoadOption(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
-    // define output path here
-    JavaIoFileSystemAccess fsa = inj.getInstance(JavaIoFileSystemAccess.class);
-    fsa.setOutputPath("DEFAULT_OUTPUT", fileConfig.getSrcGenPath().toString());
-
-    var numOfCompileThreads = 1;
-    /* NOTE: Used to compile in parallel using the following. This causes the compiler to
-       to nondeterministically lock up on MacOS, which causes the tests to fail after the total
-       time allowed for the test expires (currently two hours).
-        Math.min(
-            6, Math.min(Math.max(federates.size(), 1), Runtime.getRuntime().availableProcessors()));
-    */
-    var compileThreadPool = Executors.newFixedThreadPool(numOfCompileThreads);
+    var numOfCompileThreads = getNumberOfCompileThreads();
     messageReporter
         .nowhere()
         .info("******** Using " + numOfCompileThreads + " threads to compile the program.");
-    Map<Path, CodeMap> codeMapMap = new ConcurrentHashMap<>();
-    List<SubContext> subContexts = Collections.synchronizedList(new ArrayList<>());
+
+    // Create the state of the workers up front and on this thread, because Guice injector creation
+    // is not meant to be performed concurrently.
+    BlockingQueue<CompileWorker> workers = new ArrayBlockingQueue<>(numOfCompileThreads);
+    for (int i = 0; i < numOfCompileThreads; i++) {
+      workers.add(new CompileWorker());
+    }
+
+    var compileThreadPool = Executors.newFixedThreadPool(numOfCompileThreads);
+    SubContext[] subContextsById = new SubContext[federates.size()];
+    List<Future<?>> futures = new ArrayList<>();
     Averager averager = new Averager(federates.size());
     final var threadSafeErrorReporter = new SynchronizedMessageReporter(messageReporter);
     for (int i = 0; i < federates.size(); i++) {
       FederateInstance fed = federates.get(i);
       final int id = i;
-      compileThreadPool.execute(
-          () -> {
-            Resource res = FileConfig.getResource(FedEmitter.lfFilePath(fileConfig, fed), rs);
-            FileConfig subFileConfig =
-                LFGenerator.createFileConfig(res, fileConfig.getSrcGenPath(), true);
-            MessageReporter subContextMessageReporter =
-                new LineAdjustingMessageReporter(threadSafeErrorReporter, lf2lfCodeMapMap);
-
-            TargetConfig subConfig =
-                new TargetConfig(
-                    subFileConfig.resource, GeneratorArguments.none(), subContextMessageReporter);
-
-            if (targetConfig.get(DockerProperty.INSTANCE).enabled()
-                    && targetConfig.target.buildsUsingDocker()
-                || fed.isRemote) {
-              NoCompileProperty.INSTANCE.override(subConfig, true);
-            }
-            // Disabled Docker for the federate and put federation in charge.
-            DockerProperty.INSTANCE.override(subConfig, new DockerOptions(false));
-
-            SubContext subContext =
-                new SubContext(context, IntegratedBuilder.VALIDATED_PERCENT_PROGRESS, 100) {
-                  @Override
-                  public MessageReporter getErrorReporter() {
-                    return subContextMessageReporter;
-                  }
-
-                  @Override
-                  public void reportProgress(String message, int percentage) {
-                    averager.report(
-                        id,
-                        percentage,
-                        meanPercentage -> super.reportProgress(message, meanPercentage));
-                  }
-
-                  @Override
-                  public FileConfig getFileConfig() {
-                    return subFileConfig;
-                  }
-
-                  @Override
-                  public TargetConfig getTargetConfig() {
-                    return subConfig;
-                  }
-                };
-
-            inj.getInstance(LFGenerator.class).doGenerate(res, fsa, subContext);
-            codeMapMap.putAll(subContext.getResult().getCodeMaps());
-            subContexts.add(subContext);
-          });
+      futures.add(
+          compileThreadPool.submit(
+              () -> {
+                CompileWorker worker = workers.take();
+                // Open a span on the worker thread so that the work of the code generator of the
+                // federate is recorded by the profiler of the federation.
+                try (var span = context.getProfiler().span("federate compilation")) {
+                  subContextsById[id] =
+                      worker.compile(
+                          context, fed, id, averager, threadSafeErrorReporter, lf2lfCodeMapMap);
+                } finally {
+                  workers.put(worker);
+                }
+                return null;
+              }));
     }
     // Initiate an orderly shutdown in which previously submitted tasks are
     // executed, but no new tasks will be accepted.
     compileThreadPool.shutdown();
 
-    // Wait for all compile threads to finish (NOTE: Can block forever)
+    // Wait for all compile threads to finish and collect their results in a deterministic order.
+    Map<Path, CodeMap> codeMapMap = new LinkedHashMap<>();
+    List<SubContext> subContexts = new ArrayList<>();
     try {
-      if (!compileThreadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
-        context.getErrorReporter().nowhere().error("Timed out while compiling.");
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get(i).get();
+        } catch (ExecutionException e) {
+          context
+              .getErrorReporter()
+              .nowhere()
+              .error("Failure during code generation: " + e.getCause().getMessage());
+          e.getCause().printStackTrace();
+        }
+        if (subContextsById[i] != null) {
+          codeMapMap.putAll(subContextsById[i].getResult().getCodeMaps());
+          subContexts.add(subContextsById[i]);
+        }
       }
-    } catch (Exception e) {
+    } catch (InterruptedException e) {
+      compileThreadPool.shutdownNow();
+      Thread.currentThread().interrupt();
       context
           .getErrorReporter()
           .nowhere()
           .error("Failure during code generation: " + e.getMessage());
-      e.printStackTrace();
     } finally {
       finalizer.accept(subContexts);
     }
     return codeMapMap;
   }
 
+  /**
+   * Return the number of threads to use for compiling federates. Federates are compiled one at a
+   * time unless the {@code compile-threads} target property or the corresponding command-line
+   * option requests more threads, because compiling them in parallel used to make the compiler lock
+   * up nondeterministically on macOS.
+   */
+  private int getNumberOfCompileThreads() {
+    var federateCount = Math.max(federates.size(), 1);
+    var requested = targetConfig.get(CompileThreadsProperty.INSTANCE);
+    if (requested > 0) {
+      return Math.min(requested, federateCount);
+    }
+    return 1;
+  }
+
+  /**
+   * The isolated state used by a thread to compile federates. Each worker has its own injector,
+   * resource set, and file system access.
+   */
+  private class CompileWorker {
+
+    private final Injector injector;
+
+    private final XtextResourceSet resourceSet;
+
+    private final JavaIoFileSystemAccess fsa;
+
+    /**
+     * Create a new worker. The global EMF registration is not repeated, because it has already been
+     * performed in order to load the program, and it is not safe to perform while other builds in
+     * the same process may be loading resources.
+     */
+    CompileWorker() {
+      // FIXME: Use the appropriate resource set instead of always using standalone
+      this.injector = new LFStandaloneSetup().createInjector();
+      this.resourceSet = injector.getInstance(XtextResourceSet.class);
+      this.resourceSet.addLoadOption(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
+      // define output path here
+      this.fsa = injector.getInstance(JavaIoFileSystemAccess.class);
+      this.fsa.setOutputPath("DEFAULT_OUTPUT", fileConfig.getSrcGenPath().toString());
+    }
+
+    /**
+     * Generate and compile the code for the given federate and return the subcontext in which this
+     * was done.
+     */
+    SubContext compile(
+        LFGeneratorContext context,
+        FederateInstance fed,
+        int id,
+        Averager averager,
+        MessageReporter threadSafeErrorReporter,
+        Map<Path, CodeMap> lf2lfCodeMapMap) {
+      Resource res = FileConfig.getResource(FedEmitter.lfFilePath(fileConfig, fed), resourceSet);
+      FileConfig subFileConfig =
+          LFGenerator.createFileConfig(res, fileConfig.getSrcGenPath(), true);
+      MessageReporter subContextMessageReporter =
+          new LineAdjustingMessageReporter(threadSafeErrorReporter, lf2lfCodeMapMap);
+
+      TargetConfig subConfig =
+          new TargetConfig(
+              subFileConfig.resource, GeneratorArguments.none(), subContextMessageReporter);
+
+      if (targetConfig.get(DockerProperty.INSTANCE).enabled()
+              && targetConfig.target.buildsUsingDocker()
+          || fed.isRemote) {
+        NoCompileProperty.INSTANCE.override(subConfig, true);
+      }
+      // Disabled Docker for the federate and put federation in charge.
+      DockerProperty.INSTANCE.override(subConfig, new DockerOptions(false));
+
+      SubContext subContext =
+          new SubContext(context, IntegratedBuilder.VALIDATED_PERCENT_PROGRESS, 100) {
+            @Override
+            public MessageReporter getErrorReporter() {
+              return subContextMessageReporter;
+            }
+
+            @Override
+            public void reportProgress(String message, int percentage) {
+              averager.report(
+                  id, percentage, meanPercentage -> super.reportProgress(message, meanPercentage));
+            }
+
+            @Override
+            public FileConfig getFileConfig() {
+              return subFileConfig;
+            }
+
+            @Override
+            public TargetConfig getTargetConfig() {
+              return subConfig;
+            }
+          };
+
+      injector.getInstance(LFGenerator.class).doGenerate(res, fsa, subContext);
+      return subContext;
+    }
+  }
+
   /**
    * Process command-line arguments passed on to the generator.
    *
@@ -525,15 +621,15 @@ public class FedGenerator {
       for (PortInstance output : child.outputs) {
         for (SendRange srcRange : output.getDependentPorts()) {
           for (RuntimeRange<PortInstance> dstRange : srcRange.destinations) {
-            MixedRadixInt srcID = srcRange.startMR();
-            MixedRadixInt dstID = dstRange.startMR();
+            // The source wraps around to its start to multicast.
+            MixedRadixInt.Cursor srcID = srcRange.cursor();
+            MixedRadixInt.Cursor dstID = dstRange.cursor();
             int dstCount = 0;
-            int srcCount = 0;
 
             while (dstCount++ < dstRange.width) {
-              int srcChannel = srcID.getDigits().get(0);
+              int srcChannel = srcID.getDigit(0);
               int srcBank = srcID.get(1);
-              int dstChannel = dstID.getDigits().get(0);
+              int dstChannel = dstID.getDigit(0);
               int dstBank = dstID.get(1);
 
               FederateInstance srcFederate =
@@ -584,12 +680,8 @@ public class FedGenerator {
                 }
               }
 
-              dstID.increment();
-              srcID.increment();
-              srcCount++;
-              if (srcCount == srcRange.width) {
-                srcID = srcRange.startMR(); // Multicast. Start over.
-              }
+              dstID.next();
+              srcID.next();
             }
           }
         }
@@ -133,6 +133,12 @@ public class FederateInstance {
   /** The counter used to assign IDs to network senders. */
   public int networkIdSender = 0;
 
+  /** The counter used to assign IDs to network receivers. */
+  public int networkIdReceiver = 0;
+
+  /** The network sender reactors created for each connection that originates in this federate. */
+  public Map<FedConnectionInstance, Reactor> networkSenderReactors = new HashMap<>();
+
   /**
    * Map from the federates that this federate receives messages from to the delays on connections
    * from that federate. The delay set may include null, meaning that there is a connection from the
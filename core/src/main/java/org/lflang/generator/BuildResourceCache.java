@@ -0,0 +1,221 @@
+package org.lflang.generator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.lflang.lf.Import;
+import org.lflang.lf.ImportedReactor;
+import org.lflang.lf.LfPackage;
+import org.lflang.lf.Model;
+
+/**
+ * A resource set that is reused by the builds that the language server or the lfc daemon performs
+ * during a session, so that a file and its imports are not parsed anew for every build.
+ *
+ * <p>Before a build, every file whose text on disk differs from the text it was parsed from is
+ * discarded. After the build, every resource whose AST was modified (code generators transform the
+ * AST) and every resource that was only loaded during code generation is discarded. Whenever a
+ * resource is discarded, so are the resources that import it, directly or transitively, because
+ * their cross-references point into the discarded AST. If more than {@link #CAPACITY} resources
+ * remain, the least recently used ones are discarded as well.
+ *
+ * <p>The resource set is not thread-safe. A build must {@link #tryAcquire()} it and {@link
+ * #release(Resource)} it once it is done.
+ */
+public class BuildResourceCache {
+
+  /** The maximum number of resources that are retained between builds. */
+  public static final int CAPACITY = 64;
+
+  /** The resource set that is shared by the builds. */
+  private final ResourceSet resourceSet;
+
+  /**
+   * The hashes of the texts that the retained resources were parsed from, by URI, in least recently
+   * used order.
+   */
+  private final Map<URI, String> hashes = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The lock that is held by the build that currently uses the resource set. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Create a cache that uses the given resource set.
+   *
+   * @param resourceSet A resource set that is not used by anyone else.
+   */
+  public BuildResourceCache(ResourceSet resourceSet) {
+    this.resourceSet = resourceSet;
+  }
+
+  /** Acquire the cache for a build and return true, or return false if another build holds it. */
+  public boolean tryAcquire() {
+    return lock.tryLock();
+  }
+
+  /**
+   * Return the resource at the given URI with all its imports loaded, parsing only the files whose
+   * text changed since they were last parsed. The cache must have been acquired.
+   *
+   * @param uri The URI of a Lingua Franca file.
+   */
+  public Resource getResource(URI uri) {
+    List<Resource> changed = new ArrayList<>();
+    for (Resource resource : resourceSet.getResources()) {
+      String hash = hashes.get(resource.getURI());
+      if (hash == null || !hash.equals(hashOfFile(resource.getURI()))) {
+        changed.add(resource);
+      }
+    }
+    discard(changed);
+
+    Resource root = resourceSet.getResource(uri, true);
+    EcoreUtil.resolveAll(resourceSet);
+    for (Resource resource : resourceSet.getResources()) {
+      if (!hashes.containsKey(resource.getURI())) {
+        String hash = hashOfParsedText(resource);
+        if (hash != null) hashes.put(resource.getURI(), hash);
+      }
+      resource.setTrackingModification(true);
+    }
+    return root;
+  }
+
+  /**
+   * Discard the resources that were modified or loaded during the build of the given resource,
+   * mark the resources that it imports as recently used, and release the cache.
+   *
+   * @param root The resource that was built, or null if there is none.
+   */
+  public void release(Resource root) {
+    try {
+      List<Resource> outdated = new ArrayList<>();
+      for (Resource resource : resourceSet.getResources()) {
+        if (!resource.isTrackingModification() || resource.isModified()) {
+          outdated.add(resource);
+        }
+      }
+      if (root != null && root.getResourceSet() == resourceSet) {
+        // Looking up the hashes marks the resources as recently used.
+        for (Resource resource : importClosure(root)) {
+          hashes.get(resource.getURI());
+        }
+      }
+      discard(outdated);
+      List<Resource> eldest = new ArrayList<>();
+      int excess = resourceSet.getResources().size() - CAPACITY;
+      for (URI uri : hashes.keySet()) {
+        if (eldest.size() >= excess) break;
+        Resource resource = resourceSet.getResource(uri, false);
+        if (resource != null) eldest.add(resource);
+      }
+      discard(eldest);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Unload the given resources and all resources that import them. */
+  private void discard(List<Resource> resources) {
+    if (resources.isEmpty()) return;
+    Map<Resource, Set<Resource>> importers = new HashMap<>();
+    for (Resource resource : List.copyOf(resourceSet.getResources())) {
+      for (Resource imported : imports(resource)) {
+        importers.computeIfAbsent(imported, it -> new HashSet<>()).add(resource);
+      }
+    }
+    Set<Resource> discarded = new HashSet<>(resources);
+    Deque<Resource> pending = new ArrayDeque<>(resources);
+    while (!pending.isEmpty()) {
+      for (Resource importer : importers.getOrDefault(pending.pop(), Set.of())) {
+        if (discarded.add(importer)) pending.push(importer);
+      }
+    }
+    for (Resource resource : discarded) {
+      hashes.remove(resource.getURI());
+      resource.unload();
+      resourceSet.getResources().remove(resource);
+    }
+  }
+
+  /** Return the given resource and all resources that it imports, directly or transitively. */
+  private Set<Resource> importClosure(Resource root) {
+    Set<Resource> closure = new HashSet<>();
+    Deque<Resource> pending = new ArrayDeque<>(List.of(root));
+    while (!pending.isEmpty()) {
+      Resource resource = pending.pop();
+      if (closure.add(resource)) pending.addAll(imports(resource));
+    }
+    return closure;
+  }
+
+  /**
+   * Return the resources that define the reactors that the given resource imports. Imports that
+   * have not been resolved yet are ignored.
+   */
+  private static Set<Resource> imports(Resource resource) {
+    Set<Resource> result = new HashSet<>();
+    if (!resource.getContents().isEmpty() && resource.getContents().get(0) instanceof Model model) {
+      for (Import i : model.getImports()) {
+        for (ImportedReactor reactor : i.getReactorClasses()) {
+          var definition =
+              (EObject) reactor.eGet(LfPackage.Literals.IMPORTED_REACTOR__REACTOR_CLASS, false);
+          if (definition != null && !definition.eIsProxy() && definition.eResource() != null) {
+            result.add(definition.eResource());
+          }
+        }
+      }
+    }
+    result.remove(resource);
+    return result;
+  }
+
+  /** Return the hash of the text that the given resource was parsed from, or null if unknown. */
+  private static String hashOfParsedText(Resource resource) {
+    if (resource.getContents().isEmpty()) return null;
+    ICompositeNode node = NodeModelUtils.getNode(resource.getContents().get(0));
+    return node == null ? null : hash(node.getRootNode().getText());
+  }
+
+  /** Return the hash of the text of the file at the given URI, or null if it cannot be read. */
+  private static String hashOfFile(URI uri) {
+    if (!uri.isFile()) return null;
+    try {
+      return hash(Files.readString(Path.of(uri.toFileString()), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Return a hash of the given text. */
+  private static String hash(String text) {
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.lflang.generator;
+
+import static org.lflang.generator.IntegratedBuilder.COMPILED_PERCENT_PROGRESS;
+import static org.lflang.generator.IntegratedBuilder.GENERATED_PERCENT_PROGRESS;
+
+import java.util.regex.Pattern;
+import org.lflang.util.LFCommand;
+
+/**
+ * Reports the progress of a build with CMake to a generator context while the build runs. The
+ * build system that CMake generates prints lines such as {@code [ 42%] Building C object ...} to
+ * the standard output, and the compiler prints its diagnostics to the standard error. The progress
+ * is scaled to the part of the build that follows code generation.
+ */
+public class CMakeProgressReporter {
+
+  /** A line that reports the progress of the build. */
+  private static final Pattern PROGRESS = Pattern.compile("\\[\\s*(\\d{1,3})%]\\s*(.*)");
+
+  /** A line that starts a diagnostic of the compiler that is an error. */
+  private static final Pattern ERROR = Pattern.compile(".*:\\s*(fatal )?error:.*");
+
+  private final LFGeneratorContext context;
+
+  /** The last percentage that the build reported. */
+  private int percentage = 0;
+
+  /** The last step that the build reported. */
+  private String step = "";
+
+  /** The number of errors that the compiler reported so far. */
+  private int errors = 0;
+
+  public CMakeProgressReporter(LFGeneratorContext context) {
+    this.context = context;
+  }
+
+  /** Report the progress of the given command while it runs. */
+  public void attachTo(LFCommand command) {
+    command.setOutputHandler(this::acceptOutput);
+    command.setErrorHandler(this::acceptError);
+  }
+
+  /** Report the progress that the given line of standard output announces, if any. */
+  private synchronized void acceptOutput(String line) {
+    var matcher = PROGRESS.matcher(line.strip());
+    if (!matcher.matches()) return;
+    percentage = Math.min(100, Integer.parseInt(matcher.group(1)));
+    step = matcher.group(2);
+    report();
+  }
+
+  /** Count the given line of standard error if it starts an error. */
+  private synchronized void acceptError(String line) {
+    if (!ERROR.matcher(line).matches()) return;
+    errors++;
+    report();
+  }
+
+  private void report() {
+    var message = new StringBuilder("Compiling... ").append(step);
+    if (errors > 0) {
+      message.append(" (").append(errors).append(errors == 1 ? " error)" : " errors)");
+    }
+    context.reportProgress(
+        message.toString(),
+        GENERATED_PERCENT_PROGRESS
+            + (COMPILED_PERCENT_PROGRESS - GENERATED_PERCENT_PROGRESS) * percentage / 100);
+  }
+}
@@ -4,7 +4,12 @@ import static org.lflang.generator.c.CMixedRadixGenerator.*;
 import static org.lflang.util.StringUtil.joinObjects;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import org.eclipse.emf.common.CommonPlugin;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
@@ -17,6 +22,11 @@ import org.lflang.util.FileUtil;
  * Helper class for printing code with indentation. This class is backed by a StringBuilder and is
  * used to accumulate code to be printed to a file. Its main function is to handle indentation.
  *
+ * <p>For large files, a builder can instead write its code to disk as it is produced, either
+ * directly to the file that it generates (see {@link #streamTo(Path)}) or to a temporary file from
+ * which it is later copied into another builder (see {@link #spooled()}). Such a builder only keeps
+ * a bounded amount of code in memory, and its code can only be appended to.
+ *
  * @author Edward A. Lee
  * @author Peter Donovan
  */
@@ -34,10 +44,28 @@ public class CodeBuilder {
    * @param model The model code emitter.
    */
   public CodeBuilder(CodeBuilder model) {
+    model.checkInMemory();
     indentation = model.indentation;
     code.append(model);
   }
 
+  /**
+   * Return a new builder that keeps its code in a temporary file rather than in memory. Its code
+   * can only be used by appending it to another builder with {@link #pr(CodeBuilder)}, which
+   * deletes the temporary file and leaves the builder empty. If the code is not used, the temporary
+   * file must be deleted with {@link #discard()}.
+   */
+  public static CodeBuilder spooled() {
+    try {
+      Path file = Files.createTempFile("lf-", ".code");
+      var builder = new CodeBuilder();
+      builder.sink = new Sink(null, file);
+      return builder;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /////////////////////////////////////////////
   ///// Public methods.
 
@@ -47,6 +75,7 @@ public class CodeBuilder {
    * @return The code produced so far as a String.
    */
   public String getCode() {
+    checkInMemory();
     return code.toString();
   }
 
@@ -62,11 +91,13 @@ public class CodeBuilder {
    * @param text The text.
    */
   public void insert(int position, String text) {
+    checkInMemory();
     code.insert(position, text);
   }
 
   /** Return the length of the code in characters. */
   public int length() {
+    checkInMemory();
     return code.length();
   }
 
@@ -93,6 +124,38 @@ public class CodeBuilder {
     for (String line : (Iterable<? extends String>) () -> text.toString().lines().iterator()) {
       code.append(indentation).append(line).append("\n");
     }
+    if (sink != null && code.length() >= BUFFER_SIZE) flush();
+  }
+
+  /**
+   * Append the code of the given builder at the current indentation level. This is equivalent to
+   * {@code pr(other.toString())}, but also works if the other builder is {@link #spooled()}, in
+   * which case the code is moved rather than copied: the other builder is empty afterwards.
+   */
+  public void pr(CodeBuilder other) {
+    if (other.sink == null) {
+      pr(other.code);
+      return;
+    }
+    if (other.sink.target != null) {
+      throw new IllegalStateException("The code is streamed to " + other.sink.target);
+    }
+    other.flush();
+    try {
+      other.sink.writer.close();
+      try (var reader = Files.newBufferedReader(other.sink.file, StandardCharsets.UTF_8)) {
+        String line = reader.readLine();
+        if (line == null) pr("");
+        for (; line != null; line = reader.readLine()) {
+          code.append(indentation).append(line).append("\n");
+          if (sink != null && code.length() >= BUFFER_SIZE) flush();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      other.discard();
+    }
   }
 
   /**
@@ -150,27 +213,6 @@ public class CodeBuilder {
     pr("// " + comment);
   }
 
-  /**
-   * Remove all lines that start with the specified prefix and return a new CodeBuilder with the
-   * result.
-   *
-   * @param prefix The prefix.
-   */
-  public CodeBuilder removeLines(String prefix) {
-    String separator = "\n";
-    String[] lines = toString().split(separator);
-
-    CodeBuilder builder = new CodeBuilder();
-
-    for (String line : lines) {
-      String trimmedLine = line.trim();
-      if (!trimmedLine.startsWith(prefix)) {
-        builder.pr(line);
-      }
-    }
-    return builder;
-  }
-
   /**
    * Start a scoped block, which is a section of code surrounded by curley braces and indented. This
    * must be followed by an {@link #endScopedBlock()}.
@@ -539,6 +581,7 @@ public class CodeBuilder {
   /** Return the code as a string. */
   @Override
   public String toString() {
+    checkInMemory();
     return code.toString();
   }
 
@@ -548,38 +591,146 @@ public class CodeBuilder {
   }
 
   /**
-   * Write the text to a file.
+   * Write the text to a file. The file is not touched if it already has this content.
+   *
+   * <p>If the code is {@link #streamTo(Path) streamed} to the given file, then this completes the
+   * file and ends the streaming, after which this builder is empty.
    *
    * @param path The file to write the code to.
    */
   public CodeMap writeToFile(String path) throws IOException {
-    String s = code.toString();
+    if (sink != null) {
+      if (sink.target == null || !sink.target.equals(Path.of(path))) {
+        throw new IllegalStateException("The code is not streamed to " + path);
+      }
+      flush();
+      sink.writer.close();
+      if (Files.isRegularFile(sink.target) && Files.mismatch(sink.file, sink.target) == -1) {
+        Files.delete(sink.file);
+      } else {
+        Files.move(sink.file, sink.target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      CodeMap ret = sink.codeMap.build(sink.target);
+      sink = null;
+      return ret;
+    }
+    var codeMap = new CodeMap.Builder();
     int lineNumber = 1;
     StringBuilder out = new StringBuilder();
-    for (var line : (Iterable<String>) () -> s.lines().iterator()) {
-      lineNumber++;
-      if (line.contains(END_SOURCE_LINE_NUMBER_TAG) && !path.endsWith(".ino")) {
-        out.append("#line ")
-            .append(lineNumber)
-            .append(" \"")
-            .append(path.replace("\\", "\\\\"))
-            .append("\"");
+    for (var line : (Iterable<String>) () -> code.toString().lines().iterator()) {
+      out.append(codeMap.processLine(resolveLineDirective(line, ++lineNumber, path))).append('\n');
+    }
+    String generatedCode = out.toString();
+    FileUtil.writeToFile(generatedCode, Path.of(path), true);
+    return codeMap.build(generatedCode);
+  }
+
+  /**
+   * Write the code of this builder to the given file as it is produced, instead of keeping it in
+   * memory. The code that was produced so far is written right away. The code is processed as by
+   * {@link #writeToFile(String)}, which must be invoked with the same path to complete the file.
+   * Until then, the code is written to a temporary file in the same directory, and the code of this
+   * builder can only be appended to.
+   *
+   * @param path The file to write the code to.
+   */
+  public void streamTo(Path path) throws IOException {
+    if (sink != null) throw new IllegalStateException("The code is already written to disk.");
+    Files.createDirectories(path.getParent());
+    sink = new Sink(path, Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp"));
+    flush();
+  }
+
+  /**
+   * Stop writing the code to disk and delete what was written so far, if the code is streamed or
+   * spooled. This is meant for generation that fails before the file is complete, and for spooled
+   * code that is not used.
+   */
+  public void discard() {
+    if (sink == null) return;
+    try {
+      sink.writer.close();
+      Files.deleteIfExists(sink.file);
+    } catch (IOException e) {
+      // A streamed file is overwritten by the next successful generation.
+    }
+    code.setLength(0);
+    sink = null;
+  }
+
+  /**
+   * If the given line marks the end of code from the LF file, then return a line directive that
+   * refers to the given line of the generated file. Otherwise, return the line as is.
+   */
+  private static String resolveLineDirective(String line, int lineNumber, String path) {
+    if (line.contains(END_SOURCE_LINE_NUMBER_TAG) && !path.endsWith(".ino")) {
+      return "#line " + lineNumber + " \"" + path.replace("\\", "\\\\") + "\"";
+    }
+    return line;
+  }
+
+  /** Write the buffered code to the sink and clear the buffer. */
+  private void flush() {
+    try {
+      if (sink.target == null) {
+        sink.writer.append(code);
       } else {
-        out.append(line);
+        String path = sink.target.toString();
+        for (var line : (Iterable<String>) () -> code.toString().lines().iterator()) {
+          sink.writer
+              .append(sink.codeMap.processLine(resolveLineDirective(line, ++sink.lines, path)))
+              .append('\n');
+        }
       }
-      out.append('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    code.setLength(0);
+  }
+
+  /** Throw an exception if the code of this builder is not held in memory. */
+  private void checkInMemory() {
+    if (sink != null) {
+      throw new IllegalStateException("The code is written to disk and cannot be accessed.");
+    }
+  }
+
+  /** The file that the code of a builder is written to as it is produced. */
+  private static class Sink {
+
+    /** The file that is generated, or null if the code is spooled to a temporary file. */
+    final Path target;
+
+    /** The file that the code is written to. */
+    final Path file;
+
+    final Writer writer;
+
+    /** The correspondences in the lines written so far. */
+    final CodeMap.Builder codeMap = new CodeMap.Builder();
+
+    /** The number of lines written so far, plus one. */
+    int lines = 1;
+
+    Sink(Path target, Path file) throws IOException {
+      this.target = target;
+      this.file = file;
+      this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
     }
-    CodeMap ret = CodeMap.fromGeneratedCode(out.toString());
-    FileUtil.writeToFile(ret.getGeneratedCode(), Path.of(path), true);
-    return ret;
   }
 
   ////////////////////////////////////////////
   //// Private fields.
 
+  /** The number of characters that are buffered before they are written to the sink, if any. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
   /** Place to store the code. */
   private final StringBuilder code = new StringBuilder();
 
   /** Current indentation. */
   private String indentation = "";
+
+  /** Where the code is written to as it is produced, or null if it is held in memory. */
+  private Sink sink = null;
 }
@@ -1,12 +1,18 @@
 package org.lflang.generator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.eclipse.emf.common.util.URI;
@@ -180,17 +186,17 @@ public class CodeMap {
   }
 
   /** The content of the generated file represented by this. */
-  private final String generatedCode;
+  private final Supplier<String> generatedCode;
   /**
-   * A mapping from Lingua Franca source paths to mappings from ranges in the generated file
-   * represented by this to ranges in Lingua Franca files.
+   * The offsets in the generated code at which its lines start, followed by the length of the
+   * generated code.
    */
-  private final Map<Path, NavigableMap<Range, Range>> map;
+  private final int[] lineOffsets;
   /**
-   * A mapping from Lingua Franca source paths to mappings from ranges in the generated file
-   * represented by this to whether those ranges are copied verbatim from the source.
+   * A mapping from Lingua Franca source paths to the correspondences between ranges in the
+   * generated file represented by this and ranges in those Lingua Franca files.
    */
-  private final Map<Path, Map<Range, Boolean>> isVerbatimByLfSourceByRange;
+  private final Map<Path, Correspondences> map;
 
   /* ------------------------- PUBLIC METHODS -------------------------- */
 
@@ -204,18 +210,13 @@ public class CodeMap {
    * @return a CodeMap documenting the provided code
    */
   public static CodeMap fromGeneratedCode(String internalGeneratedCode) {
-    Map<Path, NavigableMap<Range, Range>> map = new HashMap<>();
-    Map<Path, Map<Range, Boolean>> isVerbatimByLfSourceByRange = new HashMap<>();
+    Builder builder = new Builder();
     StringBuilder generatedCode = new StringBuilder();
     Iterator<String> it = internalGeneratedCode.lines().iterator();
-    int zeroBasedLine = 0;
     while (it.hasNext()) {
-      generatedCode
-          .append(
-              processGeneratedLine(it.next(), zeroBasedLine++, map, isVerbatimByLfSourceByRange))
-          .append('\n');
+      generatedCode.append(builder.processLine(it.next())).append('\n');
     }
-    return new CodeMap(generatedCode.toString(), map, isVerbatimByLfSourceByRange);
+    return builder.build(generatedCode.toString());
   }
 
   /**
@@ -224,7 +225,7 @@ public class CodeMap {
    * @return the generated code (without Correspondences)
    */
   public String getGeneratedCode() {
-    return generatedCode;
+    return generatedCode.get();
   }
 
   /**
@@ -244,19 +245,16 @@ public class CodeMap {
    * @return the position in {@code lfFile} corresponding to {@code generatedFilePosition}
    */
   public Position adjusted(Path lfFile, Position generatedFilePosition) {
-    NavigableMap<Range, Range> mapOfInterest = map.get(lfFile);
-    Map<Range, Boolean> isVerbatimByRange = isVerbatimByLfSourceByRange.get(lfFile);
-    Map.Entry<Range, Range> nearestEntry =
-        mapOfInterest.floorEntry(Range.degenerateRange(generatedFilePosition));
-    if (nearestEntry == null) return Position.ORIGIN;
-    if (!isVerbatimByRange.get(nearestEntry.getKey())) {
-      return nearestEntry.getValue().getStartInclusive();
-    }
-    if (nearestEntry.getKey().contains(generatedFilePosition)) {
-      return nearestEntry
-          .getValue()
-          .getStartInclusive()
-          .plus(generatedFilePosition.minus(nearestEntry.getKey().getStartInclusive()));
+    Correspondences correspondences = map.get(lfFile);
+    if (correspondences == null) return Position.ORIGIN;
+    long position = pack(generatedFilePosition);
+    int nearest = correspondences.floor(position);
+    if (nearest < 0) return Position.ORIGIN;
+    Position lfStart = unpack(correspondences.lfStarts[nearest]);
+    if (!correspondences.verbatim.get(nearest)) return lfStart;
+    if (position < correspondences.generatedEnds[nearest]) {
+      return lfStart.plus(
+          generatedFilePosition.minus(unpack(correspondences.generatedStarts[nearest])));
     }
     return Position.ORIGIN;
   }
@@ -276,18 +274,97 @@ public class CodeMap {
   }
 
   public int firstNonWhitespace(int line) {
-    return getGeneratedCode().lines().skip(line - 1).findFirst().orElse("").lastIndexOf(" ") + 1;
+    return getLine(line).lastIndexOf(" ") + 1;
+  }
+
+  /**
+   * Returns the given line of the generated code without its line terminator, or the empty string
+   * if there is no such line.
+   *
+   * @param line a one-based line number
+   */
+  public String getLine(int line) {
+    if (line < 1 || line >= lineOffsets.length) return "";
+    return getGeneratedCode().substring(lineOffsets[line - 1], lineOffsets[line] - 1);
+  }
+
+  /**
+   * Builds a {@code CodeMap} from generated code that is processed one line at a time, so that the
+   * generated code does not have to be held in memory as a whole.
+   */
+  public static class Builder {
+
+    private final Map<Path, Correspondences> map = new HashMap<>();
+    private int[] lineOffsets = new int[64];
+    private int zeroBasedLine = 0;
+
+    /**
+     * Record the Correspondences in the next line of generated code and return the line with all
+     * Correspondences removed.
+     *
+     * @param line the next line of generated code, without line terminator
+     */
+    public String processLine(String line) {
+      String cleanedLine = processGeneratedLine(line, zeroBasedLine, map);
+      if (zeroBasedLine + 1 >= lineOffsets.length) {
+        lineOffsets = Arrays.copyOf(lineOffsets, lineOffsets.length * 2);
+      }
+      lineOffsets[zeroBasedLine + 1] = lineOffsets[zeroBasedLine] + cleanedLine.length() + 1;
+      zeroBasedLine++;
+      return cleanedLine;
+    }
+
+    /**
+     * Return a CodeMap of the processed lines.
+     *
+     * @param generatedCode the processed lines, each followed by a newline
+     */
+    public CodeMap build(String generatedCode) {
+      return build(() -> generatedCode);
+    }
+
+    /**
+     * Return a CodeMap of the processed lines, which have been written to the given file. The
+     * generated code is read from the file when it is requested, and is retained only as long as
+     * memory permits.
+     *
+     * @param file the file that contains the processed lines
+     */
+    public CodeMap build(Path file) {
+      return build(
+          new Supplier<>() {
+            private SoftReference<String> content = new SoftReference<>(null);
+
+            @Override
+            public synchronized String get() {
+              String result = content.get();
+              if (result == null) {
+                try {
+                  result = Files.readString(file);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+                content = new SoftReference<>(result);
+              }
+              return result;
+            }
+          });
+    }
+
+    private CodeMap build(Supplier<String> generatedCode) {
+      map.values().forEach(Correspondences::sort);
+      return new CodeMap(
+          generatedCode, Arrays.copyOf(lineOffsets, zeroBasedLine + 1), new HashMap<>(map));
+    }
   }
 
   /* ------------------------- PRIVATE METHODS ------------------------- */
 
   private CodeMap(
-      String generatedCode,
-      Map<Path, NavigableMap<Range, Range>> map,
-      Map<Path, Map<Range, Boolean>> isVerbatimByLfSourceByRange) {
+      Supplier<String> generatedCode, int[] lineOffsets, Map<Path, Correspondences> map) {
     this.generatedCode = generatedCode;
+    this.lineOffsets = lineOffsets;
     this.map = map;
-    this.isVerbatimByLfSourceByRange = isVerbatimByLfSourceByRange;
   }
 
   /**
@@ -300,26 +377,208 @@ public class CodeMap {
    * @return the line of generated code with all Correspondences removed
    */
   private static String processGeneratedLine(
-      String line,
-      int zeroBasedLineIndex,
-      Map<Path, NavigableMap<Range, Range>> map,
-      Map<Path, Map<Range, Boolean>> isVerbatimByLfSourceByRange) {
-    Matcher matcher = Correspondence.PATTERN.matcher(line);
-    StringBuilder cleanedLine = new StringBuilder();
+      String line, int zeroBasedLineIndex, Map<Path, Correspondences> map) {
+    int start = line.indexOf(CORRESPONDENCE_PREFIX);
+    if (start < 0) return line;
+    StringBuilder cleanedLine = new StringBuilder(line.length());
     int lastEnd = 0;
-    while (matcher.find()) {
-      cleanedLine.append(line, lastEnd, matcher.start());
-      Correspondence c =
-          Correspondence.fromString(
-              matcher.group(), Position.fromZeroBased(zeroBasedLineIndex, cleanedLine.length()));
-      if (!map.containsKey(c.path)) map.put(c.path, new TreeMap<>());
-      map.get(c.path).put(c.generatedRange, c.lfRange);
-      if (!isVerbatimByLfSourceByRange.containsKey(c.path))
-        isVerbatimByLfSourceByRange.put(c.path, new HashMap<>());
-      isVerbatimByLfSourceByRange.get(c.path).put(c.generatedRange, c.verbatim);
-      lastEnd = matcher.end();
+    while (start >= 0) {
+      int end = scanCorrespondence(line, start, zeroBasedLineIndex, cleanedLine, lastEnd, map);
+      if (end >= 0) lastEnd = end;
+      start = line.indexOf(CORRESPONDENCE_PREFIX, end >= 0 ? end : start + 1);
     }
-    cleanedLine.append(line.substring(lastEnd));
+    cleanedLine.append(line, lastEnd, line.length());
     return cleanedLine.toString();
   }
+
+  /**
+   * Parses the serialized Correspondence at index {@code start} of {@code line}, which is formatted
+   * like the output of {@link Correspondence#toString()}. If there is one, appends the code between
+   * {@code lastEnd} and the Correspondence to {@code cleanedLine}, records the Correspondence in
+   * {@code map}, and returns the index that follows it; otherwise, returns -1.
+   */
+  private static int scanCorrespondence(
+      String line,
+      int start,
+      int zeroBasedLineIndex,
+      StringBuilder cleanedLine,
+      int lastEnd,
+      Map<Path, Correspondences> map) {
+    var scanner = new Scanner(line, start + CORRESPONDENCE_PREFIX.length());
+    long lfStart = scanner.range();
+    long lfEnd = scanner.rangeEnd;
+    if (lfStart < 0 || !scanner.expect(" -> ")) return -1;
+    long generatedStart = scanner.range();
+    long generatedEnd = scanner.rangeEnd;
+    if (generatedStart < 0 || !scanner.expect(" (verbatim=")) return -1;
+    boolean verbatim = scanner.expect("true");
+    if (!verbatim && !scanner.expect("false")) return -1;
+    if (!scanner.expect("; src=")) return -1;
+    int pathEnd = line.indexOf(")*/", scanner.index);
+    if (pathEnd < 0) return -1;
+    Path path = Path.of(line.substring(scanner.index, pathEnd));
+
+    cleanedLine.append(line, lastEnd, start);
+    long relativeTo = pack(Position.fromZeroBased(zeroBasedLineIndex, cleanedLine.length()));
+    map.computeIfAbsent(path, it -> new Correspondences())
+        .add(generatedStart + relativeTo, generatedEnd + relativeTo, lfStart, lfEnd, verbatim);
+    return pathEnd + ")*/".length();
+  }
+
+  /** The text that starts a serialized Correspondence. */
+  private static final String CORRESPONDENCE_PREFIX = "/*Correspondence: ";
+
+  /**
+   * Returns {@code position} packed into a long with its line in the upper and its column in the
+   * lower 32 bits, so that packed positions compare like positions and add like {@link
+   * Position#plus(Position)}.
+   */
+  private static long pack(Position position) {
+    return ((long) position.getZeroBasedLine() << 32) + position.getZeroBasedColumn();
+  }
+
+  /** Returns the position that was packed by {@link #pack(Position)}. */
+  private static Position unpack(long position) {
+    return Position.fromZeroBased((int) (position >>> 32), (int) position);
+  }
+
+  /** A scanner for the ranges of a serialized Correspondence. */
+  private static class Scanner {
+    private final String text;
+    private int index;
+    /** The end of the range that was scanned last. */
+    private long rangeEnd;
+
+    Scanner(String text, int index) {
+      this.text = text;
+      this.index = index;
+    }
+
+    /** Skips {@code expected} and returns true if the text continues with it. */
+    boolean expect(String expected) {
+      if (!text.startsWith(expected, index)) return false;
+      index += expected.length();
+      return true;
+    }
+
+    /**
+     * Scans a range formatted like the output of {@link Range#toString()}, stores its packed end in
+     * {@link #rangeEnd}, and returns its packed start, or returns -1 if there is no range.
+     */
+    long range() {
+      if (!expect("Range: [")) return -1;
+      long start = position();
+      if (start < 0 || !expect(", ")) return -1;
+      rangeEnd = position();
+      if (rangeEnd < 0 || !expect(")")) return -1;
+      return start;
+    }
+
+    /** Scans a position formatted like the output of {@link Position#toString()}. */
+    private long position() {
+      if (!expect("(")) return -1;
+      int line = number();
+      if (line < 0 || !expect(", ")) return -1;
+      int column = number();
+      if (column < 0 || !expect(")")) return -1;
+      return ((long) line << 32) + column;
+    }
+
+    private int number() {
+      int start = index;
+      while (index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+        index++;
+      }
+      return index == start ? -1 : Integer.parseInt(text.substring(start, index));
+    }
+  }
+
+  /**
+   * The correspondences between ranges in a generated file and ranges in one Lingua Franca file,
+   * stored as packed positions (see {@link #pack(Position)}) in parallel arrays that are sorted by
+   * the start of the generated range.
+   */
+  private static class Correspondences {
+    private long[] generatedStarts = new long[8];
+    private long[] generatedEnds = new long[8];
+    private long[] lfStarts = new long[8];
+    private long[] lfEnds = new long[8];
+    private final BitSet verbatim = new BitSet();
+    private int size = 0;
+    private boolean sorted = true;
+
+    void add(long generatedStart, long generatedEnd, long lfStart, long lfEnd, boolean verbatim) {
+      if (size == generatedStarts.length) {
+        generatedStarts = Arrays.copyOf(generatedStarts, size * 2);
+        generatedEnds = Arrays.copyOf(generatedEnds, size * 2);
+        lfStarts = Arrays.copyOf(lfStarts, size * 2);
+        lfEnds = Arrays.copyOf(lfEnds, size * 2);
+      }
+      if (size > 0 && generatedStart <= generatedStarts[size - 1]) sorted = false;
+      generatedStarts[size] = generatedStart;
+      generatedEnds[size] = generatedEnd;
+      lfStarts[size] = lfStart;
+      lfEnds[size] = lfEnd;
+      this.verbatim.set(size, verbatim);
+      size++;
+    }
+
+    /**
+     * Sorts the correspondences by the start of their generated range. Of several correspondences
+     * with the same start, the generated range of the first one and the rest of the last one that
+     * was added are kept, like a {@code TreeMap} keyed by the start of the generated range would.
+     */
+    void sort() {
+      if (sorted) return;
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) order[i] = i;
+      // The sort is stable, so the last one that was added comes last among equal starts.
+      Arrays.sort(order, Comparator.comparingLong(i -> generatedStarts[i]));
+      long[] newGeneratedStarts = new long[size];
+      long[] newGeneratedEnds = new long[size];
+      long[] newLfStarts = new long[size];
+      long[] newLfEnds = new long[size];
+      BitSet newVerbatim = new BitSet();
+      int newSize = 0;
+      for (int k = 0; k < size; k++) {
+        int i = order[k];
+        if (newSize > 0 && newGeneratedStarts[newSize - 1] == generatedStarts[i]) {
+          newSize--;
+        } else {
+          newGeneratedStarts[newSize] = generatedStarts[i];
+          newGeneratedEnds[newSize] = generatedEnds[i];
+        }
+        newLfStarts[newSize] = lfStarts[i];
+        newLfEnds[newSize] = lfEnds[i];
+        newVerbatim.set(newSize, verbatim.get(i));
+        newSize++;
+      }
+      generatedStarts = newGeneratedStarts;
+      generatedEnds = newGeneratedEnds;
+      lfStarts = newLfStarts;
+      lfEnds = newLfEnds;
+      verbatim.clear();
+      verbatim.or(newVerbatim);
+      size = newSize;
+      sorted = true;
+    }
+
+    /**
+     * Returns the index of the correspondence with the greatest generated start that is at most
+     * {@code position}, or -1 if there is none.
+     */
+    int floor(long position) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (generatedStarts[mid] <= position) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return high;
+    }
+  }
 }
@@ -0,0 +1,400 @@
+package org.lflang.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.lflang.MessageReporter;
+import org.lflang.graph.InstantiationGraph;
+import org.lflang.lf.Model;
+import org.lflang.lf.Reactor;
+import org.lflang.util.Profiler;
+
+/**
+ * Cache of elaborated {@link ReactorInstance} trees, so that validation, diagram synthesis, and
+ * code generation do not each elaborate the same program from scratch.
+ *
+ * <p>There is one cache per resource set, which is attached to it as an adapter and obtained with
+ * {@link #of(Resource)}. Hence, the cache is shared only by the consumers of the same resources,
+ * such as the validator and the diagram synthesis of the language server, and it does not keep the
+ * ASTs of a resource set alive after the resource set is discarded. Builds that run concurrently
+ * use separate resource sets and therefore separate caches.
+ *
+ * <p>An entry is identified by the URI of the resource that defines the top-level reactor and the
+ * position of that reactor in the resource. The name is not used because code generators name an
+ * unnamed main reactor after its file, after it may have been elaborated. An entry is only reused
+ * if the top-level reactor is still the same AST node, if it was elaborated with the same list of
+ * reactors, and if the text of every resource that defines one of these reactors hashes to the same
+ * value as at the time of elaboration. The text does not reflect changes that are made to the AST
+ * programmatically, so code that transforms the AST must call {@link #invalidate(Resource)}
+ * afterwards.
+ *
+ * <p>Trees obtained with {@link #get(Reactor, MessageReporter)} are shared and must be treated as
+ * read-only. Their cycles are computed before they are published. Code generators annotate the
+ * instances they generate code for, so they obtain their tree with {@link #take(Reactor, List,
+ * MessageReporter)}, which removes it from the cache.
+ *
+ * <p>The diagnostics that are reported during elaboration are recorded and reported again to every
+ * consumer that obtains a cached tree.
+ *
+ * <p>Independently of the trees, the cache retains a {@link ReactionInstanceGraph.Snapshot} of the
+ * most recent acyclic reaction graph of each top-level reactor. It is used by {@link
+ * #assignLevels(Reactor, ReactorInstance)} to reassign only the levels of reactions whose
+ * dependencies changed since then, for instance while a program is edited in the language server.
+ * Snapshots do not need to be invalidated because they only affect the cost of the assignment.
+ */
+public class ElaborationCache extends AdapterImpl {
+
+  /** The maximum number of trees that are retained. */
+  private static final int CAPACITY = 32;
+
+  /** The cached trees, in least recently used order. */
+  private final Map<Key, Elaboration> entries =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Elaboration> eldest) {
+          return size() > CAPACITY;
+        }
+      };
+
+  /** The snapshots of the most recent acyclic reaction graphs, in least recently used order. */
+  private final Map<Key, ReactionInstanceGraph.Snapshot> snapshots =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ReactionInstanceGraph.Snapshot> eldest) {
+          return size() > CAPACITY;
+        }
+      };
+
+  /** The number of lookups that were answered from the cache. */
+  private long hits = 0;
+
+  /** The number of lookups that required an elaboration. */
+  private long misses = 0;
+
+  /**
+   * Return the cache of the resource set of the given resource, creating it if needed. If the
+   * resource does not belong to a resource set, return a new cache that is not retained.
+   */
+  public static ElaborationCache of(Resource resource) {
+    ResourceSet resourceSet = resource == null ? null : resource.getResourceSet();
+    if (resourceSet == null) return new ElaborationCache();
+    var adapters = resourceSet.eAdapters();
+    synchronized (adapters) {
+      var cache = (ElaborationCache) EcoreUtil.getAdapter(adapters, ElaborationCache.class);
+      if (cache == null) {
+        cache = new ElaborationCache();
+        adapters.add(cache);
+      }
+      return cache;
+    }
+  }
+
+  @Override
+  public boolean isAdapterForType(Object type) {
+    return type == ElaborationCache.class;
+  }
+
+  /**
+   * Return a shared, fully elaborated instance of the given top-level reactor, elaborating it if
+   * there is no valid cached instance. The diagnostics of the elaboration are reported to the given
+   * reporter. The returned tree must not be modified.
+   *
+   * @param top The top-level reactor.
+   * @param reporter The reporter for diagnostics that arise during elaboration.
+   */
+  public ReactorInstance get(Reactor top, MessageReporter reporter) {
+    List<Reactor> reactors = elaborationOrder(top);
+    String hash = contentHash(top, reactors);
+    if (hash == null) {
+      count(false);
+      return elaborate(top, reporter, reactors);
+    }
+    Key key = keyOf(top);
+    Elaboration entry = lookup(key, top, reactors, hash, false);
+    if (entry != null) {
+      entry.reporter.replayTo(reporter);
+      return entry.instance;
+    }
+    var recorder = new RecordingReporter(reporter);
+    var instance = elaborate(top, recorder, reactors);
+    // Compute the cycles now so that later consumers only read the cached result. If the symbolic
+    // analysis cannot rule out cycles, then the runtime instances need levels anyway.
+    if (!instance.assignLevelsSymbolically().isAcyclic()) assignLevels(top, instance);
+    instance.getCycles();
+    synchronized (this) {
+      entries.put(key, new Elaboration(top, List.copyOf(reactors), hash, instance, recorder));
+    }
+    return instance;
+  }
+
+  /**
+   * Return an instance of the given top-level reactor for exclusive use by the caller. If a valid
+   * instance was cached, then it is removed from the cache and its diagnostics are reported to the
+   * given reporter. Otherwise, a new instance is elaborated, which is not cached.
+   *
+   * @param top The top-level reactor.
+   * @param reactors The reactors that determine the unique names of reactor classes.
+   * @param reporter The reporter for diagnostics that arise during elaboration.
+   */
+  public ReactorInstance take(Reactor top, List<Reactor> reactors, MessageReporter reporter) {
+    String hash = contentHash(top, reactors);
+    Elaboration entry = hash == null ? null : lookup(keyOf(top), top, reactors, hash, true);
+    if (entry == null) {
+      if (hash == null) count(false);
+      return elaborate(top, reporter, reactors);
+    }
+    entry.reporter.replayTo(reporter);
+    return entry.instance;
+  }
+
+  /**
+   * Assign levels to the runtime reaction instances of the given instance of the given top-level
+   * reactor, reusing the levels of the most recent acyclic reaction graph of the same top-level
+   * reactor where possible, and record the snapshot of the result for the next assignment. This
+   * has no effect on an instance whose levels have already been assigned.
+   *
+   * @param top The top-level reactor.
+   * @param instance An instance of {@code top}.
+   * @return The resulting graph, see {@link ReactorInstance#assignLevels()}.
+   */
+  public ReactionInstanceGraph assignLevels(Reactor top, ReactorInstance instance) {
+    Key key = keyOf(top);
+    ReactionInstanceGraph.Snapshot previous;
+    synchronized (this) {
+      previous = snapshots.get(key);
+    }
+    var graph = instance.assignLevels(previous);
+    Profiler.current().count("reused levels", graph.getNumReusedLevels());
+    if (graph.getSnapshot() != null) {
+      synchronized (this) {
+        snapshots.put(key, graph.getSnapshot());
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Discard the trees of all top-level reactors that are defined in the given resource or that were
+   * elaborated using a reactor defined in it. This must be invoked after the AST of the resource
+   * has been modified programmatically.
+   */
+  public synchronized void invalidate(Resource resource) {
+    entries
+        .values()
+        .removeIf(
+            entry ->
+                entry.top.eResource() == resource
+                    || entry.reactors.stream().anyMatch(it -> it.eResource() == resource));
+  }
+
+  /** Discard all cached trees and snapshots. The statistics are retained. */
+  public synchronized void clear() {
+    entries.clear();
+    snapshots.clear();
+  }
+
+  /** Return the number of cached trees. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Return the number of lookups that were answered from the cache. */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** Return the number of lookups that required an elaboration. */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    long total = hits + misses;
+    return String.format(
+        "%d hits, %d misses (%.1f%% hit rate), %d entries",
+        hits, misses, total == 0 ? 0.0 : 100.0 * hits / total, entries.size());
+  }
+
+  /**
+   * Return the reactors that a code generator elaborates the given top-level reactor with, namely
+   * the reactors it depends on in topological order.
+   */
+  public static List<Reactor> elaborationOrder(Reactor top) {
+    return new InstantiationGraph(top.eResource(), false).nodesInTopologicalOrder();
+  }
+
+  /**
+   * Return the entry for the given key if it is valid for the given reactor, list of reactors, and
+   * content hash, or null otherwise. An invalid entry is discarded.
+   *
+   * @param remove Whether to remove a valid entry from the cache.
+   */
+  private synchronized Elaboration lookup(
+      Key key, Reactor top, List<Reactor> reactors, String hash, boolean remove) {
+    Elaboration entry = entries.get(key);
+    if (entry != null
+        && (entry.top != top || !entry.reactors.equals(reactors) || !entry.hash.equals(hash))) {
+      entries.remove(key);
+      entry = null;
+    }
+    if (entry != null && remove) {
+      entries.remove(key);
+    }
+    count(entry != null);
+    return entry;
+  }
+
+  /** Elaborate the given top-level reactor and record the time spent in the current profiler. */
+  private static ReactorInstance elaborate(
+      Reactor top, MessageReporter reporter, List<Reactor> reactors) {
+    try (var span = Profiler.current().span("ReactorInstance")) {
+      return new ReactorInstance(top, reporter, reactors);
+    }
+  }
+
+  /** Update the statistics. */
+  private synchronized void count(boolean hit) {
+    Profiler.current().count(hit ? "elaboration cache hits" : "elaboration cache misses", 1);
+    if (hit) {
+      hits++;
+    } else {
+      misses++;
+    }
+  }
+
+  /**
+   * Return a hash of the text of the resources that define the given reactors, or null if the text
+   * of one of them is not available.
+   */
+  private static String contentHash(Reactor top, List<Reactor> reactors) {
+    Set<Resource> resources = new LinkedHashSet<>();
+    resources.add(top.eResource());
+    reactors.forEach(it -> resources.add(it.eResource()));
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+    for (Resource resource : resources) {
+      if (resource == null || resource.getContents().isEmpty()) return null;
+      ICompositeNode node = NodeModelUtils.getNode(resource.getContents().get(0));
+      if (node == null) return null;
+      digest.update(String.valueOf(resource.getURI()).getBytes(StandardCharsets.UTF_8));
+      digest.update(node.getText().getBytes(StandardCharsets.UTF_8));
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /** Return the key of the given top-level reactor. */
+  private static Key keyOf(Reactor top) {
+    int position = -1;
+    if (top.eContainer() instanceof Model model) {
+      position = model.getReactors().indexOf(top);
+    }
+    return new Key(top.eResource().getURI(), position);
+  }
+
+  /**
+   * Identification of a top-level reactor by the URI of its resource and its position among the
+   * reactors of the resource.
+   */
+  private record Key(URI resource, int position) {}
+
+  /** A cached tree and the circumstances of its elaboration. */
+  private record Elaboration(
+      Reactor top,
+      List<Reactor> reactors,
+      String hash,
+      ReactorInstance instance,
+      RecordingReporter reporter) {}
+
+  /**
+   * Reporter that forwards diagnostics to the reporter of the most recent consumer and records them
+   * so that they can be reported to later consumers.
+   */
+  private static class RecordingReporter implements MessageReporter {
+
+    /** The recorded diagnostics. */
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    /** The reporter of the most recent consumer. */
+    private MessageReporter delegate;
+
+    RecordingReporter(MessageReporter delegate) {
+      this.delegate = delegate;
+    }
+
+    /** Report all recorded diagnostics to the given reporter and forward future ones to it. */
+    synchronized void replayTo(MessageReporter reporter) {
+      delegate = reporter;
+      diagnostics.forEach(it -> it.reportTo(reporter));
+    }
+
+    @Override
+    public Stage2 at(Path file, Range range) {
+      return record(it -> it.at(file, range));
+    }
+
+    @Override
+    public Stage2 at(EObject node) {
+      return record(it -> it.at(node));
+    }
+
+    @Override
+    public Stage2 at(EObject node, EStructuralFeature feature) {
+      return record(it -> it.at(node, feature));
+    }
+
+    @Override
+    public Stage2 nowhere() {
+      return record(MessageReporter::nowhere);
+    }
+
+    @Override
+    public synchronized boolean getErrorsOccurred() {
+      return diagnostics.stream().anyMatch(it -> it.severity == DiagnosticSeverity.Error);
+    }
+
+    /** Return a {@link Stage2} that records and forwards diagnostics at the given position. */
+    private Stage2 record(Function<MessageReporter, Stage2> position) {
+      return (severity, message) -> {
+        synchronized (this) {
+          var diagnostic = new Diagnostic(position, severity, message);
+          diagnostics.add(diagnostic);
+          diagnostic.reportTo(delegate);
+        }
+      };
+    }
+  }
+
+  /** A diagnostic reported during elaboration. */
+  private record Diagnostic(
+      Function<MessageReporter, Stage2> position, DiagnosticSeverity severity, String message) {
+
+    /** Report this diagnostic to the given reporter. */
+    void reportTo(MessageReporter reporter) {
+      position.apply(reporter).report(severity, message);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.lflang.generator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Memo of the eventual destinations of ranges of ports, shared by all ports in the hierarchy of a
+ * top-level reactor. Without it, the destinations of a relay port are recomputed for every port
+ * upstream of it, which is quadratic in the depth of the hierarchy.
+ *
+ * <p>An entry is identified by the port, the start and width of the range, and the set of reactors
+ * whose banks the range interleaves, because the latter is reflected in the returned destinations
+ * if the port itself has dependent reactions. The cached lists are unmodifiable and shared, so the
+ * {@link SendRange}s they contain must not be mutated by callers.
+ *
+ * <p>The cache is held by the root {@link ReactorInstance} and is invalidated whenever the caches
+ * of any reactor or port in the hierarchy are cleared.
+ */
+public class EventualDestinationCache {
+
+  /** The memoized destinations. */
+  private final Map<Key, List<SendRange>> destinations = new HashMap<>();
+
+  /** The number of lookups that were answered from the cache. */
+  private long hits = 0;
+
+  /** The number of lookups that required a computation. */
+  private long misses = 0;
+
+  /**
+   * Return the eventual destinations of the given range, computing them with the given function if
+   * they are not cached yet. The function may itself consult this cache for other ranges.
+   *
+   * @param range The source range.
+   * @param compute The function that computes the destinations of a range.
+   */
+  List<SendRange> get(
+      RuntimeRange<PortInstance> range,
+      Function<RuntimeRange<PortInstance>, List<SendRange>> compute) {
+    Key key = new Key(range.instance, range.start, range.width, Set.copyOf(range._interleaved));
+    // Not computeIfAbsent because the computation recursively updates the map.
+    List<SendRange> result = destinations.get(key);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    result = Collections.unmodifiableList(compute.apply(range));
+    destinations.put(key, result);
+    return result;
+  }
+
+  /** Discard all memoized destinations. The statistics are retained. */
+  public void clear() {
+    destinations.clear();
+  }
+
+  /** Return the number of ranges whose destinations are currently memoized. */
+  public int size() {
+    return destinations.size();
+  }
+
+  /** Return the number of lookups that were answered from the cache. */
+  public long getHits() {
+    return hits;
+  }
+
+  /** Return the number of lookups that required a computation. */
+  public long getMisses() {
+    return misses;
+  }
+
+  /** Return the fraction of lookups that were answered from the cache, or 0 if there were none. */
+  public double getHitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d hits, %d misses (%.1f%% hit rate), %d entries",
+        hits, misses, 100 * getHitRate(), size());
+  }
+
+  /** Identification of a range of a port. */
+  private record Key(PortInstance port, int start, int width, Set<ReactorInstance> interleaved) {}
+}
@@ -157,6 +157,7 @@ public abstract class GeneratorBase extends AbstractLFValidator {
     this.targetConfig = context.getTargetConfig();
     this.messageReporter = context.getErrorReporter();
     this.commandFactory = new GeneratorCommandFactory(messageReporter, context.getFileConfig());
+    this.commandFactory.setProfiler(context.getProfiler());
   }
 
   /**
@@ -197,6 +198,7 @@ public abstract class GeneratorBase extends AbstractLFValidator {
         && context.getArgs().quiet()) {
       commandFactory.setQuiet();
     }
+    commandFactory.resolveCommands(targetConfig);
 
     // If "-c" or "--clean" is specified, delete any existing generated directories.
     cleanIfNeeded(context);
@@ -249,13 +251,23 @@ public abstract class GeneratorBase extends AbstractLFValidator {
     // FIXME: Should the GeneratorBase pull in {@code files} from imported
     // resources?
 
-    for (AstTransformation transformation : astTransformations) {
-      transformation.applyTransformation(reactors);
+    boolean modified = false;
+    try (var span = context.getProfiler().span("AST transformations")) {
+      for (AstTransformation transformation : astTransformations) {
+        try (var inner = context.getProfiler().span(transformation.getClass().getSimpleName())) {
+          modified |= transformation.applyTransformation(reactors);
+        }
+      }
+
+      // Transform connections that reside in mutually exclusive modes and are otherwise
+      // conflicting. This should be done before creating the instantiation graph
+      modified |= transformConflictingConnectionsInModalReactors();
     }
 
-    // Transform connections that reside in mutually exclusive modes and are otherwise conflicting
-    // This should be done before creating the instantiation graph
-    transformConflictingConnectionsInModalReactors();
+    // Instances elaborated from the untransformed AST, e.g. during validation, are now outdated.
+    if (modified) {
+      allResources.forEach(it -> ElaborationCache.of(it).invalidate(it));
+    }
 
     // Invoke these functions a second time because transformations
     // may have introduced new reactors!
@@ -423,8 +435,11 @@ public abstract class GeneratorBase extends AbstractLFValidator {
   /**
    * Finds and transforms connections into forwarding reactions iff the connections have the same
    * destination as other connections or reaction in mutually exclusive modes.
+   *
+   * @return Whether any connection was transformed.
    */
-  private void transformConflictingConnectionsInModalReactors() {
+  private boolean transformConflictingConnectionsInModalReactors() {
+    boolean modified = false;
     for (LFResource r : resources) {
       var transform = ASTUtils.findConflictingConnectionsInModalReactors(r.eResource);
       if (!transform.isEmpty()) {
@@ -461,10 +476,12 @@ public abstract class GeneratorBase extends AbstractLFValidator {
             reaction.setCode(code);
 
             EcoreUtil.remove(connection);
+            modified = true;
           }
         }
       }
     }
+    return modified;
   }
 
   /**
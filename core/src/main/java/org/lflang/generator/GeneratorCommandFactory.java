@@ -30,12 +30,19 @@ import static org.eclipse.lsp4j.DiagnosticSeverity.Warning;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import org.eclipse.lsp4j.DiagnosticSeverity;
 import org.lflang.FileConfig;
 import org.lflang.MessageReporter;
+import org.lflang.target.TargetConfig;
+import org.lflang.target.property.DockerProperty;
+import org.lflang.target.property.NoCompileProperty;
+import org.lflang.target.property.ProtobufsProperty;
 import org.lflang.util.LFCommand;
+import org.lflang.util.Profiler;
 
 /**
  * A factory class responsible for creating commands for use by the LF code generators.
@@ -50,6 +57,7 @@ public class GeneratorCommandFactory {
   protected final MessageReporter messageReporter;
   protected final FileConfig fileConfig;
   protected boolean quiet = false;
+  protected Profiler profiler = Profiler.NONE;
 
   public GeneratorCommandFactory(MessageReporter messageReporter, FileConfig fileConfig) {
     this.messageReporter = Objects.requireNonNull(messageReporter);
@@ -66,6 +74,42 @@ public class GeneratorCommandFactory {
     quiet = false;
   }
 
+  /** Record the time spent running the commands that are created with the given profiler. */
+  public void setProfiler(Profiler profiler) {
+    this.profiler = Objects.requireNonNull(profiler);
+  }
+
+  /**
+   * Start looking up the commands that the generator is likely to need for the given target
+   * configuration in the background, so that {@link #createCommand(String, List, Path, boolean)
+   * createCommand} does not have to wait for each of them in turn.
+   */
+  public void resolveCommands(TargetConfig targetConfig) {
+    LFCommand.resolveInBackground(getCommands(targetConfig));
+  }
+
+  /** Return the names of the commands that are likely needed for the given target configuration. */
+  protected Set<String> getCommands(TargetConfig targetConfig) {
+    Set<String> commands = new HashSet<>();
+    if (!targetConfig.getOrDefault(NoCompileProperty.INSTANCE)) {
+      switch (targetConfig.target) {
+        case C, CCPP, CPP, Python -> commands.add("cmake");
+        case TS -> commands.addAll(List.of("pnpm", "npm"));
+        case Rust -> commands.add("cargo");
+      }
+    }
+    if (!targetConfig.getOrDefault(ProtobufsProperty.INSTANCE).isEmpty()) {
+      switch (targetConfig.target) {
+        case C, CCPP -> commands.add("protoc-c");
+        default -> commands.add("protoc");
+      }
+    }
+    if (targetConfig.getOrDefault(DockerProperty.INSTANCE).enabled()) {
+      commands.add("docker");
+    }
+    return commands;
+  }
+
   /**
    * Create a LFCommand instance from a given command and an argument list.
    *
@@ -133,6 +177,7 @@ public class GeneratorCommandFactory {
     }
     LFCommand command = LFCommand.get(cmd, args, quiet, dir);
     if (command != null) {
+      command.setProfiler(profiler);
       command.setEnvironmentVariable("LF_CURRENT_WORKING_DIRECTORY", dir.toString());
       command.setEnvironmentVariable("LF_SOURCE_DIRECTORY", fileConfig.srcPath.toString());
       command.setEnvironmentVariable("LF_PACKAGE_DIRECTORY", fileConfig.srcPkgPath.toString());
@@ -43,6 +43,9 @@ public class IntegratedBuilder {
   @Inject private JavaIoFileSystemAccess fileAccess;
   @Inject private Provider<ResourceSet> resourceSetProvider;
 
+  /** The resources that are reused by the builds of this builder. */
+  private BuildResourceCache resourceCache;
+
   /* ------------------------- PUBLIC METHODS -------------------------- */
 
   /**
@@ -61,29 +64,63 @@ public class IntegratedBuilder {
         FileConfig.findPackageRoot(Path.of(uri.path()), s -> {})
             .resolve(FileConfig.DEFAULT_SRC_GEN_DIR)
             .toString());
-    List<EObject> parseRoots = getResource(uri).getContents();
+    BuildResourceCache cache = getResourceCache();
+    if (!cache.tryAcquire()) {
+      // Another build is using the cached resources. Parse everything anew.
+      return build(
+          uri,
+          resourceSetProvider.get().getResource(uri, true),
+          mustComplete,
+          reportProgress,
+          cancelIndicator);
+    }
+    Resource resource = null;
+    try {
+      resource = cache.getResource(uri);
+      return build(uri, resource, mustComplete, reportProgress, cancelIndicator);
+    } finally {
+      cache.release(resource);
+    }
+  }
+
+  /* ------------------------- PRIVATE METHODS ------------------------- */
+
+  /**
+   * Validates and generates code from the given resource.
+   *
+   * @param uri The URI of a Lingua Franca file.
+   * @param resource The resource corresponding to {@code uri}.
+   * @param mustComplete Whether the build must be taken to completion.
+   * @param cancelIndicator An indicator that returns true when the build is cancelled.
+   * @return The result of the build.
+   */
+  private GeneratorResult build(
+      URI uri,
+      Resource resource,
+      boolean mustComplete,
+      ReportProgress reportProgress,
+      CancelIndicator cancelIndicator) {
+    List<EObject> parseRoots = resource.getContents();
     if (parseRoots.isEmpty()) return GeneratorResult.NOTHING;
     MessageReporter messageReporter = new LanguageServerMessageReporter(parseRoots.get(0));
     reportProgress.apply("Validating...", START_PERCENT_PROGRESS);
-    validate(uri, messageReporter);
+    validate(uri, resource, messageReporter);
     reportProgress.apply("Code validation complete.", VALIDATED_PERCENT_PROGRESS);
     if (cancelIndicator.isCanceled()) return GeneratorResult.CANCELLED;
     if (messageReporter.getErrorsOccurred()) return GeneratorResult.FAILED;
     reportProgress.apply("Generating code...", VALIDATED_PERCENT_PROGRESS);
-    return doGenerate(uri, mustComplete, reportProgress, cancelIndicator);
+    return doGenerate(resource, mustComplete, reportProgress, cancelIndicator);
   }
 
-  /* ------------------------- PRIVATE METHODS ------------------------- */
-
   /**
    * Validates the Lingua Franca file {@code f}.
    *
    * @param uri The URI of a Lingua Franca file.
+   * @param resource The resource corresponding to {@code uri}.
    * @param messageReporter The error reporter.
    */
-  private void validate(URI uri, MessageReporter messageReporter) {
-    for (Issue issue :
-        validator.validate(getResource(uri), CheckMode.ALL, CancelIndicator.NullImpl)) {
+  private void validate(URI uri, Resource resource, MessageReporter messageReporter) {
+    for (Issue issue : validator.validate(resource, CheckMode.ALL, CancelIndicator.NullImpl)) {
       messageReporter
           .atNullableLine(Path.of(uri.path()), issue.getLineNumber())
           .report(convertSeverity(issue.getSeverity()), issue.getMessage());
@@ -93,17 +130,16 @@ public class IntegratedBuilder {
   /**
    * Generates code from the contents of {@code f}.
    *
-   * @param uri The URI of a Lingua Franca file.
+   * @param resource The resource of a Lingua Franca file.
    * @param mustComplete Whether the build must be taken to completion.
    * @param cancelIndicator An indicator that returns true when the build is cancelled.
    * @return The result of the build.
    */
   private GeneratorResult doGenerate(
-      URI uri,
+      Resource resource,
       boolean mustComplete,
       ReportProgress reportProgress,
       CancelIndicator cancelIndicator) {
-    var resource = getResource(uri);
     LFGeneratorContext context =
         new MainContext(
             mustComplete ? Mode.LSP_SLOW : LFGeneratorContext.Mode.LSP_MEDIUM,
@@ -113,18 +149,14 @@ public class IntegratedBuilder {
             resource,
             fileAccess,
             fileConfig -> new LanguageServerMessageReporter(resource.getContents().get(0)));
-    generator.generate(getResource(uri), fileAccess, context);
+    generator.generate(resource, fileAccess, context);
     return context.getResult();
   }
 
-  /**
-   * Returns the resource corresponding to {@code uri}.
-   *
-   * @param uri The URI of a Lingua Franca file.
-   * @return The resource corresponding to {@code uri}.
-   */
-  private Resource getResource(URI uri) {
-    return resourceSetProvider.get().getResource(uri, true);
+  /** Returns the resources that are reused by the builds of this builder. */
+  private synchronized BuildResourceCache getResourceCache() {
+    if (resourceCache == null) resourceCache = new BuildResourceCache(resourceSetProvider.get());
+    return resourceCache;
   }
 
   static DiagnosticSeverity convertSeverity(Severity severity) {
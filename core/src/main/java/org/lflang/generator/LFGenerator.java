@@ -28,6 +28,7 @@ import org.lflang.generator.ts.TSFileConfig;
 import org.lflang.generator.ts.TSGenerator;
 import org.lflang.scoping.LFGlobalScopeProvider;
 import org.lflang.target.Target;
+import org.lflang.util.Profiler;
 
 /** Generates code from your model files on save. */
 public class LFGenerator extends AbstractGenerator {
@@ -98,8 +99,9 @@ public class LFGenerator extends AbstractGenerator {
     // The fastest way to generate code is to not generate any code.
     if (lfContext.getMode() == LFGeneratorContext.Mode.LSP_FAST) return;
 
+    final Profiler profiler = lfContext.getProfiler();
     if (FedASTUtils.findFederatedReactor(resource) != null) {
-      try {
+      try (var span = profiler.span(FedGenerator.class.getSimpleName())) {
         FedGenerator fedGenerator = new FedGenerator(lfContext);
         injector.injectMembers(fedGenerator);
         generatorErrorsOccurred = fedGenerator.doGenerate(resource, lfContext);
@@ -111,7 +113,9 @@ public class LFGenerator extends AbstractGenerator {
       final GeneratorBase generator = createGenerator(lfContext);
 
       if (generator != null) {
-        generator.doGenerate(resource, lfContext);
+        try (var span = profiler.span(generator.getClass().getSimpleName())) {
+          generator.doGenerate(resource, lfContext);
+        }
         generatorErrorsOccurred = generator.errorsOccurred();
       }
     }
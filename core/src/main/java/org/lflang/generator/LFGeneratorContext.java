@@ -8,6 +8,7 @@ import org.eclipse.xtext.generator.IGeneratorContext;
 import org.lflang.FileConfig;
 import org.lflang.MessageReporter;
 import org.lflang.target.TargetConfig;
+import org.lflang.util.Profiler;
 
 /**
  * An {@code LFGeneratorContext} is the context of a Lingua Franca build process. It is the point of
@@ -38,6 +39,14 @@ public interface LFGeneratorContext extends IGeneratorContext {
   /** Get the error reporter for this context; construct one if it hasn't been constructed yet. */
   MessageReporter getErrorReporter();
 
+  /**
+   * Return the profiler that records the time spent in the phases of the build, which is {@link
+   * Profiler#NONE} unless profiling was requested.
+   */
+  default Profiler getProfiler() {
+    return Profiler.NONE;
+  }
+
   /** Return true if the user requested a clean build in this context. */
   default boolean isCleanRequested() {
     return getArgs().clean();
@@ -12,6 +12,7 @@ import org.lflang.FileConfig;
 import org.lflang.MessageReporter;
 import org.lflang.generator.IntegratedBuilder.ReportProgress;
 import org.lflang.target.TargetConfig;
+import org.lflang.util.Profiler;
 
 /**
  * A {@code MainContext} is an {@code LFGeneratorContext} that is not nested in any other generator
@@ -42,6 +43,9 @@ public class MainContext implements LFGeneratorContext {
   private final GeneratorArguments args;
   private final MessageReporter messageReporter;
 
+  /** The profiler that records the time spent in the phases of the build. */
+  private final Profiler profiler;
+
   /**
    * Initialize the context of a build process whose cancellation is indicated by {@code
    * cancelIndicator}
@@ -86,7 +90,43 @@ public class MainContext implements LFGeneratorContext {
       Resource resource,
       IFileSystemAccess2 fsa,
       Function<FileConfig, MessageReporter> constructErrorReporter) {
+    this(
+        mode,
+        cancelIndicator,
+        reportProgress,
+        args,
+        resource,
+        fsa,
+        constructErrorReporter,
+        Profiler.NONE);
+  }
+
+  /**
+   * Initialize the context of a build process whose cancellation is indicated by {@code
+   * cancelIndicator} and whose phases are recorded by {@code profiler}.
+   *
+   * @param mode The mode of this build process.
+   * @param cancelIndicator The cancel indicator of the code generation process to which this
+   *     corresponds.
+   * @param reportProgress The {@code ReportProgress} function of {@code this}.
+   * @param args Any arguments that may be used to affect the product of the build.
+   * @param resource ...
+   * @param fsa ...
+   * @param constructErrorReporter A function that constructs the appropriate error reporter for the
+   *     given FileConfig.
+   * @param profiler The profiler that records the time spent in the phases of the build.
+   */
+  public MainContext(
+      Mode mode,
+      CancelIndicator cancelIndicator,
+      ReportProgress reportProgress,
+      GeneratorArguments args,
+      Resource resource,
+      IFileSystemAccess2 fsa,
+      Function<FileConfig, MessageReporter> constructErrorReporter,
+      Profiler profiler) {
     this.mode = mode;
+    this.profiler = profiler;
     this.cancelIndicator = cancelIndicator == null ? () -> false : cancelIndicator;
     this.reportProgress = reportProgress;
     this.args = args;
@@ -125,6 +165,11 @@ public class MainContext implements LFGeneratorContext {
     return messageReporter;
   }
 
+  @Override
+  public Profiler getProfiler() {
+    return profiler;
+  }
+
   @Override
   public void finish(GeneratorResult result) {
     if (this.result != null)
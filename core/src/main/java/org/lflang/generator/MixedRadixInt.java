@@ -26,13 +26,9 @@ THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.lflang.generator;
 
-import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Representation of a permuted mixed radix (PMR) integer. A mixed radix number is a number
@@ -55,6 +51,11 @@ import java.util.Set;
  * represented by the string "d%r", where d is the digit and r is the radix. For example, the number
  * "1%2, 2%3, 1%4" has value 11, 1 + (2*2) + (1*2*3).
  *
+ * <p>The digits, radixes, and permutation are stored in primitive arrays, and the value of the
+ * number is maintained as digits are incremented, so that {@link #increment()} and {@link
+ * #get(int)} do not allocate. A {@link Cursor} additionally wraps around to its start after a
+ * given number of increments, which is how ranges of channels are iterated when multicasting.
+ *
  * @author Edward A. Lee
  */
 public class MixedRadixInt {
@@ -73,25 +74,50 @@ public class MixedRadixInt {
         || (permutation != null && permutation.size() != radixes.size())) {
       throw new IllegalArgumentException("Invalid constructor arguments.");
     }
-    this.radixes = ImmutableList.copyOf(radixes);
+    int n = radixes.size();
+    this.radixes = new int[n];
+    this.weights = new int[n];
+    this.digits = new int[n];
+    this.permutation = new int[n];
+    int weight = 1;
+    for (int i = 0; i < n; i++) {
+      this.radixes[i] = radixes.get(i);
+      this.weights[i] = weight;
+      weight *= this.radixes[i];
+      this.permutation[i] = i;
+    }
     if (digits != null) {
-      this.digits = digits;
+      for (int i = 0; i < digits.size(); i++) {
+        this.digits[i] = digits.get(i);
+      }
+      this.size = digits.size();
     } else {
-      this.digits = new ArrayList<>(1);
-      this.digits.add(0);
+      this.size = 1;
     }
     if (permutation != null) {
       // Check the permutation matrix.
-      Set<Integer> indices = new HashSet<>();
-      for (int p : permutation) {
-        if (p < 0 || p >= radixes.size() || indices.contains(p)) {
+      boolean[] indices = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        int p = permutation.get(i);
+        if (p < 0 || p >= n || indices[p]) {
           throw new IllegalArgumentException(
               "Permutation list is required to be a permutation of [0, 1, ... , n-1].");
         }
-        indices.add(p);
+        indices[p] = true;
+        this.permutation[i] = p;
       }
-      this.permutation = permutation;
     }
+    updateValue();
+  }
+
+  /** Create a copy of the given number. */
+  private MixedRadixInt(MixedRadixInt other) {
+    this.radixes = other.radixes;
+    this.weights = other.weights;
+    this.permutation = other.permutation;
+    this.digits = other.digits.clone();
+    this.size = other.size;
+    this.value = other.value;
   }
 
   /** A zero-valued mixed radix number with just one digit will radix 1. */
@@ -102,7 +128,7 @@ public class MixedRadixInt {
 
   /** Get the value as an integer. */
   public int get() {
-    return get(0);
+    return value;
   }
 
   /**
@@ -111,61 +137,67 @@ public class MixedRadixInt {
    * @param n The number of digits to drop.
    */
   public int get(int n) {
+    if (n <= 0) return value;
+    if (n >= radixes.length) return 0;
+    if (weights[n] != 0) {
+      // The dropped digits contribute less than weights[n] to the value.
+      int dropped = 0;
+      for (int i = 0; i < n; i++) {
+        dropped += digits[i] * weights[i];
+      }
+      return (value - dropped) / weights[n];
+    }
+    // One of the dropped digits has radix zero.
     int result = 0;
     int scale = 1;
-    if (n < 0) n = 0;
-    for (int i = n; i < radixes.size(); i++) {
-      if (i >= digits.size()) return result;
-      result += digits.get(i) * scale;
-      scale *= radixes.get(i);
+    for (int i = n; i < radixes.length; i++) {
+      result += digits[i] * scale;
+      scale *= radixes[i];
     }
     return result;
   }
 
+  /**
+   * Return the digit at the given position, where position 0 is the lowest-order digit.
+   *
+   * @param i The position of the digit.
+   */
+  public int getDigit(int i) {
+    return digits[i];
+  }
+
   /** Return the digits. This is assured of returning as many digits as there are radixes. */
   public List<Integer> getDigits() {
-    while (digits.size() < radixes.size()) {
-      digits.add(0);
-    }
-    return digits;
+    size = digits.length;
+    return toList(digits);
   }
 
   /** Return the permutation list. */
   public List<Integer> getPermutation() {
-    if (permutation == null) {
-      // Construct a default permutation.
-      permutation = new ArrayList<>(radixes.size());
-      for (int i = 0; i < radixes.size(); i++) {
-        permutation.add(i);
-      }
-    }
-    return permutation;
+    return toList(permutation);
   }
 
   /** Return the radixes. */
   public List<Integer> getRadixes() {
-    return radixes;
+    return toList(radixes);
   }
 
   /**
    * Increment the number by one, using the permutation vector to determine the order in which the
-   * digits are incremented. If an overflow occurs, then a radix-infinity digit will be added to the
-   * digits array if there isn't one there already.
+   * digits are incremented. If the last digit overflows, then the number wraps around to zero.
    */
   public void increment() {
-    int i = 0;
-    while (i < radixes.size()) {
-      int digit_to_increment = getPermutation().get(i);
-      while (digit_to_increment >= digits.size()) {
-        digits.add(0);
-      }
-      digits.set(digit_to_increment, digits.get(digit_to_increment) + 1);
-      if (digits.get(digit_to_increment) >= radixes.get(digit_to_increment)) {
-        digits.set(digit_to_increment, 0);
-        i++;
-      } else {
+    for (int i = 0; i < permutation.length; i++) {
+      int digitToIncrement = permutation[i];
+      if (digitToIncrement >= size) size = digitToIncrement + 1;
+      int digit = digits[digitToIncrement];
+      if (digit + 1 < radixes[digitToIncrement]) {
+        digits[digitToIncrement] = digit + 1;
+        value += weights[digitToIncrement];
         return; // All done.
       }
+      digits[digitToIncrement] = 0;
+      value -= digit * weights[digitToIncrement];
     }
   }
 
@@ -177,11 +209,10 @@ public class MixedRadixInt {
   public int magnitude() {
     int factor = 1;
     int result = 0;
-    List<Integer> p = getPermutation();
-    for (int i = 0; i < radixes.size(); i++) {
-      if (digits.size() <= i) return result;
-      result += factor * digits.get(p.get(i));
-      factor *= radixes.get(p.get(i));
+    for (int i = 0; i < permutation.length; i++) {
+      int p = permutation[i];
+      result += factor * digits[p];
+      factor *= radixes[p];
     }
     return result;
   }
@@ -190,7 +221,7 @@ public class MixedRadixInt {
    * Return the number of digits in this mixed radix number. This is the size of the radixes list.
    */
   public int numDigits() {
-    return radixes.size();
+    return radixes.length;
   }
 
   /**
@@ -199,19 +230,14 @@ public class MixedRadixInt {
    * @param v The ordinary integer value of this number.
    */
   public void set(int v) {
-    // it does not make sense to call set
     int temp = v;
-    int count = 0;
-    for (int radix : radixes) {
-      var digit = radix == 0 ? 0 : temp % radix;
-      if (count >= digits.size()) {
-        digits.add(digit);
-      } else {
-        digits.set(count, digit);
-      }
-      count++;
+    for (int i = 0; i < radixes.length; i++) {
+      int radix = radixes[i];
+      digits[i] = radix == 0 ? 0 : temp % radix;
       temp = temp == 0 ? temp : temp / radix;
     }
+    size = digits.length;
+    updateValue();
   }
 
   /**
@@ -223,17 +249,33 @@ public class MixedRadixInt {
    */
   public void setMagnitude(int v) {
     int temp = v;
-    for (int i = 0; i < radixes.size(); i++) {
-      int p = getPermutation().get(i);
-      while (digits.size() < p + 1) digits.add(0);
-      var r = radixes.get(p);
+    for (int i = 0; i < permutation.length; i++) {
+      int p = permutation[i];
+      if (p >= size) size = p + 1;
+      int r = radixes[p];
       if (r == 0 && v == 0) {
-        digits.set(p, 0); // zero does not make sense here, but we have to put something.
+        digits[p] = 0; // zero does not make sense here, but we have to put something.
       } else {
-        digits.set(p, temp % r);
+        digits[p] = temp % r;
         temp = temp / r;
       }
     }
+    updateValue();
+  }
+
+  /**
+   * Return an encoding of the digits of this number as a long that is unique among the numbers
+   * with the same radixes, regardless of their permutation. Unlike the mixed radix number itself,
+   * the encoding is cheap to store and to use as the key of a map.
+   */
+  public long toLong() {
+    long result = 0;
+    long scale = 1;
+    for (int i = 0; i < radixes.length; i++) {
+      result += digits[i] * scale;
+      scale *= Math.max(radixes[i], 1);
+    }
+    return result;
   }
 
   /**
@@ -242,43 +284,111 @@ public class MixedRadixInt {
    */
   @Override
   public String toString() {
-    List<String> pieces = new LinkedList<>();
-    Iterator<Integer> radixIterator = radixes.iterator();
-    for (int digit : digits) {
-      if (!radixIterator.hasNext()) {
-        pieces.add(digit + "%infinity");
-      } else {
-        pieces.add(digit + "%" + radixIterator.next());
-      }
+    List<String> pieces = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      pieces.add(digits[i] + "%" + radixes[i]);
     }
     return String.join(", ", pieces);
   }
 
   @Override
   public int hashCode() {
-    int sum = 0;
-    for (var radix : radixes) sum = sum * 31 + radix;
-    for (var digit : digits) sum = sum * 31 + digit;
-    for (var p : permutation) sum = sum * 31 + p;
-    return sum;
+    return (Arrays.hashCode(radixes) * 31 + Arrays.hashCode(digits)) * 31
+        + Arrays.hashCode(permutation);
   }
 
   @Override
   public boolean equals(Object obj) {
     return obj instanceof MixedRadixInt mri
-        && radixes.equals(mri.radixes)
-        && digits.equals(mri.digits)
-        && permutation.equals(mri.permutation);
+        && Arrays.equals(radixes, mri.radixes)
+        && Arrays.equals(digits, mri.digits)
+        && Arrays.equals(permutation, mri.permutation);
   }
 
   public MixedRadixInt copy() {
-    return new MixedRadixInt(List.copyOf(digits), List.copyOf(radixes), List.copyOf(permutation));
+    return new MixedRadixInt(this);
+  }
+
+  //////////////////////////////////////////////////////////
+  //// Private methods
+
+  /** Recompute {@link #value} from the digits. */
+  private void updateValue() {
+    value = 0;
+    for (int i = 0; i < digits.length; i++) {
+      value += digits[i] * weights[i];
+    }
+  }
+
+  /** Return the given array as a list. */
+  private static List<Integer> toList(int[] array) {
+    List<Integer> result = new ArrayList<>(array.length);
+    for (int element : array) {
+      result.add(element);
+    }
+    return result;
   }
 
   //////////////////////////////////////////////////////////
   //// Private variables
 
-  private final ImmutableList<Integer> radixes;
-  private final List<Integer> digits;
-  private List<Integer> permutation;
+  private final int[] radixes;
+  private final int[] digits;
+  private final int[] permutation;
+
+  /** The weight of each digit, which is the product of the radixes of the lower-order digits. */
+  private final int[] weights;
+
+  /** The value of this number, which is maintained as the digits change. */
+  private int value;
+
+  /** The number of digits that have been given a value, which are shown by toString(). */
+  private int size;
+
+  //////////////////////////////////////////////////////////
+  //// Inner classes
+
+  /**
+   * A mixed radix number that iterates over a range of a given width and returns to the start of
+   * the range after reaching its end. This avoids creating a new number each time iteration over a
+   * range restarts, for example, when a range of channels is multicast to a wider range.
+   */
+  public static class Cursor extends MixedRadixInt {
+
+    /**
+     * Create a cursor at the start of the given range.
+     *
+     * @param radixes The radixes.
+     * @param permutation The permutation matrix, or null for the default permutation.
+     * @param start The magnitude of the start of the range.
+     * @param width The number of positions in the range.
+     */
+    public Cursor(List<Integer> radixes, List<Integer> permutation, int start, int width) {
+      super(null, radixes, permutation);
+      this.start = start;
+      this.width = width;
+      reset();
+    }
+
+    /** Advance to the next position in the range, returning to the start after its end. */
+    public void next() {
+      increment();
+      if (++count >= width) reset();
+    }
+
+    /** Return to the start of the range. */
+    public void reset() {
+      setMagnitude(start);
+      count = 0;
+    }
+
+    /** The magnitude of the start of the range. */
+    private final int start;
+
+    /** The number of positions in the range. */
+    private final int width;
+
+    /** The number of positions that have been advanced since the start of the range. */
+    private int count;
+  }
 }
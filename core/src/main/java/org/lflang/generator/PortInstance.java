@@ -93,18 +93,29 @@ public class PortInstance extends TriggerInstance<Port> {
    * any ports that are listed as eventual destinations and sources.
    */
   public void clearCaches() {
+    clearConnectivityCaches();
+    // Memoized destinations of other ports may pass through this one.
+    root().getEventualDestinationCache().clear();
+  }
+
+  /**
+   * Clear the cached eventual sources and destinations of this port and of the ports that are
+   * listed as its eventual destinations and sources, but not the eventual destination cache of the
+   * root reactor, which the caller must clear.
+   */
+  void clearConnectivityCaches() {
     if (clearingCaches) return; // Prevent stack overflow.
     clearingCaches = true;
     try {
       if (eventualSourceRanges != null) {
         for (RuntimeRange<PortInstance> sourceRange : eventualSourceRanges) {
-          sourceRange.instance.clearCaches();
+          sourceRange.instance.clearConnectivityCaches();
         }
       }
       if (eventualDestinationRanges != null) {
         for (SendRange sendRange : eventualDestinationRanges) {
           for (RuntimeRange<PortInstance> destinationRange : sendRange.destinations) {
-            destinationRange.instance.clearCaches();
+            destinationRange.instance.clearConnectivityCaches();
           }
         }
       }
@@ -210,15 +221,22 @@ public class PortInstance extends TriggerInstance<Port> {
    * level}.
    */
   public void hasDependentReactionWithLevel(MixedRadixInt index, int level) {
-    levelUpperBounds.put(
-        index, Math.min(levelUpperBounds.getOrDefault(index, Integer.MAX_VALUE), level));
+    hasDependentReactionWithLevel(index.toLong(), level);
+  }
+
+  /**
+   * Record that the sub-port of this with the given encoded index (see {@link
+   * MixedRadixInt#toLong()}) has a dependent reaction of level {@code level}.
+   */
+  public void hasDependentReactionWithLevel(long index, int level) {
+    levelUpperBounds.merge(index, level, Math::min);
   }
 
   /** Return the minimum of the levels of the reactions that are downstream of this port. */
   public int getLevelUpperBound(MixedRadixInt index) {
     // It should be uncommon for Integer.MAX_VALUE to be used and using it can mask bugs.
     // It makes sense when there is no downstream reaction.
-    return levelUpperBounds.getOrDefault(index, Integer.MAX_VALUE);
+    return levelUpperBounds.getOrDefault(index.toLong(), Integer.MAX_VALUE);
   }
 
   //////////////////////////////////////////////////////
@@ -255,9 +273,26 @@ public class PortInstance extends TriggerInstance<Port> {
    * list of destination RuntimeRanges, each of which represents a port that has dependent
    * reactions. Intermediate ports with no dependent reactions are not listed.
    *
+   * <p>The result is memoized in the {@link EventualDestinationCache} of the root reactor, so
+   * relay ports that are shared by many upstream ports are only traversed once per range.
+   *
    * @param srcRange The source range.
    */
   private static List<SendRange> eventualDestinations(RuntimeRange<PortInstance> srcRange) {
+    return srcRange
+        .instance
+        .root()
+        .getEventualDestinationCache()
+        .get(srcRange, PortInstance::findEventualDestinations);
+  }
+
+  /**
+   * Compute the eventual destinations of the given range without consulting the cache for the range
+   * itself. See {@link #eventualDestinations(RuntimeRange)}.
+   *
+   * @param srcRange The source range.
+   */
+  private static List<SendRange> findEventualDestinations(RuntimeRange<PortInstance> srcRange) {
 
     // Getting the destinations is more complex than getting the sources
     // because of multicast, where there is more than one connection statement
@@ -454,5 +489,5 @@ public class PortInstance extends TriggerInstance<Port> {
   private boolean clearingCaches = false;
 
   /** The levels of the sub-ports of this. */
-  private final Map<MixedRadixInt, Integer> levelUpperBounds = new HashMap<>();
+  private final Map<Long, Integer> levelUpperBounds = new HashMap<>();
 }
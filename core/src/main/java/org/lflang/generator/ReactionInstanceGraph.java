@@ -25,14 +25,18 @@
 package org.lflang.generator;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
-import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.lflang.generator.ReactionInstance.Runtime;
 import org.lflang.generator.c.CUtil;
+import org.lflang.graph.CompactGraph;
 import org.lflang.graph.PrecedenceGraph;
 import org.lflang.lf.Variable;
 
@@ -64,6 +68,51 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
     rebuild();
   }
 
+  /**
+   * Create a new graph like {@link #ReactionInstanceGraph(ReactorInstance)}, but reuse the levels
+   * recorded in the given snapshot of the graph of a previous version of the program. The runtime
+   * instances of reactions are matched with those of the previous version by their position in
+   * the hierarchy, and an instance keeps its previous level unless it or an instance upstream of it
+   * has no counterpart in the previous version or has different immediate dependencies than its
+   * counterpart. The levels of the remaining instances are assigned by a traversal that is
+   * restricted to them. If that traversal encounters a cycle, then levels are assigned to the whole
+   * graph as usual. In either case, the result is the same as that of the other constructor.
+   *
+   * <p>The dependencies are still collected from the whole hierarchy, so this saves the cost of the
+   * traversal, not that of building the graph. If the graph turns out to be acyclic, its snapshot
+   * can be obtained with {@link #getSnapshot()} and passed on to the next version.
+   *
+   * @param main The main reactor instance.
+   * @param previous A snapshot of the graph of a previous version of the program, or null.
+   */
+  public ReactionInstanceGraph(ReactorInstance main, Snapshot previous) {
+    this.main = main;
+    addNodesAndEdges(main);
+    addEdgesForTpoLevels(main);
+    var dependencies = toCompactGraph();
+    var runtimes = new Runtime[dependencies.size()];
+    var indices = new IdentityHashMap<Runtime, Integer>();
+    for (int i = 0; i < runtimes.length; i++) {
+      runtimes[i] = nodeAt(i);
+      if (runtimes[i] != null) indices.put(runtimes[i], i);
+    }
+    int[] levels = previous == null ? null : reuseLevels(dependencies, indices, previous);
+    if (levels == null) {
+      assignLevels();
+    } else {
+      for (Runtime runtime : runtimes) {
+        if (runtime == null) continue;
+        runtime.level = levels[indices.get(runtime)];
+        assignPortLevel(runtime);
+        incrementNumReactionsPerLevel(runtime.level);
+      }
+      this.clear();
+    }
+    if (nodeCount() == 0) {
+      snapshot = new Snapshot(dependencies, runtimes, positionsOf(indices));
+    }
+  }
+
   ///////////////////////////////////////////////////////////
   //// Public fields
 
@@ -106,6 +155,20 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
     return numReactionsPerLevel.toArray(new Integer[0]);
   }
 
+  /**
+   * Return the snapshot of this graph that can be passed to {@link
+   * #ReactionInstanceGraph(ReactorInstance, Snapshot)} for the next version of the program, or null
+   * if this graph was created without a snapshot or has causality cycles.
+   */
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /** Return the number of runtime reaction instances that kept their level from a snapshot. */
+  public int getNumReusedLevels() {
+    return numReusedLevels;
+  }
+
   /** Return the max breadth of the reaction dependency graph */
   public int getBreadth() {
     var maxBreadth = 0;
@@ -138,11 +201,11 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
       for (RuntimeRange<PortInstance> dstRange : sendRange.destinations) {
 
         int dstDepth = (dstRange.instance.isOutput()) ? 2 : 1;
-        MixedRadixInt dstRangePosition = dstRange.startMR();
+        MixedRadixInt.Cursor dstRangePosition = dstRange.cursor();
         int dstRangeCount = 0;
 
-        MixedRadixInt sendRangePosition = sendRange.startMR();
-        int sendRangeCount = 0;
+        // Wraps around to the start of the send range to multicast.
+        MixedRadixInt.Cursor sendRangePosition = sendRange.cursor();
 
         while (dstRangeCount++ < dstRange.width) {
           int srcIndex = sendRangePosition.get(srcDepth);
@@ -169,21 +232,15 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
             // If this seems to be a single dominating reaction, set it.
             // If another upstream reaction shows up, then this will be
             // reset to null.
-            if (this.getUpstreamAdjacentNodes(dstRuntime).size() == 1
+            if (this.inDegree(dstRuntime) == 1
                 && (dstRuntime.getReaction().index == 0)) {
               dstRuntime.dominating = srcRuntime;
             } else {
               dstRuntime.dominating = null;
             }
           }
-          dstRangePosition.increment();
-          sendRangePosition.increment();
-          sendRangeCount++;
-          if (sendRangeCount >= sendRange.width) {
-            // Reset to multicast.
-            sendRangeCount = 0;
-            sendRangePosition = sendRange.startMR();
-          }
+          dstRangePosition.next();
+          sendRangePosition.next();
         }
       }
     }
@@ -288,16 +345,69 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
    */
   private final List<Integer> numReactionsPerLevel = new ArrayList<>(List.of(0));
 
+  /** The snapshot of this graph, or null if there is none. */
+  private Snapshot snapshot = null;
+
+  /** The number of runtime reaction instances that kept their level from a snapshot. */
+  private int numReusedLevels = 0;
+
+  ///////////////////////////////////////////////////////////
+  //// Inner classes
+
+  /**
+   * The dependencies between the runtime reaction instances of an acyclic {@link
+   * ReactionInstanceGraph} and their levels, recorded without references to the instances so that
+   * retaining a snapshot does not retain the reactor instance tree. The runtime instances are
+   * identified by their index in the graph and are mapped to the reactions of the next version of
+   * the program by position: the names of the reactor instances that contain the reaction, below
+   * the main reactor, followed by the index of the reaction in its reactor and the index of the
+   * runtime instance in {@link ReactionInstance#getRuntimeInstances()}.
+   */
+  public static final class Snapshot {
+
+    /** Offsets into {@link #upstream}. The upstream neighbors of i are in [off[i], off[i+1]). */
+    private final int[] offsets;
+
+    /** The upstream neighbors of all runtime instances, concatenated. */
+    private final int[] upstream;
+
+    /** The level of each runtime instance, or -1 for indices that do not belong to one. */
+    private final int[] levels;
+
+    /** The indices of the runtime instances of each reaction, by the position of the reaction. */
+    private final Map<String, int[]> positions;
+
+    private Snapshot(CompactGraph dependencies, Runtime[] runtimes, Map<String, int[]> positions) {
+      int size = dependencies.size();
+      this.offsets = new int[size + 1];
+      this.levels = new int[size];
+      for (int i = 0; i < size; i++) {
+        offsets[i + 1] = offsets[i] + dependencies.inDegree(i);
+        levels[i] = runtimes[i] == null ? -1 : runtimes[i].level;
+      }
+      this.upstream = new int[offsets[size]];
+      for (int i = 0; i < size; i++) {
+        for (int k = 0; k < dependencies.inDegree(i); k++) {
+          upstream[offsets[i] + k] = dependencies.upstream(i, k);
+        }
+      }
+      this.positions = positions;
+    }
+  }
+
   ///////////////////////////////////////////////////////////
   //// Private methods
 
-  /** A port and an index of a reaction relative to the port. */
-  public record MriPortPair(MixedRadixInt index, PortInstance port) {}
+  /**
+   * A port and an index of a reaction relative to the port, encoded by {@link
+   * MixedRadixInt#toLong()}.
+   */
+  public record MriPortPair(long index, PortInstance port) {}
 
   /**
    * For each port in {@code reactor}, add that port to its downstream reactions, together with the
-   * {@code MixedRadixInt} that is the index of the downstream reaction relative to the port and the
-   * intervening ports.
+   * encoded {@code MixedRadixInt} that is the index of the downstream reaction relative to the port
+   * and the intervening ports.
    */
   private void registerPortInstances(ReactorInstance reactor) {
     var allPorts = new ArrayList<PortInstance>();
@@ -310,27 +420,22 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
         for (RuntimeRange<PortInstance> dstRange : sendRange.destinations) {
 
           int dstDepth = (dstRange.instance.isOutput()) ? 2 : 1;
-          MixedRadixInt dstRangePosition = dstRange.startMR();
+          MixedRadixInt.Cursor dstRangePosition = dstRange.cursor();
           int dstRangeCount = 0;
 
-          MixedRadixInt sendRangePosition = sendRange.startMR();
-          int sendRangeCount = 0;
+          // Wraps around to the start of the send range to multicast.
+          MixedRadixInt.Cursor sendRangePosition = sendRange.cursor();
 
           while (dstRangeCount++ < dstRange.width) {
             int dstIndex = dstRangePosition.get(dstDepth);
+            long srcIndex = sendRangePosition.toLong();
             for (ReactionInstance dstReaction : dstRange.instance.dependentReactions) {
               List<Runtime> dstRuntimes = dstReaction.getRuntimeInstances();
               Runtime dstRuntime = dstRuntimes.get(dstIndex);
-              dstRuntime.sourcePorts.add(new MriPortPair(sendRangePosition.copy(), port));
-            }
-            dstRangePosition.increment();
-            sendRangePosition.increment();
-            sendRangeCount++;
-            if (sendRangeCount >= sendRange.width) {
-              // Reset to multicast.
-              sendRangeCount = 0;
-              sendRangePosition = sendRange.startMR();
+              dstRuntime.sourcePorts.add(new MriPortPair(srcIndex, port));
             }
+            dstRangePosition.next();
+            sendRangePosition.next();
           }
         }
       }
@@ -344,47 +449,175 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
    *
    * <p>This procedure is based on Kahn's algorithm for topological sorting. Rather than
    * establishing a total order, we establish a partial order. In this order, the level of each
-   * reaction is the least upper bound of the levels of the reactions it depends on.
+   * reaction is the least upper bound of the levels of the reactions it depends on. The traversal
+   * itself is performed on an index-based snapshot of this graph.
    */
   private void assignLevels() {
-    List<ReactionInstance.Runtime> start = new ArrayList<>(rootNodes());
-
     // All root nodes start with level 0.
-    for (Runtime origin : start) {
+    for (Runtime origin : rootNodes()) {
       origin.level = 0;
     }
 
     // No need to do any of this if there are no root nodes;
     // the graph must be cyclic.
-    while (!start.isEmpty()) {
-      Runtime origin = start.remove(0);
-      Set<Runtime> toRemove = new LinkedHashSet<>();
-      Set<Runtime> downstreamAdjacentNodes = getDownstreamAdjacentNodes(origin);
-
-      // Visit effect nodes.
-      for (Runtime effect : downstreamAdjacentNodes) {
-        // Stage edge between origin and effect for removal.
-        toRemove.add(effect);
-
-        // Update level of downstream node.
-        effect.level = origin.level + 1;
+    removeInTopologicalOrder(
+        false,
+        // Update level of downstream node. Nodes are visited in order of increasing level, so the
+        // last upstream node to be visited determines the level.
+        (origin, effect) -> effect.level = origin.level + 1,
+        origin -> {
+          assignPortLevel(origin);
+          // Update numReactionsPerLevel info
+          incrementNumReactionsPerLevel(origin.level);
+        });
+  }
+
+  /**
+   * Return the levels of the runtime instances in the given graph of dependencies, reusing those
+   * recorded in the given snapshot wherever possible, or return null if the instances whose levels
+   * cannot be reused are part of or downstream of a cycle.
+   *
+   * @param dependencies The dependencies between runtime instances, identified by index.
+   * @param indices The index of each runtime instance.
+   * @param previous The snapshot of the graph of the previous version of the program.
+   */
+  private int[] reuseLevels(
+      CompactGraph dependencies, Map<Runtime, Integer> indices, Snapshot previous) {
+    int size = dependencies.size();
+
+    // Match the runtime instances with those of the previous version by position.
+    int[] paired = new int[size];
+    Arrays.fill(paired, -1);
+    boolean[] claimed = new boolean[previous.levels.length];
+    forEachReaction(
+        main,
+        "",
+        (position, reaction) -> {
+          int[] before = previous.positions.get(position);
+          if (before == null) return;
+          var runtimes = reaction.getRuntimeInstances();
+          for (int id = 0; id < Math.min(before.length, runtimes.size()); id++) {
+            Integer index = indices.get(runtimes.get(id));
+            if (index != null && before[id] >= 0 && !claimed[before[id]]) {
+              paired[index] = before[id];
+              claimed[before[id]] = true;
+            }
+          }
+        });
+
+    // Mark the instances that are new or whose immediate dependencies changed, and everything
+    // downstream of them, as affected.
+    boolean[] affected = new boolean[size];
+    int[] stack = new int[size];
+    int top = 0;
+    for (int i = 0; i < size; i++) {
+      if (dependencies.hasNode(i) && !sameDependencies(dependencies, i, paired, previous)) {
+        affected[i] = true;
+        stack[top++] = i;
       }
-      // Remove visited edges.
-      for (Runtime effect : toRemove) {
-        removeEdge(effect, origin);
-        // If the effect node has no more incoming edges,
-        // then move it in the start set.
-        if (getUpstreamAdjacentNodes(effect).isEmpty()) {
-          start.add(effect);
+    }
+    while (top > 0) {
+      int origin = stack[--top];
+      for (int k = 0; k < dependencies.outDegree(origin); k++) {
+        int effect = dependencies.downstream(origin, k);
+        if (!affected[effect]) {
+          affected[effect] = true;
+          stack[top++] = effect;
         }
       }
+    }
 
-      // Remove visited origin.
-      removeNode(origin);
-      assignPortLevel(origin);
+    // Reuse the levels of unaffected instances and assign levels to the affected ones with Kahn's
+    // algorithm, starting from the levels of their unaffected upstream neighbors.
+    int[] levels = new int[size];
+    int[] pending = new int[size];
+    int head = 0;
+    int tail = 0;
+    int[] queue = stack;
+    int reused = 0;
+    for (int i = 0; i < size; i++) {
+      if (!dependencies.hasNode(i)) continue;
+      if (!affected[i]) {
+        levels[i] = previous.levels[paired[i]];
+        reused++;
+        continue;
+      }
+      for (int k = 0; k < dependencies.inDegree(i); k++) {
+        int origin = dependencies.upstream(i, k);
+        if (affected[origin]) {
+          pending[i]++;
+        } else {
+          levels[i] = Math.max(levels[i], previous.levels[paired[origin]] + 1);
+        }
+      }
+      if (pending[i] == 0) queue[tail++] = i;
+    }
+    while (head < tail) {
+      int origin = queue[head++];
+      for (int k = 0; k < dependencies.outDegree(origin); k++) {
+        int effect = dependencies.downstream(origin, k);
+        levels[effect] = Math.max(levels[effect], levels[origin] + 1);
+        if (--pending[effect] == 0) queue[tail++] = effect;
+      }
+    }
+    if (reused + tail < nodeCount()) return null;
+    numReusedLevels = reused;
+    return levels;
+  }
 
-      // Update numReactionsPerLevel info
-      incrementNumReactionsPerLevel(origin.level);
+  /**
+   * Return whether the given runtime instance has a counterpart in the previous version of the
+   * program whose immediate upstream neighbors are the counterparts of its own.
+   */
+  private static boolean sameDependencies(
+      CompactGraph dependencies, int node, int[] paired, Snapshot previous) {
+    int counterpart = paired[node];
+    if (counterpart < 0) return false;
+    int degree = dependencies.inDegree(node);
+    int offset = previous.offsets[counterpart];
+    if (previous.offsets[counterpart + 1] - offset != degree) return false;
+    int[] mapped = new int[degree];
+    boolean inOrder = true;
+    for (int k = 0; k < degree; k++) {
+      mapped[k] = paired[dependencies.upstream(node, k)];
+      if (mapped[k] < 0) return false;
+      inOrder &= mapped[k] == previous.upstream[offset + k];
+    }
+    if (inOrder) return true;
+    Arrays.sort(mapped);
+    int[] before = Arrays.copyOfRange(previous.upstream, offset, offset + degree);
+    Arrays.sort(before);
+    return Arrays.equals(mapped, before);
+  }
+
+  /** Return the indices of the runtime instances of each reaction, by position. */
+  private Map<String, int[]> positionsOf(Map<Runtime, Integer> indices) {
+    Map<String, int[]> positions = new HashMap<>();
+    forEachReaction(
+        main,
+        "",
+        (position, reaction) -> {
+          var runtimes = reaction.getRuntimeInstances();
+          int[] ids = new int[runtimes.size()];
+          for (int id = 0; id < ids.length; id++) {
+            ids[id] = indices.getOrDefault(runtimes.get(id), -1);
+          }
+          positions.put(position, ids);
+        });
+    return positions;
+  }
+
+  /**
+   * Invoke the given action on every reaction contained directly or transitively by the given
+   * reactor, together with the position of the reaction (see {@link Snapshot}).
+   */
+  private static void forEachReaction(
+      ReactorInstance reactor, String prefix, BiConsumer<String, ReactionInstance> action) {
+    for (var reaction : reactor.reactions) {
+      action.accept(prefix + "#" + reaction.index, reaction);
+    }
+    for (var child : reactor.children) {
+      forEachReaction(child, prefix + "/" + child.getName(), action);
     }
   }
 
@@ -403,37 +636,16 @@ public class ReactionInstanceGraph extends PrecedenceGraph<ReactionInstance.Runt
    * reverse topologically sorted graph
    */
   private void assignInferredDeadlines() {
-    List<ReactionInstance.Runtime> start = new ArrayList<>(leafNodes());
-
     // All leaf nodes have deadline initialized to their declared deadline or MAX_VALUE
-    while (!start.isEmpty()) {
-      Runtime origin = start.remove(0);
-      Set<Runtime> toRemove = new LinkedHashSet<>();
-      Set<Runtime> upstreamAdjacentNodes = getUpstreamAdjacentNodes(origin);
-
-      // Visit effect nodes.
-      for (Runtime upstream : upstreamAdjacentNodes) {
-        // Stage edge between origin and upstream for removal.
-        toRemove.add(upstream);
-
-        // Update deadline of upstream node if origins deadline is earlier.
-        if (origin.deadline.isEarlierThan(upstream.deadline)) {
-          upstream.deadline = origin.deadline;
-        }
-      }
-      // Remove visited edges.
-      for (Runtime upstream : toRemove) {
-        removeEdge(origin, upstream);
-        // If the upstream node has no more outgoing edges,
-        // then move it in the start set.
-        if (getDownstreamAdjacentNodes(upstream).size() == 0) {
-          start.add(upstream);
-        }
-      }
-
-      // Remove visited origin.
-      removeNode(origin);
-    }
+    removeInTopologicalOrder(
+        true,
+        (origin, upstream) -> {
+          // Update deadline of upstream node if origins deadline is earlier.
+          if (origin.deadline.isEarlierThan(upstream.deadline)) {
+            upstream.deadline = origin.deadline;
+          }
+        },
+        origin -> {});
   }
 
   /**
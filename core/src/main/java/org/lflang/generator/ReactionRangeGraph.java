@@ -0,0 +1,702 @@
+package org.lflang.generator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+import org.lflang.TimeValue;
+import org.lflang.graph.CompactGraph;
+import org.lflang.graph.DirectedGraph;
+import org.lflang.lf.Variable;
+
+/**
+ * A symbolic counterpart of {@link ReactionInstanceGraph} that assigns levels and inferred
+ * deadlines to ranges of runtime reaction instances rather than to individual ones. Runtime
+ * instances are identified by their index in {@link ReactionInstance#getRuntimeInstances()}, but
+ * the runtime instances themselves are never created.
+ *
+ * <p>The dependencies between runtime instances are derived from the {@link SendRange}s and {@link
+ * RuntimeRange}s of the connections and are recorded as dependencies between index ranges of
+ * reactions, where either each downstream index depends on the upstream index at the same offset,
+ * or every downstream index in the range depends on every upstream index in the range. Levels and
+ * deadlines are kept as piecewise-constant functions of the index, which are split only where the
+ * dependencies of the runtime instances differ. Hence, the cost of the analysis does not depend on
+ * the width of banks and multiports in the common cases. Connections that interleave banks are
+ * enumerated channel by channel, but only the result is stored in compressed form.
+ *
+ * <p>Levels are assigned by traversing the reactions in topological order. If the dependencies
+ * between reactions (as opposed to those between runtime instances) are cyclic, then this analysis
+ * cannot tell whether the program has causality cycles, {@link #isAcyclic()} returns false, and
+ * the exact analysis in {@link ReactionInstanceGraph} has to be used instead. Dominating reactions
+ * and the level upper bounds of ports are only computed by the exact analysis.
+ */
+public class ReactionRangeGraph {
+
+  /**
+   * Create a new graph by traversing the maps in the named instances embedded in the hierarchy of
+   * the program and assign levels and deadlines.
+   *
+   * @param main The main reactor instance.
+   */
+  public ReactionRangeGraph(ReactorInstance main) {
+    this.main = main;
+    addDependencies(main);
+    addDependenciesForTpoLevels(main);
+    assignLevelsAndDeadlines();
+  }
+
+  ///////////////////////////////////////////////////////////
+  //// Public fields
+
+  /** The main reactor instance that this graph is associated with. */
+  public final ReactorInstance main;
+
+  ///////////////////////////////////////////////////////////
+  //// Public methods
+
+  /**
+   * Return true if the dependencies between reactions are acyclic, which implies that there are no
+   * causality cycles. If this returns false, then the program may or may not have causality
+   * cycles, and no levels or deadlines have been assigned.
+   */
+  public boolean isAcyclic() {
+    return acyclic;
+  }
+
+  /**
+   * Return the level of the runtime instance with the given index of the given reaction.
+   *
+   * @param reaction The reaction.
+   * @param index The index of the runtime instance.
+   */
+  public int getLevel(ReactionInstance reaction, int index) {
+    return levels.get(reaction).get(index);
+  }
+
+  /**
+   * Return the set of levels that the runtime instances of the given reaction have, in the order of
+   * the runtime instances. This is the same set as {@link ReactionInstance#getLevels()} returns
+   * after the exact analysis.
+   */
+  public Set<Integer> getLevels(ReactionInstance reaction) {
+    return valuesOf(levels.get(reaction));
+  }
+
+  /**
+   * Return the inferred deadline of the runtime instance with the given index of the given
+   * reaction.
+   *
+   * @param reaction The reaction.
+   * @param index The index of the runtime instance.
+   */
+  public TimeValue getInferredDeadline(ReactionInstance reaction, int index) {
+    return deadlines.get(reaction).get(index);
+  }
+
+  /**
+   * Return the set of inferred deadlines that the runtime instances of the given reaction have, in
+   * the order of the runtime instances.
+   */
+  public Set<TimeValue> getInferredDeadlines(ReactionInstance reaction) {
+    return valuesOf(deadlines.get(reaction));
+  }
+
+  /*
+   * Get an array of non-negative integers representing the number of runtime
+   * reaction instances per each level, where levels are indices of the array.
+   */
+  public Integer[] getNumReactionsPerLevel() {
+    return numReactionsPerLevel.toArray(new Integer[0]);
+  }
+
+  /** Return the max breadth of the reaction dependency graph. */
+  public int getBreadth() {
+    var maxBreadth = 0;
+    for (Integer breadth : numReactionsPerLevel) {
+      if (breadth > maxBreadth) {
+        maxBreadth = breadth;
+      }
+    }
+    return maxBreadth;
+  }
+
+  /**
+   * Return the total number of index ranges with a constant level over all reactions. This is a
+   * measure of the cost of the analysis, which is independent of the width of banks unless their
+   * members are assigned different levels.
+   */
+  public int getIntervalCount() {
+    int result = 0;
+    for (var intervals : levels.values()) {
+      result += intervals.size();
+    }
+    return result;
+  }
+
+  ///////////////////////////////////////////////////////////
+  //// Private methods
+
+  /**
+   * Add the dependencies that originate from the reactions of the given reactor and, recursively,
+   * its children. This visits the same connections as {@link
+   * ReactionInstanceGraph#addNodesAndEdges(ReactorInstance)}.
+   */
+  private void addDependencies(ReactorInstance reactor) {
+    ReactionInstance previousReaction = null;
+    for (ReactionInstance reaction : reactor.reactions) {
+      graph.addNode(reaction);
+
+      // Each runtime instance depends on the runtime instance of the previous reaction in the same
+      // reactor with the same index.
+      if (previousReaction != null) {
+        var segment = new Segment(0, widthOf(reaction), 0, widthOf(reaction), true);
+        addDependency(new Dependency(previousReaction, reaction, segment, Kind.PRECEDENCE));
+      }
+      previousReaction = reaction;
+
+      for (TriggerInstance<? extends Variable> effect : reaction.effects) {
+        if (effect instanceof PortInstance port) {
+          addDownstreamDependencies(port, reaction);
+        }
+      }
+    }
+    for (ReactorInstance child : reactor.children) {
+      addDependencies(child);
+    }
+  }
+
+  /**
+   * Add the dependencies between the given reaction and all the reactions that depend on the
+   * specified port.
+   *
+   * @param port The port that the given reaction has as an effect.
+   * @param reaction The upstream reaction.
+   */
+  private void addDownstreamDependencies(PortInstance port, ReactionInstance reaction) {
+    int srcDepth = (port.isInput()) ? 2 : 1;
+    for (SendRange sendRange : port.eventualDestinations()) {
+      for (RuntimeRange<PortInstance> dstRange : sendRange.destinations) {
+        int dstDepth = (dstRange.instance.isOutput()) ? 2 : 1;
+        List<Segment> segments = segmentsOf(sendRange, srcDepth, dstRange, dstDepth);
+        for (ReactionInstance dstReaction : dstRange.instance.dependentReactions) {
+          // Modes are always mutually exclusive, so they break dependencies between reactions in
+          // different modes of the same reactor.
+          Kind kind = Kind.PRECEDENCE;
+          if (reaction.getMode(true) != null
+              && dstReaction.getMode(true) != null
+              && reaction.getMode(true) != dstReaction.getMode(true)
+              && reaction.getParent() == dstReaction.getParent()) {
+            kind = Kind.MUTUALLY_EXCLUSIVE;
+          }
+          for (Segment segment : segments) {
+            addDependency(new Dependency(reaction, dstReaction, segment, kind));
+            // Like the exact analysis, lower the deadline of the upstream reaction to the deadline
+            // that the downstream reaction has when the dependency is added, also if the reactions
+            // are in mutually exclusive modes.
+            propagateDeadline(deadlineOf(dstReaction), deadlineOf(reaction), segment);
+          }
+        }
+      }
+    }
+  }
+
+  /** Add dependencies that encode the precedence relations induced by the TPO levels. */
+  private void addDependenciesForTpoLevels(ReactorInstance main) {
+    NavigableMap<Integer, List<ReactionInstance>> constrainedReactions = new TreeMap<>();
+    for (var child : main.children) {
+      if (child.tpoLevel != null) {
+        getAllContainedReactions(
+            constrainedReactions.computeIfAbsent(child.tpoLevel, it -> new ArrayList<>()), child);
+      }
+    }
+    for (var i : constrainedReactions.keySet()) {
+      var nextKey = constrainedReactions.higherKey(i);
+      if (nextKey == null) continue;
+      for (var r : constrainedReactions.get(i)) {
+        for (var rr : constrainedReactions.get(nextKey)) {
+          var segment = new Segment(0, widthOf(r), 0, widthOf(rr), false);
+          addDependency(new Dependency(r, rr, segment, Kind.TPO));
+        }
+      }
+    }
+  }
+
+  /** Add all reactions contained directly or transitively by {@code r}. */
+  private void getAllContainedReactions(List<ReactionInstance> reactions, ReactorInstance r) {
+    reactions.addAll(r.reactions);
+    for (var child : r.children) getAllContainedReactions(reactions, child);
+  }
+
+  /** Record the given dependency, unless one of its ranges is empty. */
+  private void addDependency(Dependency dependency) {
+    Segment segment = dependency.segment();
+    if (segment.upstreamWidth() <= 0 || segment.downstreamWidth() <= 0) return;
+    upstream.computeIfAbsent(dependency.downstream(), it -> new ArrayList<>()).add(dependency);
+    downstream.computeIfAbsent(dependency.upstream(), it -> new ArrayList<>()).add(dependency);
+    if (dependency.kind() != Kind.MUTUALLY_EXCLUSIVE) {
+      graph.addEdge(dependency.downstream(), dependency.upstream());
+    }
+  }
+
+  /**
+   * Return the index ranges of upstream and downstream runtime instances that are related by the
+   * given pair of ranges. Upstream indices are obtained by dropping {@code srcDepth} digits of the
+   * positions in the send range, and downstream indices by dropping {@code dstDepth} digits of the
+   * positions in the destination range, exactly like {@link
+   * ReactionInstanceGraph#addDownstreamReactions(PortInstance, ReactionInstance)} does.
+   */
+  private static List<Segment> segmentsOf(
+      SendRange sendRange, int srcDepth, RuntimeRange<PortInstance> dstRange, int dstDepth) {
+    List<Segment> result = new ArrayList<>();
+    int srcTotal = product(sendRange.radixes(), Integer.MAX_VALUE);
+    int dstTotal = product(dstRange.radixes(), Integer.MAX_VALUE);
+    if (sendRange.width <= 0
+        || srcTotal <= 0
+        || dstTotal <= 0
+        || !isIdentity(sendRange.permutation())
+        || !isIdentity(dstRange.permutation())) {
+      // Interleaved connections are enumerated channel by channel.
+      MixedRadixInt.Cursor dstRangePosition = dstRange.cursor();
+      MixedRadixInt.Cursor sendRangePosition = sendRange.cursor();
+      for (int count = 0; count < dstRange.width; count++) {
+        append(
+            result,
+            new Segment(
+                sendRangePosition.get(srcDepth), 1, dstRangePosition.get(dstDepth), 1, true));
+        dstRangePosition.next();
+        sendRangePosition.next();
+      }
+      return result;
+    }
+
+    // Without interleaving, the position of a channel is its magnitude and dropping digits amounts
+    // to an integer division.
+    int srcDivisor = product(sendRange.radixes(), srcDepth);
+    int dstDivisor = product(dstRange.radixes(), dstDepth);
+    int sendStart = sendRange.start % srcTotal;
+    int dstStart = dstRange.start % dstTotal;
+
+    if (sendRange.width <= srcTotal - sendStart
+        && sendStart / srcDivisor == (sendStart + sendRange.width - 1) / srcDivisor) {
+      // All channels are sent by the same runtime instance, so multicasting makes no difference.
+      int src = sendStart / srcDivisor;
+      int count = 0;
+      while (count < dstRange.width) {
+        int dst = (dstStart + count) % dstTotal;
+        int n = Math.min(dstRange.width - count, dstTotal - dst);
+        int first = dst / dstDivisor;
+        append(result, new Segment(src, 1, first, (dst + n - 1) / dstDivisor - first + 1, false));
+        count += n;
+      }
+      return result;
+    }
+
+    int count = 0;
+    while (count < dstRange.width) {
+      int sendOffset = count % sendRange.width;
+      int src = (sendStart + sendOffset) % srcTotal;
+      int dst = (dstStart + count) % dstTotal;
+      // The number of channels before the send range is reset or either position wraps around.
+      int n =
+          Math.min(
+              Math.min(dstRange.width - count, sendRange.width - sendOffset),
+              Math.min(srcTotal - src, dstTotal - dst));
+      appendStretch(result, src, srcDivisor, dst, dstDivisor, n);
+      count += n;
+    }
+    return result;
+  }
+
+  /**
+   * Append the index ranges that relate {@code n} consecutive upstream positions starting at {@code
+   * src} to {@code n} consecutive downstream positions starting at {@code dst}.
+   */
+  private static void appendStretch(
+      List<Segment> result, int src, int srcDivisor, int dst, int dstDivisor, int n) {
+    if (srcDivisor == dstDivisor && src % srcDivisor == dst % dstDivisor) {
+      // The indices advance in lockstep.
+      int first = src / srcDivisor;
+      int width = (src + n - 1) / srcDivisor - first + 1;
+      append(result, new Segment(first, width, dst / dstDivisor, width, true));
+    } else if (srcDivisor <= dstDivisor) {
+      // Each downstream index depends on a contiguous range of upstream indices.
+      int i = 0;
+      while (i < n) {
+        int length = Math.min(dstDivisor - (dst + i) % dstDivisor, n - i);
+        int first = (src + i) / srcDivisor;
+        int width = (src + i + length - 1) / srcDivisor - first + 1;
+        append(result, new Segment(first, width, (dst + i) / dstDivisor, 1, false));
+        i += length;
+      }
+    } else {
+      // Each upstream index is depended on by a contiguous range of downstream indices.
+      int i = 0;
+      while (i < n) {
+        int length = Math.min(srcDivisor - (src + i) % srcDivisor, n - i);
+        int first = (dst + i) / dstDivisor;
+        int width = (dst + i + length - 1) / dstDivisor - first + 1;
+        append(result, new Segment((src + i) / srcDivisor, 1, first, width, false));
+        i += length;
+      }
+    }
+  }
+
+  /** Append the given segment to the list, merging it with the last segment if possible. */
+  private static void append(List<Segment> segments, Segment segment) {
+    if (!segments.isEmpty()) {
+      Segment last = segments.get(segments.size() - 1);
+      Segment merged = last.merge(segment);
+      if (merged != null) {
+        segments.set(segments.size() - 1, merged);
+        return;
+      }
+    }
+    segments.add(segment);
+  }
+
+  /** Return true if the given permutation is the identity. */
+  private static boolean isIdentity(List<Integer> permutation) {
+    for (int i = 0; i < permutation.size(); i++) {
+      if (permutation.get(i) != i) return false;
+    }
+    return true;
+  }
+
+  /** Return the product of the first {@code count} radixes, or of all if there are fewer. */
+  private static int product(List<Integer> radixes, int count) {
+    int result = 1;
+    for (int i = 0; i < radixes.size() && i < count; i++) {
+      result *= radixes.get(i);
+    }
+    return result;
+  }
+
+  /** Return the number of runtime instances of the given reaction. */
+  private static int widthOf(ReactionInstance reaction) {
+    int width = reaction.getParent().getTotalWidth();
+    // If the width cannot be determined, assume there is only one instance.
+    return width < 0 ? 1 : width;
+  }
+
+  /**
+   * Assign levels to the reactions in topological order and then propagate deadlines upstream in
+   * reverse topological order along all dependencies but those between reactions in mutually
+   * exclusive modes. The level of a runtime instance is one more than the maximum level of the
+   * runtime instances that it depends on, and zero if there are none, which is the same level that
+   * {@link ReactionInstanceGraph} assigns.
+   */
+  private void assignLevelsAndDeadlines() {
+    CompactGraph compact = graph.toCompactGraph();
+    int[] order = compact.topologicalOrder(false);
+    if (order.length < graph.nodeCount()) {
+      acyclic = false;
+      return;
+    }
+    acyclic = true;
+
+    for (int node : order) {
+      ReactionInstance reaction = graph.nodeAt(node);
+      var result = new Intervals<>(widthOf(reaction), 0);
+      for (Dependency dependency : upstream.getOrDefault(reaction, List.of())) {
+        if (dependency.kind() == Kind.MUTUALLY_EXCLUSIVE) continue;
+        Segment segment = dependency.segment();
+        propagate(
+            levels.get(dependency.upstream()),
+            segment.upstreamStart(),
+            segment.upstreamWidth(),
+            result,
+            segment.downstreamStart(),
+            segment.downstreamWidth(),
+            segment.pointwise(),
+            level -> level + 1,
+            Math::max);
+      }
+      levels.put(reaction, result);
+      countReactionsPerLevel(result);
+    }
+
+    for (int i = order.length - 1; i >= 0; i--) {
+      ReactionInstance reaction = graph.nodeAt(order[i]);
+      var result = deadlineOf(reaction);
+      for (Dependency dependency : downstream.getOrDefault(reaction, List.of())) {
+        if (dependency.kind() != Kind.MUTUALLY_EXCLUSIVE) {
+          propagateDeadline(deadlines.get(dependency.downstream()), result, dependency.segment());
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the deadlines of the runtime instances of the given reaction, which are initially its
+   * declared deadline.
+   */
+  private Intervals<TimeValue> deadlineOf(ReactionInstance reaction) {
+    return deadlines.computeIfAbsent(
+        reaction,
+        it ->
+            new Intervals<>(
+                widthOf(it),
+                it.declaredDeadline != null ? it.declaredDeadline.maxDelay : TimeValue.MAX_VALUE));
+  }
+
+  /** Lower the deadlines of upstream runtime instances to those of the downstream ones. */
+  private static void propagateDeadline(
+      Intervals<TimeValue> from, Intervals<TimeValue> to, Segment segment) {
+    propagate(
+        from,
+        segment.downstreamStart(),
+        segment.downstreamWidth(),
+        to,
+        segment.upstreamStart(),
+        segment.upstreamWidth(),
+        segment.pointwise(),
+        UnaryOperator.identity(),
+        (a, b) -> b.isEarlierThan(a) ? b : a);
+  }
+
+  /**
+   * Combine the values in the range of {@code from} into the range of {@code to}. If {@code
+   * pointwise} is true, then each value is combined into the value at the same offset. Otherwise,
+   * the combination of all values in the range of {@code from} is combined into every value in the
+   * range of {@code to}.
+   *
+   * @param transform The function to apply to the values of {@code from}.
+   * @param combine The associative and commutative function that combines values.
+   */
+  private static <T> void propagate(
+      Intervals<T> from,
+      int fromStart,
+      int fromWidth,
+      Intervals<T> to,
+      int toStart,
+      int toWidth,
+      boolean pointwise,
+      UnaryOperator<T> transform,
+      BinaryOperator<T> combine) {
+    if (pointwise) {
+      from.forEachInterval(
+          fromStart,
+          fromWidth,
+          (start, width, value) ->
+              to.update(toStart + start - fromStart, width, transform.apply(value), combine));
+    } else {
+      T value = transform.apply(from.reduce(fromStart, fromWidth, combine));
+      to.update(toStart, toWidth, value, combine);
+    }
+  }
+
+  /** Add the number of runtime instances at each level to {@link #numReactionsPerLevel}. */
+  private void countReactionsPerLevel(Intervals<Integer> intervals) {
+    intervals.forEachInterval(
+        0,
+        intervals.width,
+        (start, width, level) -> {
+          while (numReactionsPerLevel.size() <= level) {
+            numReactionsPerLevel.add(0);
+          }
+          numReactionsPerLevel.set(level, numReactionsPerLevel.get(level) + width);
+        });
+  }
+
+  /** Return the distinct values of the given intervals in index order. */
+  private static <T> Set<T> valuesOf(Intervals<T> intervals) {
+    Set<T> result = new LinkedHashSet<>();
+    if (intervals != null) {
+      intervals.forEachInterval(0, intervals.width, (start, width, value) -> result.add(value));
+    }
+    return result;
+  }
+
+  ///////////////////////////////////////////////////////////
+  //// Private fields
+
+  /** Whether the dependencies between reactions are acyclic. */
+  private boolean acyclic;
+
+  /** The dependencies between reactions, excluding those that are broken by modes. */
+  private final DirectedGraph<ReactionInstance> graph = new DirectedGraph<>();
+
+  /** The dependencies of each reaction on upstream reactions. */
+  private final Map<ReactionInstance, List<Dependency>> upstream = new LinkedHashMap<>();
+
+  /** The dependencies of downstream reactions on each reaction. */
+  private final Map<ReactionInstance, List<Dependency>> downstream = new LinkedHashMap<>();
+
+  /** The levels of the runtime instances of each reaction. */
+  private final Map<ReactionInstance, Intervals<Integer>> levels = new LinkedHashMap<>();
+
+  /** The inferred deadlines of the runtime instances of each reaction. */
+  private final Map<ReactionInstance, Intervals<TimeValue>> deadlines = new LinkedHashMap<>();
+
+  /**
+   * Number of runtime reaction instances per level, represented as a list of integers where the
+   * indices are the levels.
+   */
+  private final List<Integer> numReactionsPerLevel = new ArrayList<>(List.of(0));
+
+  ///////////////////////////////////////////////////////////
+  //// Inner classes
+
+  /** The kinds of dependencies between reactions. */
+  private enum Kind {
+    /** The downstream reaction has to execute after the upstream reaction. */
+    PRECEDENCE,
+    /** The reactions are in mutually exclusive modes, so there is no precedence relation. */
+    MUTUALLY_EXCLUSIVE,
+    /** The downstream reaction has to execute after the upstream reaction because of TPO levels. */
+    TPO
+  }
+
+  /** A dependency between index ranges of an upstream and a downstream reaction. */
+  private record Dependency(
+      ReactionInstance upstream, ReactionInstance downstream, Segment segment, Kind kind) {}
+
+  /**
+   * A relation between a range of upstream indices and a range of downstream indices. If {@code
+   * pointwise} is true, then both ranges have the same width and each downstream index depends on
+   * the upstream index at the same offset. Otherwise, each downstream index depends on every
+   * upstream index.
+   */
+  private record Segment(
+      int upstreamStart,
+      int upstreamWidth,
+      int downstreamStart,
+      int downstreamWidth,
+      boolean pointwise) {
+
+    Segment {
+      // A single pair of indices is related both ways.
+      pointwise = pointwise || (upstreamWidth == 1 && downstreamWidth == 1);
+    }
+
+    /** Whether every downstream index depends on every upstream index. */
+    boolean complete() {
+      return !pointwise || upstreamWidth == 1;
+    }
+
+    /** Return a segment that relates the indices of both segments, or null if there is none. */
+    Segment merge(Segment next) {
+      boolean upstreamAdjacent = next.upstreamStart == upstreamStart + upstreamWidth;
+      boolean downstreamAdjacent = next.downstreamStart == downstreamStart + downstreamWidth;
+      if (pointwise && next.pointwise && upstreamAdjacent && downstreamAdjacent) {
+        return new Segment(
+            upstreamStart,
+            upstreamWidth + next.upstreamWidth,
+            downstreamStart,
+            downstreamWidth + next.downstreamWidth,
+            true);
+      }
+      if (complete() && next.complete()) {
+        if (next.upstreamStart == upstreamStart
+            && next.upstreamWidth == upstreamWidth
+            && downstreamAdjacent) {
+          return new Segment(
+              upstreamStart,
+              upstreamWidth,
+              downstreamStart,
+              downstreamWidth + next.downstreamWidth,
+              false);
+        }
+        if (next.downstreamStart == downstreamStart
+            && next.downstreamWidth == downstreamWidth
+            && upstreamAdjacent) {
+          return new Segment(
+              upstreamStart,
+              upstreamWidth + next.upstreamWidth,
+              downstreamStart,
+              downstreamWidth,
+              false);
+        }
+      }
+      return null;
+    }
+  }
+
+  /** A function of the indices in [0, width) that is constant on intervals. */
+  private static final class Intervals<T> {
+
+    /** The number of indices. */
+    private final int width;
+
+    /** The value of each interval, keyed by the first index of the interval. */
+    private final TreeMap<Integer, T> values = new TreeMap<>();
+
+    Intervals(int width, T initial) {
+      this.width = width;
+      if (width > 0) values.put(0, initial);
+    }
+
+    /** Return the number of intervals. */
+    int size() {
+      return values.size();
+    }
+
+    /** Return the value at the given index. */
+    T get(int index) {
+      return values.floorEntry(index).getValue();
+    }
+
+    /** Return the combination of the values in [start, start + length). */
+    T reduce(int start, int length, BinaryOperator<T> combine) {
+      T result = get(start);
+      for (T value : values.subMap(start, false, start + length, false).values()) {
+        result = combine.apply(result, value);
+      }
+      return result;
+    }
+
+    /** Combine the given value into every value in [start, start + length). */
+    void update(int start, int length, T value, BinaryOperator<T> combine) {
+      int end = start + length;
+      split(start);
+      if (end < width) split(end);
+      for (var entry : values.subMap(start, true, end, false).entrySet()) {
+        entry.setValue(combine.apply(entry.getValue(), value));
+      }
+      // Merge intervals that ended up with equal values.
+      var before = values.lowerEntry(start);
+      T previous = before == null ? null : before.getValue();
+      var iterator = values.subMap(start, true, end, true).entrySet().iterator();
+      while (iterator.hasNext()) {
+        var entry = iterator.next();
+        if (entry.getValue().equals(previous)) {
+          iterator.remove();
+        } else {
+          previous = entry.getValue();
+        }
+      }
+    }
+
+    /** Invoke the action on each maximal interval in [start, start + length) with equal values. */
+    void forEachInterval(int start, int length, IntervalAction<T> action) {
+      if (length <= 0) return;
+      int end = start + length;
+      int from = start;
+      T value = get(start);
+      for (var entry : values.subMap(start, false, end, false).entrySet()) {
+        action.apply(from, entry.getKey() - from, value);
+        from = entry.getKey();
+        value = entry.getValue();
+      }
+      action.apply(from, end - from, value);
+    }
+
+    /** Make sure that an interval starts at the given index. */
+    private void split(int index) {
+      var entry = values.floorEntry(index);
+      if (entry.getKey() != index) values.put(index, entry.getValue());
+    }
+  }
+
+  /** An action on an interval of indices that have the same value. */
+  @FunctionalInterface
+  private interface IntervalAction<T> {
+    void apply(int start, int width, T value);
+  }
+}
@@ -64,6 +64,7 @@ import org.lflang.lf.VarRef;
 import org.lflang.lf.Variable;
 import org.lflang.lf.Watchdog;
 import org.lflang.lf.WidthSpec;
+import org.lflang.util.Profiler;
 
 /**
  * Representation of a compile-time instance of a reactor. If the reactor is instantiated as a bank
@@ -202,11 +203,48 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
   public ReactionInstanceGraph assignLevels() {
     if (depth != 0) return root().assignLevels();
     if (cachedReactionLoopGraph == null) {
-      cachedReactionLoopGraph = new ReactionInstanceGraph(this);
+      try (var span = Profiler.current().span("assignLevels")) {
+        cachedReactionLoopGraph = new ReactionInstanceGraph(this);
+      }
+    }
+    return cachedReactionLoopGraph;
+  }
+
+  /**
+   * Like {@link #assignLevels()}, but reuse the levels recorded in the given snapshot of the graph
+   * of a previous version of the program wherever the dependencies did not change (see {@link
+   * ReactionInstanceGraph#ReactionInstanceGraph(ReactorInstance, ReactionInstanceGraph.Snapshot)}).
+   * The snapshot is ignored if levels have already been assigned.
+   *
+   * @param previous A snapshot of the graph of a previous version of the program, or null.
+   */
+  public ReactionInstanceGraph assignLevels(ReactionInstanceGraph.Snapshot previous) {
+    if (depth != 0) return root().assignLevels(previous);
+    if (cachedReactionLoopGraph == null) {
+      try (var span = Profiler.current().span("assignLevels")) {
+        cachedReactionLoopGraph = new ReactionInstanceGraph(this, previous);
+      }
     }
     return cachedReactionLoopGraph;
   }
 
+  /**
+   * Assign levels to ranges of runtime reaction instances within the same root as this reactor
+   * without creating the runtime instances. This is considerably cheaper than {@link
+   * #assignLevels()} for programs with wide banks, but it cannot handle programs where the
+   * dependencies between reactions (as opposed to their runtime instances) are cyclic. In that
+   * case, {@link ReactionRangeGraph#isAcyclic()} returns false.
+   */
+  public ReactionRangeGraph assignLevelsSymbolically() {
+    if (depth != 0) return root().assignLevelsSymbolically();
+    if (cachedReactionRangeGraph == null) {
+      try (var span = Profiler.current().span("assignLevelsSymbolically")) {
+        cachedReactionRangeGraph = new ReactionRangeGraph(this);
+      }
+    }
+    return cachedReactionRangeGraph;
+  }
+
   /**
    * This function assigns/propagates deadlines through the Reaction Instance Graph. It performs
    * Kahn's algorithm in reverse, starting from the leaf nodes and propagates deadlines upstream. To
@@ -238,6 +276,18 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
     return null;
   }
 
+  /**
+   * Return the cache of eventual destinations of port ranges that is shared by all ports in the
+   * hierarchy of the topmost parent of this reactor.
+   */
+  public EventualDestinationCache getEventualDestinationCache() {
+    if (depth != 0) return root().getEventualDestinationCache();
+    if (eventualDestinationCache == null) {
+      eventualDestinationCache = new EventualDestinationCache();
+    }
+    return eventualDestinationCache;
+  }
+
   /**
    * Clear any cached data in this reactor and its children. This is useful if a mutation has been
    * realized.
@@ -255,15 +305,25 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
    *     but then those connections are discarded.
    */
   public void clearCaches(boolean includingRuntimes) {
+    clearCachesOfTree(includingRuntimes);
+    root().getEventualDestinationCache().clear();
+  }
+
+  /**
+   * Clear the cached data of this reactor and its contents, except for the eventual destination
+   * cache of the root reactor, which is cleared only once by {@link #clearCaches(boolean)}.
+   */
+  private void clearCachesOfTree(boolean includingRuntimes) {
     if (includingRuntimes) cachedReactionLoopGraph = null;
+    cachedReactionRangeGraph = null;
     for (ReactorInstance child : children) {
-      child.clearCaches(includingRuntimes);
+      child.clearCachesOfTree(includingRuntimes);
     }
     for (PortInstance port : inputs) {
-      port.clearCaches();
+      port.clearConnectivityCaches();
     }
     for (PortInstance port : outputs) {
-      port.clearCaches();
+      port.clearConnectivityCaches();
     }
     for (ReactionInstance reaction : reactions) {
       reaction.clearCaches(includingRuntimes);
@@ -280,6 +340,7 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
     if (depth != 0) return root().getCycles();
     if (cachedCycles != null) return cachedCycles;
     cachedCycles = new LinkedHashSet<>();
+    if (isSymbolicallyAcyclic()) return cachedCycles;
 
     ReactionInstanceGraph reactionRuntimes = assignLevels();
     if (reactionRuntimes.nodes().size() > 0) {
@@ -451,7 +512,17 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
 
   /** Return true if the top-level parent of this reactor has causality cycles. */
   public boolean hasCycles() {
-    return assignLevels().nodeCount() != 0;
+    return !isSymbolicallyAcyclic() && assignLevels().nodeCount() != 0;
+  }
+
+  /**
+   * Return true if the symbolic analysis shows that the top-level parent of this reactor has no
+   * causality cycles. Unless the exact analysis has been performed already, this avoids creating
+   * the runtime instances of reactions.
+   */
+  private boolean isSymbolicallyAcyclic() {
+    var root = root();
+    return root.cachedReactionLoopGraph == null && root.assignLevelsSymbolically().isAcyclic();
   }
 
   /**
@@ -1186,6 +1257,12 @@ public class ReactorInstance extends NamedInstance<Instantiation> {
   /** Cached reaction graph containing reactions that form a causality loop. */
   private ReactionInstanceGraph cachedReactionLoopGraph = null;
 
+  /** Cached symbolic reaction graph with the levels of ranges of runtime reaction instances. */
+  private ReactionRangeGraph cachedReactionRangeGraph = null;
+
+  /** Cached eventual destinations of port ranges, shared by the whole hierarchy if this is root. */
+  private EventualDestinationCache eventualDestinationCache = null;
+
   /**
    * Return true if this is a generated delay reactor that originates from an "after" delay on a
    * connection.
@@ -391,6 +391,14 @@ public class RuntimeRange<T extends NamedInstance<?>> implements Comparable<Runt
     return result;
   }
 
+  /**
+   * Return a cursor positioned at the start of this range that returns to the start after it has
+   * been advanced {@link #width} times.
+   */
+  public MixedRadixInt.Cursor cursor() {
+    return new MixedRadixInt.Cursor(radixes(), permutation(), start, width);
+  }
+
   /**
    * Return a new range that represents the leftover elements starting at the specified offset
    * relative to start. If start + offset is greater than or equal to the width, then this returns
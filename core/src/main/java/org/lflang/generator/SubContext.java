@@ -4,6 +4,7 @@ import org.eclipse.xtext.util.CancelIndicator;
 import org.lflang.FileConfig;
 import org.lflang.MessageReporter;
 import org.lflang.target.TargetConfig;
+import org.lflang.util.Profiler;
 
 /**
  * A {@code SubContext} is the context of a process within a build process. For example, compilation
@@ -63,6 +64,11 @@ public class SubContext implements LFGeneratorContext {
     return containingContext.getErrorReporter();
   }
 
+  @Override
+  public Profiler getProfiler() {
+    return containingContext.getProfiler();
+  }
+
   @Override
   public void finish(GeneratorResult result) {
     this.result = result;
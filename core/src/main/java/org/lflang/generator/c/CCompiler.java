@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.lflang.FileConfig;
 import org.lflang.MessageReporter;
+import org.lflang.generator.CMakeProgressReporter;
 import org.lflang.generator.GeneratorBase;
 import org.lflang.generator.GeneratorCommandFactory;
 import org.lflang.generator.GeneratorUtils;
@@ -103,6 +104,7 @@ public class CCompiler {
    */
   public boolean runCCompiler(GeneratorBase generator, LFGeneratorContext context)
       throws IOException {
+    commandFactory.setProfiler(context.getProfiler());
     // Set the build directory to be "build"
     Path buildPath = fileConfig.getSrcGenPath().resolve("build");
     // Remove the previous build directory if it exists to
@@ -132,6 +134,8 @@ public class CCompiler {
       }
     }
 
+    var progress = new CMakeProgressReporter(context);
+    progress.attachTo(compile);
     int cMakeReturnCode = compile.run(context.getCancelIndicator());
 
     if (cMakeReturnCode != 0
@@ -152,6 +156,7 @@ public class CCompiler {
 
     if (cMakeReturnCode == 0) {
       LFCommand build = buildCmakeCommand();
+      progress.attachTo(build);
 
       makeReturnCode = build.run(context.getCancelIndicator());
 
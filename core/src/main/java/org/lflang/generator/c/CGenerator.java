@@ -38,18 +38,25 @@ import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.xtext.xbase.lib.Exceptions;
 import org.lflang.FileConfig;
+import org.lflang.SynchronizedMessageReporter;
 import org.lflang.ast.ASTUtils;
 import org.lflang.ast.DelayedConnectionTransformation;
 import org.lflang.federated.extensions.CExtensionUtils;
@@ -89,6 +96,7 @@ import org.lflang.target.TargetConfig;
 import org.lflang.target.property.BuildCommandsProperty;
 import org.lflang.target.property.CmakeIncludeProperty;
 import org.lflang.target.property.CompileDefinitionsProperty;
+import org.lflang.target.property.CompileThreadsProperty;
 import org.lflang.target.property.DockerProperty;
 import org.lflang.target.property.FedSetupProperty;
 import org.lflang.target.property.LoggingProperty;
@@ -101,10 +109,12 @@ import org.lflang.target.property.SchedulerProperty;
 import org.lflang.target.property.SingleThreadedProperty;
 import org.lflang.target.property.TracingProperty;
 import org.lflang.target.property.WorkersProperty;
+import org.lflang.target.property.type.LoggingType.LogLevel;
 import org.lflang.target.property.type.PlatformType.Platform;
 import org.lflang.target.property.type.SchedulerType.Scheduler;
 import org.lflang.util.ArduinoUtil;
 import org.lflang.util.FileUtil;
+import org.lflang.util.RuntimeCache;
 
 /**
  * Generator for C target. This class generates C code defining each reactor class given in the
@@ -332,6 +342,8 @@ public class CGenerator extends GeneratorBase {
     this.cppMode = cppMode;
     this.types = types;
     this.cmakeGenerator = cmakeGenerator;
+    // Reactor classes are generated concurrently, and their generators may report messages.
+    this.messageReporter = new SynchronizedMessageReporter(messageReporter);
 
     registerTransformation(
         new DelayedConnectionTransformation(
@@ -421,17 +433,37 @@ public class CGenerator extends GeneratorBase {
     var cFilename = CCompiler.getTargetFileName(lfModuleName, this.cppMode, targetConfig);
     var targetFile = fileConfig.getSrcGenPath() + File.separator + cFilename;
     try {
-      generateCodeFor(lfModuleName);
-      copyTargetFiles();
-      generateHeaders();
-      code.writeToFile(targetFile);
+      // The main file can be very large, so write it to disk as it is generated.
+      code.streamTo(Path.of(targetFile));
+      initializeTriggerObjects = CodeBuilder.spooled();
+      try (var span = context.getProfiler().span("code emission")) {
+        generateCodeFor(lfModuleName);
+      }
+      if (main != null
+          && targetConfig.get(LoggingProperty.INSTANCE).compareTo(LogLevel.DEBUG) >= 0) {
+        messageReporter
+            .nowhere()
+            .info("Eventual destination cache: " + main.getEventualDestinationCache());
+      }
+      try (var span = context.getProfiler().span("runtime files")) {
+        copyTargetFiles();
+      }
+      try (var span = context.getProfiler().span("code emission")) {
+        generateHeaders();
+        code.writeToFile(targetFile);
+      }
     } catch (IOException e) {
+      code.discard();
       String message = e.getMessage();
       messageReporter.nowhere().error(message);
     } catch (RuntimeException e) {
+      code.discard();
       String message = e.getMessage();
       messageReporter.nowhere().error(message);
       throw e;
+    } finally {
+      // Delete the spooled code if generation failed before it was used.
+      initializeTriggerObjects.discard();
     }
 
     // Inform the runtime of the number of watchdogs
@@ -528,7 +560,6 @@ public class CGenerator extends GeneratorBase {
           context.unsuccessfulFinish();
         }
       } else {
-        var cleanCode = code.removeLines("#line");
         var cCompiler = new CCompiler(targetConfig, fileConfig, messageReporter, cppMode);
         var success = false;
         try {
@@ -542,13 +573,6 @@ public class CGenerator extends GeneratorBase {
             CUtil.deleteBinFiles(fileConfig);
             context.unsuccessfulFinish();
           } else {
-            try {
-              cleanCode.writeToFile(targetFile);
-            } catch (IOException e) {
-              messageReporter
-                  .nowhere()
-                  .warning("Generated code may still contain line directives.");
-            }
             context.finish(GeneratorResult.Status.COMPILED, null);
           }
         }
@@ -583,9 +607,51 @@ public class CGenerator extends GeneratorBase {
   private void generateCodeFor(String lfModuleName) throws IOException {
     code.pr(generateDirectives());
     code.pr(new CMainFunctionGenerator(targetConfig).generateCode());
-    // Generate code for each reactor.
-    generateReactorDefinitions();
+    // Generate code for each reactor. The bodies of the reactor classes are generated and written
+    // concurrently with the generation of the main file.
+    var reactorClasses = generateReactorDefinitions();
+    // EMF resolves cross-references lazily and is not thread-safe, so resolve them all before any
+    // reactor class is generated on another thread.
+    var resourceSet = fileConfig.resource.getResourceSet();
+    if (resourceSet != null) EcoreUtil.resolveAll(resourceSet);
+    var threads = getNumberOfReactorClassThreads(reactorClasses.size());
+    var pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    Executor executor = pool != null ? pool : Runnable::run;
+    var profiler = context.getProfiler();
+    try {
+      var pending =
+          reactorClasses.stream()
+              .map(it -> CompletableFuture.runAsync(profiler.wrap("reactor class", it), executor))
+              .toList();
+      Throwable failure = null;
+      try {
+        generateMainCode(lfModuleName);
+      } catch (RuntimeException | Error e) {
+        failure = e;
+      }
+      awaitReactorClasses(pending, failure);
+    } finally {
+      if (pool != null) pool.shutdownNow();
+    }
+  }
 
+  /**
+   * Return the number of threads to use for generating the given number of reactor classes. If the
+   * number of threads is not specified by the {@code compile-threads} target property, it is the
+   * number of available processors.
+   */
+  private int getNumberOfReactorClassThreads(int reactorClassCount) {
+    var requested = targetConfig.get(CompileThreadsProperty.INSTANCE);
+    var available = requested > 0 ? requested : Runtime.getRuntime().availableProcessors();
+    return Math.min(available, reactorClassCount);
+  }
+
+  /**
+   * Generate the code of the main file that follows the includes of the reactor classes.
+   *
+   * @param lfModuleName The name of the main file.
+   */
+  private void generateMainCode(String lfModuleName) {
     // Generate main instance, if there is one.
     // Note that any main reactors in imported files are ignored.
     // Skip generation if there are cycles.
@@ -619,9 +685,8 @@ public class CGenerator extends GeneratorBase {
       }
 
       // Generate function to initialize the trigger objects for all reactors.
-      code.pr(
-          CTriggerObjectsGenerator.generateInitializeTriggerObjects(
-              main, targetConfig, initializeTriggerObjects, startTimeStep, types, lfModuleName));
+      CTriggerObjectsGenerator.generateInitializeTriggerObjects(
+          code, main, targetConfig, initializeTriggerObjects, startTimeStep, types, lfModuleName);
 
       // Generate a function that will either do nothing
       // (if there is only one federate or the coordination
@@ -774,13 +839,43 @@ public class CGenerator extends GeneratorBase {
    *   <li>If there are any preambles, add them to the preambles of the reactor.
    * </ul>
    */
-  private void generateReactorDefinitions() throws IOException {
+  private List<Runnable> generateReactorDefinitions() {
     var generatedReactors = new LinkedHashSet<TypeParameterizedReactor>();
+    var reactorClasses = new ArrayList<Runnable>();
     if (this.main != null) {
-      generateReactorChildren(this.main, generatedReactors);
-      generateReactorClass(new TypeParameterizedReactor(this.mainDef, reactors));
+      generateReactorChildren(this.main, generatedReactors, reactorClasses);
+      reactorClasses.add(
+          generateReactorClass(new TypeParameterizedReactor(this.mainDef, reactors)));
     }
     // do not generate code for reactors that are not instantiated
+    return reactorClasses;
+  }
+
+  /**
+   * Wait until the files of all the given reactor classes are written. If the generation of the
+   * main file or of any reactor class failed, rethrow the first failure with the later ones added
+   * to it as suppressed exceptions.
+   *
+   * @param reactorClasses The pending generation of the reactor classes.
+   * @param failure The failure of the generation of the main file, or null if it succeeded.
+   */
+  private static void awaitReactorClasses(
+      List<CompletableFuture<Void>> reactorClasses, Throwable failure) throws IOException {
+    for (var reactorClass : reactorClasses) {
+      try {
+        reactorClass.join();
+      } catch (CompletionException e) {
+        var cause = e.getCause() instanceof UncheckedIOException io ? io.getCause() : e.getCause();
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure instanceof IOException e) throw e;
+    if (failure instanceof RuntimeException e) throw e;
+    if (failure instanceof Error e) throw e;
   }
 
   private record TypeParameterizedReactorWithDecl(TypeParameterizedReactor tpr, ReactorDecl decl) {
@@ -852,17 +947,19 @@ public class CGenerator extends GeneratorBase {
    * </ul>
    *
    * @param reactor Used to extract children from
+   * @param reactorClasses The list to add the deferred generation of each reactor class to.
    */
   private void generateReactorChildren(
-      ReactorInstance reactor, LinkedHashSet<TypeParameterizedReactor> generatedReactors)
-      throws IOException {
+      ReactorInstance reactor,
+      LinkedHashSet<TypeParameterizedReactor> generatedReactors,
+      List<Runnable> reactorClasses) {
     for (ReactorInstance r : reactor.children) {
       var newTpr = r.tpr;
       if (r.reactorDeclaration != null && !generatedReactors.contains(newTpr)) {
         generatedReactors.add(newTpr);
-        generateReactorChildren(r, generatedReactors);
+        generateReactorChildren(r, generatedReactors, reactorClasses);
         inspectReactorEResource(r.reactorDeclaration);
-        generateReactorClass(newTpr);
+        reactorClasses.add(generateReactorClass(newTpr));
       }
     }
   }
@@ -917,35 +1014,54 @@ public class CGenerator extends GeneratorBase {
       }
     }
 
+    var libraries = List.of("logging", "platform", "low_level_platform", "trace", "version", "tag");
+    var directories = Stream.concat(Stream.of("core", "lib"), libraries.stream()).toList();
+    // Link to the runtime in the runtime cache, unless the sources are modified (Arduino,
+    // Python) or have to be self-contained (Docker).
+    if (context.getArgs().externalRuntimeUri() == null
+        && !arduino
+        && !targetConfig.get(DockerProperty.INSTANCE).enabled()
+        && linksRuntime()
+        && RuntimeCache.link("/lib/c/reactor-c", directories, dest)) {
+      return;
+    }
+    // Do not copy through links to the runtime cache of an earlier build.
+    RuntimeCache.unlink(fileConfig.getSrcGenPath(), directories);
+
     // Copy the core lib
     if (context.getArgs().externalRuntimeUri() != null) {
       Path coreLib = Paths.get(context.getArgs().externalRuntimeUri());
       FileUtil.copyDirectoryContents(coreLib, dest, true);
+    } else if (!arduino) {
+      FileUtil.copyFromClassPath(
+          directories.stream().map(it -> "/lib/c/reactor-c/" + it).toList(), dest, true, false);
     } else {
-      for (var directory : List.of("core", "lib")) {
-        FileUtil.copyFromClassPath("/lib/c/reactor-c/" + directory, dest, true, false);
-      }
-      for (var directory :
-          List.of("logging", "platform", "low_level_platform", "trace", "version", "tag")) {
+      FileUtil.copyFromClassPath(
+          List.of("/lib/c/reactor-c/core", "/lib/c/reactor-c/lib"), dest, true, false);
+      for (var directory : libraries) {
         var entry = "/lib/c/reactor-c/" + directory;
-        if (arduino) {
-          if (FileConfig.class.getResource(entry + "/api") != null) {
-            FileUtil.copyFromClassPath(
-                entry + "/api",
-                fileConfig.getSrcGenPath().resolve("include").resolve(directory),
-                true,
-                false);
-          }
-          if (FileConfig.class.getResource(entry + "/impl") != null) {
-            FileUtil.copyFromClassPath(entry + "/impl", dest.resolve(directory), true, false);
-          }
-        } else {
-          FileUtil.copyFromClassPath(entry, dest, true, false);
+        if (FileConfig.class.getResource(entry + "/api") != null) {
+          FileUtil.copyFromClassPath(
+              entry + "/api",
+              fileConfig.getSrcGenPath().resolve("include").resolve(directory),
+              true,
+              false);
+        }
+        if (FileConfig.class.getResource(entry + "/impl") != null) {
+          FileUtil.copyFromClassPath(entry + "/impl", dest.resolve(directory), true, false);
         }
       }
     }
   }
 
+  /**
+   * Return true if the runtime directories in the src-gen directory may be links to the shared
+   * runtime cache, which requires that no files are added to or modified in them.
+   */
+  protected boolean linksRuntime() {
+    return true;
+  }
+
   ////////////////////////////////////////////
   //// Code generators.
 
@@ -963,8 +1079,15 @@ public class CGenerator extends GeneratorBase {
    * <p>If the reactor is the main reactor, then the generated code may be customized. Specifically,
    * if the main reactor has reactions, these reactions will not be generated if they are triggered
    * by or send data to contained reactors that are not in the federate.
+   *
+   * <p>The includes and preambles are generated right away because they add to the main file and,
+   * in the Python target, to the Python preamble. The rest of the code only depends on the reactor
+   * class itself, so it is returned as a task that may run on another thread once all reactor
+   * classes have been visited.
+   *
+   * @return The deferred generation of the rest of the code.
    */
-  private void generateReactorClass(TypeParameterizedReactor tpr) throws IOException {
+  private Runnable generateReactorClass(TypeParameterizedReactor tpr) {
     // FIXME: Currently we're not reusing definitions for declarations that point to the same
     // definition.
     CodeBuilder header = new CodeBuilder();
@@ -975,12 +1098,18 @@ public class CGenerator extends GeneratorBase {
     header.pr("#define " + guardMacro);
     generateReactorClassHeaders(tpr, headerName, header, src);
     header.pr(generateTopLevelPreambles(tpr.reactor()));
-    generateUserPreamblesForReactor(tpr.reactor(), src);
-    generateReactorClassBody(tpr, header, src);
-    header.pr("#endif // " + guardMacro);
-    header.writeToFile(fileConfig.getSrcGenPath().resolve(headerName).toString());
-    var extension = CCompiler.getFileExtension(cppMode, targetConfig);
-    src.writeToFile(fileConfig.getSrcGenPath().resolve(CUtil.getName(tpr) + extension).toString());
+    var srcName = CUtil.getName(tpr) + CCompiler.getFileExtension(cppMode, targetConfig);
+    return () -> {
+      generateUserPreamblesForReactor(tpr.reactor(), src);
+      generateReactorClassBody(tpr, header, src);
+      header.pr("#endif // " + guardMacro);
+      try {
+        header.writeToFile(fileConfig.getSrcGenPath().resolve(headerName).toString());
+        src.writeToFile(fileConfig.getSrcGenPath().resolve(srcName).toString());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
   }
 
   protected void generateReactorClassHeaders(
@@ -1961,9 +2090,10 @@ public class CGenerator extends GeneratorBase {
         Map.of("LOG_LEVEL", String.valueOf(targetConfig.get(LoggingProperty.INSTANCE).ordinal())));
 
     targetConfig.compileAdditionalSources.addAll(CCoreFilesUtils.getCTargetSrc());
-    // Create the main reactor instance if there is a main reactor.
+    // Create the main reactor instance if there is a main reactor. The generated code needs the
+    // levels and dominating reactions of every runtime instance.
     this.main =
-        ASTUtils.createMainReactorInstance(mainDef, reactors, messageReporter, targetConfig);
+        ASTUtils.createMainReactorInstance(mainDef, reactors, messageReporter, targetConfig, true);
     if (hasModalReactors) {
       // So that each separate compile knows about modal reactors, do this:
       CompileDefinitionsProperty.INSTANCE.update(targetConfig, Map.of("MODAL_REACTORS", "TRUE"));
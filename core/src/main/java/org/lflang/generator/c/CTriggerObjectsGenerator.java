@@ -12,6 +12,7 @@ import static org.lflang.util.StringUtil.joinObjects;
 import com.google.common.collect.Iterables;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.lflang.AttributeUtils;
 import org.lflang.ast.ASTUtils;
@@ -35,15 +36,15 @@ import org.lflang.target.property.type.LoggingType.LogLevel;
  * @author Hou Seng Wong
  */
 public class CTriggerObjectsGenerator {
-  /** Generate the _lf_initialize_trigger_objects function for 'federate'. */
-  public static String generateInitializeTriggerObjects(
+  /** Generate the _lf_initialize_trigger_objects function for 'federate' into {@code code}. */
+  public static void generateInitializeTriggerObjects(
+      CodeBuilder code,
       ReactorInstance main,
       TargetConfig targetConfig,
       CodeBuilder initializeTriggerObjects,
       CodeBuilder startTimeStep,
       CTypes types,
       String lfModuleName) {
-    var code = new CodeBuilder();
     code.pr("void _lf_initialize_trigger_objects() {");
     code.indent();
 
@@ -70,19 +71,19 @@ public class CTriggerObjectsGenerator {
     // Create the table to initialize intended tag fields to 0 between time
     // steps.
 
-    code.pr(initializeTriggerObjects.toString());
+    code.pr(initializeTriggerObjects);
 
-    code.pr(deferredInitialize(main, main.reactions, targetConfig, types));
-    code.pr(deferredInitializeNonNested(main, main, main.reactions, types));
+    deferredInitialize(main, main.reactions, targetConfig, types, code);
+    deferredInitializeNonNested(main, main, main.reactions, types, code);
     // Next, for every input port, populate its "self" struct
     // fields with pointers to the output port that sends it data.
-    code.pr(deferredConnectInputsToOutputs(main));
+    deferredConnectInputsToOutputs(main, code);
     // Put the code here to set up the tables that drive resetting is_present and
     // decrementing reference counts between time steps. This code has to appear
     // in _lf_initialize_trigger_objects() after the code that makes connections
     // between inputs and outputs.
-    code.pr(startTimeStep.toString());
-    code.pr(setReactionPriorities(main));
+    code.pr(startTimeStep);
+    setReactionPriorities(main, reactorsWithReactions(main), code);
     code.pr(generateSchedulerInitializerMain(main, targetConfig));
 
     // FIXME: This is a little hack since we know top-level/main is always first (has index 0)
@@ -98,7 +99,6 @@ public class CTriggerObjectsGenerator {
 
     code.unindent();
     code.pr("}\n");
-    return code.toString();
   }
 
   /** Generate code to initialize the scheduler for the threaded C runtime. */
@@ -143,24 +143,37 @@ public class CTriggerObjectsGenerator {
   }
 
   /**
-   * Set the reaction priorities based on dependency analysis.
-   *
-   * @param reactor The reactor on which to do this.
+   * Return the given reactor and those of its descendants that contain reactions, directly or in
+   * a descendant.
    */
-  private static String setReactionPriorities(ReactorInstance reactor) {
-    var code = new CodeBuilder();
-    setReactionPriorities(reactor, code);
-    return code.toString();
+  private static Set<ReactorInstance> reactorsWithReactions(ReactorInstance reactor) {
+    var result = new HashSet<ReactorInstance>();
+    collectReactorsWithReactions(reactor, result);
+    return result;
+  }
+
+  private static boolean collectReactorsWithReactions(
+      ReactorInstance reactor, Set<ReactorInstance> result) {
+    var foundOne = !reactor.reactions.isEmpty();
+    for (ReactorInstance child : reactor.children) {
+      foundOne = collectReactorsWithReactions(child, result) || foundOne;
+    }
+    if (foundOne) result.add(reactor);
+    return foundOne;
   }
 
   /**
-   * Set the reaction priorities based on dependency analysis.
+   * Set the reaction priorities based on dependency analysis. The code for each reactor is written
+   * directly into the given builder, nested within the block of its parent, so that the code for a
+   * deep hierarchy is not copied once per level.
    *
    * @param reactor The reactor on which to do this.
+   * @param reactorsWithReactions The reactors that contain reactions; the others are skipped.
    * @param builder Where to write the code.
    */
-  private static boolean setReactionPriorities(ReactorInstance reactor, CodeBuilder builder) {
-    var foundOne = false;
+  private static void setReactionPriorities(
+      ReactorInstance reactor, Set<ReactorInstance> reactorsWithReactions, CodeBuilder builder) {
+    if (!reactorsWithReactions.contains(reactor)) return;
     // Force calculation of levels if it has not been done.
     // FIXME: Comment out this as I think it is redundant.
     //  If it is NOT redundant then deadline propagation is not correct
@@ -213,12 +226,10 @@ public class CTriggerObjectsGenerator {
       }
     }
 
-    var temp = new CodeBuilder();
-    temp.pr("// Set reaction priorities for " + reactor);
-    temp.startScopedBlock(reactor);
+    builder.pr(prolog);
+    builder.pr("// Set reaction priorities for " + reactor);
+    builder.startScopedBlock(reactor);
     for (ReactionInstance r : reactor.reactions) {
-      // if (currentFederate.contains(r.getDefinition())) {
-      foundOne = true;
       var levelSet = r.getLevels();
       var deadlineSet = r.getInferredDeadlines();
 
@@ -237,7 +248,7 @@ public class CTriggerObjectsGenerator {
                 + level
                 + ")";
 
-        temp.pr(
+        builder.pr(
             String.join(
                 "\n",
                 CUtil.reactionRef(r) + ".chain_id = " + r.chainID + ";",
@@ -246,7 +257,7 @@ public class CTriggerObjectsGenerator {
                 CUtil.reactionRef(r) + ".index = " + reactionIndex + ";"));
       } else if (levelSet.size() == 1 && deadlineSet.size() > 1) {
         // Scenario 2
-        temp.pr(
+        builder.pr(
             String.join(
                 "\n",
                 CUtil.reactionRef(r) + ".chain_id = " + r.chainID + ";",
@@ -263,7 +274,7 @@ public class CTriggerObjectsGenerator {
 
       } else if (levelSet.size() > 1 && deadlineSet.size() == 1) {
         // Scenarion (3)
-        temp.pr(
+        builder.pr(
             String.join(
                 "\n",
                 CUtil.reactionRef(r) + ".chain_id = " + r.chainID + ";",
@@ -280,7 +291,7 @@ public class CTriggerObjectsGenerator {
 
       } else if (levelSet.size() > 1 && deadlineSet.size() > 1) {
         // Scenario (4)
-        temp.pr(
+        builder.pr(
             String.join(
                 "\n",
                 CUtil.reactionRef(r) + ".chain_id = " + r.chainID + ";",
@@ -299,16 +310,10 @@ public class CTriggerObjectsGenerator {
       }
     }
     for (ReactorInstance child : reactor.children) {
-      foundOne = setReactionPriorities(child, temp) || foundOne;
+      setReactionPriorities(child, reactorsWithReactions, builder);
     }
-    temp.endScopedBlock();
-
-    if (foundOne) {
-      builder.pr(prolog.toString());
-      builder.pr(temp.toString());
-      builder.pr(epilog.toString());
-    }
-    return foundOne;
+    builder.endScopedBlock();
+    builder.pr(epilog);
   }
 
   /**
@@ -317,9 +322,9 @@ public class CTriggerObjectsGenerator {
    * reactors have been created because inputs point to outputs that are arbitrarily far away.
    *
    * @param instance The reactor instance.
+   * @param code Where to write the code.
    */
-  private static String deferredConnectInputsToOutputs(ReactorInstance instance) {
-    var code = new CodeBuilder();
+  private static void deferredConnectInputsToOutputs(ReactorInstance instance, CodeBuilder code) {
     code.pr("// Connect inputs and outputs for reactor " + instance.getFullName() + ".");
     // Iterate over all ports of this reactor that depend on reactions.
     for (PortInstance input : instance.inputs) {
@@ -335,9 +340,8 @@ public class CTriggerObjectsGenerator {
       }
     }
     for (ReactorInstance child : instance.children) {
-      code.pr(deferredConnectInputsToOutputs(child));
+      deferredConnectInputsToOutputs(child, code);
     }
-    return code.toString();
   }
 
   /**
@@ -812,13 +816,14 @@ public class CTriggerObjectsGenerator {
    * @param main The top-level reactor.
    * @param reactions The list of reactions to consider.
    * @param types The C types.
+   * @param code Where to write the code.
    */
-  private static String deferredInitializeNonNested(
+  private static void deferredInitializeNonNested(
       ReactorInstance reactor,
       ReactorInstance main,
       Iterable<ReactionInstance> reactions,
-      CTypes types) {
-    var code = new CodeBuilder();
+      CTypes types,
+      CodeBuilder code) {
     code.pr("// **** Start non-nested deferred initialize for " + reactor.getFullName());
     // Initialization within a for loop iterating
     // over bank members of reactor
@@ -837,11 +842,10 @@ public class CTriggerObjectsGenerator {
     code.pr(deferredFillTriggerTable(reactions));
     code.pr(deferredOptimizeForSingleDominatingReaction(reactor));
     for (ReactorInstance child : reactor.children) {
-      code.pr(deferredInitializeNonNested(child, main, child.reactions, types));
+      deferredInitializeNonNested(child, main, child.reactions, types, code);
     }
     code.endScopedBlock();
     code.pr("// **** End of non-nested deferred initialize for " + reactor.getFullName());
-    return code.toString();
   }
 
   /**
@@ -1093,13 +1097,14 @@ public class CTriggerObjectsGenerator {
    * have been created. This function creates nested loops over nested banks.
    *
    * @param reactor The container.
+   * @param code Where to write the code.
    */
-  private static String deferredInitialize(
+  private static void deferredInitialize(
       ReactorInstance reactor,
       Iterable<ReactionInstance> reactions,
       TargetConfig targetConfig,
-      CTypes types) {
-    var code = new CodeBuilder();
+      CTypes types,
+      CodeBuilder code) {
     code.pr("// **** Start deferred initialize for " + reactor.getFullName());
     // First batch of initializations is within a for loop iterating
     // over bank members for the reactor's parent.
@@ -1117,10 +1122,9 @@ public class CTriggerObjectsGenerator {
     // create a default token on the self struct.
     code.pr(deferredCreateTemplateTokens(reactor, types));
     for (ReactorInstance child : reactor.children) {
-      code.pr(deferredInitialize(child, child.reactions, targetConfig, types));
+      deferredInitialize(child, child.reactions, targetConfig, types, code);
     }
     code.endScopedBlock();
     code.pr("// **** End of deferred initialize for " + reactor.getFullName());
-    return code.toString();
   }
 }
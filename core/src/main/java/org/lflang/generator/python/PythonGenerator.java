@@ -651,15 +651,26 @@ public class PythonGenerator extends CGenerator {
     return lfModuleName + ".py";
   }
 
+  /**
+   * The Python sources of the runtime are copied into its {@code lib} directory, which therefore
+   * must not be a link to the runtime cache.
+   */
+  @Override
+  protected boolean linksRuntime() {
+    return false;
+  }
+
   /** Copy Python specific target code to the src-gen directory */
   @Override
   protected void copyTargetFiles() throws IOException {
     super.copyTargetFiles();
     FileUtil.copyFromClassPath(
-        "/lib/c/reactor-c/python/include", fileConfig.getSrcGenPath(), true, false);
-    FileUtil.copyFromClassPath(
-        "/lib/c/reactor-c/python/lib", fileConfig.getSrcGenPath(), true, false);
-    FileUtil.copyFromClassPath(
-        "/lib/py/lf-python-support/LinguaFrancaBase", fileConfig.getSrcGenPath(), true, false);
+        List.of(
+            "/lib/c/reactor-c/python/include",
+            "/lib/c/reactor-c/python/lib",
+            "/lib/py/lf-python-support/LinguaFrancaBase"),
+        fileConfig.getSrcGenPath(),
+        true,
+        false);
   }
 }
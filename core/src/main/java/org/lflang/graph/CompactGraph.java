@@ -0,0 +1,144 @@
+package org.lflang.graph;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the structure of a {@link DirectedGraph} in compressed sparse row (CSR)
+ * form. Nodes are identified by the dense integer indices that the graph assigned to them, and the
+ * neighbors of each node are stored contiguously in a single {@code int} array per direction.
+ *
+ * <p>Indices that do not belong to a node (for instance, because the node was removed from the
+ * graph) are part of the index space but have no neighbors and are reported as absent by {@link
+ * #hasNode(int)}.
+ *
+ * @author Marten Lohstroh
+ */
+public final class CompactGraph {
+
+  /** The number of indices in this graph, including those that do not belong to a node. */
+  private final int size;
+
+  /** Whether the index at each position belongs to a node. */
+  private final boolean[] present;
+
+  /** Offsets into {@link #downstreamTargets}. The neighbors of node i are in [off[i], off[i+1]). */
+  private final int[] downstreamOffsets;
+
+  /** The downstream neighbors of all nodes, concatenated. */
+  private final int[] downstreamTargets;
+
+  /** Offsets into {@link #upstreamTargets}. The neighbors of node i are in [off[i], off[i+1]). */
+  private final int[] upstreamOffsets;
+
+  /** The upstream neighbors of all nodes, concatenated. */
+  private final int[] upstreamTargets;
+
+  /**
+   * Create a snapshot from per-node adjacency arrays.
+   *
+   * @param size The size of the index space.
+   * @param present Whether each index belongs to a node.
+   * @param downstream Downstream neighbors per index; entries may be null or have spare capacity.
+   * @param downstreamCount The number of valid entries in each array of {@code downstream}.
+   * @param upstream Upstream neighbors per index; entries may be null or have spare capacity.
+   * @param upstreamCount The number of valid entries in each array of {@code upstream}.
+   */
+  CompactGraph(
+      int size,
+      boolean[] present,
+      int[][] downstream,
+      int[] downstreamCount,
+      int[][] upstream,
+      int[] upstreamCount) {
+    this.size = size;
+    this.present = Arrays.copyOf(present, size);
+    this.downstreamOffsets = new int[size + 1];
+    this.downstreamTargets = pack(size, downstream, downstreamCount, downstreamOffsets);
+    this.upstreamOffsets = new int[size + 1];
+    this.upstreamTargets = pack(size, upstream, upstreamCount, upstreamOffsets);
+  }
+
+  /** Concatenate the given adjacency arrays and record where each one starts in {@code offsets}. */
+  private static int[] pack(int size, int[][] adjacency, int[] counts, int[] offsets) {
+    int total = 0;
+    for (int i = 0; i < size; i++) {
+      offsets[i] = total;
+      total += counts[i];
+    }
+    offsets[size] = total;
+    int[] targets = new int[total];
+    for (int i = 0; i < size; i++) {
+      if (counts[i] > 0) {
+        System.arraycopy(adjacency[i], 0, targets, offsets[i], counts[i]);
+      }
+    }
+    return targets;
+  }
+
+  /** Return the size of the index space of this graph. */
+  public int size() {
+    return size;
+  }
+
+  /** Return whether the given index belongs to a node. */
+  public boolean hasNode(int node) {
+    return node >= 0 && node < size && present[node];
+  }
+
+  /** Return the number of immediate downstream neighbors of the given node. */
+  public int outDegree(int node) {
+    return downstreamOffsets[node + 1] - downstreamOffsets[node];
+  }
+
+  /** Return the number of immediate upstream neighbors of the given node. */
+  public int inDegree(int node) {
+    return upstreamOffsets[node + 1] - upstreamOffsets[node];
+  }
+
+  /** Return the {@code i}th immediate downstream neighbor of the given node. */
+  public int downstream(int node, int i) {
+    return downstreamTargets[downstreamOffsets[node] + i];
+  }
+
+  /** Return the {@code i}th immediate upstream neighbor of the given node. */
+  public int upstream(int node, int i) {
+    return upstreamTargets[upstreamOffsets[node] + i];
+  }
+
+  /**
+   * Return the nodes of this graph in the order in which Kahn's algorithm visits them. The search
+   * starts at the nodes without upstream neighbors (or, if {@code reverse} is true, at the nodes
+   * without downstream neighbors) in index order and proceeds first-in-first-out. Nodes that are
+   * part of a cycle or that are only reachable through a cycle are not included in the result.
+   *
+   * @param reverse Whether to follow the edges upstream instead of downstream.
+   */
+  public int[] topologicalOrder(boolean reverse) {
+    int[] offsets = reverse ? upstreamOffsets : downstreamOffsets;
+    int[] targets = reverse ? upstreamTargets : downstreamTargets;
+    int[] inverseOffsets = reverse ? downstreamOffsets : upstreamOffsets;
+
+    // The remaining number of incoming edges of each node.
+    int[] pending = new int[size];
+    // The order array doubles as the queue: nodes in [head, tail) are waiting to be visited.
+    int[] order = new int[size];
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < size; i++) {
+      pending[i] = inverseOffsets[i + 1] - inverseOffsets[i];
+      if (present[i] && pending[i] == 0) {
+        order[tail++] = i;
+      }
+    }
+    while (head < tail) {
+      int origin = order[head++];
+      for (int k = offsets[origin]; k < offsets[origin + 1]; k++) {
+        int effect = targets[k];
+        if (--pending[effect] == 0) {
+          order[tail++] = effect;
+        }
+      }
+    }
+    return tail == size ? order : Arrays.copyOf(order, tail);
+  }
+}
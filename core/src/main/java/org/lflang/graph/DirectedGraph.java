@@ -25,29 +25,62 @@
 package org.lflang.graph;
 
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import org.lflang.util.CollectionUtil;
 
 /**
  * Directed graph that maps nodes to its upstream and downstream neighbors.
  *
+ * <p>Internally, each node is assigned a dense integer index, and the neighbors of each node are
+ * kept in {@code int} arrays indexed by those indices. This keeps the memory footprint of large
+ * graphs small and allows the structure to be handed to index-based algorithms (see {@link
+ * CompactGraph}) without any further hashing.
+ *
  * @author Marten Lohstroh
  * @author Clément Fournier
  */
 public class DirectedGraph<T> implements Graph<T> {
 
-  // Note that while both those maps are mutable, the sets
-  // they use as values may not be. They should only be
-  // manipulated through CollectionUtil
+  /** The initial capacity of the arrays indexed by node index. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The length up to which an adjacency list is scanned to find out whether an edge exists. If
+   * both lists that could be scanned are longer, then {@link #edgeSet} is used instead.
+   */
+  private static final int LINEAR_SCAN_LIMIT = 16;
+
+  /** Map from nodes to their index. */
+  private final Map<T, Integer> indices = new HashMap<>();
+
+  /** Nodes by index. The entries of removed nodes are null until the graph is compacted. */
+  private Object[] nodesByIndex = new Object[INITIAL_CAPACITY];
+
+  /** Downstream immediate neighbors by index. Arrays may be null or have spare capacity. */
+  private int[][] downstream = new int[INITIAL_CAPACITY][];
+
+  /** The number of valid entries in each array of {@link #downstream}. */
+  private int[] downstreamCount = new int[INITIAL_CAPACITY];
+
+  /** Upstream immediate neighbors by index. Arrays may be null or have spare capacity. */
+  private int[][] upstream = new int[INITIAL_CAPACITY][];
+
+  /** The number of valid entries in each array of {@link #upstream}. */
+  private int[] upstreamCount = new int[INITIAL_CAPACITY];
 
-  // If a node has no neighbors, it is still in the map with an empty set as a value.
+  /** The number of indices handed out, including those of nodes that have been removed. */
+  private int indexCount = 0;
 
-  /** Adjacency map from vertices to their downstream immediate neighbors. */
-  private final Map<T, Set<T>> downstreamAdjacentNodes = new LinkedHashMap<>();
+  /** The number of edges in this graph. */
+  private int edges = 0;
 
-  /** Adjacency map from vertices to their upstream immediate neighbors. */
-  private final Map<T, Set<T>> upstreamAdjacentNodes = new LinkedHashMap<>();
+  /**
+   * All edges of this graph, or null if no lookup has needed it since it was last discarded. It is
+   * created on demand, so that graphs with short adjacency lists do not pay for it, and discarded
+   * when nodes are removed in bulk or renumbered.
+   */
+  private EdgeSet edgeSet = null;
 
   /** Mark the graph to have changed so that any cached analysis is refreshed accordingly. */
   protected void graphChanged() {
@@ -61,7 +94,7 @@ public class DirectedGraph<T> implements Graph<T> {
    */
   @Override
   public boolean hasNode(T node) {
-    return nodes().contains(node);
+    return indices.containsKey(node);
   }
 
   /**
@@ -70,7 +103,8 @@ public class DirectedGraph<T> implements Graph<T> {
    * @param node The node to report the immediate upstream neighbors of.
    */
   public Set<T> getUpstreamAdjacentNodes(T node) {
-    return Collections.unmodifiableSet(this.upstreamAdjacentNodes.getOrDefault(node, Set.of()));
+    int index = indexOf(node);
+    return index < 0 ? Set.of() : new NodeSet(upstream[index], upstreamCount[index]);
   }
 
   /**
@@ -79,29 +113,57 @@ public class DirectedGraph<T> implements Graph<T> {
    * @param node The node to report the immediate downstream neighbors of.
    */
   public Set<T> getDownstreamAdjacentNodes(T node) {
-    return Collections.unmodifiableSet(this.downstreamAdjacentNodes.getOrDefault(node, Set.of()));
+    int index = indexOf(node);
+    return index < 0 ? Set.of() : new NodeSet(downstream[index], downstreamCount[index]);
+  }
+
+  /** Return the number of immediate upstream neighbors of a given node. */
+  public int inDegree(T node) {
+    int index = indexOf(node);
+    return index < 0 ? 0 : upstreamCount[index];
+  }
+
+  /** Return the number of immediate downstream neighbors of a given node. */
+  public int outDegree(T node) {
+    int index = indexOf(node);
+    return index < 0 ? 0 : downstreamCount[index];
   }
 
   @Override
   public void addNode(T node) {
     this.graphChanged();
-    this.upstreamAdjacentNodes.putIfAbsent(node, Set.of());
-    this.downstreamAdjacentNodes.putIfAbsent(node, Set.of());
+    indexOrAdd(node);
   }
 
   @Override
   public void removeNode(T node) {
     this.graphChanged();
-    this.upstreamAdjacentNodes.remove(node);
-    this.downstreamAdjacentNodes.remove(node);
-    // The node also needs to be removed from the sets that represent connections to the node.
-    CollectionUtil.removeFromValues(this.upstreamAdjacentNodes, node);
-    CollectionUtil.removeFromValues(this.downstreamAdjacentNodes, node);
+    int index = indexOf(node);
+    if (index < 0) return;
+    // The node also needs to be removed from the lists that represent connections to the node.
+    for (int i = 0; i < downstreamCount[index]; i++) {
+      int neighbor = downstream[index][i];
+      if (neighbor != index) {
+        remove(upstream, upstreamCount, neighbor, index);
+      }
+      if (edgeSet != null) edgeSet.remove(index, neighbor);
+      edges--;
+    }
+    for (int i = 0; i < upstreamCount[index]; i++) {
+      int neighbor = upstream[index][i];
+      if (neighbor != index) {
+        remove(downstream, downstreamCount, neighbor, index);
+        if (edgeSet != null) edgeSet.remove(neighbor, index);
+        edges--;
+      }
+    }
+    discard(index);
   }
 
   /**
    * Add a new directed edge to the graph. The first argument is the downstream node, the second
-   * argument the upstream node. If either argument is null, do nothing.
+   * argument the upstream node. If either argument is null, do nothing. Nodes that are not yet in
+   * the graph are added to it.
    *
    * @param sink The downstream immediate neighbor.
    * @param source The upstream immediate neighbor.
@@ -110,8 +172,16 @@ public class DirectedGraph<T> implements Graph<T> {
   public void addEdge(T sink, T source) {
     this.graphChanged();
     if (sink != null && source != null) {
-      this.downstreamAdjacentNodes.compute(source, (k, set) -> CollectionUtil.plus(set, sink));
-      this.upstreamAdjacentNodes.compute(sink, (k, set) -> CollectionUtil.plus(set, source));
+      indexOrAdd(source);
+      int to = indexOrAdd(sink);
+      // Adding the sink may have renumbered the nodes.
+      int from = indexOf(source);
+      if (!hasEdge(from, to)) {
+        append(downstream, downstreamCount, from, to);
+        append(upstream, upstreamCount, to, from);
+        if (edgeSet != null) edgeSet.add(from, to);
+        edges++;
+      }
     }
   }
 
@@ -138,72 +208,49 @@ public class DirectedGraph<T> implements Graph<T> {
   @Override
   public void removeEdge(T sink, T source) {
     this.graphChanged();
-    this.upstreamAdjacentNodes.computeIfPresent(
-        sink, (k, upstream) -> CollectionUtil.minus(upstream, source));
-    this.downstreamAdjacentNodes.computeIfPresent(
-        source, (k, downstream) -> CollectionUtil.minus(downstream, sink));
+    int from = indexOf(source);
+    int to = indexOf(sink);
+    if (from >= 0 && to >= 0 && remove(downstream, downstreamCount, from, to)) {
+      remove(upstream, upstreamCount, to, from);
+      if (edgeSet != null) edgeSet.remove(from, to);
+      edges--;
+    }
   }
 
-  /** Obtain a copy of this graph by creating an new instance and copying the adjacency maps. */
+  /** Obtain a copy of this graph by creating an new instance and copying the adjacency lists. */
   public DirectedGraph<T> copy() {
     var graph = new DirectedGraph<T>();
-    for (var entry : this.upstreamAdjacentNodes.entrySet()) {
-      graph.upstreamAdjacentNodes.put(entry.getKey(), CollectionUtil.copy(entry.getValue()));
-    }
-    for (var entry : this.downstreamAdjacentNodes.entrySet()) {
-      graph.downstreamAdjacentNodes.put(entry.getKey(), CollectionUtil.copy(entry.getValue()));
-    }
+    graph.merge(this);
     return graph;
   }
 
-  /**
-   * For a given a two adjacency maps, copy missing edges from the first map to the second.
-   *
-   * @param srcMap The adjacency map to copy edges from.
-   * @param dstMap The adjacency map to copy edges to.
-   */
-  private void mirror(Map<T, Set<T>> srcMap, Map<T, Set<T>> dstMap) {
-    if (srcMap != null && dstMap != null) {
-      for (Entry<T, Set<T>> entry : srcMap.entrySet()) {
-        var node = entry.getKey();
-        var srcEdges = entry.getValue();
-        dstMap.compute(
-            node,
-            (_node, dstEdges) -> {
-              // Node does not exist; add it.
-              if (dstEdges == null) {
-                return CollectionUtil.copy(srcEdges);
-              }
-
-              // Node does exist; add the missing edges.
-              var set = dstEdges;
-              for (T edge : srcEdges) {
-                set = CollectionUtil.plus(set, edge);
-              }
-              return set;
-            });
-      }
-    }
-  }
-
   /**
    * Merge another directed graph into this one.
    *
    * @param another The graph to merge into this one.
    */
+  @SuppressWarnings("unchecked")
   public void merge(DirectedGraph<T> another) {
     this.graphChanged();
-    mirror(another.upstreamAdjacentNodes, this.upstreamAdjacentNodes);
-    mirror(another.downstreamAdjacentNodes, this.downstreamAdjacentNodes);
+    for (int i = 0; i < another.indexCount; i++) {
+      if (another.nodesByIndex[i] != null) {
+        indexOrAdd((T) another.nodesByIndex[i]);
+      }
+    }
+    for (int i = 0; i < another.indexCount; i++) {
+      for (int j = 0; j < another.downstreamCount[i]; j++) {
+        addEdge((T) another.nodesByIndex[another.downstream[i][j]], (T) another.nodesByIndex[i]);
+      }
+    }
   }
 
-  /** Return the set of nodes that have no neighbors listed in the given adjacency map. */
-  private Set<T> independentNodes(Map<T, Set<T>> adjacencyMap) {
+  /** Return the set of nodes that have no neighbors according to the given counts. */
+  @SuppressWarnings("unchecked")
+  private Set<T> independentNodes(int[] counts) {
     var independent = new LinkedHashSet<T>();
-    for (T node : nodes()) {
-      var neighbors = adjacencyMap.get(node);
-      if (neighbors == null || neighbors.size() == 0) {
-        independent.add(node);
+    for (int i = 0; i < indexCount; i++) {
+      if (nodesByIndex[i] != null && counts[i] == 0) {
+        independent.add((T) nodesByIndex[i]);
       }
     }
     return independent;
@@ -211,33 +258,421 @@ public class DirectedGraph<T> implements Graph<T> {
 
   /** Return the root nodes of this graph. Root nodes have no upstream neighbors. */
   public Set<T> rootNodes() {
-    return independentNodes(this.upstreamAdjacentNodes);
+    return independentNodes(this.upstreamCount);
   }
 
   /** Return the leaf nodes of this graph. Leaf nodes have no downstream neighbors. */
   public Set<T> leafNodes() {
-    return independentNodes(this.downstreamAdjacentNodes);
+    return independentNodes(this.downstreamCount);
   }
 
   @Override
   public int nodeCount() {
-    return downstreamAdjacentNodes.size();
+    return indices.size();
   }
 
   @Override
   public int edgeCount() {
-    return this.upstreamAdjacentNodes.values().stream().mapToInt(Set::size).sum();
+    return edges;
   }
 
   @Override
   public Set<T> nodes() {
-    return Collections.unmodifiableSet(this.downstreamAdjacentNodes.keySet());
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<T> iterator() {
+        return new NodeIterator();
+      }
+
+      @Override
+      public int size() {
+        return indices.size();
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public boolean contains(Object o) {
+        return indices.containsKey((T) o);
+      }
+    };
   }
 
   public void clear() {
     this.graphChanged();
-    this.downstreamAdjacentNodes.clear();
-    this.upstreamAdjacentNodes.clear();
+    this.indices.clear();
+    this.nodesByIndex = new Object[INITIAL_CAPACITY];
+    this.downstream = new int[INITIAL_CAPACITY][];
+    this.downstreamCount = new int[INITIAL_CAPACITY];
+    this.upstream = new int[INITIAL_CAPACITY][];
+    this.upstreamCount = new int[INITIAL_CAPACITY];
+    this.indexCount = 0;
+    this.edges = 0;
+    this.edgeSet = null;
+  }
+
+  /**
+   * Return an immutable snapshot of the structure of this graph in compressed sparse row form. The
+   * indices used in the snapshot can be mapped back to nodes using {@link #nodeAt(int)} for as long
+   * as no nodes are removed from this graph.
+   */
+  public CompactGraph toCompactGraph() {
+    boolean[] present = new boolean[indexCount];
+    for (int i = 0; i < indexCount; i++) {
+      present[i] = nodesByIndex[i] != null;
+    }
+    return new CompactGraph(
+        indexCount, present, downstream, downstreamCount, upstream, upstreamCount);
+  }
+
+  /**
+   * Return the node that has the given index, or null if there is no such node.
+   *
+   * @param index An index obtained from a {@link CompactGraph} of this graph.
+   */
+  @SuppressWarnings("unchecked")
+  public T nodeAt(int index) {
+    return index >= 0 && index < indexCount ? (T) nodesByIndex[index] : null;
+  }
+
+  /**
+   * Visit the nodes of this graph in the order of Kahn's algorithm and remove every visited node.
+   * The search starts at the root nodes (or, if {@code reverse} is true, at the leaf nodes). When a
+   * node is visited, first {@code edgeVisitor} is invoked on the node and each of its immediate
+   * downstream neighbors (upstream neighbors if {@code reverse} is true), and then {@code
+   * nodeVisitor} is invoked on the node itself. Upon return, only nodes that are part of a cycle or
+   * that are only reachable through a cycle remain in the graph.
+   *
+   * @param reverse Whether to follow the edges upstream instead of downstream.
+   * @param edgeVisitor Invoked on each visited node and each of its neighbors.
+   * @param nodeVisitor Invoked on each visited node after its edges have been visited.
+   */
+  @SuppressWarnings("unchecked")
+  protected void removeInTopologicalOrder(
+      boolean reverse, BiConsumer<T, T> edgeVisitor, Consumer<T> nodeVisitor) {
+    var compact = toCompactGraph();
+    int[] order = compact.topologicalOrder(reverse);
+    boolean[] visited = new boolean[indexCount];
+    for (int origin : order) {
+      T node = (T) nodesByIndex[origin];
+      int degree = reverse ? compact.inDegree(origin) : compact.outDegree(origin);
+      for (int i = 0; i < degree; i++) {
+        int neighbor = reverse ? compact.upstream(origin, i) : compact.downstream(origin, i);
+        edgeVisitor.accept(node, (T) nodesByIndex[neighbor]);
+      }
+      nodeVisitor.accept(node);
+      visited[origin] = true;
+    }
+    removeAll(visited);
+  }
+
+  /**
+   * Remove all the nodes whose index is marked in the given array, together with their edges. This
+   * takes time linear in the size of the graph, independently of the number of removed nodes.
+   */
+  private void removeAll(boolean[] removed) {
+    this.graphChanged();
+    edgeSet = null;
+    for (int i = 0; i < indexCount; i++) {
+      if (removed[i]) {
+        edges -= downstreamCount[i];
+        discard(i);
+      } else {
+        edges -= retain(downstream[i], downstreamCount, i, removed);
+        retain(upstream[i], upstreamCount, i, removed);
+      }
+    }
+  }
+
+  /**
+   * Keep only the neighbors in {@code list} that are not marked in {@code removed}, preserving
+   * their order, and return the number of neighbors dropped.
+   */
+  private static int retain(int[] list, int[] counts, int index, boolean[] removed) {
+    int kept = 0;
+    for (int i = 0; i < counts[index]; i++) {
+      if (!removed[list[i]]) {
+        list[kept++] = list[i];
+      }
+    }
+    int dropped = counts[index] - kept;
+    counts[index] = kept;
+    return dropped;
+  }
+
+  /** Return the index of the given node, or -1 if it is not in this graph. */
+  private int indexOf(T node) {
+    Integer index = indices.get(node);
+    return index == null ? -1 : index;
+  }
+
+  /** Return the index of the given node, adding the node to this graph if necessary. */
+  private int indexOrAdd(T node) {
+    Integer index = indices.get(node);
+    if (index != null) return index;
+    if (indexCount == nodesByIndex.length) {
+      if (indices.size() < indexCount / 2) {
+        compact();
+      } else {
+        grow(2 * nodesByIndex.length);
+      }
+    }
+    int newIndex = indexCount++;
+    nodesByIndex[newIndex] = node;
+    indices.put(node, newIndex);
+    return newIndex;
+  }
+
+  /** Forget the node at the given index. Its edges must already have been accounted for. */
+  private void discard(int index) {
+    indices.remove(nodesByIndex[index]);
+    nodesByIndex[index] = null;
+    downstream[index] = null;
+    downstreamCount[index] = 0;
+    upstream[index] = null;
+    upstreamCount[index] = 0;
+  }
+
+  /** Resize the arrays indexed by node index to the given capacity. */
+  private void grow(int capacity) {
+    nodesByIndex = Arrays.copyOf(nodesByIndex, capacity);
+    downstream = Arrays.copyOf(downstream, capacity);
+    downstreamCount = Arrays.copyOf(downstreamCount, capacity);
+    upstream = Arrays.copyOf(upstream, capacity);
+    upstreamCount = Arrays.copyOf(upstreamCount, capacity);
+  }
+
+  /** Renumber the nodes so that the indices of removed nodes can be reused. */
+  @SuppressWarnings("unchecked")
+  private void compact() {
+    edgeSet = null;
+    int[] renumbered = new int[indexCount];
+    int next = 0;
+    for (int i = 0; i < indexCount; i++) {
+      renumbered[i] = nodesByIndex[i] != null ? next++ : -1;
+    }
+    for (int i = 0; i < indexCount; i++) {
+      int j = renumbered[i];
+      if (j < 0) continue;
+      nodesByIndex[j] = nodesByIndex[i];
+      indices.put((T) nodesByIndex[j], j);
+      downstream[j] = downstream[i];
+      downstreamCount[j] = downstreamCount[i];
+      upstream[j] = upstream[i];
+      upstreamCount[j] = upstreamCount[i];
+      for (int k = 0; k < downstreamCount[j]; k++) {
+        downstream[j][k] = renumbered[downstream[j][k]];
+      }
+      for (int k = 0; k < upstreamCount[j]; k++) {
+        upstream[j][k] = renumbered[upstream[j][k]];
+      }
+    }
+    for (int i = next; i < indexCount; i++) {
+      nodesByIndex[i] = null;
+      downstream[i] = null;
+      downstreamCount[i] = 0;
+      upstream[i] = null;
+      upstreamCount[i] = 0;
+    }
+    indexCount = next;
+  }
+
+  /** Return whether there is an edge from the node at {@code from} to the node at {@code to}. */
+  private boolean hasEdge(int from, int to) {
+    // Scan whichever of the two adjacency lists is shorter, as long as it is short. Otherwise,
+    // connecting every node of one large set to every node of another would take cubic time.
+    if (downstreamCount[from] <= upstreamCount[to]) {
+      if (downstreamCount[from] <= LINEAR_SCAN_LIMIT) {
+        return contains(downstream[from], downstreamCount[from], to);
+      }
+    } else if (upstreamCount[to] <= LINEAR_SCAN_LIMIT) {
+      return contains(upstream[to], upstreamCount[to], from);
+    }
+    if (edgeSet == null) {
+      edgeSet = new EdgeSet();
+      for (int i = 0; i < indexCount; i++) {
+        for (int k = 0; k < downstreamCount[i]; k++) {
+          edgeSet.add(i, downstream[i][k]);
+        }
+      }
+    }
+    return edgeSet.contains(from, to);
+  }
+
+  /** Return whether the first {@code count} entries of {@code list} include {@code value}. */
+  private static boolean contains(int[] list, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (list[i] == value) return true;
+    }
+    return false;
+  }
+
+  /** Append {@code value} to the adjacency list of {@code index}. */
+  private static void append(int[][] lists, int[] counts, int index, int value) {
+    int[] list = lists[index];
+    if (list == null) {
+      list = lists[index] = new int[2];
+    } else if (counts[index] == list.length) {
+      list = lists[index] = Arrays.copyOf(list, 2 * list.length);
+    }
+    list[counts[index]++] = value;
+  }
+
+  /**
+   * Remove {@code value} from the adjacency list of {@code index}, preserving the order of the
+   * remaining entries. Return whether the value was found.
+   */
+  private static boolean remove(int[][] lists, int[] counts, int index, int value) {
+    int[] list = lists[index];
+    for (int i = 0; i < counts[index]; i++) {
+      if (list[i] == value) {
+        System.arraycopy(list, i + 1, list, i, counts[index] - i - 1);
+        counts[index]--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Hash set of edges, each of which is encoded as the indices of its two nodes in a single {@code
+   * long}. It uses open addressing with linear probing, so it does not allocate per edge.
+   */
+  private static final class EdgeSet {
+
+    /** The value of unused slots, which is not the encoding of any edge. */
+    private static final long EMPTY = -1L;
+
+    /** The encoded edges, at or after the slot that their hash selects. */
+    private long[] slots = newSlots(64);
+
+    /** The number of edges in this set. */
+    private int size = 0;
+
+    /** Return whether this set contains the edge from {@code from} to {@code to}. */
+    boolean contains(int from, int to) {
+      long key = encode(from, to);
+      for (int i = home(key); slots[i] != EMPTY; i = next(i)) {
+        if (slots[i] == key) return true;
+      }
+      return false;
+    }
+
+    /** Add the edge from {@code from} to {@code to} to this set. */
+    void add(int from, int to) {
+      if (2 * (size + 1) > slots.length) {
+        long[] old = slots;
+        slots = newSlots(2 * old.length);
+        for (long key : old) {
+          if (key != EMPTY) insert(key);
+        }
+      }
+      if (insert(encode(from, to))) size++;
+    }
+
+    /** Remove the edge from {@code from} to {@code to} from this set, if it is present. */
+    void remove(int from, int to) {
+      long key = encode(from, to);
+      int gap = home(key);
+      while (slots[gap] != key) {
+        if (slots[gap] == EMPTY) return;
+        gap = next(gap);
+      }
+      // Move later entries of the same run into the gap if they may not be placed after it, so
+      // that lookups do not stop at the gap before reaching them.
+      for (int i = next(gap); slots[i] != EMPTY; i = next(i)) {
+        int mask = slots.length - 1;
+        if (((i - home(slots[i])) & mask) >= ((i - gap) & mask)) {
+          slots[gap] = slots[i];
+          gap = i;
+        }
+      }
+      slots[gap] = EMPTY;
+      size--;
+    }
+
+    /** Store the given key unless it is already present, and return whether it was stored. */
+    private boolean insert(long key) {
+      int i = home(key);
+      while (slots[i] != EMPTY) {
+        if (slots[i] == key) return false;
+        i = next(i);
+      }
+      slots[i] = key;
+      return true;
+    }
+
+    /** Return the slot at which the search for the given key starts. */
+    private int home(long key) {
+      return Long.hashCode(key * 0x9E3779B97F4A7C15L) & (slots.length - 1);
+    }
+
+    /** Return the slot after the given one. */
+    private int next(int slot) {
+      return (slot + 1) & (slots.length - 1);
+    }
+
+    private static long encode(int from, int to) {
+      return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    private static long[] newSlots(int capacity) {
+      long[] slots = new long[capacity];
+      Arrays.fill(slots, EMPTY);
+      return slots;
+    }
+  }
+
+  /** Iterator over the nodes of this graph in the order in which they were added. */
+  private class NodeIterator implements Iterator<T> {
+
+    /** The index of the next node to return. */
+    private int next = advance(0);
+
+    /** Return the first index at or after {@code index} that belongs to a node. */
+    private int advance(int index) {
+      while (index < indexCount && nodesByIndex[index] == null) {
+        index++;
+      }
+      return index;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < indexCount;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      T node = (T) nodesByIndex[next];
+      next = advance(next + 1);
+      return node;
+    }
+  }
+
+  /** Unmodifiable snapshot of a set of neighbors, in the order in which the edges were added. */
+  private class NodeSet extends AbstractSet<T> {
+
+    private final Object[] elements;
+
+    NodeSet(int[] list, int count) {
+      elements = new Object[count];
+      for (int i = 0; i < count; i++) {
+        elements[i] = nodesByIndex[list[i]];
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+      return (Iterator<T>) Arrays.asList(elements).iterator();
+    }
+
+    @Override
+    public int size() {
+      return elements.length;
+    }
   }
 
   /** Return a textual list of the nodes. */
@@ -35,6 +35,7 @@ import org.lflang.target.property.ClockSyncModeProperty;
 import org.lflang.target.property.ClockSyncOptionsProperty;
 import org.lflang.target.property.CmakeIncludeProperty;
 import org.lflang.target.property.CompileDefinitionsProperty;
+import org.lflang.target.property.CompileThreadsProperty;
 import org.lflang.target.property.CompilerProperty;
 import org.lflang.target.property.CoordinationOptionsProperty;
 import org.lflang.target.property.CoordinationProperty;
@@ -59,6 +60,7 @@ import org.lflang.target.property.SingleThreadedProperty;
 import org.lflang.target.property.TracePluginProperty;
 import org.lflang.target.property.TracingProperty;
 import org.lflang.target.property.VerifyProperty;
+import org.lflang.target.property.VerifyThreadsProperty;
 import org.lflang.target.property.WorkersProperty;
 
 /**
@@ -598,6 +600,7 @@ public enum Target {
           CmakeIncludeProperty.INSTANCE,
           CompileDefinitionsProperty.INSTANCE,
           CompilerProperty.INSTANCE,
+          CompileThreadsProperty.INSTANCE,
           CoordinationOptionsProperty.INSTANCE,
           CoordinationProperty.INSTANCE,
           DockerProperty.INSTANCE,
@@ -611,11 +614,13 @@ public enum Target {
           TracingProperty.INSTANCE,
           TracePluginProperty.INSTANCE,
           VerifyProperty.INSTANCE,
+          VerifyThreadsProperty.INSTANCE,
           WorkersProperty.INSTANCE);
       case CPP -> config.register(
           BuildTypeProperty.INSTANCE,
           CmakeIncludeProperty.INSTANCE,
           CompilerProperty.INSTANCE,
+          CompileThreadsProperty.INSTANCE,
           ExportDependencyGraphProperty.INSTANCE,
           ExportToYamlProperty.INSTANCE,
           ExternalRuntimePathProperty.INSTANCE,
@@ -633,6 +638,7 @@ public enum Target {
           ClockSyncModeProperty.INSTANCE,
           ClockSyncOptionsProperty.INSTANCE,
           CompileDefinitionsProperty.INSTANCE,
+          CompileThreadsProperty.INSTANCE,
           CoordinationOptionsProperty.INSTANCE,
           CoordinationProperty.INSTANCE,
           DockerProperty.INSTANCE,
@@ -657,6 +663,7 @@ public enum Target {
           SingleThreadedProperty.INSTANCE,
           WorkersProperty.INSTANCE);
       case TS -> config.register(
+          CompileThreadsProperty.INSTANCE,
           CoordinationOptionsProperty.INSTANCE,
           CoordinationProperty.INSTANCE,
           DockerProperty.INSTANCE,
@@ -0,0 +1,47 @@
+package org.lflang.target.property;
+
+import org.lflang.MessageReporter;
+import org.lflang.ast.ASTUtils;
+import org.lflang.lf.Element;
+import org.lflang.target.property.type.PrimitiveType;
+
+/**
+ * The number of threads to use for generating and compiling the federates of a federated program
+ * and, in the C and Python targets, for generating the code of the reactor classes. The default is
+ * zero, which indicates that the compiler is allowed to choose the number of threads based on the
+ * amount of work and the available processors.
+ */
+public final class CompileThreadsProperty extends TargetProperty<Integer, PrimitiveType> {
+
+  /** Singleton target property instance. */
+  public static final CompileThreadsProperty INSTANCE = new CompileThreadsProperty();
+
+  private CompileThreadsProperty() {
+    super(PrimitiveType.NON_NEGATIVE_INTEGER);
+  }
+
+  @Override
+  public Integer initialValue() {
+    return 0;
+  }
+
+  @Override
+  protected Integer fromString(String string, MessageReporter reporter) {
+    return Integer.parseInt(string);
+  }
+
+  @Override
+  protected Integer fromAst(Element node, MessageReporter reporter) {
+    return ASTUtils.toInteger(node);
+  }
+
+  @Override
+  public Element toAstElement(Integer value) {
+    return ASTUtils.toElement(value);
+  }
+
+  @Override
+  public String name() {
+    return "compile-threads";
+  }
+}
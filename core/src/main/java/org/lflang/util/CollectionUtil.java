@@ -67,11 +67,10 @@ public class CollectionUtil {
    * Remove the given value from all the sets that are values in the given map. Use this if the
    * values of the map (the sets) were build with {@link #plus(Set, Object)}.
    *
-   * <p>In {@link org.lflang.graph.DirectedGraph}, this is used to properly remove nodes from a
-   * graph. There, we use maps to represent edges, where a value in a map is a set of nodes adjacent
-   * to the key for that value. Hence, when a node is removed, it needs to be removed not just as a
-   * key, but it also needs to be removed from the neighbors sets of any other keys that may contain
-   * it.
+   * <p>This is useful when maps are used to represent edges, where a value in a map is a set of
+   * nodes adjacent to the key for that value. Hence, when a node is removed, it needs to be removed
+   * not just as a key, but it also needs to be removed from the neighbors sets of any other keys
+   * that may contain it.
    *
    * @param map A modifiable map
    * @param valueToRemove Value to remove
@@ -9,16 +9,22 @@ import java.net.JarURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -38,6 +44,13 @@ import org.lflang.MessageReporter;
 
 public class FileUtil {
 
+  /** The size of the buffers with which files are copied and compared. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** The entries of the JAR files that were accessed, sorted by name. */
+  private static final Map<JarFile, NavigableMap<String, JarEntry>> jarIndices =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
   /**
    * Return the name of the file excluding its file extension.
    *
@@ -386,6 +399,10 @@ public class FileUtil {
    * <p>This also creates new directories for any directories on the destination path that do not
    * yet exist.
    *
+   * <p>The stream is copied with a bounded buffer. If {@code skipIfUnchanged} is true, it is
+   * compared with the destination file while it is read, and only the part of the destination file
+   * from the first difference on is rewritten.
+   *
    * @param source The source input stream.
    * @param destination The destination file path.
    * @param skipIfUnchanged If true, don't overwrite the destination file if its content would not
@@ -394,27 +411,55 @@ public class FileUtil {
    */
   private static void copyInputStream(InputStream source, Path destination, boolean skipIfUnchanged)
       throws IOException {
-    // Read the stream once and keep a copy of all bytes. This is required as a stream cannot be
-    // read twice.
-    final var bytes = source.readAllBytes();
     final var parent = destination.getParent();
     if (Files.isRegularFile(destination)) {
       if (skipIfUnchanged) {
-        if (Arrays.equals(bytes, Files.readAllBytes(destination))) {
-          // Abort if the file contents are the same.
-          return;
-        }
-      } else {
-        // Delete the file exists but the contents don't match.
-        Files.delete(destination);
+        copyInputStreamIfChanged(source, destination);
+        return;
       }
+      // Delete the file exists but the contents don't match.
+      Files.delete(destination);
     } else if (Files.isDirectory(destination)) {
       deleteDirectory(destination);
     } else if (!Files.exists(parent)) {
       Files.createDirectories(parent);
     }
 
-    Files.write(destination, bytes);
+    Files.copy(source, destination);
+  }
+
+  /**
+   * Compare the given stream with the given existing file while reading it, and rewrite the file
+   * from the first difference on, if there is one.
+   */
+  private static void copyInputStreamIfChanged(InputStream source, Path destination)
+      throws IOException {
+    final byte[] bytes = new byte[BUFFER_SIZE];
+    final ByteBuffer existing = ByteBuffer.allocate(BUFFER_SIZE);
+    long position = 0;
+    int n;
+    try (FileChannel in = FileChannel.open(destination, StandardOpenOption.READ)) {
+      while ((n = source.readNBytes(bytes, 0, bytes.length)) > 0) {
+        existing.clear().limit(n);
+        while (existing.hasRemaining() && in.read(existing, position + existing.position()) > 0) {}
+        if (existing.position() < n || !Arrays.equals(bytes, 0, n, existing.array(), 0, n)) break;
+        position += n;
+      }
+      if (n == 0 && in.size() == position) {
+        // Abort if the file contents are the same.
+        return;
+      }
+    }
+    try (FileChannel out = FileChannel.open(destination, StandardOpenOption.WRITE)) {
+      while (n > 0) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, n);
+        while (buffer.hasRemaining()) {
+          position += out.write(buffer, position);
+        }
+        n = source.readNBytes(bytes, 0, bytes.length);
+      }
+      out.truncate(position);
+    }
   }
 
   /**
@@ -507,6 +552,60 @@ public class FileUtil {
     }
   }
 
+  /**
+   * Look up each of the given entries in the class path and copy it into the destination directory
+   * as {@link #copyFromClassPath(String, Path, boolean, boolean)} does. The entries of a JAR file
+   * are only enumerated once, so copying an entry only visits the files it contains.
+   *
+   * @param entries The entries to be found on the class path and copied to the given destination.
+   * @param dstDir The file system path that found files are to be copied to.
+   * @param skipIfUnchanged If true, don't overwrite files whose content would not be changed.
+   * @param contentsOnly If true and an entry is a directory, then copy its contents but not the
+   *     directory itself.
+   * @throws IOException If the operation failed.
+   */
+  public static void copyFromClassPath(
+      final List<String> entries,
+      final Path dstDir,
+      final boolean skipIfUnchanged,
+      final boolean contentsOnly)
+      throws IOException {
+    for (String entry : entries) {
+      copyFromClassPath(entry, dstDir, skipIfUnchanged, contentsOnly);
+    }
+  }
+
+  /**
+   * Copy the given files or directories of the given JAR file into the destination directory, in
+   * the same way as {@link #copyFromClassPath(String, Path, boolean, boolean)} copies entries that
+   * are located in a JAR file.
+   *
+   * @param jar The JAR file to copy from.
+   * @param sources The names of the entries in the JAR file, without a leading slash.
+   * @param dstDir The file system path that the entries are copied to.
+   * @param skipIfUnchanged If true, don't overwrite files whose content would not be changed.
+   * @param contentsOnly If true and an entry is a directory, then copy its contents but not the
+   *     directory itself.
+   * @throws IOException If the operation failed or an entry is neither a file nor a directory that
+   *     contains files.
+   */
+  public static void copyFromJar(
+      JarFile jar,
+      List<String> sources,
+      Path dstDir,
+      final boolean skipIfUnchanged,
+      final boolean contentsOnly)
+      throws IOException {
+    for (String source : sources) {
+      JarEntry entry = index(jar).get(source);
+      if (entry != null && !entry.isDirectory()) {
+        copyFileFromJar(jar, source, dstDir, skipIfUnchanged);
+      } else if (!copyDirectoryFromJar(jar, source, dstDir, skipIfUnchanged, contentsOnly)) {
+        throw new TargetResourceNotFoundException(source);
+      }
+    }
+  }
+
   /**
    * Return true if the given connection points to a file.
    *
@@ -514,8 +613,22 @@ public class FileUtil {
    * @throws IOException If the connection is faulty.
    */
   private static boolean isFileInJar(JarURLConnection connection) throws IOException {
-    return connection.getJarFile().stream()
-        .anyMatch(it -> it.getName().equals(connection.getEntryName()));
+    JarEntry entry = index(connection.getJarFile()).get(connection.getEntryName());
+    return entry != null && !entry.isDirectory();
+  }
+
+  /**
+   * Return the entries of the given JAR file sorted by name, so that the entries in a directory
+   * form a contiguous range. The entries of a JAR file are only enumerated once.
+   */
+  private static NavigableMap<String, JarEntry> index(JarFile jar) {
+    return jarIndices.computeIfAbsent(
+        jar,
+        it -> {
+          NavigableMap<String, JarEntry> entries = new TreeMap<>();
+          it.stream().forEach(entry -> entries.put(entry.getName(), entry));
+          return Collections.unmodifiableNavigableMap(entries);
+        });
   }
 
   /**
@@ -592,28 +705,40 @@ public class FileUtil {
       final boolean skipIfUnchanged,
       final boolean contentsOnly)
       throws IOException {
-    final JarFile jar = connection.getJarFile();
-    final String source = connection.getEntryName();
+    return copyDirectoryFromJar(
+        connection.getJarFile(), connection.getEntryName(), dstDir, skipIfUnchanged, contentsOnly);
+  }
+
+  /**
+   * Recursively copy all entries located in the given directory of the given JAR file into the
+   * given {@code dstDir}. The entries are looked up in the index of the JAR file, so only the
+   * entries in the directory are visited.
+   *
+   * @return true if any files were copied
+   */
+  private static boolean copyDirectoryFromJar(
+      JarFile jar,
+      String source,
+      Path dstDir,
+      final boolean skipIfUnchanged,
+      final boolean contentsOnly)
+      throws IOException {
+    final String prefix = source.endsWith("/") ? source : source + "/";
 
     boolean copiedFiles = false;
     if (!contentsOnly) {
       dstDir = dstDir.resolve(Paths.get(source).getFileName());
     }
-    // Iterate all entries in the jar file.
-    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
-      final JarEntry entry = e.nextElement();
-      final String entryName = entry.getName();
-      if (entryName.startsWith(source)) {
-        String filename = entry.getName().substring(source.length() + 1);
-        Path currentFile = dstDir.resolve(filename);
-        if (entry.isDirectory()) {
-          Files.createDirectories(currentFile);
-        } else {
-          InputStream is = jar.getInputStream(entry);
-          try (is) {
-            copyInputStream(is, currentFile, skipIfUnchanged);
-            copiedFiles = true;
-          }
+    // Iterate the entries in the directory.
+    for (JarEntry entry : index(jar).subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+      Path currentFile = dstDir.resolve(entry.getName().substring(prefix.length()));
+      if (entry.isDirectory()) {
+        Files.createDirectories(currentFile);
+      } else {
+        InputStream is = jar.getInputStream(entry);
+        try (is) {
+          copyInputStream(is, currentFile, skipIfUnchanged);
+          copiedFiles = true;
         }
       }
     }
@@ -921,23 +1046,25 @@ public class FileUtil {
   }
 
   /**
-   * Write text to a file.
+   * Write text to a file, unless the file already has exactly this content. An unchanged file is
+   * not touched, so that build tools that compare modification times do not rebuild it.
    *
    * @param text The text to be written.
    * @param path The file to write the code to.
    */
   public static void writeToFile(String text, Path path) throws IOException {
-    writeToFile(text, path, false);
+    writeToFile(text, path, true);
   }
 
   /**
-   * Write text to a file.
+   * Write text to a file, unless the file already has exactly this content. An unchanged file is
+   * not touched, so that build tools that compare modification times do not rebuild it.
    *
    * @param text The text to be written.
    * @param path The file to write the code to.
    */
   public static void writeToFile(CharSequence text, Path path) throws IOException {
-    writeToFile(text.toString(), path, false);
+    writeToFile(text.toString(), path, true);
   }
 
   public static void createDirectoryIfDoesNotExist(File dir) {
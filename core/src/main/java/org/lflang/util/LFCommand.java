@@ -25,21 +25,30 @@
 
 package org.lflang.util;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.eclipse.xtext.util.CancelIndicator;
 
@@ -51,20 +60,53 @@ import org.eclipse.xtext.util.CancelIndicator;
  */
 public class LFCommand {
 
-  /**
-   * The period with which the cancel indicator is checked and the output and error streams are
-   * forwarded.
-   */
+  /** The period with which the cancel indicator is checked. */
   private static final int PERIOD_MILLISECONDS = 200;
   /**
-   * The maximum amount of time to wait for the forwarding of output and error streams to finish.
+   * The maximum amount of time to wait for the forwarding of output and error streams to finish
+   * after the process has terminated.
    */
   private static final int READ_TIMEOUT_MILLISECONDS = 1000;
 
+  /**
+   * The maximum number of characters of output and of error output that a command retains. If a
+   * stream produces more, only its first and last lines are retained, half of the limit each.
+   */
+  public static final int RETAINED_OUTPUT_LIMIT = 1 << 20;
+
+  /**
+   * The threads that forward the output and error streams of all commands and look up commands. A
+   * thread blocks while it reads a stream and is reused for other streams once the stream ends.
+   */
+  private static final ExecutorService workers =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "LFCommand worker");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * The executable files that match a command on the PATH, by command. A lookup is shared by all
+   * commands of the process until {@link #invalidateCommandCache()} is invoked, unless it finds no
+   * match, in which case it is removed as soon as it completes.
+   */
+  private static final Map<String, CompletableFuture<Optional<List<File>>>> resolvedCommands =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The directories on the PATH of a bash login shell, which are determined once per process, when
+   * they are first needed.
+   */
+  private static volatile CompletableFuture<List<String>> loginShellPath = null;
+
   protected ProcessBuilder processBuilder;
   protected boolean didRun = false;
-  protected ByteArrayOutputStream output = new ByteArrayOutputStream();
-  protected ByteArrayOutputStream errors = new ByteArrayOutputStream();
+  private final OutputBuffer output = new OutputBuffer();
+  private final OutputBuffer errors = new OutputBuffer();
+  private Consumer<String> outputHandler = line -> {};
+  private Consumer<String> errorHandler = line -> {};
+  private Profiler profiler = Profiler.NONE;
   protected boolean quiet;
 
   /** Construct an LFCommand that executes the command carried by {@code pb}. */
@@ -73,12 +115,20 @@ public class LFCommand {
     this.quiet = quiet;
   }
 
-  /** Get the output collected during command execution */
+  /**
+   * Get the output collected during command execution. If it is longer than {@link
+   * #RETAINED_OUTPUT_LIMIT} characters, its middle lines are replaced by a line that says how many
+   * were omitted.
+   */
   public String getOutput() {
     return output.toString();
   }
 
-  /** Get the error output collected during command execution */
+  /**
+   * Get the error output collected during command execution. If it is longer than {@link
+   * #RETAINED_OUTPUT_LIMIT} characters, its middle lines are replaced by a line that says how many
+   * were omitted.
+   */
   public String getErrors() {
     return errors.toString();
   }
@@ -99,49 +149,20 @@ public class LFCommand {
   }
 
   /**
-   * Collect as much output as possible from {@code in} without blocking, print it to {@code print}
-   * if not quiet, and store it in {@code store}.
+   * Read {@code in} line by line until it ends, print each line to {@code print} if not quiet, pass
+   * it to {@code handler}, and store it in {@code store}.
    */
-  private void collectOutput(InputStream in, ByteArrayOutputStream store, PrintStream print) {
-    byte[] buffer = new byte[64];
-    int len;
-    do {
-      try {
-        // This depends on in.available() being
-        //  greater than zero if data is available
-        //  (so that all data is collected)
-        //  and upper-bounded by maximum number of
-        //  bytes that can be read without blocking.
-        //  Only the latter of these two conditions
-        //  is guaranteed by the spec.
-        len = in.read(buffer, 0, Math.min(in.available(), buffer.length));
-        if (len > 0) {
-          store.write(buffer, 0, len);
-          if (!quiet) print.write(buffer, 0, len);
-        }
-      } catch (IOException e) {
-        e.printStackTrace();
-        break;
+  private void forward(
+      InputStream in, OutputBuffer store, PrintStream print, Consumer<String> handler) {
+    try (var reader = new BufferedReader(new InputStreamReader(in))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        store.append(line);
+        if (!quiet) print.println(line);
+        handler.accept(line);
       }
-    } while (len > 0); // Do not necessarily continue
-    // to EOF (len == -1) because a blocking read
-    // operation is hard to interrupt.
-  }
-
-  /**
-   * Handle user cancellation if necessary, and handle any output from {@code process} otherwise.
-   *
-   * @param process a {@code Process}
-   * @param cancelIndicator a flag indicating whether a cancellation of {@code process} is requested
-   *     directly to stderr and stdout).
-   */
-  private void poll(Process process, CancelIndicator cancelIndicator) {
-    if (cancelIndicator != null && cancelIndicator.isCanceled()) {
-      process.descendants().forEach(ProcessHandle::destroyForcibly);
-      process.destroyForcibly();
-    } else {
-      collectOutput(process.getInputStream(), output, System.out);
-      collectOutput(process.getErrorStream(), errors, System.err);
+    } catch (IOException e) {
+      // The stream was closed because the process was destroyed or did not close it in time.
     }
   }
 
@@ -150,8 +171,9 @@ public class LFCommand {
    *
    * <p>Executing a process directly with {@code processBuilder.start()} could lead to a deadlock as
    * the subprocess blocks when output or error buffers are full. This method ensures that output
-   * and error messages are continuously read and forwards them to the system output and error
-   * streams as well as to the output and error streams hold in this class.
+   * and error messages are continuously read, line by line, and forwards them to the system output
+   * and error streams, to the handlers of this command, and to the output and error buffers of
+   * this command, which retain at most {@link #RETAINED_OUTPUT_LIMIT} characters each.
    *
    * <p>If the current operation is cancelled (as indicated by <code>cancelIndicator</code>), the
    * subprocess is destroyed. Output and error streams until that point are still collected.
@@ -168,26 +190,58 @@ public class LFCommand {
     System.out.println("--- Current working directory: " + processBuilder.directory().toString());
     System.out.println("--- Executing command: " + String.join(" ", processBuilder.command()));
 
+    String name = Paths.get(processBuilder.command().get(0)).getFileName().toString();
+    try (var span = profiler.span("command " + name)) {
+      return waitFor(cancelIndicator);
+    }
+  }
+
+  /** Start the subprocess and wait for it to terminate, as described in {@link #run}. */
+  private int waitFor(CancelIndicator cancelIndicator) {
     final Process process = startProcess();
     if (process == null) return -1;
 
-    ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
-    poller.scheduleAtFixedRate(
-        () -> poll(process, cancelIndicator), 0, PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+    var readers =
+        CompletableFuture.allOf(
+            CompletableFuture.runAsync(
+                () -> forward(process.getInputStream(), output, System.out, outputHandler),
+                workers),
+            CompletableFuture.runAsync(
+                () -> forward(process.getErrorStream(), errors, System.err, errorHandler),
+                workers));
 
     try {
-      final int returnCode = process.waitFor();
-      poller.shutdown();
-      poller.awaitTermination(READ_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
-      // Finish collecting any remaining data
-      poll(process, cancelIndicator);
-      return returnCode;
+      while (!process.waitFor(PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+        if (cancelIndicator != null && cancelIndicator.isCanceled()) {
+          process.descendants().forEach(ProcessHandle::destroyForcibly);
+          process.destroyForcibly();
+        }
+      }
+      try {
+        readers.get(READ_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // Descendants of the process still hold the streams open. Stop reading them.
+        closeStreams(process);
+      } catch (ExecutionException e) {
+        e.printStackTrace();
+      }
+      return process.exitValue();
     } catch (InterruptedException e) {
       e.printStackTrace();
       return -2;
     }
   }
 
+  /** Close the output and error streams of {@code process}, which unblocks their readers. */
+  private static void closeStreams(Process process) {
+    try {
+      process.getInputStream().close();
+      process.getErrorStream().close();
+    } catch (IOException e) {
+      // The readers terminate once the descendants exit.
+    }
+  }
+
   /**
    * Execute the command. Do not allow user cancellation.
    *
@@ -232,6 +286,27 @@ public class LFCommand {
     quiet = true;
   }
 
+  /**
+   * Pass each line of output to the given handler as soon as it is read. The handler is invoked by
+   * a thread other than the one that runs the command.
+   */
+  public void setOutputHandler(Consumer<String> handler) {
+    outputHandler = handler;
+  }
+
+  /**
+   * Pass each line of error output to the given handler as soon as it is read. The handler is
+   * invoked by a thread other than the one that runs the command.
+   */
+  public void setErrorHandler(Consumer<String> handler) {
+    errorHandler = handler;
+  }
+
+  /** Record the time spent running the command with the given profiler. */
+  public void setProfiler(Profiler profiler) {
+    this.profiler = profiler;
+  }
+
   /**
    * Create a LFCommand instance from a given command and argument list in the current working
    * directory.
@@ -264,9 +339,13 @@ public class LFCommand {
    * is available on the PATH. 3. If both points above fail, a third attempt is started using bash
    * to indirectly execute the command (see below for an explanation).
    *
+   * <p>The commands found in step 2 and the PATH of the bash login shell used in step 3 are cached
+   * for the lifetime of the process (see {@link #resolveInBackground(Collection)} and {@link
+   * #invalidateCommandCache()}). Commands that are not found are looked up again every time.
+   *
    * <p>A bit more context: If the command cannot be found directly, then a second attempt is made
-   * using a Bash shell with the --login option, which sources the user's ~/.bash_profile,
-   * ~/.bash_login, or ~/.bashrc (whichever is first found) before running the command. This helps
+   * using the PATH of a Bash shell with the --login option, which sources the user's
+   * ~/.bash_profile, ~/.bash_login, or ~/.bashrc (whichever is first found). This helps
    * to ensure that the user's PATH variable is set according to their usual environment, assuming
    * that they use a bash shell.
    *
@@ -321,12 +400,75 @@ public class LFCommand {
   }
 
   /**
-   * Search for matches to the given command by following the PATH environment variable.
+   * Start looking up the given commands in parallel, so that creating commands for them later does
+   * not have to wait for the lookup. Also determine the PATH of a bash login shell, which is used
+   * for commands that are not on the PATH of this process.
+   *
+   * @param commands The names of commands that are likely to be executed.
+   */
+  public static void resolveInBackground(Collection<String> commands) {
+    commands.forEach(LFCommand::lookUp);
+    loginShellPath();
+  }
+
+  /**
+   * Forget the results of all command lookups, so that commands that have been installed or removed
+   * since are found or not found, respectively. The PATH of the bash login shell is kept, but the
+   * directories on it are searched again.
+   */
+  public static void invalidateCommandCache() {
+    resolvedCommands.clear();
+  }
+
+  /**
+   * Search for matches to the given command by following the PATH environment variable. A result
+   * with matches is cached; a cached result is discarded if one of the matches is no longer
+   * executable.
    *
    * @param command A command for which to search.
-   * @return The file locations of matches to the given command.
+   * @return The file locations of matches to the given command, or null if the search failed.
    */
   private static List<File> findCommand(final String command) {
+    var lookup = lookUp(command);
+    List<File> matches = lookup.join().orElse(null);
+    if (matches != null && !matches.stream().allMatch(File::canExecute)) {
+      resolvedCommands.remove(command, lookup);
+      matches = lookUp(command).join().orElse(null);
+    }
+    return matches;
+  }
+
+  /**
+   * Return the cached lookup of the given command, which is started if there is none. A lookup that
+   * finds no match is removed from the cache before it completes, so that a command that is
+   * installed later is found.
+   */
+  private static CompletableFuture<Optional<List<File>>> lookUp(String command) {
+    var cached = resolvedCommands.get(command);
+    if (cached != null) return cached;
+    var lookup = new CompletableFuture<Optional<List<File>>>();
+    cached = resolvedCommands.putIfAbsent(command, lookup);
+    if (cached != null) return cached;
+    workers.execute(
+        () -> {
+          Optional<List<File>> result = Optional.empty();
+          try {
+            result = Optional.ofNullable(searchPath(command));
+          } finally {
+            if (result.isEmpty()) resolvedCommands.remove(command, lookup);
+            lookup.complete(result);
+          }
+        });
+    return lookup;
+  }
+
+  /**
+   * Search for matches to the given command by running 'which' (or 'where' on Windows).
+   *
+   * @param command A command for which to search.
+   * @return The file locations of matches to the given command, or null if the search failed.
+   */
+  private static List<File> searchPath(final String command) {
     final String whichCmd = System.getProperty("os.name").startsWith("Windows") ? "where" : "which";
     final ProcessBuilder whichBuilder = new ProcessBuilder(List.of(whichCmd, command));
     try {
@@ -372,23 +514,98 @@ public class LFCommand {
     }
   }
 
+  /**
+   * Return whether the given command is an executable file in one of the directories on the PATH
+   * of a bash login shell. Relative directories on that PATH are resolved against {@code dir}.
+   */
   private static boolean checkIfCommandIsExecutableWithBash(final String command, final Path dir) {
+    for (String directory : loginShellPath().join()) {
+      Path file = dir.resolve(directory).resolve(command);
+      if (Files.isRegularFile(file) && Files.isExecutable(file)) return true;
+    }
+    return false;
+  }
+
+  /** Return the directories on the PATH of a bash login shell, which are determined only once. */
+  private static CompletableFuture<List<String>> loginShellPath() {
+    var path = loginShellPath;
+    if (path == null) {
+      synchronized (LFCommand.class) {
+        path = loginShellPath;
+        if (path == null) {
+          path = CompletableFuture.supplyAsync(LFCommand::queryLoginShellPath, workers);
+          loginShellPath = path;
+        }
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Run a bash login shell, which sources the profile of the user, to print its PATH, and return
+   * the directories on it, or an empty list if bash is not installed or fails.
+   */
+  private static List<String> queryLoginShellPath() {
     // check first if bash is installed
     if (findCommand("bash") == null) {
-      return false;
+      return List.of();
     }
-
-    // then try to find command with bash
+    // The profile may print to the standard output as well, so mark the line with the PATH.
+    final String marker = "LF_LOGIN_SHELL_PATH=";
     final ProcessBuilder bashBuilder =
-        new ProcessBuilder(
-            List.of("bash", "--login", "-c", String.format("\"which %s\"", command)));
-    bashBuilder.directory(dir.toFile());
+        new ProcessBuilder(List.of("bash", "--login", "-c", "echo \"" + marker + "$PATH\""));
+    bashBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
     try {
-      int bashReturn = bashBuilder.start().waitFor();
-      return bashReturn == 0;
+      Process bash = bashBuilder.start();
+      String output = new String(bash.getInputStream().readAllBytes());
+      if (bash.waitFor() != 0) return List.of();
+      return output
+          .lines()
+          .filter(line -> line.startsWith(marker))
+          .reduce((first, second) -> second)
+          .map(line -> line.substring(marker.length()).split(File.pathSeparator))
+          .map(directories -> Arrays.stream(directories).filter(it -> !it.isEmpty()).toList())
+          .orElse(List.of());
     } catch (InterruptedException | IOException e) {
       e.printStackTrace();
-      return false;
+      return List.of();
+    }
+  }
+
+  /**
+   * The first and the last lines of a stream, up to a total of {@link #RETAINED_OUTPUT_LIMIT}
+   * characters. The first lines contain the first errors that a compiler reports, and the last
+   * lines contain its summary. At least the last line is always retained.
+   */
+  private static class OutputBuffer {
+    private final StringBuilder head = new StringBuilder();
+    private final ArrayDeque<String> tail = new ArrayDeque<>();
+    private int tailLength = 0;
+    private long omitted = 0;
+
+    synchronized void append(String line) {
+      if (tail.isEmpty() && head.length() + line.length() + 1 <= RETAINED_OUTPUT_LIMIT / 2) {
+        head.append(line).append('\n');
+        return;
+      }
+      tail.addLast(line);
+      tailLength += line.length() + 1;
+      while (tailLength > RETAINED_OUTPUT_LIMIT / 2 && tail.size() > 1) {
+        tailLength -= tail.removeFirst().length() + 1;
+        omitted++;
+      }
+    }
+
+    /**
+     * Return the retained lines, each followed by a newline, with a line that says how many lines
+     * were omitted between the first and the last lines.
+     */
+    @Override
+    public synchronized String toString() {
+      var result = new StringBuilder(head.length() + tailLength + 64).append(head);
+      if (omitted > 0) result.append("[... ").append(omitted).append(" lines omitted ...]\n");
+      tail.forEach(line -> result.append(line).append('\n'));
+      return result.toString();
     }
   }
 }
@@ -0,0 +1,259 @@
+package org.lflang.util;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A record of the time spent in the phases of a build, which are measured as nested spans, and of
+ * counters that are incremented during the build.
+ *
+ * <p>A span is opened with {@link #span(String)} and closed when the returned {@link Span} is
+ * closed, typically in a try-with-resources statement. Spans that are opened on a thread while
+ * another span is open on the same thread are nested in it. While a span is open, the profiler
+ * that opened it is the {@link #current()} profiler of the thread, so that code that has no access
+ * to the generator context of the build can contribute spans and counters to it.
+ *
+ * <p>Because the current profiler is specific to a thread, work that is handed to another thread
+ * does not see it. Such work should be given the profiler explicitly, either by passing it to
+ * {@link LFCommand#setProfiler(Profiler)} or by running the work as a task returned by {@link
+ * #wrap(String, Runnable)}.
+ *
+ * <p>The recorded data can be written as a trace in the Chrome trace event format, which can be
+ * viewed in {@code chrome://tracing} or Perfetto, and summarized as a table of the total time and
+ * the self time (excluding nested spans) spent in each phase.
+ *
+ * <p>The profiler {@link #NONE} records nothing, and its spans cost no more than a method call.
+ */
+public final class Profiler {
+
+  /** A profiler that records nothing. */
+  public static final Profiler NONE = new Profiler(false);
+
+  /** The innermost span that is open on each thread, if any. */
+  private static final ThreadLocal<Span> innermost = new ThreadLocal<>();
+
+  /** The span returned by profilers that record nothing. */
+  private static final Span NO_SPAN = new Span(NONE, null, null);
+
+  private final boolean enabled;
+
+  /** The time at which this profiler was created, which is the origin of the trace. */
+  private final long origin = System.nanoTime();
+
+  /** The spans that have been closed and the counter updates, in the order in which they ended. */
+  private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+
+  /** The values of the counters by name. */
+  private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+  /** The names of the threads on which spans were opened, by thread ID. */
+  private final Map<Long, String> threads = new ConcurrentHashMap<>();
+
+  /** Create a profiler that records spans and counters. */
+  public Profiler() {
+    this(true);
+  }
+
+  private Profiler(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Return the profiler of the innermost span that is open on the current thread, or {@link #NONE}
+   * if there is none.
+   */
+  public static Profiler current() {
+    Span span = innermost.get();
+    return span == null ? NONE : span.profiler;
+  }
+
+  /** Return true if this profiler records spans and counters. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Open a span with the given name on the current thread. The span must be closed on the same
+   * thread, after any span that is opened within it.
+   *
+   * @param name The name of the phase, which is used to aggregate spans in the summary.
+   */
+  public Span span(String name) {
+    if (!enabled) return NO_SPAN;
+    Thread thread = Thread.currentThread();
+    threads.putIfAbsent(thread.getId(), thread.getName());
+    Span span = new Span(this, name, innermost.get());
+    innermost.set(span);
+    return span;
+  }
+
+  /**
+   * Return a task that runs the given task in a span with the given name, on whichever thread it is
+   * run, so that the spans and counters of the task are recorded by this profiler.
+   */
+  public Runnable wrap(String name, Runnable task) {
+    if (!enabled) return task;
+    return () -> {
+      try (var span = span(name)) {
+        task.run();
+      }
+    };
+  }
+
+  /** Add the given amount to the counter with the given name. */
+  public void count(String name, long amount) {
+    if (!enabled) return;
+    long value = counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(amount);
+    events.add(
+        new Event(name, 'C', Thread.currentThread().getId(), System.nanoTime(), 0, 0, value));
+  }
+
+  /** Return the values of the counters, by name. */
+  public Map<String, Long> counters() {
+    Map<String, Long> result = new TreeMap<>();
+    counters.forEach((name, value) -> result.put(name, value.get()));
+    return result;
+  }
+
+  /**
+   * Write the recorded spans and counters to the given file in the Chrome trace event format.
+   * Spans are written as complete events, counters as counter events.
+   */
+  public void writeTrace(Path file) throws IOException {
+    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(out)) {
+      json.beginObject();
+      json.name("displayTimeUnit").value("ms");
+      json.name("traceEvents").beginArray();
+      for (var thread : threads.entrySet()) {
+        json.beginObject();
+        json.name("name").value("thread_name");
+        json.name("ph").value("M");
+        json.name("pid").value(1);
+        json.name("tid").value(thread.getKey());
+        json.name("args").beginObject().name("name").value(thread.getValue()).endObject();
+        json.endObject();
+      }
+      for (Event event : events) {
+        json.beginObject();
+        json.name("name").value(event.name);
+        json.name("ph").value(String.valueOf(event.phase));
+        json.name("pid").value(1);
+        json.name("tid").value(event.thread);
+        json.name("ts").value((event.start - origin) / 1000.0);
+        if (event.phase == 'X') {
+          json.name("dur").value(event.duration / 1000.0);
+        } else {
+          json.name("args").beginObject().name(event.name).value(event.value).endObject();
+        }
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+  }
+
+  /**
+   * Return a table with the number of spans, the total time, and the self time for each phase,
+   * sorted by decreasing total time, followed by the values of the counters.
+   */
+  public String summary() {
+    Map<String, long[]> phases = new LinkedHashMap<>();
+    for (Event event : events) {
+      if (event.phase != 'X') continue;
+      long[] totals = phases.computeIfAbsent(event.name, k -> new long[3]);
+      totals[0]++;
+      totals[1] += event.duration;
+      totals[2] += event.self;
+    }
+    List<Map.Entry<String, long[]>> rows = new ArrayList<>(phases.entrySet());
+    rows.sort(Comparator.comparingLong(e -> -e.getValue()[1]));
+    int width = "Phase".length();
+    for (var entry : rows) width = Math.max(width, entry.getKey().length());
+    for (String name : counters.keySet()) width = Math.max(width, name.length());
+
+    String row = "%n%-" + width + "s %8s %12s %12s";
+    StringBuilder table = new StringBuilder();
+    table.append(String.format(row, "Phase", "Count", "Total (ms)", "Self (ms)").strip());
+    for (var entry : rows) {
+      long[] totals = entry.getValue();
+      table.append(
+          String.format(
+              row,
+              entry.getKey(),
+              totals[0],
+              String.format("%.1f", totals[1] / 1e6),
+              String.format("%.1f", totals[2] / 1e6)));
+    }
+    Map<String, Long> values = counters();
+    if (!values.isEmpty()) {
+      String counter = "%n%-" + width + "s %8s";
+      table.append(String.format("%n" + counter, "Counter", "Value"));
+      values.forEach((name, value) -> table.append(String.format(counter, name, value)));
+    }
+    return table.toString();
+  }
+
+  /** A span of a phase that is open until it is closed. */
+  public static final class Span implements AutoCloseable {
+
+    private final Profiler profiler;
+    private final String name;
+
+    /** The span in which this span is nested, if any. */
+    private final Span parent;
+
+    private final long start;
+
+    /** The time spent in the spans that were nested in this span. */
+    private long nested = 0;
+
+    private Span(Profiler profiler, String name, Span parent) {
+      this.profiler = profiler;
+      this.name = name;
+      this.parent = parent;
+      this.start = profiler.enabled ? System.nanoTime() : 0;
+    }
+
+    /** Close this span and record the time spent in it. */
+    @Override
+    public void close() {
+      if (!profiler.enabled) return;
+      long duration = System.nanoTime() - start;
+      innermost.set(parent);
+      if (parent != null) parent.nested += duration;
+      profiler.events.add(
+          new Event(
+              name, 'X', Thread.currentThread().getId(), start, duration, duration - nested, 0));
+    }
+  }
+
+  /**
+   * A closed span or an update of a counter.
+   *
+   * @param name The name of the phase or counter.
+   * @param phase The type of the event in the trace event format, 'X' for a span and 'C' for a
+   *     counter.
+   * @param thread The ID of the thread on which the event occurred.
+   * @param start The time at which the span was opened or the counter was updated.
+   * @param duration The time spent in the span.
+   * @param self The time spent in the span, excluding nested spans.
+   * @param value The value of the counter after the update.
+   */
+  private record Event(
+      String name, char phase, long thread, long start, long duration, long self, long value) {}
+}
@@ -0,0 +1,203 @@
+package org.lflang.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.lflang.FileConfig;
+import org.lflang.LocalStrings;
+
+/**
+ * A cache of runtime sources that are extracted from the class path into the user's cache
+ * directory, so that they need not be copied into the src-gen directory of every program.
+ *
+ * <p>The cache is content-addressed: a directory on the class path is extracted into {@code
+ * runtime/<version>/<hash>} in the cache directory, where the hash is computed from the names,
+ * sizes, and checksums of the entries in the JAR file, which are known without reading the entries.
+ * An extracted directory is never modified, and a directory is extracted at most once, even by
+ * concurrent compiler processes. The cache directory is {@code lingua-franca} in the user's cache
+ * directory of the platform, unless it is set with the environment variable {@code LF_CACHE_DIR}.
+ *
+ * <p>Only directories in JAR files are cached. If the compiler runs from a class path in the file
+ * system, the runtime sources are copied as before.
+ */
+public final class RuntimeCache {
+
+  /** The directories extracted in this process, by URL and cache directory. */
+  private static final Map<String, Path> extracted = new ConcurrentHashMap<>();
+
+  private RuntimeCache() {}
+
+  /**
+   * Link the given subdirectories of the given class path directory into the given destination
+   * directory, extracting the class path directory into the cache first if needed. Each
+   * subdirectory is linked with a symbolic link to its cached copy that replaces any file,
+   * directory, or link of the same name in the destination.
+   *
+   * @param entry A directory on the class path, such as {@code /lib/c/reactor-c}.
+   * @param names The names of the subdirectories to link.
+   * @param dstDir The directory in which to create the links.
+   * @return False if the directory is not in a JAR file or symbolic links are not supported, in
+   *     which case the subdirectories have to be copied.
+   * @throws IOException If the directory cannot be extracted or a subdirectory is missing.
+   */
+  public static boolean link(String entry, List<String> names, Path dstDir) throws IOException {
+    URL resource = FileConfig.class.getResource(entry);
+    if (resource == null) throw new TargetResourceNotFoundException(entry);
+    return link(resource, cacheDirectory(), names, dstDir);
+  }
+
+  /**
+   * Like {@link #link(String, List, Path)}, but link the subdirectories of the directory with the
+   * given URL, using the given root directory of the cache.
+   *
+   * <p>The linked directories are shared by all builds that use the cache, so they must never be
+   * written to. Generators that add files to one of them have to copy the runtime instead.
+   */
+  public static boolean link(URL directory, Path cacheDir, List<String> names, Path dstDir)
+      throws IOException {
+    Path cached = extract(directory, cacheDir);
+    if (cached == null) return false;
+    String entry = directory.toString();
+    Files.createDirectories(dstDir);
+    for (String name : names) {
+      Path target = cached.resolve(name);
+      if (!Files.isDirectory(target)) {
+        throw new TargetResourceNotFoundException(entry + "/" + name);
+      }
+      Path link = dstDir.resolve(name);
+      if (Files.isSymbolicLink(link) && Files.readSymbolicLink(link).equals(target)) continue;
+      if (Files.isSymbolicLink(link) || Files.isRegularFile(link)) {
+        Files.delete(link);
+      } else if (Files.isDirectory(link)) {
+        FileUtil.deleteDirectory(link);
+      }
+      try {
+        Files.createSymbolicLink(link, target);
+      } catch (UnsupportedOperationException | FileSystemException e) {
+        // For example, on Windows without the privilege to create symbolic links.
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Remove any links to the cache with the given names from the given directory, so that the
+   * directories can be copied there without modifying the cache.
+   */
+  public static void unlink(Path dir, List<String> names) throws IOException {
+    for (String name : names) {
+      Path link = dir.resolve(name);
+      if (Files.isSymbolicLink(link)) Files.delete(link);
+    }
+  }
+
+  /**
+   * Return the cached copy of the directory with the given URL, extracting it into the given cache
+   * directory if it is not cached yet, or null if the directory is not in a JAR file.
+   */
+  private static Path extract(URL resource, Path cacheDir) throws IOException {
+    String key = resource + "\n" + cacheDir;
+    Path path = extracted.get(key);
+    if (path != null && Files.isDirectory(path)) return path;
+    String entry = resource.toString();
+    URLConnection connection = resource.openConnection();
+    if (!(connection instanceof JarURLConnection jarConnection)) return null;
+    JarFile jar = jarConnection.getJarFile();
+    String prefix = jarConnection.getEntryName();
+    if (!prefix.endsWith("/")) prefix += "/";
+
+    // The entries of the directory, in a canonical order.
+    Map<String, JarEntry> entries = new TreeMap<>();
+    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+      JarEntry jarEntry = e.nextElement();
+      String name = jarEntry.getName();
+      if (name.startsWith(prefix) && !jarEntry.isDirectory()) {
+        entries.put(name.substring(prefix.length()), jarEntry);
+      }
+    }
+    if (entries.isEmpty()) throw new TargetResourceNotFoundException(entry);
+
+    path = cacheDir.resolve(LocalStrings.VERSION).resolve(hash(entries));
+    if (!Files.isDirectory(path)) {
+      Files.createDirectories(path.getParent());
+      // Extract into a temporary directory that is renamed when complete, so that a cached
+      // directory is always complete, also if several processes extract it at the same time.
+      Path temp = Files.createTempDirectory(path.getParent(), path.getFileName() + ".");
+      try {
+        for (var e : entries.entrySet()) {
+          Path file = temp.resolve(e.getKey());
+          Files.createDirectories(file.getParent());
+          try (InputStream in = jar.getInputStream(e.getValue())) {
+            Files.copy(in, file);
+          }
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException e) {
+        // Another process extracted the same content.
+      } catch (FileSystemException e) {
+        if (!Files.isDirectory(path)) throw e;
+      } finally {
+        if (Files.exists(temp)) FileUtil.deleteDirectory(temp);
+      }
+    }
+    extracted.put(key, path);
+    return path;
+  }
+
+  /** Return the root directory of the runtime cache. */
+  private static Path cacheDirectory() {
+    String dir = System.getenv("LF_CACHE_DIR");
+    if (dir == null || dir.isEmpty()) {
+      String home = System.getProperty("user.home");
+      String os = System.getProperty("os.name").toLowerCase();
+      if (os.startsWith("windows") && System.getenv("LOCALAPPDATA") != null) {
+        dir = Path.of(System.getenv("LOCALAPPDATA"), "lingua-franca").toString();
+      } else if (os.startsWith("mac")) {
+        dir = Path.of(home, "Library", "Caches", "lingua-franca").toString();
+      } else if (System.getenv("XDG_CACHE_HOME") != null) {
+        dir = Path.of(System.getenv("XDG_CACHE_HOME"), "lingua-franca").toString();
+      } else {
+        dir = Path.of(home, ".cache", "lingua-franca").toString();
+      }
+    }
+    return Path.of(dir).resolve("runtime");
+  }
+
+  /** Return a hash of the names, sizes, and checksums of the given entries. */
+  private static String hash(Map<String, JarEntry> entries) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+    entries.forEach(
+        (name, entry) -> {
+          digest.update(name.getBytes(StandardCharsets.UTF_8));
+          digest.update((byte) 0);
+          digest.update(buffer.clear().putLong(entry.getSize()).putLong(entry.getCrc()).flip());
+        });
+    return HexFormat.of().formatHex(digest.digest(), 0, 16);
+  }
+}
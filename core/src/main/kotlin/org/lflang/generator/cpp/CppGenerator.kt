@@ -69,11 +69,13 @@ class CppGenerator(
         val platformGenerator: CppPlatformGenerator =
             if (targetConfig.get(Ros2Property.INSTANCE)) CppRos2Generator(this) else CppStandaloneGenerator(this)
 
-        // generate all core files
-        generateFiles(platformGenerator.srcGenPath, getAllImportedResources(resource))
+        context.profiler.span("code emission").use {
+            // generate all core files
+            generateFiles(platformGenerator.srcGenPath, getAllImportedResources(resource))
 
-        // generate platform specific files
-        platformGenerator.generatePlatformFiles()
+            // generate platform specific files
+            platformGenerator.generatePlatformFiles()
+        }
 
         if (targetConfig.get(NoCompileProperty.INSTANCE) || errorsOccurred()) {
             println("Exiting before invoking target compiler.")
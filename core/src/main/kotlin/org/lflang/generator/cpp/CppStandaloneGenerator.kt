@@ -1,5 +1,6 @@
 package org.lflang.generator.cpp
 
+import org.lflang.generator.CMakeProgressReporter
 import org.lflang.generator.CodeMap
 import org.lflang.generator.LFGeneratorContext
 import org.lflang.target.property.BuildTypeProperty
@@ -63,11 +64,13 @@ class CppStandaloneGenerator(generator: CppGenerator) :
 
         val version = checkCmakeVersion()
         if (version != null) {
-            val cmakeReturnCode = runCmake(context)
+            val progress = CMakeProgressReporter(context)
+            val cmakeReturnCode = runCmake(context, progress)
 
             if (cmakeReturnCode == 0 && runMake) {
                 // If cmake succeeded, run make
                 val makeCommand = createMakeCommand(fileConfig.buildPath, version, fileConfig.name)
+                progress.attachTo(makeCommand)
                 val makeReturnCode = CppValidator(fileConfig, messageReporter, codeMaps).run(makeCommand, context.cancelIndicator)
                 var installReturnCode = 0
                 if (makeReturnCode == 0) {
@@ -116,8 +119,9 @@ class CppStandaloneGenerator(generator: CppGenerator) :
      * Run CMake to generate build files.
      * @return True, if cmake run successfully
      */
-    private fun runCmake(context: LFGeneratorContext): Int {
+    private fun runCmake(context: LFGeneratorContext, progress: CMakeProgressReporter): Int {
         val cmakeCommand = createCmakeCommand(fileConfig.buildPath, fileConfig.outPath)
+        progress.attachTo(cmakeCommand)
         return cmakeCommand.run(context.cancelIndicator)
     }
 
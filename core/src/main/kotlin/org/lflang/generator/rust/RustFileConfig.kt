@@ -31,7 +31,6 @@ import org.lflang.generator.CodeMap
 import org.lflang.util.FileUtil
 import java.io.Closeable
 import java.io.IOException
-import java.nio.file.Files
 import java.nio.file.Path
 import kotlin.system.measureTimeMillis
 
@@ -117,9 +116,8 @@ class Emitter(
     }
 
     override fun close() {
-        Files.createDirectories(output.parent)
         val codeMap = CodeMap.fromGeneratedCode(sb.toString())
         codeMaps[output] = codeMap
-        Files.writeString(output, codeMap.generatedCode)
+        FileUtil.writeToFile(codeMap.generatedCode, output, true)
     }
 }
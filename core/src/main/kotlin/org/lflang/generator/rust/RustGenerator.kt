@@ -70,8 +70,10 @@ class RustGenerator(
 
         Files.createDirectories(fileConfig.srcGenPath)
 
-        val gen = RustModelBuilder.makeGenerationInfo(targetConfig, reactors, messageReporter)
-        val codeMaps: Map<Path, CodeMap> = RustEmitter.generateRustProject(fileConfig, gen)
+        val codeMaps: Map<Path, CodeMap> = context.profiler.span("code emission").use {
+            val gen = RustModelBuilder.makeGenerationInfo(targetConfig, reactors, messageReporter)
+            RustEmitter.generateRustProject(fileConfig, gen)
+        }
 
         if (targetConfig.get(NoCompileProperty.INSTANCE) || errorsOccurred()) {
             context.finish(GeneratorResult.GENERATED_NO_EXECUTABLE.apply(context, codeMaps))
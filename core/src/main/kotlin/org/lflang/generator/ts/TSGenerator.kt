@@ -122,7 +122,7 @@ class TSGenerator(
         updatePackageConfig(context)
 
         val codeMaps = HashMap<Path, CodeMap>()
-        generateCode(codeMaps, resource.model.preambles)
+        context.profiler.span("code emission").use { generateCode(codeMaps, resource.model.preambles) }
         if (targetConfig.get(DockerProperty.INSTANCE).enabled) {
             val dockerData = TSDockerGenerator(context).generateDockerData();
             dockerData.writeDockerFile()
@@ -201,7 +201,7 @@ class TSGenerator(
             }
             sb.appendLine(line)
         }
-        manifest.toFile().writeText(sb.toString());
+        FileUtil.writeToFile(sb.toString(), manifest)
     }
 
     /**
@@ -0,0 +1,127 @@
+package org.lflang.tests.compiler;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.testing.InjectWith;
+import org.eclipse.xtext.testing.extensions.InjectionExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.generator.BuildResourceCache;
+import org.lflang.lf.Model;
+import org.lflang.tests.LFInjectorProvider;
+
+@ExtendWith(InjectionExtension.class)
+@InjectWith(LFInjectorProvider.class)
+
+/** Tests for the reuse of parsed resources across builds. */
+class BuildResourceCacheTest {
+
+  @Inject Provider<ResourceSet> resourceSetProvider;
+
+  @TempDir Path dir;
+
+  private BuildResourceCache cache;
+
+  private URI main;
+
+  private URI lib;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    cache = new BuildResourceCache(resourceSetProvider.get());
+    main =
+        write(
+            "Main.lf",
+            """
+            target C
+            import Lib from "Lib.lf"
+            main reactor {
+              l = new Lib()
+            }
+            """);
+    lib = write("Lib.lf", "target C\nreactor Lib {\n}\n");
+  }
+
+  /** Check that a second build reuses the resources of the first one. */
+  @Test
+  public void unchangedFilesAreReused() {
+    Resource first = build();
+    Resource firstLib = first.getResourceSet().getResource(lib, false);
+    Assertions.assertNotNull(firstLib);
+    cache.release(first);
+
+    Resource second = build();
+    Assertions.assertSame(first, second);
+    Assertions.assertSame(firstLib, second.getResourceSet().getResource(lib, false));
+    cache.release(second);
+  }
+
+  /** Check that a change to an imported file discards it and the files that import it. */
+  @Test
+  public void changedImportDiscardsImporters() throws Exception {
+    Resource first = build();
+    Resource firstLib = first.getResourceSet().getResource(lib, false);
+    cache.release(first);
+
+    write("Lib.lf", "target C\nreactor Lib {\n  state x: int = 0\n}\n");
+    Resource second = build();
+    Resource secondLib = second.getResourceSet().getResource(lib, false);
+    Assertions.assertNotSame(first, second);
+    Assertions.assertNotSame(firstLib, secondLib);
+    Assertions.assertTrue(secondLib.getErrors().isEmpty());
+    Assertions.assertEquals(
+        1, ((Model) secondLib.getContents().get(0)).getReactors().get(0).getStateVars().size());
+    cache.release(second);
+  }
+
+  /** Check that a resource whose AST was modified during a build is not reused. */
+  @Test
+  public void modifiedResourceIsDiscarded() {
+    Resource first = build();
+    Resource firstLib = first.getResourceSet().getResource(lib, false);
+    ((Model) first.getContents().get(0)).getReactors().get(0).setName("Transformed");
+    cache.release(first);
+
+    Resource second = build();
+    Assertions.assertNotSame(first, second);
+    Assertions.assertSame(firstLib, second.getResourceSet().getResource(lib, false));
+    Assertions.assertNotEquals(
+        "Transformed", ((Model) second.getContents().get(0)).getReactors().get(0).getName());
+    cache.release(second);
+  }
+
+  /** Check that a build cannot acquire the cache while another build holds it. */
+  @Test
+  public void concurrentBuildIsRejected() throws Exception {
+    Resource first = build();
+    boolean[] acquired = new boolean[1];
+    var other = new Thread(() -> acquired[0] = cache.tryAcquire());
+    other.start();
+    other.join();
+    Assertions.assertFalse(acquired[0]);
+    cache.release(first);
+  }
+
+  /** Acquire the cache and load the main file. */
+  private Resource build() {
+    Assertions.assertTrue(cache.tryAcquire());
+    Resource resource = cache.getResource(main);
+    Assertions.assertTrue(resource.getErrors().isEmpty(), resource.getErrors().toString());
+    return resource;
+  }
+
+  /** Write the given text to the file with the given name and return its URI. */
+  private URI write(String name, String text) throws Exception {
+    Path file = dir.resolve(name);
+    Files.writeString(file, text);
+    return URI.createFileURI(file.toAbsolutePath().toString());
+  }
+}
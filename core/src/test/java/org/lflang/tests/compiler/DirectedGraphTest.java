@@ -0,0 +1,116 @@
+package org.lflang.tests.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.lflang.graph.CompactGraph;
+import org.lflang.graph.DirectedGraph;
+import org.lflang.graph.PrecedenceGraph;
+
+public class DirectedGraphTest {
+
+  @Test
+  public void addAndRemove() throws Exception {
+    DirectedGraph<String> graph = new DirectedGraph<>();
+    graph.addNode("a");
+    graph.addEdge("b", "a");
+    graph.addEdge("c", "a");
+    graph.addEdge("c", "b");
+    graph.addEdge("c", "b"); // Duplicate edges are ignored.
+    Assertions.assertEquals(3, graph.nodeCount());
+    Assertions.assertEquals(3, graph.edgeCount());
+    Assertions.assertEquals(List.of("a", "b", "c"), new ArrayList<>(graph.nodes()));
+    Assertions.assertEquals(Set.of("b", "c"), graph.getDownstreamAdjacentNodes("a"));
+    Assertions.assertEquals(Set.of("a", "b"), graph.getUpstreamAdjacentNodes("c"));
+    Assertions.assertEquals(Set.of("a"), graph.rootNodes());
+    Assertions.assertEquals(Set.of("c"), graph.leafNodes());
+
+    graph.removeNode("b");
+    Assertions.assertEquals(2, graph.nodeCount());
+    Assertions.assertEquals(1, graph.edgeCount());
+    Assertions.assertFalse(graph.hasNode("b"));
+    Assertions.assertEquals(Set.of("a"), graph.getUpstreamAdjacentNodes("c"));
+
+    graph.removeEdge("c", "a");
+    Assertions.assertEquals(0, graph.edgeCount());
+    Assertions.assertEquals(Set.of("a", "c"), graph.rootNodes());
+  }
+
+  @Test
+  public void reuseIndicesOfRemovedNodes() throws Exception {
+    DirectedGraph<Integer> graph = new DirectedGraph<>();
+    for (int i = 0; i < 1000; i++) {
+      graph.addNode(i);
+      if (i > 0) graph.addEdge(i, i - 1);
+      if (i > 1) graph.removeNode(i - 2);
+    }
+    Assertions.assertEquals(List.of(998, 999), new ArrayList<>(graph.nodes()));
+    Assertions.assertEquals(1, graph.edgeCount());
+    Assertions.assertEquals(Set.of(998), graph.getUpstreamAdjacentNodes(999));
+  }
+
+  @Test
+  public void duplicateEdgesBetweenLargeSets() throws Exception {
+    DirectedGraph<Integer> graph = new DirectedGraph<>();
+    int width = 100;
+    // Connect every source to every sink twice, so that the duplicates are found by hashing.
+    for (int round = 0; round < 2; round++) {
+      for (int source = 0; source < width; source++) {
+        for (int sink = width; sink < 2 * width; sink++) {
+          graph.addEdge(sink, source);
+        }
+      }
+    }
+    Assertions.assertEquals(width * width, graph.edgeCount());
+    Assertions.assertEquals(width, graph.inDegree(width));
+
+    graph.removeEdge(width, 0);
+    graph.removeNode(1);
+    Assertions.assertEquals(width * width - 1 - width, graph.edgeCount());
+    graph.addEdge(width, 0);
+    graph.addEdge(width, 2);
+    Assertions.assertEquals(width * width - width, graph.edgeCount());
+    Assertions.assertEquals(width - 1, graph.inDegree(width));
+    Assertions.assertEquals(width, graph.outDegree(0));
+  }
+
+  @Test
+  public void compactGraph() throws Exception {
+    DirectedGraph<String> graph = new DirectedGraph<>();
+    graph.addEdge("b", "a");
+    graph.addEdge("c", "b");
+    graph.addEdge("d", "c");
+    graph.addEdge("c", "d"); // Cycle between c and d.
+    graph.addEdge("e", "a");
+    CompactGraph compact = graph.toCompactGraph();
+    Assertions.assertEquals(5, compact.size());
+    List<String> order = new ArrayList<>();
+    for (int i : compact.topologicalOrder(false)) {
+      order.add(graph.nodeAt(i));
+    }
+    Assertions.assertEquals(List.of("a", "b", "e"), order);
+  }
+
+  @Test
+  public void cyclesRemainAfterTopologicalTraversal() throws Exception {
+    var graph =
+        new PrecedenceGraph<String>() {
+          List<String> visit() {
+            List<String> visited = new ArrayList<>();
+            removeInTopologicalOrder(false, (origin, effect) -> {}, visited::add);
+            return visited;
+          }
+        };
+    graph.addEdge("b", "a");
+    graph.addEdge("c", "b");
+    graph.addEdge("b", "c");
+    graph.addEdge("d", "c");
+    graph.addEdge("e", "a");
+    Assertions.assertEquals(List.of("a", "e"), graph.visit());
+    Assertions.assertEquals(Set.of("b", "c", "d"), graph.nodes());
+    Assertions.assertEquals(3, graph.edgeCount());
+    Assertions.assertEquals(List.of(Set.of("b", "c")), graph.getCycles());
+  }
+}
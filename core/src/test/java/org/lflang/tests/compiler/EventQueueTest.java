@@ -0,0 +1,131 @@
+package org.lflang.tests.compiler;
+
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.xtext.testing.InjectWith;
+import org.eclipse.xtext.testing.extensions.InjectionExtension;
+import org.eclipse.xtext.testing.util.ParseHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.lflang.DefaultMessageReporter;
+import org.lflang.analyses.statespace.Event;
+import org.lflang.analyses.statespace.EventQueue;
+import org.lflang.analyses.statespace.Tag;
+import org.lflang.generator.ReactorInstance;
+import org.lflang.generator.TriggerInstance;
+import org.lflang.lf.Model;
+import org.lflang.lf.Reactor;
+import org.lflang.tests.LFInjectorProvider;
+
+@ExtendWith(InjectionExtension.class)
+@InjectWith(LFInjectorProvider.class)
+
+/** Tests for the event queue of the state space explorer. */
+class EventQueueTest {
+
+  @Inject ParseHelper<Model> parser;
+
+  /** The timers {@code a}, {@code b}, and {@code c} of the main reactor. */
+  private TriggerInstance<?> a, b, c;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    Model model =
+        parser.parse(
+            """
+            target C
+            main reactor {
+              timer c(0, 1 sec)
+              timer a(0, 1 sec)
+              timer b(0, 1 sec)
+              reaction(a, b, c) {= =}
+            }
+            """);
+    Assertions.assertNotNull(model);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    var instance = new ReactorInstance(main, new DefaultMessageReporter());
+    a = instance.timers.stream().filter(it -> it.getName().equals("a")).findFirst().orElseThrow();
+    b = instance.timers.stream().filter(it -> it.getName().equals("b")).findFirst().orElseThrow();
+    c = instance.timers.stream().filter(it -> it.getName().equals("c")).findFirst().orElseThrow();
+  }
+
+  /** Check that events are polled by tag and that ties are broken by the names of the triggers. */
+  @Test
+  public void orderOfTies() {
+    var queue = new EventQueue();
+    var expected =
+        List.of(
+            new Event(a, tag(0, 0)),
+            new Event(b, tag(0, 0)),
+            new Event(c, tag(0, 0)),
+            new Event(a, tag(0, 1)),
+            new Event(b, tag(5, 0)),
+            new Event(c, tag(5, 0)),
+            new Event(a, new Tag(0, 0, true)));
+    for (int i = expected.size() - 1; i >= 0; i--) {
+      Assertions.assertTrue(queue.add(expected.get(i)));
+    }
+    Assertions.assertEquals(expected, queue.snapshot());
+    Assertions.assertEquals(expected, new ArrayList<>(queue));
+    var polled = new ArrayList<Event>();
+    while (!queue.isEmpty()) polled.add(queue.poll());
+    Assertions.assertEquals(expected, polled);
+  }
+
+  /**
+   * Check that an event that is equal to a queued event is not added, also not to a queue that is
+   * created from a snapshot, and that changes to either queue do not affect the other or the
+   * snapshot.
+   */
+  @Test
+  public void dedupeAcrossSnapshots() {
+    var queue = new EventQueue();
+    Assertions.assertTrue(queue.add(new Event(a, tag(0, 0))));
+    Assertions.assertTrue(queue.add(new Event(b, tag(0, 0))));
+    Assertions.assertFalse(queue.add(new Event(a, tag(0, 0))));
+
+    var snapshot = queue.snapshot();
+    var copy = new EventQueue(snapshot);
+    Assertions.assertFalse(copy.add(new Event(b, tag(0, 0))));
+    Assertions.assertTrue(copy.add(new Event(c, tag(0, 0))));
+    Assertions.assertEquals(new Event(a, tag(0, 0)), copy.poll());
+    Assertions.assertTrue(copy.add(new Event(a, tag(0, 0))));
+
+    Assertions.assertFalse(queue.contains(new Event(c, tag(0, 0))));
+    Assertions.assertFalse(queue.add(new Event(a, tag(0, 0))));
+    Assertions.assertEquals(2, queue.size());
+    Assertions.assertEquals(3, copy.size());
+    Assertions.assertEquals(List.of(new Event(a, tag(0, 0)), new Event(b, tag(0, 0))), snapshot);
+  }
+
+  /** Check that equality of tags and events is consistent with their hash codes and order. */
+  @Test
+  public void tagEqualityConsistency() {
+    var tags =
+        List.of(
+            tag(0, 0),
+            tag(0, 0),
+            tag(0, 1),
+            tag(1, 0),
+            new Tag(0, 0, true),
+            new Tag(7, 3, true));
+    for (Tag t1 : tags) {
+      for (Tag t2 : tags) {
+        Assertions.assertEquals(t1.compareTo(t2) == 0, t1.equals(t2), t1 + " and " + t2);
+        if (t1.equals(t2)) Assertions.assertEquals(t1.hashCode(), t2.hashCode());
+        var e1 = new Event(a, t1);
+        var e2 = new Event(a, t2);
+        Assertions.assertEquals(e1.compareTo(e2) == 0, e1.equals(e2));
+        if (e1.equals(e2)) Assertions.assertEquals(e1.hashCode(), e2.hashCode());
+      }
+    }
+    Assertions.assertNotEquals(new Event(a, tag(0, 0)), new Event(b, tag(0, 0)));
+  }
+
+  private static Tag tag(long timestamp, long microstep) {
+    return new Tag(timestamp, microstep, false);
+  }
+}
@@ -29,16 +29,42 @@ package org.lflang.tests.compiler;
 import static org.lflang.ast.ASTUtils.*;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
+import org.eclipse.xtext.resource.XtextResource;
 import org.eclipse.xtext.testing.InjectWith;
 import org.eclipse.xtext.testing.extensions.InjectionExtension;
 import org.eclipse.xtext.testing.util.ParseHelper;
+import org.eclipse.xtext.testing.validation.ValidationTestHelper;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.lflang.DefaultMessageReporter;
+import org.lflang.MessageReporter;
 import org.lflang.ModelInfo;
+import org.lflang.TimeUnit;
+import org.lflang.TimeValue;
+import org.lflang.generator.ElaborationCache;
+import org.lflang.generator.LFGenerator;
+import org.lflang.generator.LFGeneratorContext.Mode;
+import org.lflang.generator.MainContext;
+import org.lflang.generator.NamedInstance;
+import org.lflang.generator.ReactionInstance;
+import org.lflang.generator.ReactionInstanceGraph;
+import org.lflang.generator.ReactionRangeGraph;
 import org.lflang.generator.ReactorInstance;
 import org.lflang.lf.Instantiation;
 import org.lflang.lf.LfFactory;
@@ -57,6 +83,14 @@ import org.lflang.tests.LFInjectorProvider;
 class LinguaFrancaDependencyAnalysisTest {
   @Inject ParseHelper<Model> parser;
 
+  @Inject ValidationTestHelper validator;
+
+  @Inject LFGenerator generator;
+
+  @Inject JavaIoFileSystemAccess fileAccess;
+
+  @Inject Provider<ResourceSet> resourceSetProvider;
+
   /** Check that circular dependencies between reactions are detected. */
   @Test
   public void cyclicDependency() throws Exception {
@@ -148,6 +182,352 @@ class LinguaFrancaDependencyAnalysisTest {
     Assertions.assertFalse(instance.getCycles().isEmpty());
   }
 
+  /** Check that the symbolic level assignment agrees with the exact one. */
+  @Test
+  public void symbolicLevels() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Source {
+                output out: int;
+                reaction(startup) -> out {=
+                =}
+            }
+
+            reactor Relay {
+                input in: int;
+                output out: int;
+                reaction(startup) {=
+                =}
+                reaction(in) -> out {=
+                =}
+            }
+
+            reactor Sink {
+                input[2] in: int;
+                reaction(in) {=
+                =} deadline(10 msec) {=
+                =}
+            }
+
+            main reactor {
+                s = new Source();
+                r = new[4] Relay();
+                q = new[4] Relay();
+                k = new[2] Sink();
+                (s.out)+ -> r.in;
+                r.out -> q.in;
+                q.out -> interleaved(k.in);
+            }
+        """;
+    assertSymbolicSameAsExact(createMainReactorInstance(testCase));
+  }
+
+  /**
+   * Check that the symbolic analysis infers the same deadlines as the exact one if a dependency
+   * between reactions in mutually exclusive modes lowers a deadline that is propagated further
+   * upstream.
+   */
+  @Test
+  public void symbolicDeadlinesWithModes() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Source {
+                output out: int;
+                reaction(startup) -> out {=
+                =}
+            }
+
+            reactor Modal {
+                input trigger: int;
+                input in: int;
+                output out: int;
+                mode B {
+                    reaction(in) {=
+                    =} deadline(5 msec) {=
+                    =}
+                }
+                initial mode A {
+                    reaction(trigger) -> out {=
+                    =}
+                }
+            }
+
+            main reactor {
+                s = new Source();
+                m = new[2] Modal();
+                (s.out)+ -> m.trigger;
+                m.out -> m.in;
+            }
+        """;
+    ReactorInstance main = createMainReactorInstance(testCase);
+    assertSymbolicSameAsExact(main);
+    ReactionInstance source = main.children.get(0).reactions.get(0);
+    Assertions.assertEquals(
+        Set.of(new TimeValue(5, TimeUnit.MILLI)),
+        main.assignLevelsSymbolically().getInferredDeadlines(source));
+  }
+
+  /** Check that the symbolic analysis agrees with the exact one on all runtime instances. */
+  private static void assertSymbolicSameAsExact(ReactorInstance main) {
+    ReactionRangeGraph symbolic = main.assignLevelsSymbolically();
+    Assertions.assertTrue(symbolic.isAcyclic());
+    Assertions.assertFalse(main.hasCycles());
+    main.assignLevels();
+    main.assignDeadlines();
+    int breadth = main.assignLevels().getBreadth();
+    Assertions.assertEquals(breadth, symbolic.getBreadth());
+    for (ReactorInstance reactor : main.children) {
+      for (ReactionInstance reaction : reactor.reactions) {
+        Assertions.assertEquals(reaction.getLevels(), symbolic.getLevels(reaction));
+        Assertions.assertEquals(
+            reaction.getInferredDeadlines(), symbolic.getInferredDeadlines(reaction));
+        for (ReactionInstance.Runtime runtime : reaction.getRuntimeInstances()) {
+          Assertions.assertEquals(runtime.level, symbolic.getLevel(reaction, runtime.id));
+          Assertions.assertEquals(
+              runtime.deadline, symbolic.getInferredDeadline(reaction, runtime.id));
+        }
+      }
+    }
+  }
+
+  /** Check that the cost of the symbolic level assignment does not depend on the width of banks. */
+  @Test
+  public void symbolicLevelsOfWideBanks() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Node {
+                input in: int;
+                output out: int;
+                reaction(in) -> out {=
+                =}
+            }
+
+            reactor Gather(width: int = 1) {
+                input[width] in: int;
+                reaction(in) {=
+                =}
+            }
+
+            main reactor(width: int = %d) {
+                a = new[width] Node();
+                b = new[width] Node();
+                g = new Gather(width = width);
+                a.out -> b.in;
+                b.out -> g.in;
+                reaction(startup) -> a.in {=
+                =}
+            }
+        """;
+    ReactionRangeGraph narrow =
+        createMainReactorInstance(String.format(testCase, 1)).assignLevelsSymbolically();
+    ReactionRangeGraph wide =
+        createMainReactorInstance(String.format(testCase, 10000)).assignLevelsSymbolically();
+    Assertions.assertTrue(wide.isAcyclic());
+    Assertions.assertEquals(narrow.getIntervalCount(), wide.getIntervalCount());
+    Assertions.assertEquals(10000, wide.getBreadth());
+    Assertions.assertEquals(4, wide.getNumReactionsPerLevel().length);
+  }
+
+  /**
+   * Check that levels that are maintained incrementally across versions of a program agree with
+   * those of a full assignment, including after a version with a causality cycle.
+   */
+  @Test
+  public void incrementalLevels() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Source {
+                output out: int;
+                reaction(startup) -> out {=
+                =}
+            }
+
+            reactor Node {
+                input in: int;
+                input back: int;
+                output out: int;
+                reaction(in, back) -> out {=
+                =}
+                %s
+            }
+
+            reactor Sink(width: int = 1) {
+                input[width] in: int;
+                reaction(in) {=
+                =} deadline(10 msec) {=
+                =}
+                %s
+            }
+
+            main reactor(width: int = %d) {
+                s = new Source();
+                a = new[width] Node();
+                b = new[width] Node();
+                k = new Sink(width = width);
+                (s.out)+ -> a.in;
+                %s
+                b.out -> k.in;
+            }
+        """;
+    String extra = "reaction(startup) {=\n=}";
+    List<String> versions =
+        List.of(
+            String.format(testCase, "", "", 2, "a.out -> b.in;"),
+            // Add a reaction downstream of everything else.
+            String.format(testCase, "", extra, 2, "a.out -> b.in;"),
+            // Add a reaction to every node.
+            String.format(testCase, extra, extra, 2, "a.out -> b.in;"),
+            // Remove a connection.
+            String.format(testCase, extra, extra, 2, ""),
+            // Create a causality cycle.
+            String.format(testCase, extra, extra, 2, "a.out -> b.in; b.out -> a.back;"),
+            // Break it again.
+            String.format(testCase, extra, extra, 2, "a.out -> b.in;"),
+            // Change the width of the banks.
+            String.format(testCase, extra, extra, 3, "a.out -> b.in;"),
+            String.format(testCase, extra, extra, 3, "a.out -> b.in;"));
+
+    ReactionInstanceGraph.Snapshot snapshot = null;
+    for (String version : versions) {
+      ReactorInstance incremental = createMainReactorInstance(version);
+      ReactionInstanceGraph graph = incremental.assignLevels(snapshot);
+      assertSameLevels(incremental, createMainReactorInstance(version));
+      if (version.contains("a.back")) {
+        Assertions.assertNull(graph.getSnapshot());
+      } else {
+        snapshot = graph.getSnapshot();
+        Assertions.assertNotNull(snapshot);
+      }
+      if (version == versions.get(1)) {
+        // Only the levels of the reactions of the sink are reassigned.
+        Assertions.assertEquals(6, graph.getNumReusedLevels());
+      }
+      if (version == versions.get(versions.size() - 1)) {
+        Assertions.assertEquals(15, graph.getNumReusedLevels());
+      }
+    }
+  }
+
+  /**
+   * Check that the language server maintains levels incrementally if the symbolic analysis cannot
+   * rule out causality cycles.
+   */
+  @Test
+  public void incrementalLevelsInValidation() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Source {
+                output out: int;
+                reaction(startup) -> out {=
+                =}
+            }
+
+            reactor Node {
+                input in: int;
+                output out: int;
+                reaction(in) -> out {=
+                =}
+            }
+
+            reactor Sink {
+                input in: int;
+                reaction(in) {=
+                =}
+                %s
+            }
+
+            main reactor {
+                s = new Source();
+                a = new[3] Node();
+                k = new Sink();
+                s.out, a.out -> a.in, k.in;
+            }
+        """;
+    String before = String.format(testCase, "");
+    String after = String.format(testCase, "reaction(startup) {=\n=}");
+    Model model = parser.parse(before);
+    Assertions.assertNotNull(model);
+    var reporter = new DefaultMessageReporter();
+    new ModelInfo().update(model, reporter);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    var cache = ElaborationCache.of(model.eResource());
+    ReactorInstance first = cache.get(main, reporter);
+    Assertions.assertFalse(first.assignLevelsSymbolically().isAcyclic());
+    Assertions.assertEquals(0, first.assignLevels().getNumReusedLevels());
+
+    // Edit the program like the language server does.
+    ((XtextResource) model.eResource()).reparse(after);
+    model = (Model) model.eResource().getContents().get(0);
+    new ModelInfo().update(model, reporter);
+    main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    ReactorInstance second = cache.get(main, reporter);
+    Assertions.assertNotSame(first, second);
+    // All but the new reaction of the sink keep their levels.
+    Assertions.assertEquals(5, second.assignLevels().getNumReusedLevels());
+    assertSameLevels(second, createMainReactorInstance(after));
+  }
+
+  /**
+   * Check that the levels and dominating reactions of the runtime instances of two instances of the
+   * same program agree, or, if the program has causality cycles, that the cycles agree.
+   */
+  private static void assertSameLevels(ReactorInstance incremental, ReactorInstance full) {
+    ReactionInstanceGraph graph = incremental.assignLevels();
+    ReactionInstanceGraph expected = full.assignLevels();
+    Assertions.assertEquals(expected.nodeCount(), graph.nodeCount());
+    if (expected.nodeCount() != 0) {
+      Assertions.assertEquals(fullNames(full.getCycles()), fullNames(incremental.getCycles()));
+      return;
+    }
+    Assertions.assertArrayEquals(
+        expected.getNumReactionsPerLevel(), graph.getNumReactionsPerLevel());
+    assertSameRuntimes(incremental, full);
+  }
+
+  /** Check that the runtime instances of the reactions in two instances of a reactor agree. */
+  private static void assertSameRuntimes(ReactorInstance actual, ReactorInstance expected) {
+    Assertions.assertEquals(expected.reactions.size(), actual.reactions.size());
+    for (int i = 0; i < expected.reactions.size(); i++) {
+      var expectedRuntimes = expected.reactions.get(i).getRuntimeInstances();
+      var actualRuntimes = actual.reactions.get(i).getRuntimeInstances();
+      Assertions.assertEquals(expectedRuntimes.size(), actualRuntimes.size());
+      for (int id = 0; id < expectedRuntimes.size(); id++) {
+        var expectedRuntime = expectedRuntimes.get(id);
+        var actualRuntime = actualRuntimes.get(id);
+        Assertions.assertEquals(expectedRuntime.level, actualRuntime.level);
+        Assertions.assertEquals(
+            String.valueOf(expectedRuntime.dominating), String.valueOf(actualRuntime.dominating));
+      }
+    }
+    Assertions.assertEquals(expected.children.size(), actual.children.size());
+    for (int i = 0; i < expected.children.size(); i++) {
+      assertSameRuntimes(actual.children.get(i), expected.children.get(i));
+    }
+  }
+
+  /** Return the full names of the given instances. */
+  private static Set<String> fullNames(Set<? extends NamedInstance<?>> instances) {
+    return instances.stream().map(NamedInstance::getFullName).collect(Collectors.toSet());
+  }
+
+  /** Parse the given program and create an instance of its main reactor. */
+  private ReactorInstance createMainReactorInstance(String testCase) throws Exception {
+    Model model = parser.parse(testCase);
+    Assertions.assertNotNull(model);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    return new ReactorInstance(main, new DefaultMessageReporter());
+  }
+
   /** Check that circular instantiations are detected. */
   @Test
   public void circularInstantiation() throws Exception {
@@ -175,4 +555,115 @@ class LinguaFrancaDependencyAnalysisTest {
     Assertions.assertTrue(
         info.instantiationGraph.hasCycles() == true, "Did not detect cyclic instantiation.");
   }
+
+  /** Check that validation, diagram synthesis, and code generation share one elaboration. */
+  @Test
+  public void sharedElaboration() throws Exception {
+    String testCase =
+        """
+            target C;
+
+            reactor Node {
+                input in: int;
+                output out: int;
+                reaction(in) -> out {=
+                =}
+            }
+
+            main reactor {
+                a = new[2] Node();
+                b = new Node();
+                a.out -> b.in;
+            }
+        """;
+    Model model = parser.parse(testCase);
+    Assertions.assertNotNull(model);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    List<String> warnings = new ArrayList<>();
+    MessageReporter reporter =
+        new DefaultMessageReporter() {
+          @Override
+          protected void reportOnNode(
+              EObject node,
+              EStructuralFeature feature,
+              DiagnosticSeverity severity,
+              String message) {
+            warnings.add(message);
+          }
+        };
+
+    var cache = new ElaborationCache();
+    ReactorInstance shared = cache.get(main, reporter);
+    Assertions.assertSame(shared, cache.get(main, reporter));
+    Assertions.assertEquals(1, cache.getHits());
+    // The warning about the width mismatch is reported again to every consumer.
+    Assertions.assertEquals(2, warnings.size());
+
+    // A code generator takes the tree out of the cache.
+    Assertions.assertSame(
+        shared, cache.take(main, ElaborationCache.elaborationOrder(main), reporter));
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertNotSame(shared, cache.get(main, reporter));
+    Assertions.assertEquals(1, cache.size());
+
+    // Trees that depend on a transformed resource are discarded.
+    cache.invalidate(model.eResource());
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertEquals(2, cache.getHits());
+    Assertions.assertEquals(2, cache.getMisses());
+
+    // Programs in different resource sets do not share a cache.
+    Model other = parser.parse(testCase);
+    var resourceSetCache = ElaborationCache.of(model.eResource());
+    Assertions.assertSame(resourceSetCache, ElaborationCache.of(model.eResource()));
+    Assertions.assertNotSame(resourceSetCache, ElaborationCache.of(other.eResource()));
+  }
+
+  /**
+   * Check that code generation reuses the tree that validation elaborated for an unnamed main
+   * reactor, even though the code generator names the main reactor after its file.
+   */
+  @Test
+  public void unnamedMainSharedWithGenerator(@TempDir Path tempDir) throws Exception {
+    String testCase =
+        """
+            target C {
+                no-compile: true
+            };
+
+            reactor Node {
+                input in: int;
+                output out: int;
+                reaction(in) -> out {=
+                =}
+            }
+
+            main reactor {
+                a = new Node();
+                b = new Node();
+                a.out -> b.in;
+            }
+        """;
+    fileAccess.setOutputPath("src-gen");
+    Model model =
+        parser.parse(
+            testCase,
+            URI.createURI(tempDir.resolve("src/Unnamed.lf").toUri().toString()),
+            resourceSetProvider.get());
+    Resource resource = model.eResource();
+    validator.assertNoErrors(model);
+    var cache = ElaborationCache.of(resource);
+    Assertions.assertEquals(1, cache.size());
+    long hits = cache.getHits();
+    long misses = cache.getMisses();
+
+    var context = new MainContext(Mode.STANDALONE, resource, fileAccess, () -> false);
+    generator.doGenerate(resource, fileAccess, context);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    Assertions.assertEquals("Unnamed", main.getName());
+    // The code generator took the tree that validation left in the cache.
+    Assertions.assertTrue(cache.getHits() > hits);
+    Assertions.assertEquals(misses, cache.getMisses());
+    Assertions.assertEquals(0, cache.size());
+  }
 }
@@ -108,4 +108,29 @@ public class MixedRadixIntTest {
     num.increment(); // Wrap around to zero.
     Assertions.assertEquals(0, num.get());
   }
+
+  @Test
+  public void testCursor() throws Exception {
+    List<Integer> radixes = Arrays.asList(2, 3);
+    MixedRadixInt.Cursor cursor = new MixedRadixInt.Cursor(radixes, null, 3, 2);
+    Assertions.assertEquals(3, cursor.get());
+    cursor.next();
+    Assertions.assertEquals(4, cursor.get());
+    Assertions.assertEquals(2, cursor.get(1));
+    cursor.next(); // Wrap around to the start of the range.
+    Assertions.assertEquals(3, cursor.get());
+  }
+
+  @Test
+  public void testEncoding() throws Exception {
+    List<Integer> radixes = Arrays.asList(2, 5);
+    MixedRadixInt num = new MixedRadixInt(Arrays.asList(1, 2), radixes, Arrays.asList(1, 0));
+    MixedRadixInt other = new MixedRadixInt(Arrays.asList(1, 2), radixes, null);
+    Assertions.assertEquals(5, num.toLong());
+    Assertions.assertEquals(num.toLong(), other.toLong());
+    MixedRadixInt copy = num.copy();
+    copy.increment();
+    Assertions.assertEquals(num, new MixedRadixInt(Arrays.asList(1, 2), radixes, List.of(1, 0)));
+    Assertions.assertEquals(7, copy.toLong());
+  }
 }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.lflang.DefaultMessageReporter;
 import org.lflang.MessageReporter;
+import org.lflang.generator.EventualDestinationCache;
 import org.lflang.generator.PortInstance;
 import org.lflang.generator.ReactionInstance;
 import org.lflang.generator.ReactorInstance;
@@ -139,6 +140,46 @@ public class PortInstanceTests {
     Assertions.assertEquals("[.A.p(0,1)->[.B.q(0,4)]]", sr.toString());
   }
 
+  @Test
+  public void sharedDestinationCache() throws Exception {
+    Reactor main = factory.createReactor();
+    ReactorInstance maini = new ReactorInstance(main, reporter);
+
+    ReactorInstance a = newReactor("A", maini);
+    ReactorInstance b = newReactor("B", maini);
+    ReactorInstance c = newReactor("C", b);
+
+    PortInstance p = newOutputPort("p", a);
+    PortInstance r = newInputPort("r", b);
+    PortInstance s = newInputPort("s", c);
+    newReaction(s);
+
+    connect(p, r);
+    connect(r, s);
+
+    EventualDestinationCache cache = maini.getEventualDestinationCache();
+    Assertions.assertSame(cache, s.getParent().getEventualDestinationCache());
+
+    // The destinations of p are computed through those of the relay port r.
+    Assertions.assertEquals("[.A.p(0,1)->[.B.C.s(0,1)]]", p.eventualDestinations().toString());
+    Assertions.assertEquals(0, cache.getHits());
+    Assertions.assertEquals(3, cache.getMisses());
+
+    // The relay port reuses the result computed on behalf of p.
+    Assertions.assertEquals("[.B.r(0,1)->[.B.C.s(0,1)]]", r.eventualDestinations().toString());
+    Assertions.assertEquals(1, cache.getHits());
+    Assertions.assertEquals(3, cache.getMisses());
+
+    // Mutations invalidate the cache.
+    maini.clearCaches();
+    Assertions.assertEquals(0, cache.size());
+    newReaction(r);
+    Assertions.assertEquals(
+        "[.B.r(0,1)->[.B.r(0,1), .B.C.s(0,1)]]", r.eventualDestinations().toString());
+    Assertions.assertEquals(1, cache.getHits());
+    Assertions.assertEquals(5, cache.getMisses());
+  }
+
   /** Clear connections. This recursively clears them for all contained reactors. */
   protected void clearConnections(ReactorInstance r) {
     for (PortInstance p : r.inputs) {
@@ -0,0 +1,126 @@
+package org.lflang.tests.compiler;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
+import org.eclipse.xtext.testing.InjectWith;
+import org.eclipse.xtext.testing.extensions.InjectionExtension;
+import org.eclipse.xtext.testing.util.ParseHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.generator.GeneratorUtils;
+import org.lflang.generator.LFGenerator;
+import org.lflang.generator.LFGeneratorContext.Mode;
+import org.lflang.generator.MainContext;
+import org.lflang.lf.Model;
+import org.lflang.tests.LFInjectorProvider;
+
+@ExtendWith(InjectionExtension.class)
+@InjectWith(LFInjectorProvider.class)
+
+/** Tests for the concurrent generation of the reactor classes by the C code generator. */
+class ReactorClassGenerationTest {
+
+  @Inject ParseHelper<Model> parser;
+
+  @Inject LFGenerator generator;
+
+  @Inject JavaIoFileSystemAccess fileAccess;
+
+  @Inject Provider<ResourceSet> resourceSetProvider;
+
+  private static final String PROGRAM =
+      """
+      target C {
+        no-compile: true,
+        compile-threads: %d
+      }
+      preamble {=
+        #define SCALE 2
+      =}
+      reactor Source(start: int = 0) {
+        output out: int
+        state count: int = start
+        timer t(0, 10 msec)
+        reaction(t) -> out {=
+          lf_set(out, self->count++);
+        =}
+      }
+      reactor Scale<T>(factor: int = 1) {
+        input in: T
+        output out: T
+        reaction(in) -> out {=
+          lf_set(out, in->value * self->factor * SCALE);
+        =}
+      }
+      reactor Sink {
+        input[2] in: int
+        reaction(in) {=
+          for (int i = 0; i < in_width; i++) {
+            if (in[i]->is_present) lf_print("%%d", in[i]->value);
+          }
+        =}
+      }
+      main reactor {
+        s1 = new Source()
+        s2 = new Source(start = 10)
+        a = new Scale<int>(factor = 3)
+        b = new Scale<int>()
+        k = new Sink()
+        s1.out -> a.in
+        s2.out -> b.in
+        a.out, b.out -> k.in
+      }
+      """;
+
+  /**
+   * Check that the files generated for a program do not depend on the number of threads that
+   * generate the reactor classes.
+   */
+  @Test
+  public void testSameCodeWithAndWithoutThreads(@TempDir Path tempDir) throws Exception {
+    if (GeneratorUtils.isHostWindows()) return;
+    var sequential = generate(tempDir, 1);
+    var concurrent = generate(tempDir, 4);
+    Assertions.assertTrue(sequential.keySet().stream().anyMatch(it -> it.startsWith("_scale")));
+    Assertions.assertEquals(sequential, concurrent);
+  }
+
+  /**
+   * Generate the program with the given number of threads into the given directory and return the
+   * contents of the generated files by their names.
+   */
+  private Map<String, String> generate(Path dir, int threads) throws Exception {
+    fileAccess.setOutputPath("src-gen");
+    Model model =
+        parser.parse(
+            PROGRAM.formatted(threads),
+            URI.createURI(dir.resolve("src/Program.lf").toUri().toString()),
+            resourceSetProvider.get());
+    var resource = model.eResource();
+    var context = new MainContext(Mode.STANDALONE, resource, fileAccess, () -> false);
+    generator.doGenerate(resource, fileAccess, context);
+    return contents(context.getFileConfig().getSrcGenPath());
+  }
+
+  /** Return the contents of the regular files directly in the given directory by their names. */
+  private static Map<String, String> contents(Path dir) throws IOException {
+    Map<String, String> result = new TreeMap<>();
+    try (Stream<Path> paths = Files.list(dir)) {
+      for (Path path : paths.filter(Files::isRegularFile).toList()) {
+        result.put(path.getFileName().toString(), Files.readString(path));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,111 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.generator.CodeBuilder;
+import org.lflang.generator.CodeMap;
+import org.lflang.generator.Position;
+
+public class CodeBuilderTest {
+
+  private static final Path LF_FILE = Path.of("/tmp/Main.lf");
+
+  private static final String CORRESPONDENCE =
+      "/*Correspondence: Range: [(%d, 0), (%d, 10)) -> Range: [(0, 2), (0, 12))"
+          + " (verbatim=true; src=%s)*/";
+
+  @Test
+  public void testStreamedCodeEqualsInMemoryCode(@TempDir Path srcGen) throws IOException {
+    Path inMemoryFile = srcGen.resolve("InMemory.c");
+    Path streamedFile = srcGen.resolve("Streamed.c");
+    var inMemory = new CodeBuilder();
+    var streamed = new CodeBuilder();
+    generate(inMemory);
+    streamed.pr("// Printed before streaming starts.");
+    streamed.streamTo(streamedFile);
+    generate(streamed);
+    inMemory.insert(0, "// Printed before streaming starts.\n");
+
+    CodeMap expected = inMemory.writeToFile(inMemoryFile.toString());
+    CodeMap actual = streamed.writeToFile(streamedFile.toString());
+
+    String expectedCode =
+        Files.readString(inMemoryFile).replace(inMemoryFile.toString(), streamedFile.toString());
+    assertEquals(expectedCode, Files.readString(streamedFile));
+    assertEquals(expectedCode, actual.getGeneratedCode());
+    assertFalse(actual.getGeneratedCode().contains("/*Correspondence"));
+    for (int line = 1; line < 5000; line += 499) {
+      var position = Position.fromOneBased(line, 3);
+      assertEquals(expected.adjusted(LF_FILE, position), actual.adjusted(LF_FILE, position));
+    }
+    try (var files = Files.list(srcGen)) {
+      assertEquals(2, files.count());
+    }
+  }
+
+  @Test
+  public void testSpooledCode() throws IOException {
+    Set<Path> before = spooledFiles();
+    var spooled = CodeBuilder.spooled();
+    Set<Path> files = spooledFiles();
+    files.removeAll(before);
+    assertFalse(files.isEmpty());
+    var inMemory = new CodeBuilder();
+    for (var builder : new CodeBuilder[] {spooled, inMemory}) {
+      builder.pr("int x;\n\nint y;");
+      builder.indent();
+      builder.pr("x = y;");
+    }
+    var expected = new CodeBuilder();
+    var actual = new CodeBuilder();
+    expected.indent();
+    actual.indent();
+    expected.pr(inMemory.toString());
+    expected.pr("");
+    actual.pr(spooled);
+    actual.pr(CodeBuilder.spooled());
+    assertEquals(expected.toString(), actual.toString());
+    // The code was moved, and the temporary file is deleted.
+    assertEquals("", spooled.toString());
+    for (Path file : files) assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void testDiscardSpooledCode() throws IOException {
+    Set<Path> before = spooledFiles();
+    var spooled = CodeBuilder.spooled();
+    Set<Path> files = spooledFiles();
+    files.removeAll(before);
+    spooled.pr("int x;");
+    assertThrows(IllegalStateException.class, spooled::toString);
+    spooled.discard();
+    assertEquals("", spooled.toString());
+    for (Path file : files) assertFalse(Files.exists(file));
+  }
+
+  /** Return the temporary files of spooled builders that currently exist. */
+  private static Set<Path> spooledFiles() throws IOException {
+    try (var files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+      return files
+          .filter(it -> it.getFileName().toString().matches("lf-.*\\.code"))
+          .collect(Collectors.toSet());
+    }
+  }
+
+  /** Print code with line directives and correspondences that exceeds the streaming buffer. */
+  private static void generate(CodeBuilder code) {
+    for (int i = 0; i < 5000; i++) {
+      code.pr(String.format(CORRESPONDENCE, i, i, LF_FILE) + "  x = " + i + ";");
+      if (i % 100 == 0) code.prEndSourceLineNumber(false);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.lflang.generator.CodeMap;
+import org.lflang.generator.Position;
+
+public class CodeMapTest {
+
+  private static final Path LF_FILE = Path.of("/tmp/Main.lf");
+
+  private static final String CODE =
+      String.join(
+          "\n",
+          "int main() {",
+          "  /*Correspondence: Range: [(4, 4), (4, 10)) -> Range: [(0, 0), (0, 6))"
+              + " (verbatim=true; src=/tmp/Main.lf)*/x = 1;",
+          "  /*Correspondence: Range: [(7, 2), (9, 0)) -> Range: [(0, 0), (0, 6))"
+              + " (verbatim=false; src=/tmp/Main.lf)*/y = 2; /*Correspondence: malformed*/",
+          "}",
+          "");
+
+  @Test
+  public void testLines() {
+    var map = CodeMap.fromGeneratedCode(CODE);
+    assertEquals("  x = 1;", map.getLine(2));
+    assertEquals("  y = 2; /*Correspondence: malformed*/", map.getLine(3));
+    assertEquals("}", map.getLine(4));
+    assertEquals("", map.getLine(5));
+  }
+
+  @Test
+  public void testAdjusted() {
+    var map = CodeMap.fromGeneratedCode(CODE);
+    assertEquals(Set.of(LF_FILE), map.lfSourcePaths());
+    // Verbatim code maps position by position.
+    assertEquals(
+        Position.fromZeroBased(4, 7), map.adjusted(LF_FILE, Position.fromZeroBased(1, 5)));
+    // Code that is not verbatim maps to the start of its source.
+    assertEquals(
+        Position.fromZeroBased(7, 2), map.adjusted(LF_FILE, Position.fromZeroBased(2, 5)));
+    assertEquals(Position.ORIGIN, map.adjusted(LF_FILE, Position.fromZeroBased(0, 5)));
+    assertEquals(Position.ORIGIN, map.adjusted(Path.of("/tmp/Other.lf"), Position.ORIGIN));
+  }
+}
@@ -0,0 +1,79 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.generator.GeneratorUtils;
+import org.lflang.util.LFCommand;
+import org.lflang.util.Profiler;
+
+public class LFCommandTest {
+
+  @Test
+  public void testHandlersReceiveEveryLine(@TempDir Path dir) {
+    var command = shell(dir, "printf 'a\\nb\\n'; printf 'c\\n' >&2");
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    command.setOutputHandler(output::add);
+    command.setErrorHandler(errors::add);
+    assertEquals(0, command.run());
+    assertEquals(List.of("a", "b"), output);
+    assertEquals(List.of("c"), errors);
+    assertEquals("a\nb\n", command.getOutput());
+    assertEquals("c\n", command.getErrors());
+  }
+
+  @Test
+  public void testLongOutputRetainsFirstAndLastLines(@TempDir Path dir) {
+    // Lines of 100 characters each, which amount to three times the retained output.
+    int lines = 3 * LFCommand.RETAINED_OUTPUT_LIMIT / 100;
+    var command = shell(dir, "seq -f '%099g' 1 " + lines + " >&2");
+    List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    command.setErrorHandler(errors::add);
+    assertEquals(0, command.run());
+    assertEquals(lines, errors.size());
+
+    String retained = command.getErrors();
+    assertTrue(retained.length() <= LFCommand.RETAINED_OUTPUT_LIMIT + 100);
+    assertTrue(retained.startsWith(line(1) + line(2)));
+    assertTrue(retained.endsWith(line(lines - 1) + line(lines)));
+    int first = (LFCommand.RETAINED_OUTPUT_LIMIT / 2) / 100;
+    int last = lines - (LFCommand.RETAINED_OUTPUT_LIMIT / 2) / 100 + 1;
+    assertTrue(
+        retained.contains(
+            line(first) + "[... " + (last - first - 1) + " lines omitted ...]\n" + line(last)));
+  }
+
+  @Test
+  public void testCommandIsProfiled(@TempDir Path dir) throws Exception {
+    var profiler = new Profiler();
+    var command = shell(dir, "true");
+    command.setProfiler(profiler);
+    // Run the command on a thread on which no span of the profiler is open.
+    var thread = new Thread(command::run);
+    thread.start();
+    thread.join();
+    assertTrue(profiler.summary().contains("command bash"));
+  }
+
+  /** Return a quiet command that runs the given script with bash in the given directory. */
+  private static LFCommand shell(Path dir, String script) {
+    assumeFalse(GeneratorUtils.isHostWindows());
+    var command = LFCommand.get("bash", List.of("-c", script), true, dir);
+    assertNotNull(command);
+    return command;
+  }
+
+  /** Return the line that {@code seq -f '%099g'} prints for the given number. */
+  private static String line(int number) {
+    return String.format("%099d\n", number);
+  }
+}
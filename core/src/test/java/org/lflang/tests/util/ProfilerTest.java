@@ -0,0 +1,115 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.util.Profiler;
+
+public class ProfilerTest {
+
+  @Test
+  public void testNestedSpans(@TempDir Path dir) throws IOException {
+    var profiler = new Profiler();
+    assertSame(Profiler.NONE, Profiler.current());
+    try (var outer = profiler.span("outer")) {
+      assertSame(profiler, Profiler.current());
+      for (int i = 0; i < 2; i++) {
+        try (var inner = Profiler.current().span("inner")) {
+          Profiler.current().count("items", 3);
+        }
+      }
+    }
+    assertSame(Profiler.NONE, Profiler.current());
+    assertEquals(Map.of("items", 6L), profiler.counters());
+
+    Path file = dir.resolve("trace.json");
+    profiler.writeTrace(file);
+    var events = JsonParser.parseString(Files.readString(file)).getAsJsonObject();
+    Map<String, Integer> spans = new HashMap<>();
+    Map<String, JsonObject> complete = new HashMap<>();
+    for (var element : events.getAsJsonArray("traceEvents")) {
+      var event = element.getAsJsonObject();
+      if (event.get("ph").getAsString().equals("X")) {
+        spans.merge(event.get("name").getAsString(), 1, Integer::sum);
+        complete.put(event.get("name").getAsString(), event);
+      }
+    }
+    assertEquals(Map.of("outer", 1, "inner", 2), spans);
+    var outer = complete.get("outer");
+    var inner = complete.get("inner");
+    assertTrue(outer.get("ts").getAsDouble() <= inner.get("ts").getAsDouble());
+    assertTrue(outer.get("dur").getAsDouble() >= inner.get("dur").getAsDouble());
+
+    var summary = profiler.summary();
+    assertTrue(summary.startsWith("Phase"));
+    assertTrue(summary.contains("outer"));
+    assertTrue(summary.contains("items"));
+  }
+
+  @Test
+  public void testSpansOnPoolThreads(@TempDir Path dir) throws Exception {
+    var profiler = new Profiler();
+    var pool = Executors.newFixedThreadPool(2);
+    try (var outer = profiler.span("outer")) {
+      Runnable task =
+          profiler.wrap(
+              "task",
+              () -> {
+                assertSame(profiler, Profiler.current());
+                try (var inner = Profiler.current().span("inner")) {
+                  Profiler.current().count("items", 1);
+                }
+              });
+      var futures = List.of(pool.submit(task), pool.submit(task));
+      for (var future : futures) future.get();
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(Map.of("items", 2L), profiler.counters());
+
+    Path file = dir.resolve("trace.json");
+    profiler.writeTrace(file);
+    var events = JsonParser.parseString(Files.readString(file)).getAsJsonObject();
+    long main = Thread.currentThread().getId();
+    Map<String, Integer> spans = new HashMap<>();
+    Set<Long> threads = new HashSet<>();
+    for (var element : events.getAsJsonArray("traceEvents")) {
+      var event = element.getAsJsonObject();
+      long thread = event.get("tid").getAsLong();
+      if (event.get("ph").getAsString().equals("M")) {
+        threads.add(thread);
+      } else if (event.get("ph").getAsString().equals("X")) {
+        String name = event.get("name").getAsString();
+        spans.merge(name, 1, Integer::sum);
+        assertEquals(name.equals("outer"), thread == main, name);
+      }
+    }
+    assertEquals(Map.of("outer", 1, "task", 2, "inner", 2), spans);
+    assertTrue(threads.contains(main));
+    assertTrue(threads.size() > 1);
+    assertTrue(profiler.summary().contains("task"));
+  }
+
+  @Test
+  public void testDisabled() {
+    try (var span = Profiler.NONE.span("phase")) {
+      assertSame(Profiler.NONE, Profiler.current());
+      Profiler.NONE.count("items", 1);
+    }
+    assertTrue(Profiler.NONE.counters().isEmpty());
+  }
+}
@@ -0,0 +1,126 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.util.FileUtil;
+import org.lflang.util.RuntimeCache;
+
+public class RuntimeCacheTest {
+
+  private static final List<String> DIRECTORIES = List.of("core", "lib");
+
+  private static final Map<String, String> RUNTIME =
+      Map.of(
+          "core/reactor.c", "// reactor\n",
+          "lib/schedule.c", "// schedule\n",
+          "python/lib/python_tag.c", "// python tag\n");
+
+  @Test
+  public void testBuildsShareCache(@TempDir Path dir) throws IOException {
+    URL runtime = runtimeJar(dir);
+    Path cache = dir.resolve("cache");
+    Path first = dir.resolve("first");
+    Path second = dir.resolve("second");
+    assertTrue(RuntimeCache.link(runtime, cache, DIRECTORIES, first));
+    assertTrue(RuntimeCache.link(runtime, cache, DIRECTORIES, second));
+    for (String name : DIRECTORIES) {
+      assertTrue(Files.isSymbolicLink(first.resolve(name)));
+      assertEquals(
+          Files.readSymbolicLink(first.resolve(name)),
+          Files.readSymbolicLink(second.resolve(name)));
+    }
+    assertEquals("// reactor\n", Files.readString(first.resolve("core/reactor.c")));
+    // Linking again leaves the links in place.
+    assertTrue(RuntimeCache.link(runtime, cache, DIRECTORIES, first));
+    assertEquals(RUNTIME, contents(cache, 2));
+  }
+
+  /**
+   * A Python build of a program that was built for C before copies the runtime and adds the Python
+   * sources to its {@code lib} directory, which must not modify the cache.
+   */
+  @Test
+  public void testCopyAfterLinkDoesNotModifyCache(@TempDir Path dir) throws IOException {
+    URL runtime = runtimeJar(dir);
+    Path cache = dir.resolve("cache");
+    Path srcGen = dir.resolve("src-gen");
+    assertTrue(RuntimeCache.link(runtime, cache, DIRECTORIES, srcGen));
+    Map<String, String> cached = contents(cache, 2);
+
+    // The Python generator copies the runtime instead of linking it.
+    RuntimeCache.unlink(srcGen, DIRECTORIES);
+    Path sources = dir.resolve("runtime");
+    for (String name : DIRECTORIES) {
+      FileUtil.copyDirectoryContents(sources.resolve(name), srcGen.resolve(name), true);
+    }
+    FileUtil.copyDirectoryContents(sources.resolve("python/lib"), srcGen.resolve("lib"), true);
+
+    assertEquals(cached, contents(cache, 2));
+    assertFalse(contents(cache, 2).containsKey("lib/python_tag.c"));
+    assertFalse(Files.isSymbolicLink(srcGen.resolve("lib")));
+    assertEquals(
+        Map.of("schedule.c", "// schedule\n", "python_tag.c", "// python tag\n"),
+        contents(srcGen.resolve("lib"), 0));
+  }
+
+  /**
+   * Write the runtime sources to a directory {@code runtime} and to a JAR file in the given
+   * directory, and return the URL of the runtime directory in the JAR file.
+   */
+  private static URL runtimeJar(Path dir) throws IOException {
+    Path jar = dir.resolve("runtime.jar");
+    try (OutputStream file = Files.newOutputStream(jar);
+        JarOutputStream out = new JarOutputStream(file)) {
+      // Like the JAR files of the build, the file contains entries for the directories.
+      Set<String> directories = new HashSet<>();
+      for (var source : new TreeMap<>(RUNTIME).entrySet()) {
+        FileUtil.writeToFile(source.getValue(), dir.resolve("runtime").resolve(source.getKey()));
+        String name = "lib/c/reactor-c/" + source.getKey();
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+          if (directories.add(name.substring(0, i + 1))) {
+            out.putNextEntry(new JarEntry(name.substring(0, i + 1)));
+            out.closeEntry();
+          }
+        }
+        out.putNextEntry(new JarEntry(name));
+        out.write(source.getValue().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return new URL("jar:" + jar.toUri() + "!/lib/c/reactor-c");
+  }
+
+  /**
+   * Return the contents of the files in the given directory by their paths, omitting the given
+   * number of leading path elements.
+   */
+  private static Map<String, String> contents(Path dir, int skip) throws IOException {
+    Map<String, String> result = new TreeMap<>();
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.filter(Files::isRegularFile).toList()) {
+        Path relative = dir.relativize(path);
+        relative = relative.subpath(skip, relative.getNameCount());
+        result.put(relative.toString().replace('\\', '/'), Files.readString(path));
+      }
+    }
+    return result;
+  }
+}
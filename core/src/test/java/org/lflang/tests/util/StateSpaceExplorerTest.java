@@ -0,0 +1,110 @@
+package org.lflang.tests.util;
+
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.xtext.testing.InjectWith;
+import org.eclipse.xtext.testing.extensions.InjectionExtension;
+import org.eclipse.xtext.testing.util.ParseHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.lflang.DefaultMessageReporter;
+import org.lflang.analyses.statespace.StateSpaceDiagram;
+import org.lflang.analyses.statespace.StateSpaceExplorer;
+import org.lflang.analyses.statespace.StateSpaceNode;
+import org.lflang.analyses.statespace.Tag;
+import org.lflang.generator.ReactorInstance;
+import org.lflang.lf.Model;
+import org.lflang.lf.Reactor;
+import org.lflang.tests.LFInjectorProvider;
+
+@ExtendWith(InjectionExtension.class)
+@InjectWith(LFInjectorProvider.class)
+
+/** Tests for the state space explorer. */
+class StateSpaceExplorerTest {
+
+  @Inject ParseHelper<Model> parser;
+
+  /**
+   * Check that exploring the independent components of a program in parallel yields the same
+   * diagram, loop, and completeness thresholds as exploring the program as a whole.
+   */
+  @Test
+  public void decompositionMatchesWholeProgram() throws Exception {
+    Model model =
+        parser.parse(
+            """
+            target C
+            reactor A {
+              timer t(0, 2 msec)
+              reaction(t) {= =}
+            }
+            reactor B {
+              timer t(1 msec, 3 msec)
+              reaction(t) {= =}
+            }
+            reactor C {
+              timer t(0, 4 msec)
+              reaction(t) {= =}
+            }
+            main reactor {
+              a = new A()
+              b = new B()
+              c = new C()
+            }
+            """);
+    Assertions.assertNotNull(model);
+    Reactor main = model.getReactors().stream().filter(Reactor::isMain).findFirst().orElseThrow();
+    var horizon = new Tag(100_000_000, 0, false);
+
+    var reporter = new DefaultMessageReporter();
+    var decomposed = new StateSpaceExplorer(new ReactorInstance(main, reporter));
+    decomposed.explore(horizon, true);
+    var whole = new StateSpaceExplorer(new ReactorInstance(main, reporter));
+    whole.setDecomposition(false);
+    whole.explore(horizon, true);
+
+    Assertions.assertTrue(decomposed.loopFound);
+    Assertions.assertTrue(whole.loopFound);
+    StateSpaceDiagram expected = whole.diagram;
+    StateSpaceDiagram actual = decomposed.diagram;
+    Assertions.assertEquals(nodes(expected), nodes(actual));
+    Assertions.assertEquals(describe(expected.loopNode), describe(actual.loopNode));
+    Assertions.assertEquals(expected.loopPeriod, actual.loopPeriod);
+    // The hyperperiod of the timers is 12 msec.
+    Assertions.assertEquals(12_000_000, actual.loopPeriod);
+    for (boolean logicalTimeBased : new boolean[] {true, false}) {
+      Assertions.assertEquals(
+          expected.completenessThreshold(horizon.timestamp, true, logicalTimeBased),
+          actual.completenessThreshold(horizon.timestamp, true, logicalTimeBased));
+    }
+  }
+
+  /** Return the descriptions of the nodes of the given diagram from its head to its tail. */
+  private static List<String> nodes(StateSpaceDiagram diagram) {
+    var nodes = new ArrayList<String>();
+    StateSpaceNode node = diagram.head;
+    nodes.add(describe(node));
+    while (node != diagram.tail) {
+      node = diagram.getDownstreamNode(node);
+      nodes.add(describe(node));
+    }
+    return nodes;
+  }
+
+  /**
+   * Return a description of the given node that does not depend on the reactor instance it was
+   * explored from.
+   */
+  private static String describe(StateSpaceNode node) {
+    var reactions =
+        node.getReactionsInvoked().stream().map(it -> it.getFullName()).sorted().toList();
+    var events =
+        node.getEventQcopy().stream()
+            .map(it -> it.getTrigger().getFullName() + "@" + it.getTag())
+            .toList();
+    return node.getIndex() + " " + node.getTag() + " " + reactions + " " + events;
+  }
+}
@@ -0,0 +1,49 @@
+package org.lflang.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lflang.analyses.statespace.StateSpaceNode.Fingerprint;
+import org.lflang.analyses.statespace.VisitedStates;
+
+public class VisitedStatesTest {
+
+  private static final int COUNT = 10000;
+
+  @Test
+  public void testInMemory() {
+    try (var visited = new VisitedStates()) {
+      check(visited);
+    }
+  }
+
+  @Test
+  public void testSpilled(@TempDir Path dir) throws IOException {
+    try (var visited = new VisitedStates(100, dir)) {
+      check(visited);
+    }
+    // Closing the set deletes its run files.
+    try (var files = Files.list(dir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  /** Record random fingerprints twice and check that the first index is kept. */
+  private static void check(VisitedStates visited) {
+    var fingerprints = new Fingerprint[COUNT];
+    var random = new Random(42);
+    for (int i = 0; i < COUNT; i++) {
+      fingerprints[i] = new Fingerprint(random.nextLong(), random.nextLong());
+      assertEquals(-1, visited.putIfAbsent(fingerprints[i], i));
+    }
+    for (int i = 0; i < COUNT; i++) {
+      assertEquals(i, visited.putIfAbsent(fingerprints[i], COUNT + i));
+    }
+    assertEquals(COUNT, visited.size());
+  }
+}